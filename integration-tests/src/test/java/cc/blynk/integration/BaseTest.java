@@ -4,6 +4,7 @@ import cc.blynk.server.Holder;
 import cc.blynk.server.core.BlockingIOProcessor;
 import cc.blynk.server.core.model.serialization.JsonParser;
 import cc.blynk.server.notifications.mail.MailWrapper;
+import cc.blynk.server.notifications.mail.QrHolder;
 import cc.blynk.server.notifications.push.GCMWrapper;
 import cc.blynk.server.notifications.sms.SMSWrapper;
 import cc.blynk.server.notifications.twitter.TwitterWrapper;
@@ -37,9 +38,12 @@ import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.zip.InflaterInputStream;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * The Blynk Project.
@@ -139,6 +143,18 @@ public abstract class BaseTest {
             properties.setProperty("data.folder", getDataFolder());
         }
 
+        //mails are sent asynchronously, so mocked wrapper should return completed futures
+        if (mailWrapper != null) {
+            CompletableFuture<Void> sent = CompletableFuture.completedFuture(null);
+            when(mailWrapper.sendText(any(), any(), any())).thenReturn(sent);
+            when(mailWrapper.sendText(any(), any(), any(), any())).thenReturn(sent);
+            when(mailWrapper.sendHtml(any(), any(), any())).thenReturn(sent);
+            when(mailWrapper.sendHtml(any(), any(), any(), any())).thenReturn(sent);
+            when(mailWrapper.sendWithAttachment(any(), any(), any(), any(QrHolder.class))).thenReturn(sent);
+            when(mailWrapper.sendWithAttachment(any(), any(), any(), any(QrHolder[].class))).thenReturn(sent);
+            when(mailWrapper.sendWelcomeEmailForNewUser(any())).thenReturn(sent);
+        }
+
         this.holder = new Holder(properties, twitterWrapper, mailWrapper, gcmWrapper, smsWrapper, "no-db.properties");
     }
 
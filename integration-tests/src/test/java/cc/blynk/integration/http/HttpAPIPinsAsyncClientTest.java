@@ -20,19 +20,22 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN;
-import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_DISPOSITION;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
-import static io.netty.handler.codec.http.HttpHeaderNames.LOCATION;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -250,25 +253,27 @@ public class HttpAPIPinsAsyncClientTest extends BaseTest {
     }
 
     @Test
-    public void testGetCSVDataRedirect() throws Exception {
+    public void testGetCSVData() throws Exception {
         Path reportingPath = Paths.get(localHolder.reportingDao.dataFolder, "dmitriy@blynk.cc");
         Files.createDirectories(reportingPath);
         FileUtils.write(Paths.get(reportingPath.toString(), "history_125564119_v10_minute.bin"), 1, 2);
 
         Future<Response> f = httpclient.prepareGet(httpsServerUrl + "4ae3851817194e2596cf1b7103603ef8/data/v10").execute();
         Response response = f.get();
-        assertEquals(301, response.getStatusCode());
-        String redirectLocation = response.getHeader(LOCATION);
-        assertNotNull(redirectLocation);
-        assertTrue(redirectLocation.contains("/dmitriy@blynk.cc_125564119_0_v10_"));
-        assertEquals("*", response.getHeader(ACCESS_CONTROL_ALLOW_ORIGIN));
-        assertEquals("0", response.getHeader(CONTENT_LENGTH));
-
-        f = httpclient.prepareGet(httpsServerUrl + redirectLocation.replaceFirst("/", "")).execute();
-        response = f.get();
         assertEquals(200, response.getStatusCode());
         assertEquals("application/x-gzip", response.getHeader(CONTENT_TYPE));
         assertEquals("*", response.getHeader(ACCESS_CONTROL_ALLOW_ORIGIN));
+        assertTrue(response.getHeader(CONTENT_DISPOSITION).contains("dmitriy@blynk.cc_125564119_0_v10_"));
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(response.getResponseBodyAsStream()), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        assertEquals(Collections.singletonList("1.0,2,0"), lines);
     }
 
 }
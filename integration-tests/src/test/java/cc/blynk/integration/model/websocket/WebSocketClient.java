@@ -92,7 +92,7 @@ public final class WebSocketClient extends BaseClient {
                         new HttpObjectAggregator(8192),
                         handler,
                         new MessageDecoder(new GlobalStats(),
-                                new Limits(new ServerProperties(Collections.emptyMap())))
+                                new Limits(new ServerProperties(Collections.emptyMap())), false)
                 );
             }
         };
@@ -5,6 +5,7 @@ import cc.blynk.integration.model.tcp.ClientPair;
 import cc.blynk.integration.model.tcp.TestAppClient;
 import cc.blynk.server.core.model.device.Device;
 import cc.blynk.server.core.protocol.model.messages.ResponseMessage;
+import cc.blynk.server.notifications.mail.MailPriority;
 import cc.blynk.server.servers.BaseServer;
 import cc.blynk.server.servers.application.AppAndHttpsServer;
 import cc.blynk.server.servers.hardware.HardwareAndHttpAPIServer;
@@ -155,7 +156,7 @@ public class AppMailTest extends IntegrationBase {
         clientPair.appClient.verifyResult(ok(1));
 
         clientPair.hardwareClient.send("email to subj body");
-        verify(mailWrapper, after(500).never()).sendHtml(eq("to"), eq("subj"), eq("body"));
+        verify(mailWrapper, after(500).never()).sendHtml(eq("to"), eq("subj"), eq("body"), eq(MailPriority.LOW));
         clientPair.hardwareClient.verifyResult(illegalCommand(1));
     }
 
@@ -172,7 +173,7 @@ public class AppMailTest extends IntegrationBase {
         clientPair.appClient.verifyResult(ok(1));
 
         clientPair.hardwareClient.send("email to@to.com subj body");
-        verify(mailWrapper, timeout(500)).sendHtml(eq("to@to.com"), eq("subj"), eq("body"));
+        verify(mailWrapper, timeout(500)).sendHtml(eq("to@to.com"), eq("subj"), eq("body"), eq(MailPriority.LOW));
         clientPair.hardwareClient.verifyResult(ok(2));
 
         clientPair.hardwareClient.send("email to@to.com subj body");
@@ -188,7 +189,7 @@ public class AppMailTest extends IntegrationBase {
         clientPair.appClient.verifyResult(ok(1));
 
         clientPair.hardwareClient.send("email to@to.com subj body");
-        verify(mailWrapper, timeout(500)).sendText(eq("to@to.com"), eq("subj"), eq("body"));
+        verify(mailWrapper, timeout(500)).sendText(eq("to@to.com"), eq("subj"), eq("body"), eq(MailPriority.LOW));
         clientPair.hardwareClient.verifyResult(ok(1));
     }
 
@@ -201,7 +202,7 @@ public class AppMailTest extends IntegrationBase {
         clientPair.appClient.verifyResult(ok(1));
 
         clientPair.hardwareClient.send("email subj body");
-        verify(mailWrapper, timeout(500)).sendHtml(eq("test@mail.ua"), eq("subj"), eq("body"));
+        verify(mailWrapper, timeout(500)).sendHtml(eq("test@mail.ua"), eq("subj"), eq("body"), eq(MailPriority.LOW));
         clientPair.hardwareClient.verifyResult(ok(1));
     }
 
@@ -214,7 +215,7 @@ public class AppMailTest extends IntegrationBase {
         clientPair.appClient.verifyResult(ok(1));
 
         clientPair.hardwareClient.send("email subj body");
-        verify(mailWrapper, timeout(500)).sendHtml(eq("dima@mail.ua"), eq("subj"), eq("body"));
+        verify(mailWrapper, timeout(500)).sendHtml(eq("dima@mail.ua"), eq("subj"), eq("body"), eq(MailPriority.LOW));
         clientPair.hardwareClient.verifyResult(ok(1));
     }
 
@@ -131,10 +131,10 @@ public class DeviceWorkflowTest extends IntegrationBase {
         hardClient2.stop().await();
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Your My Device went offline.", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Your My Device went offline.", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -27,6 +27,7 @@ import cc.blynk.server.core.model.widgets.others.eventor.model.condition.number.
 import cc.blynk.server.core.model.widgets.others.eventor.model.condition.number.NotEqual;
 import cc.blynk.server.core.model.widgets.others.eventor.model.condition.string.StringEqual;
 import cc.blynk.server.core.model.widgets.others.eventor.model.condition.string.StringNotEqual;
+import cc.blynk.server.notifications.mail.MailPriority;
 import cc.blynk.server.notifications.push.android.AndroidGCMMessage;
 import cc.blynk.server.notifications.push.enums.Priority;
 import cc.blynk.server.servers.BaseServer;
@@ -354,10 +355,10 @@ public class EventorTest extends IntegrationBase {
         clientPair.appClient.verifyResult(hardware(1, "1-0 vw 1 37"));
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Yo!!!!!", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Yo!!!!!", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -372,10 +373,10 @@ public class EventorTest extends IntegrationBase {
         clientPair.appClient.verifyResult(hardware(1, "1-0 vw 1 37"));
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Temperatureis:37.", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Temperatureis:37.", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -406,7 +407,7 @@ public class EventorTest extends IntegrationBase {
         clientPair.appClient.verifyResult(hardware(1, "1-0 vw 1 37"));
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(mailWrapper, timeout(500).times(1)).sendText(eq("dima@mail.ua"), eq("Subj"), eq("Yo!!!!!"));
+        verify(mailWrapper, timeout(500).times(1)).sendText(eq("dima@mail.ua"), eq("Subj"), eq("Yo!!!!!"), eq(MailPriority.LOW));
     }
 
     @Test
@@ -423,7 +424,7 @@ public class EventorTest extends IntegrationBase {
         clientPair.appClient.verifyResult(hardware(1, "1-0 vw 1 37"));
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(mailWrapper, timeout(500).times(1)).sendText(eq("dima@mail.ua"), eq("Subj"), eq("Yo37!!!!!"));
+        verify(mailWrapper, timeout(500).times(1)).sendText(eq("dima@mail.ua"), eq("Subj"), eq("Yo37!!!!!"), eq(MailPriority.LOW));
     }
 
     @Test
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -229,10 +230,10 @@ public class NotificationsLogicTest extends IntegrationBase {
         channelFuture.await();
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Your My Device went offline.", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Your My Device went offline.", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -250,7 +251,7 @@ public class NotificationsLogicTest extends IntegrationBase {
         ChannelFuture channelFuture = clientPair.hardwareClient.stop();
         channelFuture.await();
 
-        verify(gcmWrapper, after(500).never()).send(any(), any(), any());
+        verify(gcmWrapper, after(500).never()).send(any(), any());
 
         clientPair.appClient.send("logout");
         verify(clientPair.appClient.responseMock, after(500).never()).channelRead(any(), eq(ok(3)));
@@ -270,7 +271,7 @@ public class NotificationsLogicTest extends IntegrationBase {
         ChannelFuture channelFuture = clientPair.hardwareClient.stop();
         channelFuture.await();
 
-        verify(gcmWrapper, after(500).never()).send(any(), any(), any());
+        verify(gcmWrapper, after(500).never()).send(any(), any());
 
         clientPair.appClient.send("logout");
         verify(clientPair.appClient.responseMock, after(500).never()).channelRead(any(), eq(ok(3)));
@@ -290,7 +291,7 @@ public class NotificationsLogicTest extends IntegrationBase {
         ChannelFuture channelFuture = clientPair.hardwareClient.stop();
         channelFuture.await();
 
-        verify(gcmWrapper, timeout(500)).send(any(), any(), eq("uid"));
+        verify(gcmWrapper, timeout(500)).send(any(), argThat(tokens -> tokens.containsKey("uid")));
     }
 
     @Test
@@ -310,7 +311,7 @@ public class NotificationsLogicTest extends IntegrationBase {
 
         clientPair.hardwareClient.stop().await();
 
-        verify(gcmWrapper, after(500).never()).send(any(), any(), any());
+        verify(gcmWrapper, after(500).never()).send(any(), any());
 
         TestAppClient appClient = new TestAppClient("localhost", tcpAppPort, properties);
         appClient.start();
@@ -329,10 +330,10 @@ public class NotificationsLogicTest extends IntegrationBase {
         hardClient.stop().await();
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), eq("uid"));
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), argThat(tokens -> tokens.containsKey("uid")));
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Your My Device went offline.", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Your My Device went offline.", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -362,10 +363,10 @@ public class NotificationsLogicTest extends IntegrationBase {
         clientPair.hardwareClient.stop().await();
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), eq("uid2"));
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), argThat(tokens -> tokens.containsKey("uid2")));
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token2", Priority.normal, "Your My Device went offline.", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Your My Device went offline.", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -395,7 +396,7 @@ public class NotificationsLogicTest extends IntegrationBase {
         clientPair.hardwareClient.stop().await();
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, after(500).never()).send(objectArgumentCaptor.capture(), any(), eq("uid2"));
+        verify(gcmWrapper, after(500).never()).send(objectArgumentCaptor.capture(), argThat(tokens -> tokens.containsKey("uid2")));
     }
 
     @Test
@@ -425,7 +426,7 @@ public class NotificationsLogicTest extends IntegrationBase {
         clientPair.hardwareClient.stop().await();
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, after(500).never()).send(objectArgumentCaptor.capture(), any(), eq("uid2"));
+        verify(gcmWrapper, after(500).never()).send(objectArgumentCaptor.capture(), argThat(tokens -> tokens.containsKey("uid2")));
     }
 
     @Test
@@ -444,11 +445,11 @@ public class NotificationsLogicTest extends IntegrationBase {
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
 
-        verify(gcmWrapper, timeout(2000).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(2000).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
         assertTrue(System.currentTimeMillis() - now > notification.notifyWhenOfflineIgnorePeriod );
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Your My Device went offline.", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Your My Device went offline.", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -475,7 +476,7 @@ public class NotificationsLogicTest extends IntegrationBase {
         newHardClient.verifyResult(ok(1));
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, after(1500).never()).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, after(1500).never()).send(objectArgumentCaptor.capture(), any());
     }
 
     @Test
@@ -496,10 +497,10 @@ public class NotificationsLogicTest extends IntegrationBase {
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
 
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token1", Priority.high, "123", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.high, "123", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -509,10 +510,10 @@ public class NotificationsLogicTest extends IntegrationBase {
         channelFuture.await();
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Your My Device went offline.", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Your My Device went offline.", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
@@ -521,10 +522,10 @@ public class NotificationsLogicTest extends IntegrationBase {
         clientPair.hardwareClient.send("push Yo!");
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(500).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Yo!", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Yo!", 1).toJson();
         assertEquals(expectedJson, message.toJson());
     }
 
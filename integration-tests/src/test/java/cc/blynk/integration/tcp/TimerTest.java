@@ -216,10 +216,10 @@ public class TimerTest extends IntegrationBase {
         clientPair.appClient.verifyResult(ok(1));
 
         ArgumentCaptor<AndroidGCMMessage> objectArgumentCaptor = ArgumentCaptor.forClass(AndroidGCMMessage.class);
-        verify(gcmWrapper, timeout(2000).times(1)).send(objectArgumentCaptor.capture(), any(), any());
+        verify(gcmWrapper, timeout(2000).times(1)).send(objectArgumentCaptor.capture(), any());
         AndroidGCMMessage message = objectArgumentCaptor.getValue();
 
-        String expectedJson = new AndroidGCMMessage("token", Priority.normal, "Hello", 1).toJson();
+        String expectedJson = new AndroidGCMMessage(Priority.normal, "Hello", 1).toJson();
         assertEquals(expectedJson, message.toJson());
 
         verify(clientPair.appClient.responseMock, timeout(2000)).channelRead(any(), eq(hardware(TIMER_MSG_ID, "1-0 vw 1 1")));
@@ -8,6 +8,10 @@ import cc.blynk.server.core.dao.TokenManager;
 import cc.blynk.server.core.dao.UserDao;
 import cc.blynk.server.core.dao.ota.OTAManager;
 import cc.blynk.server.core.processors.EventorProcessor;
+import cc.blynk.server.core.processors.WebhookDispatcher;
+import cc.blynk.server.core.reporting.storage.FileReportingStorage;
+import cc.blynk.server.core.reporting.storage.ReportingStorage;
+import cc.blynk.server.core.reporting.storage.RingReportingStorage;
 import cc.blynk.server.core.stats.GlobalStats;
 import cc.blynk.server.db.DBManager;
 import cc.blynk.server.internal.TokensPool;
@@ -70,6 +74,7 @@ public class Holder {
 
     public final EventorProcessor eventorProcessor;
     public final DefaultAsyncHttpClient asyncHttpClient;
+    public final WebhookDispatcher webhookDispatcher;
 
     public final OTAManager otaManager;
 
@@ -94,7 +99,8 @@ public class Holder {
         this.host = serverProperties.getServerHost();
 
         String dataFolder = serverProperties.getProperty("data.folder");
-        this.fileManager = new FileManager(dataFolder, host);
+        this.fileManager = new FileManager(dataFolder, host,
+                "smile".equals(serverProperties.getProperty("profile.storage.format")));
         this.sessionDao = new SessionDao();
         this.blockingIOProcessor = new BlockingIOProcessor(
                 serverProperties.getIntProperty("blocking.processor.thread.pool.limit", 6),
@@ -104,20 +110,21 @@ public class Holder {
 
         if (restore) {
             try {
-                this.userDao = new UserDao(dbManager.userDBDao.getAllUsers(this.region), this.region, host);
+                this.userDao = new UserDao(dbManager.userDBDao.getAllUsers(this.region), this.region, host,
+                        fileManager);
             } catch (Exception e) {
                 System.out.println("Error restoring data from DB!");
                 e.printStackTrace();
                 throw new RuntimeException(e);
             }
         } else {
-            this.userDao = new UserDao(fileManager.deserializeUsers(), this.region, host);
+            this.userDao = new UserDao(fileManager.deserializeUsers(), this.region, host, fileManager);
         }
 
-        this.tokenManager = new TokenManager(this.userDao.users, dbManager, host);
+        this.tokenManager = new TokenManager(this.userDao, dbManager, host);
         this.stats = new GlobalStats();
         final String reportingFolder = getReportingFolder(dataFolder);
-        this.reportingDao = new ReportingDao(reportingFolder,
+        this.reportingDao = new ReportingDao(reportingFolder, createReportingStorage(serverProperties),
                 serverProperties.isRawDBEnabled() && dbManager.isDBEnabled());
 
         this.transportTypeHolder = new TransportTypeHolder(serverProperties);
@@ -139,10 +146,12 @@ public class Holder {
         this.otaManager = new OTAManager(props);
 
         this.eventorProcessor = new EventorProcessor(
-                gcmWrapper, mailWrapper, twitterWrapper, blockingIOProcessor, stats);
+                gcmWrapper, mailWrapper, twitterWrapper, stats);
         this.timerWorker = new TimerWorker(userDao, sessionDao, gcmWrapper);
         this.readingWidgetsWorker = new ReadingWidgetsWorker(sessionDao, userDao, props.getAllowWithoutActiveApp());
         this.limits = new Limits(props);
+        this.webhookDispatcher = new WebhookDispatcher(asyncHttpClient,
+                limits.webhookHostConcurrencyLimit, limits.webhookHostQueueLimit, limits.webhookCoalesce, stats);
         this.textHolder = new TextHolder(gcmProperties);
 
         this.csvDownloadUrl = FileUtils.csvDownloadUrl(host,
@@ -167,19 +176,20 @@ public class Holder {
         this.host = serverProperties.getServerHost();
 
         String dataFolder = serverProperties.getProperty("data.folder");
-        this.fileManager = new FileManager(dataFolder, host);
+        this.fileManager = new FileManager(dataFolder, host,
+                "smile".equals(serverProperties.getProperty("profile.storage.format")));
         this.sessionDao = new SessionDao();
-        this.userDao = new UserDao(fileManager.deserializeUsers(), this.region, host);
+        this.userDao = new UserDao(fileManager.deserializeUsers(), this.region, host, fileManager);
         this.blockingIOProcessor = new BlockingIOProcessor(
                 serverProperties.getIntProperty("blocking.processor.thread.pool.limit", 5),
                 serverProperties.getIntProperty("notifications.queue.limit", 2000)
         );
 
         this.dbManager = new DBManager(dbFileName, blockingIOProcessor, serverProperties.getBoolProperty("enable.db"));
-        this.tokenManager = new TokenManager(this.userDao.users, dbManager, host);
+        this.tokenManager = new TokenManager(this.userDao, dbManager, host);
         this.stats = new GlobalStats();
         final String reportingFolder = getReportingFolder(dataFolder);
-        this.reportingDao = new ReportingDao(reportingFolder,
+        this.reportingDao = new ReportingDao(reportingFolder, createReportingStorage(serverProperties),
                 serverProperties.isRawDBEnabled() && dbManager.isDBEnabled());
 
         this.transportTypeHolder = new TransportTypeHolder(serverProperties);
@@ -192,7 +202,7 @@ public class Holder {
         this.otaManager = new OTAManager(props);
 
         this.eventorProcessor = new EventorProcessor(
-                gcmWrapper, mailWrapper, twitterWrapper, blockingIOProcessor, stats);
+                gcmWrapper, mailWrapper, twitterWrapper, stats);
         this.asyncHttpClient = new DefaultAsyncHttpClient(new DefaultAsyncHttpClientConfig.Builder()
                 .setUserAgent(null)
                 .setKeepAlive(true)
@@ -204,6 +214,8 @@ public class Holder {
         this.timerWorker = new TimerWorker(userDao, sessionDao, gcmWrapper);
         this.readingWidgetsWorker = new ReadingWidgetsWorker(sessionDao, userDao, props.getAllowWithoutActiveApp());
         this.limits = new Limits(props);
+        this.webhookDispatcher = new WebhookDispatcher(asyncHttpClient,
+                limits.webhookHostConcurrencyLimit, limits.webhookHostQueueLimit, limits.webhookCoalesce, stats);
         this.textHolder = new TextHolder(new GCMProperties(Collections.emptyMap()));
 
         this.csvDownloadUrl = FileUtils.csvDownloadUrl(host,
@@ -223,6 +235,13 @@ public class Holder {
         }
     }
 
+    private static ReportingStorage createReportingStorage(ServerProperties serverProperties) {
+        if ("ring".equals(serverProperties.getProperty("reporting.storage.type"))) {
+            return new RingReportingStorage(serverProperties);
+        }
+        return new FileReportingStorage();
+    }
+
     public boolean isLocalRegion() {
         return region.equals("local");
     }
@@ -236,6 +255,7 @@ public class Holder {
 
         System.out.println("Stopping BlockingIOProcessor...");
         blockingIOProcessor.close();
+        mailWrapper.close();
         System.out.println("Stopping DBManager...");
         dbManager.close();
     }
@@ -28,6 +28,9 @@ public class Limits {
     public final long webhookPeriodLimitation;
     public final int webhookResponseSizeLimitBytes;
     public final int webhookFailureLimit;
+    public final int webhookHostConcurrencyLimit;
+    public final int webhookHostQueueLimit;
+    public final boolean webhookCoalesce;
     public final int hardwareIdleTimeout;
     public final int appIdleTimeout;
 
@@ -48,6 +51,9 @@ public class Limits {
         this.webhookResponseSizeLimitBytes = props.getIntProperty("webhooks.response.size.limit", 64) * 1024;
         this.webhookFailureLimit =
                 isUnlimited(props.getIntProperty("webhooks.failure.count.limit", 10), Integer.MAX_VALUE);
+        this.webhookHostConcurrencyLimit = props.getIntProperty("webhooks.host.concurrency.limit", 16);
+        this.webhookHostQueueLimit = props.getIntProperty("webhooks.host.queue.limit", 1000);
+        this.webhookCoalesce = props.getBoolProperty("webhooks.coalesce");
         this.hardwareIdleTimeout = props.getIntProperty("hard.socket.idle.timeout", 0);
         this.appIdleTimeout = props.getIntProperty("app.socket.idle.timeout", 300);
 
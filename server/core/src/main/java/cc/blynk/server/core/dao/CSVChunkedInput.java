@@ -0,0 +1,288 @@
+package cc.blynk.server.core.dao;
+
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
+
+/**
+ * Gzipped CSV export of the minute reporting data, produced chunk by chunk.
+ * Every chunk is formed from the bunch of records read right from the reporting file,
+ * so the memory used doesn't depend on the amount of exported data and no temp files are needed.
+ * Lines are "value,ts,deviceId", devices are exported one after another in chronological order.
+ */
+public class CSVChunkedInput implements ChunkedInput<ByteBuf> {
+
+    private static final int RECORDS_PER_READ = 1024;
+    //-1.2345678901234567E-100,9223372036854775807,-2147483648\n
+    private static final int MAX_LINE_LENGTH = 64;
+    private static final int MIN_CHUNK_SIZE = 8 * 1024;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    //plain notation is used by Double.toString() within this range
+    private static final double MIN_PLAIN = 1e-3;
+    private static final double MAX_PLAIN = 1e7;
+    private static final double[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000};
+
+    private final ReportingDao reportingDao;
+    private final User user;
+    private final int dashId;
+    private final PinType pinType;
+    private final byte pin;
+    private final int fetchCount;
+    private final int[] deviceIds;
+
+    private final ByteBuf records = Unpooled.buffer(RECORDS_PER_READ * SIZE_OF_REPORT_ENTRY);
+    private final byte[] lines = new byte[RECORDS_PER_READ * MAX_LINE_LENGTH];
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+
+    private int deviceIndex;
+    private Path deviceFile;
+    //records of the device export window that are not read yet, counting from the oldest
+    private int remaining;
+    private long lastTs;
+
+    private boolean headerWritten;
+    private boolean finished;
+    private long progress;
+
+    CSVChunkedInput(ReportingDao reportingDao, User user, int dashId, PinType pinType, byte pin,
+                    int fetchCount, int[] deviceIds) {
+        this.reportingDao = reportingDao;
+        this.user = user;
+        this.dashId = dashId;
+        this.pinType = pinType;
+        this.pin = pin;
+        this.fetchCount = fetchCount;
+        this.deviceIds = deviceIds;
+        this.deviceIndex = -1;
+    }
+
+    boolean hasData() {
+        for (int deviceId : deviceIds) {
+            if (Files.exists(dataFile(deviceId))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Path dataFile(int deviceId) {
+        return reportingDao.getDataFile(user, dashId, deviceId, pinType, pin, GraphGranularityType.MINUTE);
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return finished;
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+        records.release();
+    }
+
+    @Override
+    @Deprecated
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+        if (finished) {
+            return null;
+        }
+        ByteBuf chunk = allocator.heapBuffer(MIN_CHUNK_SIZE);
+        try {
+            if (!headerWritten) {
+                chunk.writeBytes(GZIP_HEADER);
+                headerWritten = true;
+            }
+            while (chunk.readableBytes() < MIN_CHUNK_SIZE) {
+                int length = formatNextLines();
+                if (length < 0) {
+                    finish(chunk);
+                    break;
+                }
+                crc.update(lines, 0, length);
+                deflater.setInput(lines, 0, length);
+                while (!deflater.needsInput()) {
+                    deflate(chunk);
+                }
+            }
+        } catch (Exception e) {
+            chunk.release();
+            throw e;
+        }
+        progress += chunk.readableBytes();
+        return chunk;
+    }
+
+    private void finish(ByteBuf chunk) {
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate(chunk);
+        }
+        chunk.ensureWritable(GZIP_TRAILER_SIZE);
+        chunk.writeIntLE((int) crc.getValue());
+        chunk.writeIntLE((int) deflater.getBytesRead());
+        finished = true;
+    }
+
+    private void deflate(ByteBuf chunk) {
+        chunk.ensureWritable(MIN_CHUNK_SIZE);
+        int written = deflater.deflate(chunk.array(), chunk.arrayOffset() + chunk.writerIndex(),
+                chunk.writableBytes());
+        chunk.writerIndex(chunk.writerIndex() + written);
+    }
+
+    /**
+     * Reads next bunch of records of the current device and formats them as CSV lines.
+     *
+     * @return - length of the formatted lines or -1 when all devices are exported.
+     */
+    private int formatNextLines() throws Exception {
+        while (true) {
+            if (remaining == 0 && !nextDevice()) {
+                return -1;
+            }
+            //reading the oldest records first, first read takes the rest of the division
+            int count = (remaining - 1) % RECORDS_PER_READ + 1;
+            remaining -= count;
+            records.clear();
+            reportingDao.storage.read(deviceFile, GraphGranularityType.MINUTE, count, remaining, records);
+            if (records.readableBytes() >= SIZE_OF_REPORT_ENTRY) {
+                return formatLines(deviceIds[deviceIndex]);
+            }
+        }
+    }
+
+    private boolean nextDevice() {
+        while (++deviceIndex < deviceIds.length) {
+            Path file = dataFile(deviceIds[deviceIndex]);
+            if (fetchCount > 0 && Files.exists(file)) {
+                this.deviceFile = file;
+                this.remaining = fetchCount;
+                this.lastTs = Long.MIN_VALUE;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int formatLines(int deviceId) {
+        int pos = 0;
+        while (records.readableBytes() >= SIZE_OF_REPORT_ENTRY) {
+            double value = records.readDouble();
+            long ts = records.readLong();
+            //record added to the file during the export shifts the read window,
+            //so the last record of the previous read could be read again
+            if (ts <= lastTs) {
+                continue;
+            }
+            lastTs = ts;
+            pos = writeDouble(lines, pos, value);
+            lines[pos++] = ',';
+            pos = writeLong(lines, pos, ts);
+            lines[pos++] = ',';
+            pos = writeLong(lines, pos, deviceId);
+            lines[pos++] = '\n';
+        }
+        return pos;
+    }
+
+    /**
+     * Writes the value in the same form as Double.toString(), without creating a string
+     * for the values that have up to 6 digits after the point.
+     */
+    static int writeDouble(byte[] buf, int pos, double value) {
+        if (Double.doubleToRawLongBits(value) == 0) {
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            buf[pos++] = '0';
+            return pos;
+        }
+        double abs = Math.abs(value);
+        if (abs >= MIN_PLAIN && abs < MAX_PLAIN) {
+            for (int scale = 0; scale < POWERS_OF_TEN.length; scale++) {
+                double power = POWERS_OF_TEN[scale];
+                double scaled = Math.rint(abs * power);
+                //decimal with this number of digits is parsed back to the same value
+                if (scaled / power == abs) {
+                    if (value < 0) {
+                        buf[pos++] = '-';
+                    }
+                    long digits = (long) scaled;
+                    long divider = (long) power;
+                    pos = writeLong(buf, pos, digits / divider);
+                    buf[pos++] = '.';
+                    if (scale == 0) {
+                        buf[pos++] = '0';
+                        return pos;
+                    }
+                    return writeFraction(buf, pos, digits % divider, scale);
+                }
+            }
+        }
+        byte[] bytes = Double.toString(value).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static int writeFraction(byte[] buf, int pos, long fraction, int scale) {
+        int end = pos + scale;
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return end;
+    }
+
+    static int writeLong(byte[] buf, int pos, long value) {
+        if (value == Long.MIN_VALUE) {
+            byte[] bytes = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            return pos + bytes.length;
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int length = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+        int end = pos + length;
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    @Override
+    public long length() {
+        return -1;
+    }
+
+    @Override
+    public long progress() {
+        return progress;
+    }
+}
@@ -3,26 +3,21 @@ package cc.blynk.server.core.dao;
 import cc.blynk.server.core.model.DataStream;
 import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.enums.PinType;
-import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
 import cc.blynk.server.core.protocol.exceptions.NoDataException;
 import cc.blynk.utils.FileUtils;
-import io.netty.util.CharsetUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.Buffer;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.zip.GZIPOutputStream;
 
 /**
- * Simply generates CSV file from reporting data.
+ * Generates gzipped CSV from reporting data, as a stream or as a file.
  *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
@@ -52,55 +47,46 @@ public class CSVGenerator {
         this.reportingDao = reportingDao;
     }
 
-    public Path createCSV(User user, int dashId, int inDeviceId, PinType pinType, byte pin, int... deviceIds)
-            throws Exception {
+    /**
+     * Export that is read chunk by chunk, for example straight into the http response.
+     */
+    public CSVChunkedInput streamCSV(User user, int dashId, PinType pinType, byte pin, int... deviceIds)
+            throws NoDataException {
         if (pinType == null || pin == DataStream.NO_PIN) {
             throw new IllegalStateException("Wrong pin format.");
         }
+        CSVChunkedInput csv = new CSVChunkedInput(reportingDao, user, dashId, pinType, pin, FETCH_COUNT, deviceIds);
+        if (!csv.hasData()) {
+            throw new NoDataException();
+        }
+        return csv;
+    }
 
+    public Path createCSV(User user, int dashId, int inDeviceId, PinType pinType, byte pin, int... deviceIds)
+            throws Exception {
+        CSVChunkedInput csv = streamCSV(user, dashId, pinType, pin, deviceIds);
         Path path = generateExportCSVPath(user.email, dashId, inDeviceId, pinType, pin);
-
-        try (OutputStream output = Files.newOutputStream(path);
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                     new GZIPOutputStream(output), CharsetUtil.US_ASCII))) {
-
-            int emptyDataCounter = 0;
-            for (int deviceId : deviceIds) {
-                ByteBuffer onePinData = reportingDao.getByteBufferFromDisk(user, dashId, deviceId,
-                        pinType, pin, FETCH_COUNT, GraphGranularityType.MINUTE, 0);
-                if (onePinData != null) {
-                    //casting is necessary here
-                    //super strange fix for https://jira.mongodb.org/browse/JAVA-2559
-                    //https://community.blynk.cc/t/java-error-on-remote-server-startup/17957/7
-                    ((Buffer) onePinData).flip();
-                    writeBuf(writer, onePinData, deviceId);
-                } else {
-                    emptyDataCounter++;
+        try (OutputStream output = Files.newOutputStream(path)) {
+            ByteBuf chunk;
+            while ((chunk = csv.readChunk(ByteBufAllocator.DEFAULT)) != null) {
+                try {
+                    chunk.readBytes(output, chunk.readableBytes());
+                } finally {
+                    chunk.release();
                 }
             }
-            if (emptyDataCounter == deviceIds.length) {
-                throw new NoDataException();
-            }
+        } finally {
+            csv.close();
         }
-
         return path;
     }
 
-    private static void writeBuf(BufferedWriter writer, ByteBuffer onePinData, int deviceId) throws Exception {
-        while (onePinData.remaining() > 0) {
-            double value = onePinData.getDouble();
-            long ts = onePinData.getLong();
-
-            writer.write("" + value + ',' + ts + ',' + deviceId + '\n');
-        }
-    }
-
     private static Path generateExportCSVPath(String email, int dashId, int deviceId, PinType pinType, byte pin) {
-        return Paths.get(CSV_DIR, format(email, dashId, deviceId, pinType, pin));
+        return Paths.get(CSV_DIR, fileName(email, dashId, deviceId, pinType, pin));
     }
 
     //"%s_%s_%c%d.csv.gz"
-    private static String format(String email, int dashId, int deviceId, PinType pinType, byte pin) {
+    public static String fileName(String email, int dashId, int deviceId, PinType pinType, byte pin) {
         long now = System.currentTimeMillis();
         return email + "_" + dashId + "_" + deviceId + "_" + pinType.pintTypeChar + pin + "_" + now + ".csv.gz";
     }
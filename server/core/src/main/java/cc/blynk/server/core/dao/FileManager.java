@@ -7,21 +7,29 @@ import cc.blynk.server.core.model.device.Status;
 import cc.blynk.server.core.model.serialization.JsonParser;
 import cc.blynk.server.core.model.widgets.Widget;
 import cc.blynk.utils.FileUtils;
+import io.netty.util.internal.PlatformDependent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystems;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
@@ -42,6 +50,8 @@ public class FileManager {
 
     private static final Logger log = LogManager.getLogger(FileManager.class);
     private static final String USER_FILE_EXTENSION = ".user";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final long MAPPING_THRESHOLD = 64 * 1024;
 
     /**
      * Folder where all user profiles are stored locally.
@@ -55,8 +65,14 @@ public class FileManager {
     private Path backupDataDir;
     private String cloneDataDir;
     private final String host;
+    //profiles are written in Smile format when true, json otherwise. Both formats are read
+    private final boolean binaryProfiles;
 
     public FileManager(String dataFolder, String host) {
+        this(dataFolder, host, false);
+    }
+
+    public FileManager(String dataFolder, String host, boolean binaryProfiles) {
         if (dataFolder == null || dataFolder.isEmpty() || dataFolder.equals("/path")) {
             System.out.println("WARNING : '" + dataFolder + "' does not exists. "
                     + "Please specify correct -dataFolder parameter.");
@@ -91,6 +107,7 @@ public class FileManager {
         }
 
         this.host = host;
+        this.binaryProfiles = binaryProfiles;
         log.info("Using data dir '{}'", dataDir);
     }
 
@@ -119,7 +136,14 @@ public class FileManager {
     public void overrideUserFile(User user) throws IOException {
         Path path = generateFileName(user.email, user.appName);
 
-        JsonParser.writeUser(path.toFile(), user);
+        //profile is written to the temp file and renamed, so crash never leaves truncated profile
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_FILE_EXTENSION);
+        JsonParser.writeUser(tempPath.toFile(), user, binaryProfiles);
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
 
         removeOldFile(user.email);
     }
@@ -135,35 +159,27 @@ public class FileManager {
     }
 
     /**
-     * Loads all user profiles one by one from disk using dataDir as starting point.
+     * Loads all user profiles from disk using dataDir as starting point.
+     * Files are listed first, so the list is split evenly between the fork join pool threads.
+     * Big files are memory-mapped and parsed right from the mapping, json and Smile files are supported.
      *
      * @return mapping between username and it's profile.
      */
     public ConcurrentMap<UserKey, User> deserializeUsers() {
         log.debug("Starting reading user DB.");
 
-        PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher("glob:**" + USER_FILE_EXTENSION);
+        List<Path> userFiles = new ArrayList<>();
         ConcurrentMap<UserKey, User> temp;
         try {
-            temp = Files.walk(dataDir, 1).parallel()
-                    .filter(path -> Files.isRegularFile(path) && pathMatcher.matches(path))
-                    .flatMap(path -> {
-                        try {
-                            User user = JsonParser.parseUserFromFile(path);
-                            makeProfileChanges(user);
-
-                            return Stream.of(user);
-                        } catch (IOException ioe) {
-                            String errorMessage = ioe.getMessage();
-                            log.error("Error parsing file '{}'. Error : {}", path, errorMessage);
-                            if (errorMessage != null
-                                    && (errorMessage.contains("end-of-input")
-                                    || errorMessage.contains("Illegal character"))) {
-                                return restoreFromBackup(path.getFileName());
-                            }
-                        }
-                        return Stream.empty();
-                    })
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dataDir, "*" + USER_FILE_EXTENSION)) {
+                for (Path path : files) {
+                    if (Files.isRegularFile(path)) {
+                        userFiles.add(path);
+                    }
+                }
+            }
+            temp = userFiles.parallelStream()
+                    .flatMap(this::readUser)
                     .collect(Collectors.toConcurrentMap(UserKey::new, identity()));
         } catch (Exception e) {
             log.error("Error reading user profiles from disk. {}", e.getMessage());
@@ -174,6 +190,60 @@ public class FileManager {
         return temp;
     }
 
+    /**
+     * Reads single user profile, used to load back profiles evicted from memory.
+     *
+     * @return user or null if profile file doesn't exist or can't be read.
+     */
+    public User readUser(UserKey userKey) {
+        Path path = generateFileName(userKey.email, userKey.appName);
+        if (Files.notExists(path)) {
+            return null;
+        }
+        return readUser(path).findFirst().orElse(null);
+    }
+
+    private Stream<User> readUser(Path path) {
+        try {
+            User user = parseMappedUserFile(path);
+            makeProfileChanges(user);
+
+            return Stream.of(user);
+        } catch (IOException ioe) {
+            String errorMessage = ioe.getMessage();
+            log.error("Error parsing file '{}'. Error : {}", path, errorMessage);
+            if (errorMessage != null
+                    && (errorMessage.contains("end-of-input")
+                    || errorMessage.contains("Illegal character"))) {
+                return restoreFromBackup(path.getFileName());
+            }
+        }
+        return Stream.empty();
+    }
+
+    //small profiles are cheaper to read with a single call than to map and unmap
+    private static User parseMappedUserFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAPPING_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                int read;
+                do {
+                    read = channel.read(buffer);
+                } while (read >= 0 && buffer.hasRemaining());
+                ((Buffer) buffer).flip();
+                return JsonParser.parseUser(buffer);
+            }
+            //mapping is released right after parsing, so the number of mappings doesn't grow with the number of files
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                return JsonParser.parseUser(buffer);
+            } finally {
+                PlatformDependent.freeDirectBuffer(buffer);
+            }
+        }
+    }
+
     private Stream<User> restoreFromBackup(Path restoreFileNamePath) {
         log.info("Trying to recover from backup...");
         String filename = restoreFileNamePath.toString();
@@ -20,17 +20,40 @@ class RegularTokenManager {
     private static final Logger log = LogManager.getLogger(RegularTokenManager.class);
 
     final ConcurrentHashMap<String, TokenValue> cache;
+    //tokens of the users evicted from memory
+    final ConcurrentHashMap<String, UserKey> evicted = new ConcurrentHashMap<>();
 
     RegularTokenManager(Collection<User> users) {
         ///in average user has 2 devices
         this.cache = new ConcurrentHashMap<>(users.size() == 0 ? 16 : users.size() * 2);
         for (User user : users) {
-            if (user.profile != null) {
-                for (DashBoard dashBoard : user.profile.dashBoards) {
-                    for (Device device : dashBoard.devices) {
-                        if (device.token != null) {
-                            cache.put(device.token, new TokenValue(user, dashBoard, device));
-                        }
+            add(user);
+        }
+    }
+
+    void add(User user) {
+        if (user.profile != null) {
+            for (DashBoard dashBoard : user.profile.dashBoards) {
+                for (Device device : dashBoard.devices) {
+                    if (device.token != null) {
+                        cache.put(device.token, new TokenValue(user, dashBoard, device));
+                        evicted.remove(device.token);
+                    }
+                }
+            }
+        }
+    }
+
+    void evict(User user) {
+        UserKey userKey = new UserKey(user);
+        for (DashBoard dashBoard : user.profile.dashBoards) {
+            for (Device device : dashBoard.devices) {
+                String token = device.token;
+                if (token != null) {
+                    TokenValue tokenValue = cache.get(token);
+                    //token could already point to the profile loaded back
+                    if (tokenValue != null && tokenValue.user == user && cache.remove(token, tokenValue)) {
+                        evicted.put(token, userKey);
                     }
                 }
             }
@@ -45,7 +68,7 @@ class RegularTokenManager {
         device.token = newToken;
         cache.put(newToken, new TokenValue(user, dash, device, isTemporary));
 
-        user.lastModifiedTs = System.currentTimeMillis();
+        user.updateLastModifiedTs(System.currentTimeMillis());
 
         log.debug("Generated token for user {}, dashId {}, deviceId {} is {}.",
                 user.email, dash.id, device.id, newToken);
@@ -1,35 +1,33 @@
 package cc.blynk.server.core.dao;
 
-import cc.blynk.server.core.dao.functions.GraphFunction;
 import cc.blynk.server.core.model.DashBoard;
 import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.enums.PinType;
 import cc.blynk.server.core.model.widgets.outputs.graph.AggregationFunctionType;
 import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
-import cc.blynk.server.core.protocol.exceptions.NoDataException;
+import cc.blynk.server.core.reporting.GraphDataMerger;
 import cc.blynk.server.core.reporting.GraphPinRequest;
 import cc.blynk.server.core.reporting.average.AverageAggregatorProcessor;
-import cc.blynk.server.core.reporting.raw.BaseReportingKey;
+import cc.blynk.server.core.reporting.average.SeriesRegistry;
 import cc.blynk.server.core.reporting.raw.GraphValue;
 import cc.blynk.server.core.reporting.raw.RawDataCacheForGraphProcessor;
 import cc.blynk.server.core.reporting.raw.RawDataProcessor;
+import cc.blynk.server.core.reporting.storage.FileReportingStorage;
+import cc.blynk.server.core.reporting.storage.ReportingStorage;
 import cc.blynk.utils.FileUtils;
 import cc.blynk.utils.NumberUtil;
+import io.netty.buffer.ByteBuf;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.Closeable;
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.function.Function;
 
-import static cc.blynk.server.internal.EmptyArraysUtil.EMPTY_BYTES;
 import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
 import static cc.blynk.utils.StringUtils.DEVICE_SEPARATOR;
 
@@ -46,6 +44,7 @@ public class ReportingDao implements Closeable {
     private final RawDataCacheForGraphProcessor rawDataCacheForGraphProcessor;
     public final RawDataProcessor rawDataProcessor;
     public final CSVGenerator csvGenerator;
+    public final ReportingStorage storage;
 
     public final String dataFolder;
 
@@ -56,7 +55,14 @@ public class ReportingDao implements Closeable {
     //for test only
     public ReportingDao(String reportingFolder, AverageAggregatorProcessor averageAggregator,
                         boolean isEnabled) {
+        this(reportingFolder, averageAggregator, new FileReportingStorage(), isEnabled);
+    }
+
+    //for test only
+    public ReportingDao(String reportingFolder, AverageAggregatorProcessor averageAggregator,
+                        ReportingStorage storage, boolean isEnabled) {
         this.averageAggregator = averageAggregator;
+        this.storage = storage;
         this.rawDataCacheForGraphProcessor = new RawDataCacheForGraphProcessor();
         this.dataFolder = reportingFolder;
         this.enableRawDbDataStore = isEnabled;
@@ -65,7 +71,12 @@ public class ReportingDao implements Closeable {
     }
 
     public ReportingDao(String reportingFolder, boolean isEnabled) {
+        this(reportingFolder, new FileReportingStorage(), isEnabled);
+    }
+
+    public ReportingDao(String reportingFolder, ReportingStorage storage, boolean isEnabled) {
         this.averageAggregator = new AverageAggregatorProcessor(reportingFolder);
+        this.storage = storage;
         this.rawDataCacheForGraphProcessor = new RawDataCacheForGraphProcessor();
         this.dataFolder = reportingFolder;
         this.enableRawDbDataStore = isEnabled;
@@ -83,7 +94,7 @@ public class ReportingDao implements Closeable {
         );
         if (Files.exists(userDataFile)) {
             try {
-                return FileUtils.read(userDataFile, count, skipCount);
+                return storage.read(userDataFile, type, count, skipCount);
             } catch (Exception ioe) {
                 log.error(ioe);
             }
@@ -92,73 +103,76 @@ public class ReportingDao implements Closeable {
         return null;
     }
 
-    private static boolean hasData(byte[][] data) {
-        for (byte[] pinData : data) {
-            if (pinData.length > 0) {
-                return true;
+    private int readTag(User user, GraphPinRequest graphPinRequest, ByteBuf target) {
+        int[] deviceIds = graphPinRequest.deviceIds;
+        int[] offsets = new int[deviceIds.length + 1];
+        ByteBuf records = target.alloc().buffer();
+        try {
+            offsets[0] = records.writerIndex();
+            for (int i = 0; i < deviceIds.length; i++) {
+                int read = readFromDisk(user, graphPinRequest, deviceIds[i], records);
+                //merge expects only full records
+                records.writerIndex(offsets[i] + read - read % SIZE_OF_REPORT_ENTRY);
+                offsets[i + 1] = records.writerIndex();
             }
+            AggregationFunctionType functionType = graphPinRequest.functionType == null
+                    ? AggregationFunctionType.AVG
+                    : graphPinRequest.functionType;
+            return GraphDataMerger.merge(records, offsets, functionType.produce(), target);
+        } finally {
+            records.release();
         }
-        return false;
     }
 
-    private ByteBuffer getDataForTag(User user, GraphPinRequest graphPinRequest) {
-        TreeMap<Long, GraphFunction> data = new TreeMap<>();
-        for (int deviceId : graphPinRequest.deviceIds) {
-            ByteBuffer localByteBuf = getByteBufferFromDisk(user,
-                    graphPinRequest.dashId, deviceId,
-                    graphPinRequest.pinType, graphPinRequest.pin,
-                    graphPinRequest.count, graphPinRequest.type,
-                    graphPinRequest.skipCount
-            );
-            addBufferToResult(data, graphPinRequest.functionType, localByteBuf);
+    private int readFromDisk(User user, GraphPinRequest graphPinRequest, int deviceId, ByteBuf target) {
+        Path userDataFile = getUserReportingFolderPath(user).resolve(generateFilename(graphPinRequest.dashId,
+                deviceId, graphPinRequest.pinType, graphPinRequest.pin, graphPinRequest.type));
+        if (Files.notExists(userDataFile)) {
+            return 0;
         }
 
-        return toByteBuf(data);
+        int writerIndex = target.writerIndex();
+        try {
+            return storage.read(userDataFile, graphPinRequest.type,
+                    graphPinRequest.count, graphPinRequest.skipCount, target);
+        } catch (Exception e) {
+            log.error("Error getting data from disk.", e);
+            target.writerIndex(writerIndex);
+            return 0;
+        }
     }
 
-    private static void addBufferToResult(TreeMap<Long, GraphFunction> data,
-                                          AggregationFunctionType functionType,
-                                          ByteBuffer localByteBuf) {
-        if (localByteBuf != null) {
-            ((Buffer) localByteBuf).flip();
-            while (localByteBuf.hasRemaining()) {
-                double newVal = localByteBuf.getDouble();
-                Long ts = localByteBuf.getLong();
-                GraphFunction graphFunctionObj = data.get(ts);
-                if (graphFunctionObj == null) {
-                    graphFunctionObj = functionType.produce();
-                    data.put(ts, graphFunctionObj);
-                }
-                graphFunctionObj.apply(newVal);
-            }
+    /**
+     * Reads data of the requested pin right into the target buffer.
+     *
+     * @return - number of bytes read.
+     */
+    public int read(User user, GraphPinRequest graphPinRequest, ByteBuf target) {
+        log.debug("Getting data for graph pin : {}.", graphPinRequest);
+        if (!graphPinRequest.isValid()) {
+            return 0;
         }
-    }
 
-    private static ByteBuffer toByteBuf(TreeMap<Long, GraphFunction> data) {
-        ByteBuffer result = ByteBuffer.allocate(data.size() * SIZE_OF_REPORT_ENTRY);
-        for (Map.Entry<Long, GraphFunction> entry : data.entrySet()) {
-            result.putDouble(entry.getValue().getResult())
-                    .putLong(entry.getKey());
+        if (graphPinRequest.isLiveData()) {
+            //live graph data is not on disk but in memory
+            return write(rawDataCacheForGraphProcessor.getLiveGraphData(user, graphPinRequest), target);
         }
-        return result;
+        if (graphPinRequest.isTag) {
+            return readTag(user, graphPinRequest, target);
+        }
+        return readFromDisk(user, graphPinRequest, graphPinRequest.deviceId, target);
     }
 
-    private ByteBuffer getByteBufferFromDisk(User user, GraphPinRequest graphPinRequest) {
-        try {
-            if (graphPinRequest.isTag) {
-                return getDataForTag(user, graphPinRequest);
-            } else {
-                return getByteBufferFromDisk(user,
-                        graphPinRequest.dashId, graphPinRequest.deviceId,
-                        graphPinRequest.pinType, graphPinRequest.pin,
-                        graphPinRequest.count, graphPinRequest.type,
-                        graphPinRequest.skipCount
-                );
-            }
-        } catch (Exception e) {
-            log.error("Error getting data from disk.", e);
-            return null;
+    private static int write(ByteBuffer data, ByteBuf target) {
+        if (data == null) {
+            return 0;
         }
+        target.writeBytes(data.array());
+        return data.capacity();
+    }
+
+    Path getDataFile(User user, int dashId, int deviceId, PinType pinType, byte pin, GraphGranularityType type) {
+        return getUserReportingFolderPath(user).resolve(generateFilename(dashId, deviceId, pinType, pin, type));
     }
 
     private Path getUserReportingFolderPath(User user) {
@@ -166,9 +180,24 @@ public class ReportingDao implements Closeable {
     }
 
     public int delete(User user) {
+        averageAggregator.deleteSeries(user.email, user.appName);
         return delete(user, NO_FILTER);
     }
 
+    /**
+     * Releases in memory reporting series of the removed dashboard. Files are not touched.
+     */
+    public void deleteSeries(User user, int dashId) {
+        averageAggregator.deleteSeries(user.email, user.appName, dashId);
+    }
+
+    /**
+     * Releases in memory reporting series of the removed device. Files are not touched.
+     */
+    public void deleteSeries(User user, int dashId, int deviceId) {
+        averageAggregator.deleteSeries(user.email, user.appName, dashId, deviceId);
+    }
+
     public int delete(User user, Function<Path, Boolean> filter) {
         log.debug("Removing all reporting data for {}", user.email);
         Path reportingFolderPath = getUserReportingFolderPath(user);
@@ -180,7 +209,7 @@ public class ReportingDao implements Closeable {
                     for (Path reportingFile : reportingFolder) {
                         if (filter.apply(reportingFile)) {
                             log.trace("Removing {}", reportingFile);
-                            FileUtils.deleteQuietly(reportingFile);
+                            storage.delete(reportingFile);
                             removedFilesCounter++;
                         }
                     }
@@ -201,11 +230,11 @@ public class ReportingDao implements Closeable {
         }
     }
 
-    private static void delete(String userReportingDir, int dashId, int deviceId, PinType pinType, byte pin,
-                               GraphGranularityType reportGranularity) {
+    private void delete(String userReportingDir, int dashId, int deviceId, PinType pinType, byte pin,
+                        GraphGranularityType reportGranularity) {
         Path userDataFile = Paths.get(userReportingDir,
                 generateFilename(dashId, deviceId, pinType, pin, reportGranularity));
-        FileUtils.deleteQuietly(userDataFile);
+        storage.delete(userDataFile);
     }
 
     public static String generateFilename(int dashId, int deviceId,
@@ -233,51 +262,35 @@ public class ReportingDao implements Closeable {
 
     private void process(User user, DashBoard dash, int deviceId, byte pin, PinType pinType,
                          String value, long ts, double doubleVal) {
-        if (enableRawDbDataStore) {
-            rawDataProcessor.collect(
-                    new BaseReportingKey(user.email, user.appName, dash.id, deviceId, pinType, pin),
-                    ts, value, doubleVal);
-        }
-
+        boolean isNumber = doubleVal != NumberUtil.NO_RESULT;
         //not a number, nothing to aggregate
-        if (doubleVal == NumberUtil.NO_RESULT) {
+        if (!isNumber && !enableRawDbDataStore) {
             return;
         }
 
-        BaseReportingKey key = new BaseReportingKey(user.email, user.appName, dash.id, deviceId, pinType, pin);
-        averageAggregator.collect(key, ts, doubleVal);
-        if (dash.needRawDataForGraph(deviceId, pin, pinType)) {
-            rawDataCacheForGraphProcessor.collect(key, new GraphValue(doubleVal, ts));
-        }
-    }
+        //series key is interned, so known series doesn't create any objects here
+        SeriesRegistry seriesRegistry = averageAggregator.seriesRegistry;
+        int seriesId = seriesRegistry.getId(user.email, user.appName, dash.id, deviceId, pinType, pin);
 
-    public byte[][] getReportingData(User user, GraphPinRequest[] requestedPins) throws NoDataException {
-        byte[][] values = new byte[requestedPins.length][];
-
-        for (int i = 0; i < requestedPins.length; i++) {
-            GraphPinRequest graphPinRequest = requestedPins[i];
-            log.debug("Getting data for graph pin : {}.", graphPinRequest);
-            if (graphPinRequest.isValid()) {
-                ByteBuffer byteBuffer = graphPinRequest.isLiveData()
-                        //live graph data is not on disk but in memory
-                        ? rawDataCacheForGraphProcessor.getLiveGraphData(user, graphPinRequest)
-                        : getByteBufferFromDisk(user, graphPinRequest);
-                values[i] = byteBuffer == null ? EMPTY_BYTES : byteBuffer.array();
-            } else {
-                values[i] = EMPTY_BYTES;
-            }
+        if (enableRawDbDataStore) {
+            rawDataProcessor.collect(seriesRegistry.getKey(seriesId), ts, value, doubleVal);
         }
 
-        if (!hasData(values)) {
-            throw new NoDataException();
+        if (!isNumber) {
+            return;
         }
 
-        return values;
+        averageAggregator.collect(seriesId, ts, doubleVal);
+        if (dash.needRawDataForGraph(deviceId, pin, pinType)) {
+            rawDataCacheForGraphProcessor.collect(seriesRegistry.getKey(seriesId), new GraphValue(doubleVal, ts));
+        }
     }
 
     @Override
     public void close() {
         System.out.println("Stopping aggregator...");
         this.averageAggregator.close();
+        System.out.println("Stopping reporting storage...");
+        this.storage.close();
     }
 }
@@ -2,6 +2,7 @@ package cc.blynk.server.core.dao;
 
 import cc.blynk.server.core.model.auth.Session;
 import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.stats.SessionCounters;
 import io.netty.channel.EventLoop;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.handler.codec.http.FullHttpRequest;
@@ -31,12 +32,15 @@ public class SessionDao {
 
     public final ConcurrentHashMap<UserKey, Session> userSession = new ConcurrentHashMap<>();
 
+    //online sessions and channels of all users
+    public final SessionCounters counters = new SessionCounters();
+
     //threadsafe
     public Session getOrCreateSessionByUser(UserKey key, EventLoop initialEventLoop) {
         Session group = userSession.get(key);
         //only one side came
         if (group == null) {
-            Session value = new Session(initialEventLoop);
+            Session value = new Session(initialEventLoop, counters);
             group = userSession.putIfAbsent(key, value);
             if (group == null) {
                 log.trace("Creating unique session for user: {}", key);
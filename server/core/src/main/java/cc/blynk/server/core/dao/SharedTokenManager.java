@@ -20,13 +20,33 @@ public class SharedTokenManager {
     public static final String ALL = "*";
 
     final ConcurrentHashMap<String, SharedTokenValue> cache;
+    //shared tokens of the users evicted from memory
+    final ConcurrentHashMap<String, UserKey> evicted = new ConcurrentHashMap<>();
 
     SharedTokenManager(Collection<User> users) {
         this.cache = new ConcurrentHashMap<>();
         for (User user : users) {
-            for (DashBoard dashBoard : user.profile.dashBoards) {
-                if (dashBoard.sharedToken != null) {
-                    cache.put(dashBoard.sharedToken, new SharedTokenValue(user, dashBoard.id));
+            add(user);
+        }
+    }
+
+    void add(User user) {
+        for (DashBoard dashBoard : user.profile.dashBoards) {
+            if (dashBoard.sharedToken != null) {
+                cache.put(dashBoard.sharedToken, new SharedTokenValue(user, dashBoard.id));
+                evicted.remove(dashBoard.sharedToken);
+            }
+        }
+    }
+
+    void evict(User user) {
+        UserKey userKey = new UserKey(user);
+        for (DashBoard dashBoard : user.profile.dashBoards) {
+            String token = dashBoard.sharedToken;
+            if (token != null) {
+                SharedTokenValue tokenValue = cache.get(token);
+                if (tokenValue != null && tokenValue.user == user && cache.remove(token, tokenValue)) {
+                    evicted.put(token, userKey);
                 }
             }
         }
@@ -42,7 +62,7 @@ public class SharedTokenManager {
         //assign new token
         dash.sharedToken = newToken;
         dash.updatedAt = System.currentTimeMillis();
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         cache.put(newToken, new SharedTokenValue(user, dash.id));
 
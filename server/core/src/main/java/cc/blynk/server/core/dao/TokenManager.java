@@ -5,9 +5,10 @@ import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.device.Device;
 import cc.blynk.server.db.DBManager;
 import cc.blynk.utils.TokenGeneratorUtil;
+import io.netty.channel.EventLoop;
 
 import java.util.Collection;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 /**
  * The Blynk Project.
@@ -16,19 +17,40 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class TokenManager {
 
+    private final UserDao userDao;
     private final RegularTokenManager regularTokenManager;
     private final SharedTokenManager sharedTokenManager;
     private final DBManager dbManager;
     private final String host;
 
-    public TokenManager(ConcurrentMap<UserKey, User> users, DBManager dbManager, String host) {
-        Collection<User> allUsers = users.values();
+    public TokenManager(UserDao userDao, DBManager dbManager, String host) {
+        Collection<User> allUsers = userDao.users.values();
+        this.userDao = userDao;
         this.regularTokenManager = new RegularTokenManager(allUsers);
         this.sharedTokenManager = new SharedTokenManager(allUsers);
         this.dbManager = dbManager;
         this.host = host;
     }
 
+    //tokens of evicted user are kept as token -> user key, profile is loaded on first token usage
+    void evict(User user) {
+        regularTokenManager.evict(user);
+        sharedTokenManager.evict(user);
+    }
+
+    /**
+     * Loads back evicted owner of the device or shared token in background, see UserDao.loadColdUser().
+     *
+     * @return false if the token owner is in memory and the token may be used right away.
+     */
+    public boolean loadEvictedUser(String token, Executor executor, EventLoop eventLoop, Runnable action) {
+        UserKey userKey = regularTokenManager.evicted.get(token);
+        if (userKey == null) {
+            userKey = sharedTokenManager.evicted.get(token);
+        }
+        return userKey != null && userDao.loadColdUser(userKey, executor, eventLoop, action);
+    }
+
     public void deleteDevice(Device device) {
         String token = regularTokenManager.deleteDeviceToken(device);
         if (token != null) {
@@ -44,11 +66,35 @@ public class TokenManager {
     }
 
     public TokenValue getTokenValueByToken(String token) {
-        return regularTokenManager.getUserByToken(token);
+        TokenValue tokenValue = regularTokenManager.getUserByToken(token);
+        if (tokenValue == null) {
+            UserKey userKey = regularTokenManager.evicted.remove(token);
+            if (userKey != null) {
+                User user = userDao.get(userKey);
+                if (user != null) {
+                    regularTokenManager.add(user);
+                    sharedTokenManager.add(user);
+                    return regularTokenManager.getUserByToken(token);
+                }
+            }
+        }
+        return tokenValue;
     }
 
     public SharedTokenValue getUserBySharedToken(String token) {
-        return sharedTokenManager.getUserByToken(token);
+        SharedTokenValue tokenValue = sharedTokenManager.getUserByToken(token);
+        if (tokenValue == null) {
+            UserKey userKey = sharedTokenManager.evicted.remove(token);
+            if (userKey != null) {
+                User user = userDao.get(userKey);
+                if (user != null) {
+                    regularTokenManager.add(user);
+                    sharedTokenManager.add(user);
+                    return sharedTokenManager.getUserByToken(token);
+                }
+            }
+        }
+        return tokenValue;
     }
 
     public void assignToken(User user, DashBoard dash, Device device, String newToken, boolean isTemporary) {
@@ -1,23 +1,39 @@
 package cc.blynk.server.core.dao;
 
 import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.auth.Session;
 import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.device.Device;
 import cc.blynk.server.core.model.widgets.Widget;
 import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
+import cc.blynk.server.core.stats.ActivityHistogram;
 import cc.blynk.utils.AppNameUtil;
+import io.netty.channel.EventLoop;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Helper class for holding info regarding registered users and profiles.
+ * Profiles of the idle users may be evicted from memory, such users are loaded back from disk on access.
  *
  * User: ddumanskiy
  * Date: 8/11/13
@@ -27,20 +43,39 @@ public class UserDao {
 
     private static final Logger log = LogManager.getLogger(UserDao.class);
 
+    //users with profiles loaded to memory
     public final ConcurrentMap<UserKey, User> users;
+    //users which profiles were evicted from memory, they are loaded back from disk on access
+    private final Set<UserKey> coldUsers = ConcurrentHashMap.newKeySet();
+    //users changed since the last saving
+    private final Queue<User> dirtyUsers = new ConcurrentLinkedQueue<>();
     private final String region;
     private final String host;
+    private final FileManager fileManager;
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    //users by the hour of the last profile change, including evicted ones
+    public final ActivityHistogram activity = new ActivityHistogram();
 
     public UserDao(ConcurrentMap<UserKey, User> users, String region, String host) {
+        this(users, region, host, null);
+    }
+
+    public UserDao(ConcurrentMap<UserKey, User> users, String region, String host, FileManager fileManager) {
         //reading DB to RAM.
         this.users = users;
+        for (User user : users.values()) {
+            user.setDirtyUsers(dirtyUsers);
+            user.trackActivity(activity);
+        }
         this.region = region;
         this.host = host;
+        this.fileManager = fileManager;
         log.info("Region : {}. Host : {}.", region, host);
     }
 
     public boolean isUserExists(String name, String appName) {
-        return users.get(new UserKey(name, appName)) != null;
+        return contains(name, appName);
     }
 
     public boolean isSuperAdminExists() {
@@ -58,11 +93,192 @@ public class UserDao {
     }
 
     public User getByName(String name, String appName) {
-        return users.get(new UserKey(name, appName));
+        return get(new UserKey(name, appName));
+    }
+
+    /**
+     * Returns user, profile evicted from memory is loaded back from disk.
+     */
+    public User get(UserKey userKey) {
+        User user = users.get(userKey);
+        if (user == null && coldUsers.contains(userKey)) {
+            return load(userKey);
+        }
+        return user;
     }
 
     public boolean contains(String name, String appName) {
-        return users.containsKey(new UserKey(name, appName));
+        UserKey userKey = new UserKey(name, appName);
+        return users.containsKey(userKey) || coldUsers.contains(userKey);
+    }
+
+    /**
+     * Loads back evicted profiles matching the filter, so they could be found via iteration over users.
+     */
+    public void loadColdUsers(Predicate<UserKey> filter) {
+        for (UserKey userKey : coldUsers) {
+            if (filter.test(userKey)) {
+                load(userKey);
+            }
+        }
+    }
+
+    /**
+     * Loads back evicted profile on the executor and runs the action on the event loop after that,
+     * so the event loop never waits for the disk.
+     *
+     * @return false if the profile is in memory and the action wasn't scheduled.
+     */
+    public boolean loadColdUser(UserKey userKey, Executor executor, EventLoop eventLoop, Runnable action) {
+        if (!coldUsers.contains(userKey) || users.containsKey(userKey)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                load(userKey);
+                eventLoop.execute(action);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            //pool is overloaded, so profile is loaded by the caller
+            log.warn("Unable to load evicted profile of {} in background. Limit of tasks reached.", userKey.email);
+            return false;
+        }
+    }
+
+    private User load(UserKey userKey) {
+        User user = fileManager.readUser(userKey);
+        if (user == null) {
+            log.error("Unable to load evicted profile of {}.", userKey.email);
+            return users.get(userKey);
+        }
+        user.setDirtyUsers(dirtyUsers);
+        user.loadedTs = System.currentTimeMillis();
+        //profile could be loaded by another thread at the same time
+        User existing = users.putIfAbsent(userKey, user);
+        if (existing != null) {
+            return existing;
+        }
+        coldUsers.remove(userKey);
+        user.trackActivity(activity);
+        reloads.increment();
+        log.debug("Loaded evicted profile of {}.", userKey.email);
+        return user;
+    }
+
+    /**
+     * Removes from memory profiles of the users that are idle for the given time,
+     * till number of profiles in memory fits the limit. Least active users are evicted first.
+     * Users with opened session, not saved changes, timers, super admin and app publishers are never evicted.
+     * Should be called right after the profiles saving, so the evicted users are already on disk.
+     * Profile without the file, like the one restored from DB or read from the old file name,
+     * is written before eviction.
+     *
+     * @return number of evicted profiles
+     */
+    public int evictColdUsers(SessionDao sessionDao, TokenManager tokenManager,
+                              int maxLoadedUsers, long idleTime, long now) {
+        int toEvict = users.size() - maxLoadedUsers;
+        if (fileManager == null || maxLoadedUsers <= 0 || toEvict <= 0) {
+            return 0;
+        }
+
+        long idleSince = now - idleTime;
+        List<User> candidates = new ArrayList<>();
+        for (Map.Entry<UserKey, User> entry : users.entrySet()) {
+            User user = entry.getValue();
+            if (!user.isSuperAdmin && user.profile.apps.length == 0 && !user.isDirty()
+                    && user.lastActivityTs() < idleSince && !isOnline(sessionDao, entry.getKey())
+                    && !hasTimers(user)) {
+                candidates.add(user);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(User::lastActivityTs));
+
+        int evicted = 0;
+        for (User user : candidates) {
+            if (evicted == toEvict) {
+                break;
+            }
+            if (evict(user, sessionDao, tokenManager)) {
+                evicted++;
+            }
+        }
+        evictions.add(evicted);
+        return evicted;
+    }
+
+    private boolean evict(User user, SessionDao sessionDao, TokenManager tokenManager) {
+        if (!isOnDisk(user)) {
+            return false;
+        }
+        UserKey userKey = new UserKey(user);
+        //marked as cold first, so concurrent lookup finds it either in memory or on disk
+        coldUsers.add(userKey);
+        if (!users.remove(userKey, user)) {
+            coldUsers.remove(userKey);
+            return false;
+        }
+        //user could be touched right before removal
+        if (user.isDirty() || isOnline(sessionDao, userKey)) {
+            users.putIfAbsent(userKey, user);
+            coldUsers.remove(userKey);
+            return false;
+        }
+        tokenManager.evict(user);
+        //counted again when loaded back
+        user.untrackActivity();
+        return true;
+    }
+
+    private boolean isOnDisk(User user) {
+        if (Files.exists(fileManager.generateFileName(user.email, user.appName))) {
+            return true;
+        }
+        try {
+            fileManager.overrideUserFile(user);
+            return true;
+        } catch (IOException e) {
+            log.error("Error saving profile of {} before eviction.", user.email, e);
+            return false;
+        }
+    }
+
+    //timers are fired without any session, so such profiles are kept in memory
+    private static boolean hasTimers(User user) {
+        for (DashBoard dash : user.profile.dashBoards) {
+            if (dash.hasTimers()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOnline(SessionDao sessionDao, UserKey userKey) {
+        Session session = sessionDao.userSession.get(userKey);
+        return session != null && (session.isAppConnected() || session.isHardwareConnected());
+    }
+
+    public Set<UserKey> getAllUserKeys() {
+        Set<UserKey> userKeys = new HashSet<>(users.keySet());
+        userKeys.addAll(coldUsers);
+        return userKeys;
+    }
+
+    public int getRegistrationsCount() {
+        return users.size() + coldUsers.size();
+    }
+
+    public int getColdUsersCount() {
+        return coldUsers.size();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getReloads() {
+        return reloads.sum();
     }
 
     //for tests only
@@ -75,20 +291,57 @@ public class UserDao {
             return new ArrayList<>(users.values());
         }
 
+        loadColdUsers(userKey -> userKey.email.contains(name)
+                && (appName == null || userKey.appName.equals(appName)));
+
         return users.values().stream().filter(user -> user.email.contains(name)
                 && (appName == null || user.appName.equals(appName))).collect(Collectors.toList());
     }
 
     public User delete(UserKey userKey) {
-        return users.remove(userKey);
+        User user = users.remove(userKey);
+        if (user == null && coldUsers.contains(userKey)) {
+            //caller needs full profile to clean tokens and data of the user
+            user = load(userKey);
+            users.remove(userKey);
+        }
+        if (user != null) {
+            user.untrackActivity();
+        }
+        return user;
     }
 
     public User delete(String name, String appName) {
         return delete(new UserKey(name, appName));
     }
 
+    /**
+     * @return users changed since the last call, every user is returned once.
+     */
+    public List<User> pollDirtyUsers() {
+        List<User> result = new ArrayList<>();
+        User user;
+        while ((user = dirtyUsers.poll()) != null) {
+            user.clearDirty();
+            result.add(user);
+        }
+        return result;
+    }
+
+    private User put(UserKey userKey, User user) {
+        user.setDirtyUsers(dirtyUsers);
+        user.trackActivity(activity);
+        user.markDirty();
+        User previous = users.put(userKey, user);
+        if (previous != null && previous != user) {
+            previous.untrackActivity();
+        }
+        coldUsers.remove(userKey);
+        return user;
+    }
+
     public void add(User user) {
-        users.put(new UserKey(user), user);
+        put(new UserKey(user), user);
     }
 
     public Map<String, Integer> getBoardsUsage() {
@@ -276,21 +529,21 @@ public class UserDao {
     public User addFacebookUser(String email, String appName) {
         log.debug("Adding new facebook user {}. App : {}", email, appName);
         User newUser = new User(email, null, appName, region, host, true, false);
-        users.put(new UserKey(email, appName), newUser);
+        put(new UserKey(email, appName), newUser);
         return newUser;
     }
 
     public User add(String email, String pass, String appName) {
         log.debug("Adding new user {}. App : {}", email, appName);
         User newUser = new User(email, pass, appName, region, host, false, false);
-        users.put(new UserKey(email, appName), newUser);
+        put(new UserKey(email, appName), newUser);
         return newUser;
     }
 
     public void add(String email, String pass, String appName, boolean isSuperAdmin) {
         log.debug("Adding new user {}. App : {}", email, appName);
         User newUser = new User(email, pass, appName, region, host, false, isSuperAdmin);
-        users.put(new UserKey(email, appName), newUser);
+        put(new UserKey(email, appName), newUser);
     }
 
 }
@@ -11,4 +11,9 @@ public interface GraphFunction {
 
     double getResult();
 
+    /**
+     * Clears the state, so same function could be applied to the next point.
+     */
+    void reset();
+
 }
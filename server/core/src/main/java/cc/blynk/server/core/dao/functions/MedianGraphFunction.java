@@ -1,34 +1,45 @@
 package cc.blynk.server.core.dao.functions;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 
 /**
+ * Values are collected into primitive array that is reused after reset,
+ * so applying function to many points doesn't box values.
+ *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
  * Created on 21.07.17.
  */
 public class MedianGraphFunction implements GraphFunction {
 
-    private final ArrayList<Double> array;
+    private double[] values;
+    private int size;
 
     public MedianGraphFunction() {
-        this.array = new ArrayList<>();
+        this.values = new double[16];
     }
 
     @Override
     public void apply(double newValue) {
-        array.add(newValue);
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size << 1);
+        }
+        values[size++] = newValue;
     }
 
     @Override
     public double getResult() {
-        Collections.sort(array);
-        int middle = array.size() / 2;
-        if (array.size() % 2 == 0) {
-            return (array.get(middle) + array.get(middle - 1)) / 2;
+        Arrays.sort(values, 0, size);
+        int middle = size / 2;
+        if (size % 2 == 0) {
+            return (values[middle] + values[middle - 1]) / 2;
         }
-        return array.get(middle);
+        return values[middle];
+    }
+
+    @Override
+    public void reset() {
+        this.size = 0;
     }
 
 }
@@ -23,4 +23,9 @@ public class SumGraphFunction implements GraphFunction {
         return sum;
     }
 
+    @Override
+    public void reset() {
+        this.sum = 0;
+    }
+
 }
@@ -15,8 +15,8 @@ import cc.blynk.server.core.model.widgets.Widget;
 import cc.blynk.server.core.model.widgets.controls.Timer;
 import cc.blynk.server.core.model.widgets.notifications.Notification;
 import cc.blynk.server.core.model.widgets.others.eventor.Eventor;
+import cc.blynk.server.core.model.widgets.others.eventor.Rule;
 import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
-import cc.blynk.server.core.model.widgets.outputs.graph.EnhancedHistoryGraph;
 import cc.blynk.server.core.model.widgets.ui.DeviceSelector;
 import cc.blynk.server.core.model.widgets.ui.tiles.DeviceTiles;
 import cc.blynk.server.core.model.widgets.ui.tiles.Tile;
@@ -84,6 +84,9 @@ public class DashBoard {
     @JsonDeserialize(keyUsing = PinStorageKeyDeserializer.class)
     public Map<PinStorageKey, String> pinsStorage = Collections.emptyMap();
 
+    //lazily rebuilt when widgets are changed
+    private transient volatile PinIndex pinIndex;
+
     public void update(int deviceId, byte pin, PinType pinType, String value, long now) {
         if (!updateWidgets(deviceId, pin, pinType, value, now)) {
             //special case. #237 if no widget - storing without widget.
@@ -93,10 +96,24 @@ public class DashBoard {
         this.updatedAt = now;
     }
 
+    private PinIndex getPinIndex() {
+        Widget[] widgets = this.widgets;
+        PinIndex pinIndex = this.pinIndex;
+        if (pinIndex == null || !pinIndex.isValidFor(widgets)) {
+            pinIndex = PinIndex.build(widgets);
+            this.pinIndex = pinIndex;
+        }
+        return pinIndex;
+    }
+
     private boolean updateWidgets(int deviceId, byte pin, PinType type, String value, long now) {
+        PinIndex.Entry entry = getPinIndex().get(deviceId, pin, type);
         boolean hasWidget = false;
-        for (Widget widget : widgets) {
-            if (widget.updateIfSame(deviceId, pin, type, value)) {
+        for (int i = 0; i < entry.widgets.length; i++) {
+            Tile tile = entry.tiles[i];
+            if (tile == null
+                    ? entry.widgets[i].updateIfSame(deviceId, pin, type, value)
+                    : tile.updateIfSame(deviceId, pin, type, value)) {
                 hasWidget = true;
             }
         }
@@ -140,7 +157,7 @@ public class DashBoard {
     }
 
     public Widget findWidgetByPin(int deviceId, byte pin, PinType pinType) {
-        for (Widget widget : widgets) {
+        for (Widget widget : getPinIndex().get(deviceId, pin, pinType).widgets) {
             if (widget.isSame(deviceId, pin, pinType)) {
                 return widget;
             }
@@ -149,26 +166,25 @@ public class DashBoard {
     }
 
     public WebHook findWebhookByPin(int deviceId, byte pin, PinType pinType) {
-        for (Widget widget : widgets) {
-            if (widget instanceof WebHook) {
-                WebHook webHook = (WebHook) widget;
-                if (webHook.isSameWebHook(deviceId, pin, pinType)) {
-                    return webHook;
-                }
+        for (WebHook webHook : getPinIndex().get(deviceId, pin, pinType).webHooks) {
+            if (webHook.isSameWebHook(deviceId, pin, pinType)) {
+                return webHook;
             }
         }
         return null;
     }
 
     public boolean needRawDataForGraph(int deviceId, byte pin, PinType pinType) {
-        for (Widget widget : widgets) {
-            if (widget instanceof EnhancedHistoryGraph) {
-                if (((EnhancedHistoryGraph) widget).hasPin(deviceId, pin, pinType)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return getPinIndex().get(deviceId, pin, pinType).needRawDataForGraph;
+    }
+
+    public Eventor getEventor() {
+        return getPinIndex().eventor;
+    }
+
+    //active rules of the dashboard eventor triggered by the pin, empty array if there are no such rules
+    public Rule[] getEventorRules(int deviceId, byte pin, PinType pinType) {
+        return getPinIndex().get(deviceId, pin, pinType).rules;
     }
 
     public static int getWidgetIndexByIdOrThrow(Widget[] widgets, long id) {
@@ -354,6 +370,31 @@ public class DashBoard {
         }
     }
 
+    //same widgets as in addTimers, timers are fired even when nobody is connected
+    public boolean hasTimers() {
+        for (Widget widget : widgets) {
+            if (widget instanceof DeviceTiles) {
+                if (((DeviceTiles) widget).hasTimers()) {
+                    return true;
+                }
+            } else if (widget instanceof Timer) {
+                if (((Timer) widget).isValid()) {
+                    return true;
+                }
+            } else if (widget instanceof Eventor) {
+                Eventor eventor = (Eventor) widget;
+                if (eventor.rules != null) {
+                    for (Rule rule : eventor.rules) {
+                        if (rule.isValidTimerRule()) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     public void cleanPinStorage(Widget widget, boolean removePropertiesToo) {
         cleanPinStorageInternalWihtoutUpdatedAt(widget, removePropertiesToo);
         this.updatedAt = System.currentTimeMillis();
@@ -0,0 +1,261 @@
+package cc.blynk.server.core.model;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.MultiPinWidget;
+import cc.blynk.server.core.model.widgets.OnePinWidget;
+import cc.blynk.server.core.model.widgets.Widget;
+import cc.blynk.server.core.model.widgets.others.eventor.Eventor;
+import cc.blynk.server.core.model.widgets.others.eventor.Rule;
+import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
+import cc.blynk.server.core.model.widgets.outputs.graph.EnhancedHistoryGraph;
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphDataStream;
+import cc.blynk.server.core.model.widgets.ui.tiles.DeviceTiles;
+import cc.blynk.server.core.model.widgets.ui.tiles.Tile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index of the dashboard widgets by (deviceId, pinType, pin).
+ * Every entry lists widgets, webhooks, graphs and eventor rules interested in the pin, so hardware message
+ * requires single lookup instead of the scan of all dashboard widgets and eventor rules.
+ * Index is built from the widgets array, tiles of the device tiles widgets and eventor rules.
+ * Widgets change only via the replacement of these arrays, so index is valid
+ * as long as the arrays are the same.
+ */
+final class PinIndex {
+
+    private static final Widget[] NO_WIDGETS = {};
+    private static final Tile[] NO_TILES = {};
+    private static final WebHook[] NO_WEBHOOKS = {};
+    private static final Rule[] NO_RULES = {};
+
+    static final Entry EMPTY_ENTRY = new Entry(NO_WIDGETS, NO_TILES, NO_WEBHOOKS, NO_RULES, false);
+
+    private final Widget[] widgets;
+    private final DeviceTiles[] deviceTiles;
+    private final Tile[][] tiles;
+
+    final Eventor eventor;
+    private final Rule[] eventorRules;
+
+    private final long[] keys;
+    private final Entry[] entries;
+    private final int mask;
+
+    private PinIndex(Widget[] widgets, List<DeviceTiles> deviceTiles, Eventor eventor, Map<Long, Builder> builders) {
+        this.widgets = widgets;
+        this.deviceTiles = deviceTiles.toArray(new DeviceTiles[deviceTiles.size()]);
+        this.tiles = new Tile[this.deviceTiles.length][];
+        for (int i = 0; i < this.deviceTiles.length; i++) {
+            this.tiles[i] = this.deviceTiles[i].tiles;
+        }
+        this.eventor = eventor;
+        this.eventorRules = eventor == null ? null : eventor.rules;
+
+        int capacity = Integer.highestOneBit(Math.max(builders.size(), 1) * 2 + 1) << 1;
+        this.keys = new long[capacity];
+        this.entries = new Entry[capacity];
+        this.mask = capacity - 1;
+        for (Map.Entry<Long, Builder> builder : builders.entrySet()) {
+            long key = builder.getKey();
+            int i = hash(key) & mask;
+            while (entries[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            entries[i] = builder.getValue().build();
+        }
+    }
+
+    static PinIndex build(Widget[] widgets) {
+        Map<Long, Builder> builders = new LinkedHashMap<>();
+        List<DeviceTiles> deviceTiles = new ArrayList<>();
+        Eventor eventor = null;
+        for (Widget widget : widgets) {
+            if (widget instanceof OnePinWidget) {
+                OnePinWidget onePinWidget = (OnePinWidget) widget;
+                addOnePinKeys(builders, onePinWidget.deviceId, onePinWidget.pin, onePinWidget.pinType,
+                        onePinWidget.pwmMode, onePinWidget);
+            } else if (widget instanceof MultiPinWidget) {
+                MultiPinWidget multiPinWidget = (MultiPinWidget) widget;
+                if (multiPinWidget.dataStreams != null) {
+                    for (DataStream dataStream : multiPinWidget.dataStreams) {
+                        addDataStreamKeys(builders, multiPinWidget.deviceId, dataStream, widget, null);
+                    }
+                }
+            } else if (widget instanceof DeviceTiles) {
+                DeviceTiles tilesWidget = (DeviceTiles) widget;
+                deviceTiles.add(tilesWidget);
+                for (Tile tile : tilesWidget.tiles) {
+                    if (tile.dataStream != null) {
+                        addDataStreamKeys(builders, tile.deviceId, tile.dataStream, widget, tile);
+                    }
+                }
+            } else if (widget instanceof EnhancedHistoryGraph) {
+                for (GraphDataStream graphDataStream : ((EnhancedHistoryGraph) widget).dataStreams) {
+                    DataStream dataStream = graphDataStream.dataStream;
+                    if (dataStream != null) {
+                        addDataStreamKeys(builders, graphDataStream.targetId, dataStream, widget, null);
+                    }
+                }
+            } else if (widget instanceof Eventor && eventor == null) {
+                eventor = (Eventor) widget;
+            }
+        }
+        if (eventor != null && eventor.rules != null) {
+            for (Rule rule : eventor.rules) {
+                //same check as in Rule.isReady()
+                if (rule.isActive && rule.triggerDataStream != null
+                        && rule.condition != null && rule.actions != null) {
+                    addRuleKeys(builders, eventor.deviceId, rule);
+                }
+            }
+        }
+        return new PinIndex(widgets, deviceTiles, eventor, builders);
+    }
+
+    //same matching as in OnePinWidget.isSame()
+    private static void addOnePinKeys(Map<Long, Builder> builders, int deviceId, byte pin, PinType pinType,
+                                      boolean pwmMode, Widget widget) {
+        if (pinType != null) {
+            add(builders, deviceId, pin, pinType, widget, null);
+        }
+        if (pwmMode) {
+            add(builders, deviceId, pin, PinType.ANALOG, widget, null);
+        }
+        if (pinType == PinType.ANALOG) {
+            add(builders, deviceId, pin, PinType.DIGITAL, widget, null);
+        }
+    }
+
+    //same matching as in DataStream.isSame()
+    private static void addDataStreamKeys(Map<Long, Builder> builders, int deviceId,
+                                          DataStream dataStream, Widget widget, Tile tile) {
+        if (dataStream.pinType != null) {
+            add(builders, deviceId, dataStream.pin, dataStream.pinType, widget, tile);
+        }
+        if (dataStream.pwmMode) {
+            add(builders, deviceId, dataStream.pin, PinType.ANALOG, widget, tile);
+        }
+    }
+
+    //same matching as in DataStream.isSame()
+    private static void addRuleKeys(Map<Long, Builder> builders, int deviceId, Rule rule) {
+        DataStream dataStream = rule.triggerDataStream;
+        if (dataStream.pinType != null) {
+            builders.computeIfAbsent(key(deviceId, dataStream.pin, dataStream.pinType), k -> new Builder())
+                    .add(rule);
+        }
+        if (dataStream.pwmMode) {
+            builders.computeIfAbsent(key(deviceId, dataStream.pin, PinType.ANALOG), k -> new Builder())
+                    .add(rule);
+        }
+    }
+
+    private static void add(Map<Long, Builder> builders, int deviceId, byte pin, PinType pinType,
+                            Widget widget, Tile tile) {
+        builders.computeIfAbsent(key(deviceId, pin, pinType), k -> new Builder()).add(widget, tile);
+    }
+
+    private static long key(int deviceId, byte pin, PinType pinType) {
+        return ((long) deviceId << 32) | (pinType.ordinal() << 8) | (pin & 0xFF);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    boolean isValidFor(Widget[] widgets) {
+        if (this.widgets != widgets) {
+            return false;
+        }
+        for (int i = 0; i < deviceTiles.length; i++) {
+            if (deviceTiles[i].tiles != tiles[i]) {
+                return false;
+            }
+        }
+        return eventor == null || eventor.rules == eventorRules;
+    }
+
+    Entry get(int deviceId, byte pin, PinType pinType) {
+        if (pinType == null) {
+            return EMPTY_ENTRY;
+        }
+        long key = key(deviceId, pin, pinType);
+        int i = hash(key) & mask;
+        Entry entry;
+        while ((entry = entries[i]) != null) {
+            if (keys[i] == key) {
+                return entry;
+            }
+            i = (i + 1) & mask;
+        }
+        return EMPTY_ENTRY;
+    }
+
+    static final class Entry {
+
+        //widgets that may be updated by the pin, in the order of the dashboard widgets
+        final Widget[] widgets;
+        //for the device tiles widget - the tile that is updated by the pin, null otherwise
+        final Tile[] tiles;
+        final WebHook[] webHooks;
+        //active rules of the dashboard eventor triggered by the pin, in the order of the eventor rules
+        final Rule[] rules;
+        final boolean needRawDataForGraph;
+
+        private Entry(Widget[] widgets, Tile[] tiles, WebHook[] webHooks, Rule[] rules,
+                      boolean needRawDataForGraph) {
+            this.widgets = widgets;
+            this.tiles = tiles;
+            this.webHooks = webHooks;
+            this.rules = rules;
+            this.needRawDataForGraph = needRawDataForGraph;
+        }
+    }
+
+    private static final class Builder {
+
+        private final List<Widget> widgets = new ArrayList<>();
+        private final List<Tile> tiles = new ArrayList<>();
+        private final List<WebHook> webHooks = new ArrayList<>();
+        private final List<Rule> rules = new ArrayList<>();
+        private boolean needRawDataForGraph;
+
+        //widget may match the same key few times (for example few data streams with the same pin),
+        //while it should be updated only once. Keys of one widget are added one after another.
+        void add(Widget widget, Tile tile) {
+            if (widget instanceof WebHook) {
+                if (webHooks.isEmpty() || webHooks.get(webHooks.size() - 1) != widget) {
+                    webHooks.add((WebHook) widget);
+                }
+            } else if (widget instanceof EnhancedHistoryGraph) {
+                needRawDataForGraph = true;
+            } else if (widgets.isEmpty() || widgets.get(widgets.size() - 1) != widget) {
+                widgets.add(widget);
+                tiles.add(tile);
+            }
+        }
+
+        //pwm rule on the analog pin adds the same key twice, one after another
+        void add(Rule rule) {
+            if (rules.isEmpty() || rules.get(rules.size() - 1) != rule) {
+                rules.add(rule);
+            }
+        }
+
+        Entry build() {
+            return new Entry(
+                    widgets.isEmpty() ? NO_WIDGETS : widgets.toArray(new Widget[widgets.size()]),
+                    tiles.isEmpty() ? NO_TILES : tiles.toArray(new Tile[tiles.size()]),
+                    webHooks.isEmpty() ? NO_WEBHOOKS : webHooks.toArray(new WebHook[webHooks.size()]),
+                    rules.isEmpty() ? NO_RULES : rules.toArray(new Rule[rules.size()]),
+                    needRawDataForGraph);
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package cc.blynk.server.core.model.auth;
+
+import io.netty.channel.Channel;
+
+import java.util.Arrays;
+
+/**
+ * Immutable map from the primitive key to the channels with that key.
+ * Channels are added and removed only on login and close, while lookups happen on every message,
+ * so every change creates new index and lookups are lock free and don't create any objects.
+ */
+final class ChannelIndex {
+
+    static final Channel[] NO_CHANNELS = {};
+    static final ChannelIndex EMPTY = new ChannelIndex(0);
+
+    private final long[] keys;
+    private final Channel[][] values;
+    private final int size;
+    private final int mask;
+
+    private ChannelIndex(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 + 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new Channel[capacity][];
+        this.size = size;
+        this.mask = capacity - 1;
+    }
+
+    static long key(int dashId, int deviceId) {
+        return ((long) dashId << 32) | (deviceId & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    Channel[] get(long key) {
+        int i = hash(key) & mask;
+        Channel[] channels;
+        while ((channels = values[i]) != null) {
+            if (keys[i] == key) {
+                return channels;
+            }
+            i = (i + 1) & mask;
+        }
+        return NO_CHANNELS;
+    }
+
+    int size() {
+        return size;
+    }
+
+    ChannelIndex add(long key, Channel channel) {
+        Channel[] channels = get(key);
+        for (Channel existing : channels) {
+            if (existing == channel) {
+                return this;
+            }
+        }
+        Channel[] updated = Arrays.copyOf(channels, channels.length + 1);
+        updated[channels.length] = channel;
+        return copyWith(key, updated, channels.length == 0 ? size + 1 : size);
+    }
+
+    ChannelIndex remove(long key, Channel channel) {
+        Channel[] channels = get(key);
+        int index = indexOf(channels, channel);
+        if (index == -1) {
+            return this;
+        }
+        if (channels.length == 1) {
+            return copyWith(key, null, size - 1);
+        }
+        return copyWith(key, remove(channels, index), size);
+    }
+
+    static int indexOf(Channel[] channels, Channel channel) {
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] == channel) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static Channel[] remove(Channel[] channels, int index) {
+        Channel[] result = new Channel[channels.length - 1];
+        System.arraycopy(channels, 0, result, 0, index);
+        System.arraycopy(channels, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private ChannelIndex copyWith(long key, Channel[] channels, int newSize) {
+        ChannelIndex result = new ChannelIndex(newSize);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && keys[i] != key) {
+                result.put(keys[i], values[i]);
+            }
+        }
+        if (channels != null) {
+            result.put(key, channels);
+        }
+        return result;
+    }
+
+    private void put(long key, Channel[] channels) {
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = channels;
+    }
+
+}
@@ -4,24 +4,24 @@ import cc.blynk.server.core.protocol.handlers.decoders.AppMessageDecoder;
 import cc.blynk.server.core.protocol.handlers.decoders.MessageDecoder;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
 import cc.blynk.server.core.session.HardwareStateHolder;
+import cc.blynk.server.core.stats.SessionCounters;
 import cc.blynk.server.handlers.BaseSimpleChannelInboundHandler;
 import cc.blynk.utils.ArrayUtil;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.EventLoop;
 import io.netty.util.internal.ConcurrentSet;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Set;
 
 import static cc.blynk.server.internal.CommonByteBufUtil.deviceOffline;
+import static cc.blynk.server.internal.CommonByteBufUtil.makeDeviceMessage;
 import static cc.blynk.server.internal.CommonByteBufUtil.makeUTF8StringMessage;
 import static cc.blynk.server.internal.StateHolderUtil.getHardState;
-import static cc.blynk.server.internal.StateHolderUtil.isSameDash;
-import static cc.blynk.server.internal.StateHolderUtil.isSameDashAndDeviceId;
 import static cc.blynk.utils.StringUtils.prependDashIdAndDeviceId;
 
 /**
@@ -39,11 +39,27 @@ public class Session {
     public final Set<Channel> appChannels = new ConcurrentSet<>();
     public final Set<Channel> hardwareChannels = new ConcurrentSet<>();
 
-    private final ChannelFutureListener appRemover = future -> appChannels.remove(future.channel());
-    private final ChannelFutureListener hardRemover = future -> hardwareChannels.remove(future.channel());
+    //routing tables, so messages go right to the target channels without scanning all channels of the user
+    //hardware channels by (dashId, deviceId) and by dashId
+    private volatile ChannelIndex hardwareByDevice = ChannelIndex.EMPTY;
+    private volatile ChannelIndex hardwareByDash = ChannelIndex.EMPTY;
+    //owner apps receive messages of all dashes, shared apps - only of the shared dash
+    private volatile Channel[] ownerApps = ChannelIndex.NO_CHANNELS;
+    private volatile ChannelIndex sharedAppsByDash = ChannelIndex.EMPTY;
+    private final Object routesLock = new Object();
+
+    //channels of the session counted in the global counters, guarded by routesLock
+    private final SessionCounters counters;
+    private int appsCount;
+    private int hardsCount;
 
     public Session(EventLoop initialEventLoop) {
+        this(initialEventLoop, new SessionCounters());
+    }
+
+    public Session(EventLoop initialEventLoop, SessionCounters counters) {
         this.initialEventLoop = initialEventLoop;
+        this.counters = counters;
     }
 
     public boolean isSameEventLoop(ChannelHandlerContext ctx) {
@@ -77,57 +93,147 @@ public class Session {
 
     public void addAppChannel(Channel appChannel) {
         if (appChannels.add(appChannel)) {
-            appChannel.closeFuture().addListener(appRemover);
+            synchronized (routesLock) {
+                Channel[] apps = Arrays.copyOf(ownerApps, ownerApps.length + 1);
+                apps[ownerApps.length] = appChannel;
+                ownerApps = apps;
+                counters.appAdded(++appsCount, hardsCount);
+            }
+            appChannel.closeFuture().addListener(future -> removeOwnerApp(appChannel));
+        }
+    }
+
+    /**
+     * Adds app channel that receives messages only of the given dash (shared dash).
+     */
+    public void addAppChannel(Channel appChannel, int dashId) {
+        if (appChannels.add(appChannel)) {
+            synchronized (routesLock) {
+                sharedAppsByDash = sharedAppsByDash.add(dashId, appChannel);
+                counters.appAdded(++appsCount, hardsCount);
+            }
+            appChannel.closeFuture().addListener(future -> removeSharedApp(appChannel, dashId));
         }
     }
 
     public void addHardChannel(Channel hardChannel) {
+        HardwareStateHolder hardwareState = getHardState(hardChannel);
+        if (hardwareState == null) {
+            log.error("Hardware channel without state. {}", hardChannel);
+            return;
+        }
+        int dashId = hardwareState.dash.id;
+        int deviceId = hardwareState.device.id;
         if (hardwareChannels.add(hardChannel)) {
-            hardChannel.closeFuture().addListener(hardRemover);
+            synchronized (routesLock) {
+                hardwareByDevice = hardwareByDevice.add(ChannelIndex.key(dashId, deviceId), hardChannel);
+                hardwareByDash = hardwareByDash.add(dashId, hardChannel);
+                counters.hardAdded(appsCount, ++hardsCount);
+            }
+            hardChannel.closeFuture().addListener(future -> removeHardChannel(hardChannel, dashId, deviceId));
+        }
+    }
+
+    private void removeOwnerApp(Channel appChannel) {
+        boolean removed = appChannels.remove(appChannel);
+        synchronized (routesLock) {
+            int index = ChannelIndex.indexOf(ownerApps, appChannel);
+            if (index != -1) {
+                ownerApps = ChannelIndex.remove(ownerApps, index);
+            }
+            if (removed) {
+                counters.appRemoved(--appsCount, hardsCount);
+            }
         }
     }
 
-    private Set<Channel> filter(int activeDashId, int[] deviceIds) {
-        Set<Channel> targetChannels = new HashSet<>();
-        for (Channel channel : hardwareChannels) {
-            HardwareStateHolder hardwareState = getHardState(channel);
-            if (hardwareState != null && hardwareState.dash.id == activeDashId
-                    && (deviceIds.length == 0 || ArrayUtil.contains(deviceIds, hardwareState.device.id))) {
-                targetChannels.add(channel);
+    private void removeSharedApp(Channel appChannel, int dashId) {
+        boolean removed = appChannels.remove(appChannel);
+        synchronized (routesLock) {
+            sharedAppsByDash = sharedAppsByDash.remove(dashId, appChannel);
+            if (removed) {
+                counters.appRemoved(--appsCount, hardsCount);
             }
         }
-        return targetChannels;
     }
 
-    private Set<Channel> filter(int activeDashId, int deviceId) {
-        Set<Channel> targetChannels = new HashSet<>();
-        for (Channel channel : hardwareChannels) {
-            if (isSameDashAndDeviceId(channel, activeDashId, deviceId)) {
-                targetChannels.add(channel);
+    private void removeHardChannel(Channel hardChannel, int dashId, int deviceId) {
+        boolean removed = hardwareChannels.remove(hardChannel);
+        synchronized (routesLock) {
+            hardwareByDevice = hardwareByDevice.remove(ChannelIndex.key(dashId, deviceId), hardChannel);
+            hardwareByDash = hardwareByDash.remove(dashId, hardChannel);
+            if (removed) {
+                counters.hardRemoved(appsCount, --hardsCount);
             }
         }
-        return targetChannels;
+    }
+
+    private Channel[] hardwareChannels(int dashId, int deviceId) {
+        return hardwareByDevice.get(ChannelIndex.key(dashId, deviceId));
+    }
+
+    private Channel[] hardwareChannels(int dashId) {
+        return hardwareByDash.get(dashId);
     }
 
     public boolean sendMessageToHardware(int activeDashId, short cmd, int msgId, String body, int deviceId) {
-        return hardwareChannels.size() == 0 || sendMessageToHardware(filter(activeDashId, deviceId), cmd, msgId, body);
+        return send(hardwareChannels(activeDashId, deviceId), cmd, msgId, body) == 0;
     }
 
     public boolean sendMessageToHardware(int activeDashId, short cmd, int msgId, String body, int... deviceIds) {
-        return hardwareChannels.size() == 0 || sendMessageToHardware(filter(activeDashId, deviceIds), cmd, msgId, body);
+        Channel[] dashChannels = hardwareChannels(activeDashId);
+        if (deviceIds.length == 0 || dashChannels.length == 0) {
+            return send(dashChannels, cmd, msgId, body) == 0;
+        }
+        if (deviceIds.length == 1) {
+            return sendMessageToHardware(activeDashId, cmd, msgId, body, deviceIds[0]);
+        }
+
+        //iterating over the smaller side, so fan-out costs O(targets)
+        StringMessage msg = null;
+        int sent = 0;
+        if (dashChannels.length < deviceIds.length) {
+            for (Channel channel : dashChannels) {
+                HardwareStateHolder hardwareState = getHardState(channel);
+                if (hardwareState != null && ArrayUtil.contains(deviceIds, hardwareState.device.id)) {
+                    msg = msg == null ? makeUTF8StringMessage(cmd, msgId, body) : msg;
+                    send(channel, msg);
+                    sent++;
+                }
+            }
+        } else {
+            for (int i = 0; i < deviceIds.length; i++) {
+                Channel[] deviceChannels = hardwareChannels(activeDashId, deviceIds[i]);
+                if (deviceChannels.length > 0 && !containsBefore(deviceIds, i)) {
+                    for (Channel channel : deviceChannels) {
+                        msg = msg == null ? makeUTF8StringMessage(cmd, msgId, body) : msg;
+                        send(channel, msg);
+                        sent++;
+                    }
+                }
+            }
+        }
+        return sent == 0;
     }
 
-    public boolean sendMessageToHardware(short cmd, int msgId, String body) {
-        return sendMessageToHardware(hardwareChannels, cmd, msgId, body);
+    //device ids may repeat, while message should go to the device only once
+    private static boolean containsBefore(int[] deviceIds, int index) {
+        int deviceId = deviceIds[index];
+        for (int i = 0; i < index; i++) {
+            if (deviceIds[i] == deviceId) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private boolean sendMessageToHardware(Set<Channel> targetChannels, short cmd, int msgId, String body) {
-        int channelsNum = targetChannels.size();
+    public boolean sendMessageToHardware(short cmd, int msgId, String body) {
+        int channelsNum = hardwareChannels.size();
         if (channelsNum == 0) {
             return true; // -> no active hardware
         }
 
-        send(targetChannels, cmd, msgId, body);
+        send(hardwareChannels, cmd, msgId, body);
 
         return false; // -> there is active hardware
     }
@@ -137,21 +243,11 @@ public class Session {
     }
 
     public boolean isHardwareConnected(int dashId, int deviceId) {
-        for (Channel channel : hardwareChannels) {
-            if (isSameDashAndDeviceId(channel, dashId, deviceId)) {
-                return true;
-            }
-        }
-        return false;
+        return hardwareChannels(dashId, deviceId).length > 0;
     }
 
     public boolean isHardwareConnected(int dashId) {
-        for (Channel channel : hardwareChannels) {
-            if (isSameDash(channel, dashId)) {
-                return true;
-            }
-        }
-        return false;
+        return hardwareChannels(dashId).length > 0;
     }
 
     public void sendOfflineMessageToApps(int dashId, int deviceId) {
@@ -172,29 +268,37 @@ public class Session {
     }
 
     public void sendToApps(short cmd, int msgId, int dashId, String finalBody) {
-        Set<Channel> targetChannels = filterByDash(dashId);
-
-        int targetsNum = targetChannels.size();
-        if (targetsNum > 0) {
-            send(targetChannels, cmd, msgId, finalBody);
+        Channel[] owners = ownerApps;
+        Channel[] shared = sharedAppsByDash.get(dashId);
+        if (owners.length > 0 || shared.length > 0) {
+            StringMessage msg = makeUTF8StringMessage(cmd, msgId, finalBody);
+            send(owners, msg);
+            send(shared, msg);
         }
     }
 
-    private Set<Channel> filterByDash(int dashId) {
-        Set<Channel> targetChannels = new HashSet<>();
-        for (Channel channel : appChannels) {
-            if (isSameDash(channel, dashId)) {
-                targetChannels.add(channel);
+    /**
+     * Forwards device message body to the apps of the dash. Body is copied into the outbound
+     * buffer of every app, so it should be released by the caller.
+     */
+    public void sendToApps(short cmd, int msgId, int dashId, int deviceId, ByteBuf body) {
+        sendToApps(ownerApps, cmd, msgId, dashId, deviceId, body);
+        sendToApps(sharedAppsByDash.get(dashId), cmd, msgId, dashId, deviceId, body);
+    }
+
+    //apps may have different encoders, while frame header is written in place, so every app gets own copy
+    private static void sendToApps(Channel[] targets, short cmd, int msgId, int dashId, int deviceId, ByteBuf body) {
+        for (Channel channel : targets) {
+            if (channel.isWritable()) {
+                channel.writeAndFlush(makeDeviceMessage(channel.alloc(), cmd, msgId, dashId, deviceId, body),
+                        channel.voidPromise());
             }
         }
-        return targetChannels;
     }
 
     private static void sendMessageToMultipleReceivers(Set<Channel> targets, StringMessage msg) {
         for (Channel channel : targets) {
-            if (channel.isWritable()) {
-                channel.writeAndFlush(msg, channel.voidPromise());
-            }
+            send(channel, msg);
         }
     }
 
@@ -203,18 +307,34 @@ public class Session {
         sendMessageToMultipleReceivers(targets, msg);
     }
 
+    //returns number of the target channels
+    private static int send(Channel[] targets, short cmd, int msgId, String body) {
+        if (targets.length > 0) {
+            send(targets, makeUTF8StringMessage(cmd, msgId, body));
+        }
+        return targets.length;
+    }
+
+    private static void send(Channel[] targets, StringMessage msg) {
+        for (Channel channel : targets) {
+            send(channel, msg);
+        }
+    }
+
+    private static void send(Channel channel, StringMessage msg) {
+        if (channel.isWritable()) {
+            channel.writeAndFlush(msg, channel.voidPromise());
+        }
+    }
+
     public void sendToSharedApps(Channel sendingChannel, String sharedToken, short cmd, int msgId, String body) {
-        Set<Channel> targetChannels = new HashSet<>();
+        StringMessage msg = null;
         for (Channel channel : appChannels) {
             if (channel != sendingChannel && needSync(channel, sharedToken)) {
-                targetChannels.add(channel);
+                msg = msg == null ? makeUTF8StringMessage(cmd, msgId, body) : msg;
+                send(channel, msg);
             }
         }
-
-        int channelsNum = targetChannels.size();
-        if (channelsNum > 0) {
-            send(targetChannels, cmd, msgId, body);
-        }
     }
 
     public boolean isAppConnected() {
@@ -230,18 +350,14 @@ public class Session {
     }
 
     public void closeHardwareChannelByDeviceId(int dashId, int deviceId) {
-        for (Channel channel : hardwareChannels) {
-            if (isSameDashAndDeviceId(channel, dashId, deviceId)) {
-                channel.close();
-            }
+        for (Channel channel : hardwareChannels(dashId, deviceId)) {
+            channel.close();
         }
     }
 
     public void closeHardwareChannelByDashId(int dashId) {
-        for (Channel channel : hardwareChannels) {
-            if (isSameDash(channel, dashId)) {
-                channel.close();
-            }
+        for (Channel channel : hardwareChannels(dashId)) {
+            channel.close();
         }
     }
 
@@ -4,9 +4,13 @@ import cc.blynk.server.core.model.DashBoard;
 import cc.blynk.server.core.model.Profile;
 import cc.blynk.server.core.model.serialization.JsonParser;
 import cc.blynk.server.core.processors.NotificationBase;
+import cc.blynk.server.core.stats.ActivityHistogram;
 import cc.blynk.utils.AppNameUtil;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * User: ddumanskiy
  * Date: 8/11/13
@@ -15,6 +19,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class User {
 
     private static final int INITIAL_ENERGY_AMOUNT = Integer.parseInt(System.getProperty("initial.energy", "2000"));
+    private static final AtomicIntegerFieldUpdater<User> DIRTY_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(User.class, "dirty");
+    private static final AtomicIntegerFieldUpdater<User> ACTIVE_HOUR_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(User.class, "activeHour");
 
     public String name;
 
@@ -43,6 +51,15 @@ public class User {
     public transient int emailMessages;
     private transient long emailSentTs;
 
+    //queue of the changed users of the UserDao, user is added there once until it is saved
+    private transient volatile Queue<User> dirtyUsers;
+    private transient volatile int dirty;
+    //time the profile was loaded back to memory after the eviction
+    public transient volatile long loadedTs;
+    //user is counted in the activity histogram with the hour of the last change
+    private transient volatile ActivityHistogram activity;
+    private transient volatile int activeHour = ActivityHistogram.NO_ACTIVITY;
+
     //used just for tests and serialization
     public User() {
         this.lastModifiedTs = System.currentTimeMillis();
@@ -103,7 +120,70 @@ public class User {
     public void addEnergy(int price) {
         //non-atomic. we are fine with that
         this.energy += price;
-        this.lastModifiedTs = System.currentTimeMillis();
+        updateLastModifiedTs(System.currentTimeMillis());
+    }
+
+    public void updateLastModifiedTs(long ts) {
+        this.lastModifiedTs = ts;
+        markDirty();
+    }
+
+    /**
+     * Queues user for saving. Should be called after any change of the profile.
+     */
+    public void markDirty() {
+        Queue<User> dirtyUsers = this.dirtyUsers;
+        if (dirtyUsers != null && dirty == 0 && DIRTY_UPDATER.compareAndSet(this, 0, 1)) {
+            dirtyUsers.offer(this);
+        }
+        ActivityHistogram activity = this.activity;
+        if (activity != null) {
+            int hour = ActivityHistogram.hour(System.currentTimeMillis());
+            int prevHour = activeHour;
+            //user is moved once per hour, so the histogram is not touched on every change
+            if (prevHour != hour && ACTIVE_HOUR_UPDATER.compareAndSet(this, prevHour, hour)) {
+                activity.move(prevHour, hour);
+            }
+        }
+    }
+
+    public void setDirtyUsers(Queue<User> dirtyUsers) {
+        this.dirtyUsers = dirtyUsers;
+    }
+
+    /**
+     * Counts user in the histogram with the hour of the last change of the profile or its dashboards.
+     */
+    public void trackActivity(ActivityHistogram activity) {
+        untrackActivity();
+        long lastChangeTs = lastModifiedTs;
+        for (DashBoard dashBoard : profile.dashBoards) {
+            lastChangeTs = Math.max(lastChangeTs, dashBoard.updatedAt);
+        }
+        this.activeHour = ActivityHistogram.hour(lastChangeTs);
+        this.activity = activity;
+        activity.add(activeHour);
+    }
+
+    public void untrackActivity() {
+        ActivityHistogram activity = this.activity;
+        if (activity != null) {
+            this.activity = null;
+            activity.remove(activeHour);
+        }
+    }
+
+    public boolean isDirty() {
+        return dirty != 0;
+    }
+
+    public long lastActivityTs() {
+        return Math.max(Math.max(lastModifiedTs, lastLoggedAt), loadedTs);
+    }
+
+    //called when user is taken from the queue, so changes made during the saving queue user again
+    public void clearDirty() {
+        this.dirty = 0;
     }
 
     private static final int EMAIL_DAY_LIMIT = 100;
@@ -21,14 +21,19 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.StringJoiner;
@@ -94,8 +99,18 @@ public final class JsonParser {
 
     private static final ObjectWriter statWriter = init().writerWithDefaultPrettyPrinter().forType(Stat.class);
 
+    //binary json with the same mapping, used for the user profiles on disk
+    private static final ObjectMapper SMILE_MAPPER = init(new ObjectMapper(new SmileFactory()));
+    private static final ObjectReader smileUserReader = SMILE_MAPPER.readerFor(User.class);
+    private static final ObjectWriter smileUserWriter = SMILE_MAPPER.writerFor(User.class);
+    private static final int SMILE_HEADER_LENGTH = 3;
+
     public static ObjectMapper init() {
-        return new ObjectMapper()
+        return init(new ObjectMapper());
+    }
+
+    private static ObjectMapper init(ObjectMapper mapper) {
+        return mapper
                 .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
                 .setSerializationInclusion(JsonInclude.Include.NON_NULL)
                 .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
@@ -166,6 +181,13 @@ public final class JsonParser {
         userWriter.writeValue(file, user);
     }
 
+    /**
+     * @param binary - Smile format is used when true, json otherwise.
+     */
+    public static void writeUser(File file, User user, boolean binary) throws IOException {
+        (binary ? smileUserWriter : userWriter).writeValue(file, user);
+    }
+
     private static String toJson(ObjectWriter writer, Object o) {
         try {
             return writer.writeValueAsString(o);
@@ -203,13 +225,37 @@ public final class JsonParser {
     }
 
     public static User parseUserFromFile(Path path) throws IOException {
-        try (InputStream is = Files.newInputStream(path)) {
-            return userReader.readValue(is);
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+            is.mark(SMILE_HEADER_LENGTH);
+            boolean isSmile = isSmile(is.read(), is.read(), is.read());
+            is.reset();
+            return (isSmile ? smileUserReader : userReader).readValue(is);
         }
     }
 
     public static User parseUserFromFile(File userFile) throws IOException {
-        return userReader.readValue(userFile);
+        return parseUserFromFile(userFile.toPath());
+    }
+
+    /**
+     * Parses user in json or Smile format, format is detected by the Smile header.
+     */
+    public static User parseUser(ByteBuffer data) throws IOException {
+        int position = data.position();
+        ObjectReader reader = data.remaining() >= SMILE_HEADER_LENGTH
+                && isSmile(data.get(position), data.get(position + 1), data.get(position + 2))
+                ? smileUserReader
+                : userReader;
+        if (data.hasArray()) {
+            return reader.readValue(data.array(), data.arrayOffset() + position, data.remaining());
+        }
+        return reader.readValue(new ByteBufferBackedInputStream(data));
+    }
+
+    private static boolean isSmile(int b1, int b2, int b3) {
+        return b1 == SmileConstants.HEADER_BYTE_1
+                && b2 == SmileConstants.HEADER_BYTE_2
+                && b3 == SmileConstants.HEADER_BYTE_3;
     }
 
     public static User parseUserFromString(String userString) throws IOException {
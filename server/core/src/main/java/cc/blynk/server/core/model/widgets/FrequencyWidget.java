@@ -11,10 +11,19 @@ public interface FrequencyWidget {
 
     int READING_MSG_ID = 7778;
 
+    //widget is read a bit earlier than due, so the jitter of the reading worker doesn't skip the whole period
+    long READING_TOLERANCE = 100;
+
     void writeReadingCommand(Channel channel);
 
     int getDeviceId();
 
     boolean isTicked(long now);
 
+    //reading interval in millis, 0 or less - widget is not read
+    int getFrequency();
+
+    //time in millis when the widget should be read next time
+    long getNextRequestTS();
+
 }
@@ -20,13 +20,23 @@ public abstract class OnePinReadingWidget extends OnePinWidget implements Freque
 
     @Override
     public boolean isTicked(long now) {
-        if (frequency > 0 && now >= lastRequestTS + frequency) {
+        if (frequency > 0 && now + READING_TOLERANCE >= lastRequestTS + frequency) {
             this.lastRequestTS = now;
             return true;
         }
         return false;
     }
 
+    @Override
+    public int getFrequency() {
+        return frequency;
+    }
+
+    @Override
+    public long getNextRequestTS() {
+        return lastRequestTS + frequency;
+    }
+
     @Override
     public int getDeviceId() {
         return deviceId;
@@ -6,7 +6,6 @@ import cc.blynk.server.notifications.push.android.AndroidGCMMessage;
 import cc.blynk.server.notifications.push.enums.Priority;
 import cc.blynk.server.notifications.push.ios.IOSGCMMessage;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -44,23 +43,13 @@ public class Notification extends NoPinWidget {
     }
 
     public void push(GCMWrapper gcmWrapper, String body, int dashId) {
+        //one multicast request per platform for all devices of the dashboard
         if (androidTokens.size() != 0) {
-            for (Map.Entry<String, String> entry : androidTokens.entrySet()) {
-                gcmWrapper.send(
-                        new AndroidGCMMessage(entry.getValue(), priority, body, dashId),
-                        androidTokens,
-                        entry.getKey()
-                );
-            }
+            gcmWrapper.send(new AndroidGCMMessage(priority, body, dashId), androidTokens);
         }
 
         if (iOSTokens.size() != 0) {
-            for (Map.Entry<String, String> entry : iOSTokens.entrySet()) {
-                gcmWrapper.send(new IOSGCMMessage(entry.getValue(), priority, body, dashId),
-                        iOSTokens,
-                        entry.getKey()
-                );
-            }
+            gcmWrapper.send(new IOSGCMMessage(priority, body, dashId), iOSTokens);
         }
     }
 }
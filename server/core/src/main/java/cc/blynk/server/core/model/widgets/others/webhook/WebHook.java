@@ -24,10 +24,32 @@ public class WebHook extends OnePinWidget {
 
     public transient volatile int failureCounter = 0;
 
+    //compiled on first use and when url/body is replaced, widget update creates new instance anyway
+    private transient volatile WebhookTemplate urlTemplate;
+    private transient volatile WebhookTemplate bodyTemplate;
+
     public static boolean isValidUrl(String url) {
         return url != null && !url.isEmpty() && url.regionMatches(true, 0, "http", 0, 4);
     }
 
+    public String formatUrl(String value) {
+        WebhookTemplate template = this.urlTemplate;
+        if (template == null || template.getSource() != url) {
+            template = WebhookTemplate.compile(url);
+            this.urlTemplate = template;
+        }
+        return template.format(value);
+    }
+
+    public String formatBody(String value) {
+        WebhookTemplate template = this.bodyTemplate;
+        if (template == null || template.getSource() != body) {
+            template = WebhookTemplate.compile(body);
+            this.bodyTemplate = template;
+        }
+        return template.format(value);
+    }
+
     public boolean isNotFailed(int webhookFailureLimit) {
         return failureCounter < webhookFailureLimit;
     }
@@ -0,0 +1,126 @@
+package cc.blynk.server.core.model.widgets.others.webhook;
+
+import cc.blynk.utils.StringUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Webhook url or body with placeholders resolved once, so formatting is only
+ * concatenation of literal parts with the trigger value, without regex passes.
+ * Supported placeholders (first occurrence of each one is replaced):
+ * "/pin/" and "%s" - whole value, "/pin[0]/".."/pin[9]/" - parts of multi value,
+ * "/datetime_iso/" - current time.
+ * Placeholders may share characters, like "/pin/pin[0]/". Such placeholders are taken in the order
+ * they were replaced before : "/pin/", "/pin[9]/".."/pin[0]/", "%s", "/datetime_iso/",
+ * and the occurrence that overlaps already taken placeholder is skipped.
+ */
+public final class WebhookTemplate {
+
+    private static final String PIN_PLACEHOLDER = "/pin/";
+    private static final String GENERIC_PLACEHOLDER = "%s";
+    private static final String DATETIME_PLACEHOLDER = "/datetime_iso/";
+    private static final int MAX_VALUE_PARTS = 10;
+
+    //placeholder types, value part placeholders are stored as part index
+    private static final int WHOLE_VALUE = -1;
+    private static final int DATETIME = -2;
+
+    private final String source;
+    //literals.length == placeholders.length + 1
+    private final String[] literals;
+    private final int[] placeholders;
+    private final boolean hasValueParts;
+
+    private WebhookTemplate(String source, String[] literals, int[] placeholders) {
+        this.source = source;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        boolean hasValueParts = false;
+        for (int placeholder : placeholders) {
+            hasValueParts |= placeholder >= 0;
+        }
+        this.hasValueParts = hasValueParts;
+    }
+
+    public static WebhookTemplate compile(String source) {
+        List<int[]> found = new ArrayList<>();
+        find(found, source, PIN_PLACEHOLDER, WHOLE_VALUE);
+        for (int i = MAX_VALUE_PARTS - 1; i >= 0; i--) {
+            find(found, source, partPlaceholder(i), i);
+        }
+        find(found, source, GENERIC_PLACEHOLDER, WHOLE_VALUE);
+        find(found, source, DATETIME_PLACEHOLDER, DATETIME);
+        //found placeholders don't overlap, so they could be simply ordered by position
+        found.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        String[] literals = new String[found.size() + 1];
+        int[] placeholders = new int[found.size()];
+        int pos = 0;
+        for (int i = 0; i < placeholders.length; i++) {
+            int[] placeholder = found.get(i);
+            literals[i] = source.substring(pos, placeholder[0]);
+            placeholders[i] = placeholder[2];
+            pos = placeholder[0] + placeholder[1];
+        }
+        literals[placeholders.length] = source.substring(pos);
+        return new WebhookTemplate(source, literals, placeholders);
+    }
+
+    private static void find(List<int[]> found, String source, String placeholder, int type) {
+        int index = source.indexOf(placeholder);
+        while (index != -1 && overlaps(found, index, placeholder.length())) {
+            index = source.indexOf(placeholder, index + 1);
+        }
+        if (index != -1) {
+            found.add(new int[] {index, placeholder.length(), type});
+        }
+    }
+
+    private static boolean overlaps(List<int[]> found, int index, int length) {
+        for (int[] placeholder : found) {
+            if (index < placeholder[0] + placeholder[1] && placeholder[0] < index + length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String partPlaceholder(int index) {
+        return "/pin[" + index + "]/";
+    }
+
+    public String format(String value) {
+        if (placeholders.length == 0) {
+            return source;
+        }
+        String[] parts = hasValueParts ? value.split(StringUtils.BODY_SEPARATOR_STRING) : null;
+        StringBuilder sb = new StringBuilder(source.length() + value.length() * placeholders.length);
+        sb.append(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            int placeholder = placeholders[i];
+            switch (placeholder) {
+                case WHOLE_VALUE :
+                    sb.append(value);
+                    break;
+                case DATETIME :
+                    sb.append(Instant.now().toString());
+                    break;
+                default :
+                    //not available part leaves placeholder as is
+                    if (parts.length <= MAX_VALUE_PARTS && placeholder < parts.length) {
+                        sb.append(parts[placeholder]);
+                    } else {
+                        sb.append(partPlaceholder(placeholder));
+                    }
+            }
+            sb.append(literals[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    public String getSource() {
+        return source;
+    }
+}
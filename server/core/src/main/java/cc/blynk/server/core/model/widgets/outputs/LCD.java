@@ -94,13 +94,23 @@ public class LCD extends MultiPinWidget implements FrequencyWidget {
 
     @Override
     public boolean isTicked(long now) {
-        if (frequency > 0 && now >= lastRequestTS + frequency) {
+        if (frequency > 0 && now + READING_TOLERANCE >= lastRequestTS + frequency) {
             this.lastRequestTS = now;
             return true;
         }
         return false;
     }
 
+    @Override
+    public int getFrequency() {
+        return frequency;
+    }
+
+    @Override
+    public long getNextRequestTS() {
+        return lastRequestTS + frequency;
+    }
+
     @Override
     public void writeReadingCommand(Channel channel) {
         if (dataStreams == null) {
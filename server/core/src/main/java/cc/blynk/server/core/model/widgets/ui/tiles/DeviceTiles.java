@@ -227,6 +227,17 @@ public class DeviceTiles extends Widget implements AppSyncWidget {
         return counter;
     }
 
+    public boolean hasTimers() {
+        for (TileTemplate template : templates) {
+            for (Widget widgetInTemplate : template.widgets) {
+                if (widgetInTemplate instanceof Timer && ((Timer) widgetInTemplate).isValid()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public String getValue(int deviceId, byte pin, PinType pinType) {
         for (Tile tile : tiles) {
             if (tile.isSame(deviceId, pin, pinType)) {
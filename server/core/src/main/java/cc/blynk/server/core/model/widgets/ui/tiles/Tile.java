@@ -2,6 +2,7 @@ package cc.blynk.server.core.model.widgets.ui.tiles;
 
 import cc.blynk.server.core.model.DataStream;
 import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.FrequencyWidget;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -58,7 +59,7 @@ public class Tile {
 
     public boolean isTicked(long now) {
         //todo 1000 is hardcoded for now
-        if (now >= lastRequestTS + 1000) {
+        if (now + FrequencyWidget.READING_TOLERANCE >= lastRequestTS + 1000) {
             this.lastRequestTS = now;
             return true;
         }
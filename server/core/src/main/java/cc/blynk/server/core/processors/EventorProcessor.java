@@ -1,6 +1,5 @@
 package cc.blynk.server.core.processors;
 
-import cc.blynk.server.core.BlockingIOProcessor;
 import cc.blynk.server.core.model.DashBoard;
 import cc.blynk.server.core.model.auth.Session;
 import cc.blynk.server.core.model.auth.User;
@@ -8,7 +7,6 @@ import cc.blynk.server.core.model.enums.PinType;
 import cc.blynk.server.core.model.widgets.notifications.Mail;
 import cc.blynk.server.core.model.widgets.notifications.Notification;
 import cc.blynk.server.core.model.widgets.notifications.Twitter;
-import cc.blynk.server.core.model.widgets.others.eventor.Eventor;
 import cc.blynk.server.core.model.widgets.others.eventor.Rule;
 import cc.blynk.server.core.model.widgets.others.eventor.model.action.BaseAction;
 import cc.blynk.server.core.model.widgets.others.eventor.model.action.SetPinAction;
@@ -17,6 +15,7 @@ import cc.blynk.server.core.model.widgets.others.eventor.model.action.notificati
 import cc.blynk.server.core.model.widgets.others.eventor.model.action.notification.NotifyAction;
 import cc.blynk.server.core.model.widgets.others.eventor.model.action.notification.TwitAction;
 import cc.blynk.server.core.stats.GlobalStats;
+import cc.blynk.server.notifications.mail.MailPriority;
 import cc.blynk.server.notifications.mail.MailWrapper;
 import cc.blynk.server.notifications.push.GCMWrapper;
 import cc.blynk.server.notifications.twitter.TwitterWrapper;
@@ -46,47 +45,46 @@ public class EventorProcessor {
     private final GCMWrapper gcmWrapper;
     private final TwitterWrapper twitterWrapper;
     private final MailWrapper mailWrapper;
-    private final BlockingIOProcessor blockingIOProcessor;
     private final GlobalStats globalStats;
 
     public EventorProcessor(GCMWrapper gcmWrapper, MailWrapper mailWrapper, TwitterWrapper twitterWrapper,
-                            BlockingIOProcessor blockingIOProcessor, GlobalStats stats) {
+                            GlobalStats stats) {
         this.gcmWrapper = gcmWrapper;
         this.mailWrapper = mailWrapper;
         this.twitterWrapper = twitterWrapper;
-        this.blockingIOProcessor = blockingIOProcessor;
         this.globalStats = stats;
     }
 
     public void process(User user, Session session, DashBoard dash, int deviceId, byte pin,
                         PinType type, String triggerValue, long now) {
-        Eventor eventor = dash.getWidgetByType(Eventor.class);
-        if (eventor == null || eventor.rules == null
-                || eventor.deviceId != deviceId || !dash.isActive) {
+        if (!dash.isActive) {
+            return;
+        }
+        //pins without rules cost single lookup, value is parsed only when there is something to check
+        Rule[] rules = dash.getEventorRules(deviceId, pin, type);
+        if (rules.length == 0) {
             return;
         }
 
         double valueParsed = NumberUtil.parseDouble(triggerValue);
 
-        for (Rule rule : eventor.rules) {
-            if (rule.isReady(pin, type)) {
-                if (rule.matchesCondition(triggerValue, valueParsed)) {
-                    if (!rule.isProcessed) {
-                        for (BaseAction action : rule.actions) {
-                            if (action.isValid()) {
-                                if (action instanceof SetPinAction) {
-                                    execute(session, dash, deviceId, (SetPinAction) action, now);
-                                } else if (action instanceof NotificationAction) {
-                                    execute(user, dash, triggerValue, (NotificationAction) action);
-                                }
-                                globalStats.mark(EVENTOR);
+        for (Rule rule : rules) {
+            if (rule.matchesCondition(triggerValue, valueParsed)) {
+                if (!rule.isProcessed) {
+                    for (BaseAction action : rule.actions) {
+                        if (action.isValid()) {
+                            if (action instanceof SetPinAction) {
+                                execute(user, session, dash, deviceId, (SetPinAction) action, now);
+                            } else if (action instanceof NotificationAction) {
+                                execute(user, dash, triggerValue, (NotificationAction) action);
                             }
+                            globalStats.mark(EVENTOR);
                         }
-                        rule.isProcessed = true;
                     }
-                } else {
-                    rule.isProcessed = false;
+                    rule.isProcessed = true;
                 }
+            } else {
+                rule.isProcessed = false;
             }
         }
     }
@@ -120,10 +118,8 @@ public class EventorProcessor {
             return;
         }
 
-        blockingIOProcessor.execute(() -> {
-            try {
-                mailWrapper.sendText(to, subject, body);
-            } catch (Exception e) {
+        mailWrapper.sendText(to, subject, body, MailPriority.LOW).whenComplete((ignored, e) -> {
+            if (e != null) {
                 log.warn("Error sending email from eventor. From user {}, to : {}. Reason : {}",
                         user.email, to, e.getMessage());
             }
@@ -182,11 +178,12 @@ public class EventorProcessor {
         widget.push(gcmWrapper, body, dash.id);
     }
 
-    private void execute(Session session, DashBoard dash, int deviceId, SetPinAction action, long now) {
+    private void execute(User user, Session session, DashBoard dash, int deviceId, SetPinAction action, long now) {
         String body = action.makeHardwareBody();
         session.sendMessageToHardware(dash.id, HARDWARE, 888, body, deviceId);
         session.sendToApps(HARDWARE, 888, dash.id, deviceId, body);
 
         dash.update(deviceId, action.dataStream.pin, action.dataStream.pinType, action.value, now);
+        user.markDirty();
     }
 }
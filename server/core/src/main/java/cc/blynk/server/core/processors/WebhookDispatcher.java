@@ -0,0 +1,173 @@
+package cc.blynk.server.core.processors;
+
+import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
+import cc.blynk.server.core.stats.GlobalStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static cc.blynk.server.core.protocol.enums.Command.WEB_HOOKS;
+
+/**
+ * Sends webhooks of all users via shared http client.
+ * Number of running requests per destination host is limited, the rest waits in the bounded
+ * per host queue, so slow or busy host doesn't take all connections of the client.
+ * With coalescing enabled webhook has at most one request in the queue - new value replaces
+ * the value of the waiting request, value that came during the running request is sent after it.
+ */
+public class WebhookDispatcher {
+
+    private static final Logger log = LogManager.getLogger(WebhookDispatcher.class);
+
+    private final AsyncHttpClient httpclient;
+    private final int hostConcurrencyLimit;
+    private final int hostQueueLimit;
+    private final boolean coalesce;
+    private final GlobalStats globalStats;
+    private final ConcurrentHashMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+
+    public WebhookDispatcher(AsyncHttpClient httpclient, int hostConcurrencyLimit, int hostQueueLimit,
+                             boolean coalesce, GlobalStats globalStats) {
+        this.httpclient = httpclient;
+        this.hostConcurrencyLimit = hostConcurrencyLimit;
+        this.hostQueueLimit = hostQueueLimit;
+        this.coalesce = coalesce;
+        this.globalStats = globalStats;
+    }
+
+    void dispatch(WebhookRequest request) {
+        while (true) {
+            HostQueue queue = hosts.computeIfAbsent(request.host, host -> new HostQueue());
+            synchronized (queue) {
+                if (queue.removed) {
+                    continue;
+                }
+                if (!enqueue(queue, request)) {
+                    return;
+                }
+            }
+            run(queue, request);
+            return;
+        }
+    }
+
+    /**
+     * @return true if request should be started right away.
+     */
+    private boolean enqueue(HostQueue queue, WebhookRequest request) {
+        if (coalesce) {
+            WebhookRequest existing = queue.webhooks.get(request.webHook);
+            if (existing != null) {
+                existing.url = request.url;
+                existing.value = request.value;
+                if (existing.running) {
+                    existing.dirty = true;
+                }
+                globalStats.webhooksCoalesced.increment();
+                return false;
+            }
+        }
+
+        if (queue.running < hostConcurrencyLimit) {
+            queue.running++;
+            request.running = true;
+        } else if (queue.waiting.size() < hostQueueLimit) {
+            queue.waiting.add(request);
+            globalStats.webhooksQueued.increment();
+        } else {
+            log.debug("Webhooks queue for {} is full.", request.host);
+            globalStats.webhooksDropped.increment();
+            return false;
+        }
+
+        if (coalesce) {
+            queue.webhooks.put(request.webHook, request);
+        }
+        return request.running;
+    }
+
+    private void run(HostQueue queue, WebhookRequest request) {
+        while (request != null) {
+            String url;
+            String value;
+            synchronized (queue) {
+                url = request.url;
+                value = request.value;
+            }
+
+            ListenableFuture<?> future;
+            try {
+                future = request.send(httpclient, url, value);
+            } catch (Exception e) {
+                log.debug("Error sending webhook.", e);
+                future = null;
+            }
+
+            if (future != null) {
+                globalStats.mark(WEB_HOOKS);
+                WebhookRequest sent = request;
+                //null executor - listener is called in the thread that completes the request,
+                //or right within addListener when request is already completed. In the last case
+                //the next request is started by this loop, so the stack doesn't grow with the queue.
+                //Whoever comes second - the listener or this thread - starts the next request.
+                AtomicBoolean handOff = new AtomicBoolean();
+                future.addListener(() -> {
+                    globalStats.markWebhookCompleted(System.currentTimeMillis() - sent.createdTs);
+                    if (!handOff.compareAndSet(false, true)) {
+                        run(queue, complete(queue, sent));
+                    }
+                }, null);
+                if (handOff.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            request = complete(queue, request);
+        }
+    }
+
+    /**
+     * @return next request to start instead of the completed one.
+     */
+    private WebhookRequest complete(HostQueue queue, WebhookRequest request) {
+        synchronized (queue) {
+            request.running = false;
+            if (request.dirty) {
+                request.dirty = false;
+                request.createdTs = System.currentTimeMillis();
+                queue.waiting.add(request);
+                globalStats.webhooksQueued.increment();
+            } else if (coalesce) {
+                queue.webhooks.remove(request.webHook);
+            }
+
+            WebhookRequest next = queue.waiting.poll();
+            if (next == null) {
+                queue.running--;
+                if (queue.running == 0) {
+                    queue.removed = true;
+                    hosts.remove(request.host, queue);
+                }
+                return null;
+            }
+            globalStats.webhooksQueued.decrement();
+            next.running = true;
+            return next;
+        }
+    }
+
+    private static final class HostQueue {
+        private int running;
+        private final ArrayDeque<WebhookRequest> waiting = new ArrayDeque<>();
+        //coalesced webhooks that have request waiting or running
+        private final Map<WebHook, WebhookRequest> webhooks = new IdentityHashMap<>();
+        //empty queue is removed from the hosts map, the one who got it has to take another one
+        private boolean removed;
+    }
+}
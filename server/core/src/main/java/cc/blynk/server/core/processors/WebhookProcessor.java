@@ -7,36 +7,16 @@ import cc.blynk.server.core.model.enums.PinType;
 import cc.blynk.server.core.model.widgets.others.webhook.Header;
 import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
 import cc.blynk.server.core.protocol.enums.Command;
-import cc.blynk.server.core.stats.GlobalStats;
-import cc.blynk.utils.StringUtils;
 import io.netty.util.CharsetUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.asynchttpclient.AsyncCompletionHandler;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.BoundRequestBuilder;
-import org.asynchttpclient.DefaultAsyncHttpClient;
 import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.Response;
 
-import java.time.Instant;
-import java.util.regex.Matcher;
-
-import static cc.blynk.server.core.protocol.enums.Command.WEB_HOOKS;
-import static cc.blynk.utils.StringUtils.DATETIME_PATTERN;
-import static cc.blynk.utils.StringUtils.GENERIC_PLACEHOLDER;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_0;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_1;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_2;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_3;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_4;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_5;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_6;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_7;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_8;
-import static cc.blynk.utils.StringUtils.PIN_PATTERN_9;
-
 /**
  * Handles all webhooks logic.
  *
@@ -49,20 +29,18 @@ public class WebhookProcessor extends NotificationBase {
     private static final Logger log = LogManager.getLogger(WebhookProcessor.class);
     private static final String CONTENT_TYPE = "Content-Type";
 
-    private final AsyncHttpClient httpclient;
-    private final GlobalStats globalStats;
+    private final WebhookDispatcher dispatcher;
     private final int responseSizeLimit;
     private final String email;
     private final int webhookFailureLimit;
 
-    public WebhookProcessor(DefaultAsyncHttpClient httpclient,
+    public WebhookProcessor(WebhookDispatcher dispatcher,
                             long quotaFrequencyLimit,
                             int responseSizeLimit,
                             int failureLimit,
-                            GlobalStats stats, String email) {
+                            String email) {
         super(quotaFrequencyLimit);
-        this.httpclient = httpclient;
-        this.globalStats = stats;
+        this.dispatcher = dispatcher;
         this.responseSizeLimit = responseSizeLimit;
         this.email = email;
         this.webhookFailureLimit = failureLimit;
@@ -82,21 +60,31 @@ public class WebhookProcessor extends NotificationBase {
         }
     }
 
-    private void process(Session session, int dashId, int deviceId,  WebHook webHook, String triggerValue) {
-        String newUrl = format(webHook.url, triggerValue);
+    private void process(Session session, int dashId, int deviceId, WebHook webHook, String triggerValue) {
+        String newUrl = webHook.formatUrl(triggerValue);
 
         if (!WebHook.isValidUrl(newUrl)) {
             return;
         }
 
+        dispatcher.dispatch(new WebhookRequest(webHook, newUrl, triggerValue) {
+            @Override
+            ListenableFuture<?> send(AsyncHttpClient httpclient, String url, String value) {
+                return WebhookProcessor.this.send(httpclient, session, dashId, deviceId, webHook, url, value);
+            }
+        });
+    }
+
+    private ListenableFuture<?> send(AsyncHttpClient httpclient, Session session, int dashId, int deviceId,
+                                     WebHook webHook, String url, String value) {
         BoundRequestBuilder builder;
         try {
-            builder = httpclient.prepare(webHook.method.name(), newUrl);
+            builder = httpclient.prepare(webHook.method.name(), url);
         } catch (NumberFormatException nfe) {
             //this is known possible error due to malformed input
             //https://github.com/blynkkk/blynk-server/issues/1001
             log.debug("Error during webhook initialization.", nfe);
-            return;
+            return null;
         }
 
         if (webHook.headers != null) {
@@ -105,7 +93,7 @@ public class WebhookProcessor extends NotificationBase {
                     builder.setHeader(header.name, header.value);
                     if (webHook.body != null && !webHook.body.isEmpty()) {
                         if (CONTENT_TYPE.equals(header.name)) {
-                            String newBody = format(webHook.body, triggerValue);
+                            String newBody = webHook.formatBody(value);
                             log.trace("Webhook formatted body : {}", newBody);
                             builder.setBody(newBody);
                         }
@@ -115,7 +103,7 @@ public class WebhookProcessor extends NotificationBase {
         }
 
         log.trace("Sending webhook. ", webHook);
-        builder.execute(new AsyncCompletionHandler<Response>() {
+        return builder.execute(new AsyncCompletionHandler<Response>() {
 
             private int length = 0;
 
@@ -161,7 +149,6 @@ public class WebhookProcessor extends NotificationBase {
                 }
             }
         });
-        globalStats.mark(WEB_HOOKS);
     }
 
     private static boolean isValidResponseCode(int responseCode) {
@@ -174,38 +161,4 @@ public class WebhookProcessor extends NotificationBase {
                 return false;
         }
     }
-
-    private static String format(String data, String triggerValue) {
-        //this is an ugly hack to make it work with Blynk HTTP API.
-        String quotedValue = Matcher.quoteReplacement(triggerValue);
-        data = PIN_PATTERN.matcher(data).replaceFirst(quotedValue);
-
-        String[] splitted = quotedValue.split(StringUtils.BODY_SEPARATOR_STRING);
-        switch (splitted.length) {
-            case 10 :
-                data = PIN_PATTERN_9.matcher(data).replaceFirst(splitted[9]);
-            case 9 :
-                data = PIN_PATTERN_8.matcher(data).replaceFirst(splitted[8]);
-            case 8 :
-                data = PIN_PATTERN_7.matcher(data).replaceFirst(splitted[7]);
-            case 7 :
-                data = PIN_PATTERN_6.matcher(data).replaceFirst(splitted[6]);
-            case 6 :
-                data = PIN_PATTERN_5.matcher(data).replaceFirst(splitted[5]);
-            case 5 :
-                data = PIN_PATTERN_4.matcher(data).replaceFirst(splitted[4]);
-            case 4 :
-                data = PIN_PATTERN_3.matcher(data).replaceFirst(splitted[3]);
-            case 3 :
-                data = PIN_PATTERN_2.matcher(data).replaceFirst(splitted[2]);
-            case 2 :
-                data = PIN_PATTERN_1.matcher(data).replaceFirst(splitted[1]);
-            case 1 :
-                data = PIN_PATTERN_0.matcher(data).replaceFirst(splitted[0]);
-            default :
-                data = GENERIC_PLACEHOLDER.matcher(data).replaceFirst(quotedValue);
-                data = DATETIME_PATTERN.matcher(data).replaceFirst(Instant.now().toString());
-        }
-        return data;
-    }
 }
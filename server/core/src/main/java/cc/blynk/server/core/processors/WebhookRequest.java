@@ -0,0 +1,51 @@
+package cc.blynk.server.core.processors;
+
+import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
+
+/**
+ * Webhook call waiting in the WebhookDispatcher queue.
+ * With coalescing the same request is kept for the webhook and takes the latest value,
+ * all fields except webHook and host are guarded by the host queue lock of the dispatcher.
+ */
+abstract class WebhookRequest {
+
+    final WebHook webHook;
+    final String host;
+
+    String url;
+    String value;
+    long createdTs;
+
+    boolean running;
+    //new value came while request was running, so it has to be sent once again
+    boolean dirty;
+
+    WebhookRequest(WebHook webHook, String url, String value) {
+        this.webHook = webHook;
+        this.host = host(url);
+        this.url = url;
+        this.value = value;
+        this.createdTs = System.currentTimeMillis();
+    }
+
+    /**
+     * @return future of the started request or null if request couldn't be started.
+     */
+    abstract ListenableFuture<?> send(AsyncHttpClient httpclient, String url, String value);
+
+    static String host(String url) {
+        int start = url.indexOf("://");
+        start = start == -1 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        return url.substring(start, end);
+    }
+}
@@ -110,6 +110,13 @@ public final class Command {
     public static final short OUTDATED_APP_NOTIFICATION = 72;
     public static final short TRACK_DEVICE = 73;
     public static final short GET_PROVISION_TOKEN = 74;
+    //same request as GET_GRAPH_DATA, response is sequence of GRAPH_DATA_CHUNK followed by the OK response
+    public static final short GET_GRAPH_DATA_STREAM = 75;
+    public static final short GRAPH_DATA_CHUNK = 76;
+    //same requests as APP_SYNC and HARDWARE_SYNC of all pins, response is the message with the same command
+    //that contains all sync messages, see BulkSyncCollector
+    public static final short APP_SYNC_BULK = 77;
+    public static final short HARDWARE_SYNC_BULK = 78;
 
     //http codes. Used only for stats
     public static final short HTTP_IS_HARDWARE_CONNECTED = 82;
@@ -199,6 +206,10 @@ public final class Command {
                 put(EMAIL_QR, "MailQRs");
                 put(UPDATE_FACE, "UpdateFace");
                 put(GET_PROVISION_TOKEN, "getProvisionToken");
+                put(GET_GRAPH_DATA_STREAM, "GetGraphDataStream");
+                put(GRAPH_DATA_CHUNK, "GraphDataChunk");
+                put(APP_SYNC_BULK, "AppSyncBulk");
+                put(HARDWARE_SYNC_BULK, "HardwareSyncBulk");
 
                 put(HARDWARE_LOG_EVENT, "HardwareLogEvent");
                 put(HARDWARE_RESEND_FROM_BLUETOOTH, "HardwareResendFromBluetooth");
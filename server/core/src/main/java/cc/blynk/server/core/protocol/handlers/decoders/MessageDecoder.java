@@ -4,6 +4,7 @@ import cc.blynk.server.Limits;
 import cc.blynk.server.core.protocol.enums.Command;
 import cc.blynk.server.core.protocol.model.messages.MessageBase;
 import cc.blynk.server.core.protocol.model.messages.ResponseMessage;
+import cc.blynk.server.core.protocol.model.messages.common.LazyHardwareMessage;
 import cc.blynk.server.core.stats.GlobalStats;
 import cc.blynk.server.core.stats.metrics.InstanceLoadMeter;
 import cc.blynk.server.handlers.QuotaLimitChecker;
@@ -31,10 +32,17 @@ public class MessageDecoder extends ByteToMessageDecoder {
 
     private final GlobalStats stats;
     private final QuotaLimitChecker limitChecker;
+    //clients that expect string hardware messages disable it
+    private final boolean lazyHardwareBody;
 
     public MessageDecoder(GlobalStats stats, Limits limits) {
+        this(stats, limits, true);
+    }
+
+    public MessageDecoder(GlobalStats stats, Limits limits, boolean lazyHardwareBody) {
         this.stats = stats;
         this.limitChecker = new QuotaLimitChecker(limits.userQuotaLimit);
+        this.lazyHardwareBody = lazyHardwareBody;
     }
 
     @Override
@@ -62,7 +70,13 @@ public class MessageDecoder extends ByteToMessageDecoder {
                 return;
             }
 
-            message = produce(messageId, command, (String) in.readCharSequence(codeOrLength, CharsetUtil.UTF_8));
+            if (command == Command.HARDWARE && lazyHardwareBody) {
+                //most frequent message, body is parsed lazily by the handler
+                message = new LazyHardwareMessage(messageId, in.readRetainedSlice(codeOrLength));
+            } else {
+                message = produce(messageId, command,
+                        (String) in.readCharSequence(codeOrLength, CharsetUtil.UTF_8));
+            }
         }
 
         log.trace("Incoming {}", message);
@@ -1,11 +1,13 @@
 package cc.blynk.server.core.protocol.handlers.encoders;
 
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
 import cc.blynk.server.core.protocol.model.messages.MessageBase;
 import cc.blynk.server.core.protocol.model.messages.ResponseMessage;
 import cc.blynk.server.core.stats.GlobalStats;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 /**
@@ -24,6 +26,18 @@ public class AppMessageEncoder extends MessageToByteEncoder<MessageBase> {
         this.stats = stats;
     }
 
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        //body is already in the pooled buffer, so header is written in place
+        if (msg instanceof ByteBufMessage) {
+            ByteBufMessage message = (ByteBufMessage) msg;
+            stats.mark(message.command);
+            ctx.write(message.toFrame(4), promise);
+        } else {
+            super.write(ctx, msg, promise);
+        }
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, MessageBase message, ByteBuf out) throws Exception {
         out.writeByte(message.command);
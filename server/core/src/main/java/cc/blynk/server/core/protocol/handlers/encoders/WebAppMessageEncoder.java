@@ -1,5 +1,6 @@
 package cc.blynk.server.core.protocol.handlers.encoders;
 
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
 import cc.blynk.server.core.protocol.model.messages.MessageBase;
 import cc.blynk.server.core.protocol.model.messages.ResponseMessage;
 import io.netty.buffer.ByteBuf;
@@ -27,7 +28,9 @@ public class WebAppMessageEncoder extends ChannelOutboundHandlerAdapter {
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         log.debug("In webapp socket encoder {}", msg);
-        if (msg instanceof MessageBase) {
+        if (msg instanceof ByteBufMessage) {
+            super.write(ctx, new BinaryWebSocketFrame(((ByteBufMessage) msg).toFrame(0)), promise);
+        } else if (msg instanceof MessageBase) {
             MessageBase message = (MessageBase) msg;
             ByteBuf out = ByteBufAllocator.DEFAULT.buffer();
             out.writeByte(message.command);
@@ -0,0 +1,109 @@
+package cc.blynk.server.core.protocol.model.messages;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * Message with body in the pooled buffer. Body buffer has space reserved for the message header,
+ * so encoders write header in place and pass the buffer to the socket without copying the body.
+ * Message owns the buffer, it is released when message is written.
+ */
+public class ByteBufMessage extends MessageBase implements ReferenceCounted {
+
+    //command (1 byte) + message id (2 bytes) + max body length field (4 bytes)
+    private static final int HEADER_RESERVE = 7;
+
+    private final ByteBuf body;
+
+    /**
+     * @param body - buffer created with newBody.
+     */
+    public ByteBufMessage(int messageId, short command, ByteBuf body) {
+        super(messageId, command);
+        this.body = body;
+    }
+
+    /**
+     * Heap buffer is used, so body could be written directly from the java arrays based APIs, like Deflater.
+     */
+    public static ByteBuf newBody(ByteBufAllocator alloc) {
+        ByteBuf body = alloc.heapBuffer();
+        body.setIndex(HEADER_RESERVE, HEADER_RESERVE);
+        return body;
+    }
+
+    /**
+     * Buffer of the allocator default type (direct for the network), when body size is known.
+     */
+    public static ByteBuf newBody(ByteBufAllocator alloc, int bodyLength) {
+        ByteBuf body = alloc.buffer(HEADER_RESERVE + bodyLength);
+        body.setIndex(HEADER_RESERVE, HEADER_RESERVE);
+        return body;
+    }
+
+    /**
+     * Writes header right before the body. Ownership of the returned buffer is passed to the caller.
+     *
+     * @param lengthFieldSize - size of the body length field. 4 for app, 2 for hardware, 0 for web sockets.
+     */
+    public ByteBuf toFrame(int lengthFieldSize) {
+        int length = body.readableBytes();
+        int headerIndex = body.readerIndex() - 3 - lengthFieldSize;
+        body.setByte(headerIndex, command);
+        body.setShort(headerIndex + 1, id);
+        if (lengthFieldSize == 4) {
+            body.setInt(headerIndex + 3, length);
+        } else if (lengthFieldSize == 2) {
+            body.setShort(headerIndex + 3, length);
+        }
+        body.readerIndex(headerIndex);
+        return body;
+    }
+
+    //copy for the encoders that don't support in place header
+    @Override
+    public byte[] getBytes() {
+        return ByteBufUtil.getBytes(body);
+    }
+
+    @Override
+    public int refCnt() {
+        return body.refCnt();
+    }
+
+    @Override
+    public ByteBufMessage retain() {
+        body.retain();
+        return this;
+    }
+
+    @Override
+    public ByteBufMessage retain(int increment) {
+        body.retain(increment);
+        return this;
+    }
+
+    @Override
+    public ByteBufMessage touch() {
+        body.touch();
+        return this;
+    }
+
+    @Override
+    public ByteBufMessage touch(Object hint) {
+        body.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return body.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return body.release(decrement);
+    }
+}
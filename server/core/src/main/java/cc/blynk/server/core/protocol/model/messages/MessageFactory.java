@@ -12,6 +12,7 @@ import static cc.blynk.server.core.protocol.enums.Command.ADD_ENERGY;
 import static cc.blynk.server.core.protocol.enums.Command.ADD_PUSH_TOKEN;
 import static cc.blynk.server.core.protocol.enums.Command.APP_CONNECTED;
 import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC;
+import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC_BULK;
 import static cc.blynk.server.core.protocol.enums.Command.ASSIGN_TOKEN;
 import static cc.blynk.server.core.protocol.enums.Command.BLYNK_INTERNAL;
 import static cc.blynk.server.core.protocol.enums.Command.BRIDGE;
@@ -39,6 +40,7 @@ import static cc.blynk.server.core.protocol.enums.Command.GET_DEVICES;
 import static cc.blynk.server.core.protocol.enums.Command.GET_ENERGY;
 import static cc.blynk.server.core.protocol.enums.Command.GET_ENHANCED_GRAPH_DATA;
 import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA;
+import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA_STREAM;
 import static cc.blynk.server.core.protocol.enums.Command.GET_PROJECT_BY_CLONE_CODE;
 import static cc.blynk.server.core.protocol.enums.Command.GET_PROJECT_BY_TOKEN;
 import static cc.blynk.server.core.protocol.enums.Command.GET_PROVISION_TOKEN;
@@ -51,6 +53,7 @@ import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_CONNECTED;
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_RESEND_FROM_BLUETOOTH;
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_SYNC;
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_SYNC_BULK;
 import static cc.blynk.server.core.protocol.enums.Command.LOAD_PROFILE_GZIPPED;
 import static cc.blynk.server.core.protocol.enums.Command.LOGIN;
 import static cc.blynk.server.core.protocol.enums.Command.LOGOUT;
@@ -102,6 +105,7 @@ public final class MessageFactory {
             case LOGOUT :
             case LOAD_PROFILE_GZIPPED :
             case APP_SYNC:
+            case APP_SYNC_BULK :
             case SHARING :
             case GET_TOKEN :
             case ASSIGN_TOKEN :
@@ -109,6 +113,7 @@ public final class MessageFactory {
             case DEACTIVATE_DASHBOARD :
             case REFRESH_TOKEN :
             case GET_GRAPH_DATA :
+            case GET_GRAPH_DATA_STREAM :
             case GET_ENHANCED_GRAPH_DATA :
             case DELETE_ENHANCED_GRAPH_DATA :
             case EXPORT_GRAPH_DATA :
@@ -129,6 +134,7 @@ public final class MessageFactory {
             case UPDATE_PROJECT_SETTINGS :
             case ADD_PUSH_TOKEN :
             case HARDWARE_SYNC :
+            case HARDWARE_SYNC_BULK :
             case BLYNK_INTERNAL :
             case CREATE_WIDGET :
             case UPDATE_WIDGET :
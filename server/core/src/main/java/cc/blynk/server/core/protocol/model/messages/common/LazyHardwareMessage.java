@@ -0,0 +1,168 @@
+package cc.blynk.server.core.protocol.model.messages.common;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.protocol.model.messages.MessageBase;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCounted;
+
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
+import static cc.blynk.utils.StringUtils.BODY_SEPARATOR;
+
+/**
+ * Hardware message that keeps the slice of the inbound buffer instead of the body string.
+ * Pin type, pin and value of the write command are parsed right from the bytes on demand,
+ * so only value string is created and body could be forwarded to the apps without re-encoding.
+ * Message is released by the handler after processing.
+ */
+public final class LazyHardwareMessage extends MessageBase implements ReferenceCounted {
+
+    private static final int NOT_PARSED = -2;
+    private static final int NOT_FOUND = -1;
+
+    public final ByteBuf body;
+
+    //absolute indexes of the body separators
+    private int firstSeparator = NOT_PARSED;
+    private int secondSeparator = NOT_PARSED;
+
+    public LazyHardwareMessage(int messageId, ByteBuf body) {
+        super(messageId, HARDWARE);
+        this.body = body;
+    }
+
+    public int length() {
+        return body.readableBytes();
+    }
+
+    public boolean isWriteOperation() {
+        return body.readableBytes() > 1 && body.getByte(body.readerIndex() + 1) == 'w';
+    }
+
+    private void parse() {
+        if (firstSeparator == NOT_PARSED) {
+            int end = body.writerIndex();
+            //same as StringUtils.split3() - separator is searched starting from the second char
+            firstSeparator = body.readableBytes() < 2
+                    ? NOT_FOUND
+                    : body.indexOf(body.readerIndex() + 1, end, (byte) BODY_SEPARATOR);
+            secondSeparator = firstSeparator == NOT_FOUND
+                    ? NOT_FOUND
+                    : body.indexOf(firstSeparator + 1, end, (byte) BODY_SEPARATOR);
+        }
+    }
+
+    /**
+     * @return true if body has pin type, pin and not empty value parts, like "vw\01\0value".
+     */
+    public boolean hasPinAndValue() {
+        parse();
+        return secondSeparator != NOT_FOUND && secondSeparator + 1 < body.writerIndex();
+    }
+
+    /**
+     * Should be called only when hasPinAndValue() is true.
+     */
+    public PinType getPinType() {
+        return PinType.getPinType((char) body.getByte(body.readerIndex()));
+    }
+
+    /**
+     * Parses pin the same way as Byte.parseByte(), but from the bytes.
+     * Should be called only when hasPinAndValue() is true.
+     */
+    public byte getPin() {
+        int index = firstSeparator + 1;
+        int end = secondSeparator;
+        boolean negative = false;
+        if (index < end) {
+            byte first = body.getByte(index);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                index++;
+            }
+        }
+        if (index == end) {
+            throw new NumberFormatException("Invalid pin.");
+        }
+        int pin = 0;
+        while (index < end) {
+            int digit = body.getByte(index++) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid pin.");
+            }
+            pin = pin * 10 + digit;
+            if (pin > Byte.MAX_VALUE + 1) {
+                throw new NumberFormatException("Invalid pin.");
+            }
+        }
+        pin = negative ? -pin : pin;
+        if (pin > Byte.MAX_VALUE) {
+            throw new NumberFormatException("Invalid pin.");
+        }
+        return (byte) pin;
+    }
+
+    /**
+     * Should be called only when hasPinAndValue() is true.
+     */
+    public String getValue() {
+        int valueIndex = secondSeparator + 1;
+        return body.toString(valueIndex, body.writerIndex() - valueIndex, CharsetUtil.UTF_8);
+    }
+
+    public String getBody() {
+        return body.toString(CharsetUtil.UTF_8);
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return ByteBufUtil.getBytes(body);
+    }
+
+    @Override
+    public int refCnt() {
+        return body.refCnt();
+    }
+
+    @Override
+    public LazyHardwareMessage retain() {
+        body.retain();
+        return this;
+    }
+
+    @Override
+    public LazyHardwareMessage retain(int increment) {
+        body.retain(increment);
+        return this;
+    }
+
+    @Override
+    public LazyHardwareMessage touch() {
+        body.touch();
+        return this;
+    }
+
+    @Override
+    public LazyHardwareMessage touch(Object hint) {
+        body.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return body.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return body.release(decrement);
+    }
+
+    @Override
+    public String toString() {
+        return "HardwareMessage{" + super.toString() + ", body='" + getBody() + "'}";
+    }
+
+}
@@ -0,0 +1,162 @@
+package cc.blynk.server.core.reporting;
+
+import cc.blynk.server.core.dao.ReportingDao;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.protocol.exceptions.NoDataException;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
+
+/**
+ * Streams history graph data through the deflater right into the response buffer.
+ * Every pin is read into the pooled buffer that is released right after compression,
+ * so big graphs don't create any short living arrays.
+ *
+ * Uncompressed format : dash id (int), pins * (records count (int), records).
+ * For the streaming responses uncompressed data is split into the chunks of the fixed size,
+ * every chunk is compressed separately and passed further as soon as it is ready.
+ */
+public final class GraphDataDeflater {
+
+    //graphs are read within the history threads only, so deflater is reused per thread
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final int MIN_WRITABLE_BYTES = 1024;
+
+    private GraphDataDeflater() {
+    }
+
+    /**
+     * @param out - heap buffer for the compressed data.
+     */
+    public static void deflate(ReportingDao reportingDao, User user,
+                               GraphPinRequest[] requestedPins, ByteBuf out) throws NoDataException {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        try {
+            boolean hasData = false;
+            for (int i = 0; i < requestedPins.length; i++) {
+                ByteBuf pinData = out.alloc().heapBuffer();
+                try {
+                    if (i == 0) {
+                        pinData.writeInt(requestedPins[0].dashId);
+                    }
+                    int countIndex = pinData.writerIndex();
+                    pinData.writeInt(0);
+                    int read = reportingDao.read(user, requestedPins[i], pinData);
+                    pinData.setInt(countIndex, read / SIZE_OF_REPORT_ENTRY);
+                    hasData |= read > 0;
+
+                    deflater.setInput(pinData.array(),
+                            pinData.arrayOffset() + pinData.readerIndex(), pinData.readableBytes());
+                    while (!deflater.needsInput()) {
+                        deflate(deflater, out);
+                    }
+                } finally {
+                    pinData.release();
+                }
+            }
+
+            if (!hasData) {
+                throw new NoDataException();
+            }
+
+            finish(deflater, out);
+        } finally {
+            //input array goes back to the pool, so deflater should not refer it
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Reads pins one by one and splits uncompressed data into the chunks of chunkSize bytes.
+     * Every chunk is compressed separately into the body created with ByteBufMessage.newBody(),
+     * so compressed chunk is never much bigger than chunkSize.
+     * Chunks are passed only when some data is found, so NoDataException is thrown before any chunk.
+     *
+     * @param chunks - receives chunks in order, ownership of the chunk is passed to the consumer.
+     */
+    public static void deflateChunks(ReportingDao reportingDao, User user, GraphPinRequest[] requestedPins,
+                                     ByteBufAllocator alloc, int chunkSize,
+                                     Consumer<ByteBuf> chunks) throws NoDataException {
+        Deflater deflater = DEFLATER.get();
+        ByteBuf chunk = null;
+        int chunkInput = 0;
+        try {
+            boolean hasData = false;
+            for (int i = 0; i < requestedPins.length; i++) {
+                ByteBuf pinData = alloc.heapBuffer();
+                try {
+                    if (i == 0) {
+                        pinData.writeInt(requestedPins[0].dashId);
+                    }
+                    int countIndex = pinData.writerIndex();
+                    pinData.writeInt(0);
+                    int read = reportingDao.read(user, requestedPins[i], pinData);
+                    pinData.setInt(countIndex, read / SIZE_OF_REPORT_ENTRY);
+                    hasData |= read > 0;
+
+                    while (pinData.isReadable()) {
+                        if (chunk == null) {
+                            deflater.reset();
+                            chunk = ByteBufMessage.newBody(alloc);
+                            chunkInput = 0;
+                        } else if (hasData && chunkInput >= chunkSize) {
+                            finish(deflater, chunk);
+                            ByteBuf ready = chunk;
+                            chunk = null;
+                            chunks.accept(ready);
+                            continue;
+                        }
+
+                        //until data is found chunk isn't passed, it may only grow with the empty pins headers
+                        int length = hasData
+                                ? Math.min(pinData.readableBytes(), chunkSize - chunkInput)
+                                : pinData.readableBytes();
+                        deflater.setInput(pinData.array(), pinData.arrayOffset() + pinData.readerIndex(), length);
+                        while (!deflater.needsInput()) {
+                            deflate(deflater, chunk);
+                        }
+                        pinData.skipBytes(length);
+                        chunkInput += length;
+                    }
+                } finally {
+                    pinData.release();
+                }
+            }
+
+            if (!hasData) {
+                throw new NoDataException();
+            }
+
+            finish(deflater, chunk);
+            ByteBuf ready = chunk;
+            chunk = null;
+            chunks.accept(ready);
+        } finally {
+            if (chunk != null) {
+                chunk.release();
+            }
+            deflater.reset();
+        }
+    }
+
+    private static void finish(Deflater deflater, ByteBuf out) {
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate(deflater, out);
+        }
+    }
+
+    private static void deflate(Deflater deflater, ByteBuf out) {
+        out.ensureWritable(MIN_WRITABLE_BYTES);
+        int writerIndex = out.writerIndex();
+        int written = deflater.deflate(out.array(), out.arrayOffset() + writerIndex, out.writableBytes());
+        out.writerIndex(writerIndex + written);
+    }
+
+}
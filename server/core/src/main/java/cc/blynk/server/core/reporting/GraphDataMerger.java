@@ -0,0 +1,87 @@
+package cc.blynk.server.core.reporting;
+
+import cc.blynk.server.core.dao.functions.GraphFunction;
+import io.netty.buffer.ByteBuf;
+
+import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
+
+/**
+ * Merges history graph data of many devices into one series. Data of every device is sorted by timestamp,
+ * so sources are merged with binary heap ordered by the timestamp of the current record of every source.
+ * Function is applied to all values with the same timestamp and result is written right to the output.
+ * Merge doesn't create any objects per record.
+ */
+public final class GraphDataMerger {
+
+    private static final int TS_OFFSET = 8;
+
+    private GraphDataMerger() {
+    }
+
+    /**
+     * @param records - records of all sources, value (double) and timestamp (long) each.
+     * @param offsets - source i occupies records from offsets[i] till offsets[i + 1].
+     * @return - number of bytes written to the target.
+     */
+    public static int merge(ByteBuf records, int[] offsets, GraphFunction function, ByteBuf target) {
+        int sourcesCount = offsets.length - 1;
+        //position and timestamp of the current record of every source
+        int[] positions = new int[sourcesCount];
+        long[] timestamps = new long[sourcesCount];
+        //sources ordered by the timestamp of the current record
+        int[] heap = new int[sourcesCount];
+        int heapSize = 0;
+        for (int source = 0; source < sourcesCount; source++) {
+            positions[source] = offsets[source];
+            if (positions[source] < offsets[source + 1]) {
+                timestamps[source] = records.getLong(positions[source] + TS_OFFSET);
+                heap[heapSize++] = source;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(timestamps, heap, heapSize, i);
+        }
+
+        int writerIndex = target.writerIndex();
+        while (heapSize > 0) {
+            long ts = timestamps[heap[0]];
+            function.reset();
+            while (heapSize > 0 && timestamps[heap[0]] == ts) {
+                int source = heap[0];
+                int position = positions[source];
+                function.apply(records.getDouble(position));
+                position += SIZE_OF_REPORT_ENTRY;
+                positions[source] = position;
+                if (position < offsets[source + 1]) {
+                    timestamps[source] = records.getLong(position + TS_OFFSET);
+                } else {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(timestamps, heap, heapSize, 0);
+            }
+            target.writeDouble(function.getResult())
+                  .writeLong(ts);
+        }
+        return target.writerIndex() - writerIndex;
+    }
+
+    private static void siftDown(long[] timestamps, int[] heap, int heapSize, int index) {
+        int source = heap[index];
+        long ts = timestamps[source];
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < heapSize && timestamps[heap[right]] < timestamps[heap[child]]) {
+                child = right;
+            }
+            if (ts <= timestamps[heap[child]]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = source;
+    }
+
+}
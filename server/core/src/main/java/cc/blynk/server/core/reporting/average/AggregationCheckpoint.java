@@ -0,0 +1,404 @@
+package cc.blynk.server.core.reporting.average;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.reporting.raw.BaseReportingKey;
+import cc.blynk.utils.FileUtils;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Write-ahead log of the in-flight aggregates, so they survive server crash.
+ * Every checkpoint appends entries changed since the previous checkpoint to the end of the log
+ * with single write. Entries hold absolute sum and count, so the last record of the entry wins on replay.
+ * When log grows too big it is replaced with the new one that has only actual entries.
+ *
+ * Log layout :
+ * header - magic (int), version (int)
+ * batches - payload length (int), payload crc32 (int), payload with records
+ * series record - tag (byte), email, app name (length (int) + utf-8 bytes),
+ *                 dash id (int), device id (int), pin type (byte), pin (byte)
+ * entry record - tag (byte), map index (byte), series index (int), period (int), sum (double), count (long)
+ * removal record - tag (byte), map index (byte), period all previous periods were removed before (long)
+ * Series index is the number of the series record within the log.
+ * Crash between the flush of the aggregates and the next checkpoint leaves already flushed entries
+ * in the log, so replayed entries are marked and checked against the reporting file on the flush.
+ */
+public final class AggregationCheckpoint implements Closeable {
+
+    //"BWAL"
+    private static final int MAGIC = 0x4257414C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BATCH_HEADER_SIZE = 8;
+
+    private static final byte SERIES = 1;
+    private static final byte ENTRY = 2;
+    private static final byte REMOVAL = 3;
+    private static final int ENTRY_SIZE = 26;
+    private static final int REMOVAL_SIZE = 10;
+    private static final int NULL_STRING = -1;
+
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final long MIN_COMPACTION_SIZE = 16 * 1024 * 1024;
+
+    private final Path logPath;
+    private final SeriesRegistry seriesRegistry;
+    private final AggregationMap[] maps;
+    private final long[] writtenRemovedBefore;
+    private final CRC32 crc;
+
+    private FileChannel channel;
+    private ByteBuffer batch;
+    //registry series id -> index of the series record in the log + 1
+    private int[] seriesIndexes;
+    private int seriesCount;
+    private long compactedSize;
+    private boolean isCompactionRequired;
+    private boolean isClosed;
+
+    AggregationCheckpoint(Path logPath, SeriesRegistry seriesRegistry, AggregationMap... maps) {
+        this.logPath = logPath;
+        this.seriesRegistry = seriesRegistry;
+        this.maps = maps;
+        this.writtenRemovedBefore = new long[maps.length];
+        this.crc = new CRC32();
+        this.batch = ByteBuffer.allocate(BATCH_SIZE);
+        this.seriesIndexes = new int[0];
+    }
+
+    /**
+     * Creates new log with all current entries. Checkpoints are ignored until log is started.
+     */
+    synchronized void start() throws IOException {
+        if (channel == null && !isClosed) {
+            compact();
+        }
+    }
+
+    /**
+     * Next checkpoint rewrites the log, so it doesn't contain entries of the removed series
+     * and doesn't refer the series by the ids that are going to be reused.
+     */
+    synchronized void requireCompaction() {
+        isCompactionRequired = true;
+    }
+
+    /**
+     * @return - number of bytes written to the log.
+     */
+    synchronized long checkpoint() throws IOException {
+        if (channel == null) {
+            return 0;
+        }
+        if (isCompactionRequired || channel.size() > Math.max(MIN_COMPACTION_SIZE, compactedSize * 2)) {
+            return compact();
+        }
+        try {
+            long written = writeEntries(channel, true);
+            channel.force(false);
+            return written;
+        } catch (IOException e) {
+            //changed entries are lost for this log
+            isCompactionRequired = true;
+            throw e;
+        }
+    }
+
+    private long compact() throws IOException {
+        Path tmp = logPath.resolveSibling(logPath.getFileName() + ".tmp");
+        seriesIndexes = new int[seriesRegistry.size()];
+        seriesCount = 0;
+        long written;
+        try (FileChannel compacted = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            writeFully(compacted, (ByteBuffer) ((Buffer) header).flip());
+            written = HEADER_SIZE + writeEntries(compacted, false);
+            compacted.force(false);
+            Files.move(tmp, logPath, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            isCompactionRequired = true;
+            throw e;
+        }
+
+        closeChannel();
+        channel = FileChannel.open(logPath, WRITE, APPEND);
+        compactedSize = written;
+        isCompactionRequired = false;
+        //compaction of the big maps may grow batch a lot
+        if (batch.capacity() > BATCH_SIZE * 16) {
+            batch = ByteBuffer.allocate(BATCH_SIZE);
+        }
+        return written;
+    }
+
+    private long writeEntries(FileChannel target, boolean changedOnly) throws IOException {
+        ((Buffer) batch).clear().position(BATCH_HEADER_SIZE);
+        BatchWriter writer = new BatchWriter(target);
+        for (int i = 0; i < maps.length; i++) {
+            long removedBefore = maps[i].getRemovedBefore();
+            if (!changedOnly || removedBefore != writtenRemovedBefore[i]) {
+                ensureRemaining(REMOVAL_SIZE);
+                batch.put(REMOVAL).put((byte) i).putLong(removedBefore);
+                writtenRemovedBefore[i] = removedBefore;
+            }
+            writer.mapIndex = (byte) i;
+            maps[i].forEach(writer, changedOnly);
+        }
+        writer.flush();
+        return writer.written;
+    }
+
+    private void ensureRemaining(int size) {
+        if (batch.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + size));
+            ((Buffer) batch).flip();
+            batch = grown.put(batch);
+        }
+    }
+
+    private int getSeriesIndex(int seriesId) {
+        if (seriesId >= seriesIndexes.length) {
+            seriesIndexes = Arrays.copyOf(seriesIndexes, Math.max(seriesId + 1, seriesIndexes.length * 2));
+        }
+        int index = seriesIndexes[seriesId] - 1;
+        if (index < 0) {
+            BaseReportingKey key = seriesRegistry.getKey(seriesId);
+            byte[] email = toBytes(key.email);
+            byte[] appName = toBytes(key.appName);
+            ensureRemaining(1 + 4 + length(email) + 4 + length(appName) + 10);
+            batch.put(SERIES);
+            putString(email);
+            putString(appName);
+            batch.putInt(key.dashId)
+                 .putInt(key.deviceId)
+                 .put((byte) key.pinType.pintTypeChar)
+                 .put(key.pin);
+            index = seriesCount++;
+            seriesIndexes[seriesId] = index + 1;
+        }
+        return index;
+    }
+
+    private static byte[] toBytes(String string) {
+        return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private void putString(byte[] bytes) {
+        if (bytes == null) {
+            batch.putInt(NULL_STRING);
+        } else {
+            batch.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            target.write(data);
+        }
+    }
+
+    /**
+     * Adds all records from the log to the maps.
+     *
+     * @param maps - maps in the same order as for the checkpoint. Records of null map are skipped.
+     * @return - number of replayed records.
+     */
+    static long replay(Path logPath, SeriesRegistry seriesRegistry, AggregationMap... maps) throws IOException {
+        if (Files.notExists(logPath)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(logPath, READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Checkpoint log " + logPath + " is too big.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                if (size < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    throw new IOException("Unsupported checkpoint log format " + logPath);
+                }
+                return replay(buffer, seriesRegistry, maps);
+            } finally {
+                PlatformDependent.freeDirectBuffer(buffer);
+            }
+        }
+    }
+
+    private static long replay(ByteBuffer buffer, SeriesRegistry seriesRegistry, AggregationMap[] maps) {
+        CRC32 crc = new CRC32();
+        int[] seriesIds = new int[1024];
+        int seriesCount = 0;
+        long records = 0;
+        long[] lastPeriods = new long[maps.length];
+        Arrays.fill(lastPeriods, Long.MIN_VALUE);
+
+        //last batch may be partially written in case of crash, so everything after it is ignored
+        while (buffer.remaining() >= BATCH_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice();
+            ((Buffer) payload).limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            ((Buffer) buffer).position(buffer.position() + length);
+
+            while (payload.hasRemaining()) {
+                byte tag = payload.get();
+                switch (tag) {
+                    case SERIES :
+                        if (seriesCount == seriesIds.length) {
+                            seriesIds = Arrays.copyOf(seriesIds, seriesCount * 2);
+                        }
+                        String email = getString(payload);
+                        String appName = getString(payload);
+                        int dashId = payload.getInt();
+                        int deviceId = payload.getInt();
+                        PinType pinType = PinType.getPinType((char) payload.get());
+                        byte pin = payload.get();
+                        seriesIds[seriesCount++] = seriesRegistry.getId(email, appName, dashId, deviceId, pinType, pin);
+                        break;
+                    case ENTRY :
+                        byte mapIndex = payload.get();
+                        AggregationMap map = maps[mapIndex];
+                        int seriesIndex = payload.getInt();
+                        int period = payload.getInt();
+                        double sum = payload.getDouble();
+                        long count = payload.getLong();
+                        if (map != null) {
+                            map.set(seriesIds[seriesIndex], period, sum, count);
+                            lastPeriods[mapIndex] = Math.max(lastPeriods[mapIndex], period);
+                        }
+                        break;
+                    case REMOVAL :
+                        map = maps[payload.get()];
+                        long removedBefore = payload.getLong();
+                        if (map != null) {
+                            map.removeOutdated(removedBefore, null);
+                        }
+                        break;
+                    default :
+                        throw new IllegalStateException("Unknown checkpoint record " + tag);
+                }
+                records++;
+            }
+        }
+
+        for (int i = 0; i < maps.length; i++) {
+            if (maps[i] != null) {
+                maps[i].markReplayed(lastPeriods[i]);
+            }
+        }
+        return records;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //ignore
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Log is removed, as on normal shutdown all aggregates are stored with AggregationSnapshot.
+     */
+    @Override
+    public synchronized void close() {
+        isClosed = true;
+        closeChannel();
+        FileUtils.deleteQuietly(logPath);
+    }
+
+    /**
+     * Entries are collected within the batch while segment is locked.
+     * Batch is written to the log only after segment is released.
+     */
+    private final class BatchWriter implements AggregationMap.EntryConsumer {
+
+        private final FileChannel target;
+        private byte mapIndex;
+        private long written;
+
+        BatchWriter(FileChannel target) {
+            this.target = target;
+        }
+
+        @Override
+        public void accept(int seriesId, long period, double sum, long count) {
+            int seriesIndex = getSeriesIndex(seriesId);
+            ensureRemaining(ENTRY_SIZE);
+            batch.put(ENTRY)
+                 .put(mapIndex)
+                 .putInt(seriesIndex)
+                 .putInt((int) period)
+                 .putDouble(sum)
+                 .putLong(count);
+        }
+
+        @Override
+        public void segmentVisited() throws IOException {
+            if (batch.position() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            int length = batch.position() - BATCH_HEADER_SIZE;
+            if (length == 0) {
+                return;
+            }
+            crc.reset();
+            crc.update(batch.array(), BATCH_HEADER_SIZE, length);
+            batch.putInt(0, length)
+                 .putInt(4, (int) crc.getValue());
+            ((Buffer) batch).flip();
+            writeFully(target, batch);
+            written += batch.limit();
+            ((Buffer) batch).clear().position(BATCH_HEADER_SIZE);
+        }
+    }
+
+}
@@ -0,0 +1,337 @@
+package cc.blynk.server.core.reporting.average;
+
+import cc.blynk.server.core.reporting.raw.BaseReportingKey;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregation of the reporting values per (series id, period) with primitive keys and
+ * sum/count stored in parallel arrays. Aggregation of the value for already known period
+ * doesn't create any objects. Map is split into segments by series id,
+ * every segment is open addressing table guarded with own lock.
+ */
+public final class AggregationMap {
+
+    private static final int SEGMENTS_COUNT = 16;
+    private static final int SEGMENT_INITIAL_CAPACITY = 256;
+    //series id is never negative, so such key is not possible
+    private static final long EMPTY = -1L;
+
+    final SeriesRegistry seriesRegistry;
+    private final Segment[] segments;
+    //all periods before this one were already removed
+    private volatile long removedBefore = Long.MIN_VALUE;
+    //entries up to this period were replayed from the checkpoint log after crash,
+    //so they may be already flushed, in case crash happened right after the flush
+    private volatile long lastReplayedPeriod = Long.MIN_VALUE;
+
+    public AggregationMap(SeriesRegistry seriesRegistry) {
+        this.seriesRegistry = seriesRegistry;
+        this.segments = new Segment[SEGMENTS_COUNT];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Period is truncated to int. This is enough for minute period till year 6000.
+     */
+    private static long toKey(int seriesId, long period) {
+        return ((long) seriesId << 32) | (period & 0xFFFFFFFFL);
+    }
+
+    private static int getSeriesId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static long getPeriod(long key) {
+        return (int) key;
+    }
+
+    private Segment getSegment(int seriesId) {
+        return segments[seriesId & (SEGMENTS_COUNT - 1)];
+    }
+
+    public void aggregate(int seriesId, long period, double value) {
+        getSegment(seriesId).add(toKey(seriesId, period), value, 1);
+    }
+
+    void add(int seriesId, long period, double sum, long count) {
+        getSegment(seriesId).add(toKey(seriesId, period), sum, count);
+    }
+
+    void set(int seriesId, long period, double sum, long count) {
+        getSegment(seriesId).set(toKey(seriesId, period), sum, count);
+    }
+
+    /**
+     * Prepares segments for the expected amount of entries, so bulk load doesn't rehash.
+     */
+    void ensureCapacity(long expectedSize) {
+        long perSegment = expectedSize / SEGMENTS_COUNT + 1;
+        for (Segment segment : segments) {
+            segment.ensureCapacity(perSegment);
+        }
+    }
+
+    public void put(AggregationKey key, AggregationValue value) {
+        int seriesId = seriesRegistry.getId(key.getBaseReportingKey());
+        getSegment(seriesId).add(toKey(seriesId, key.ts), value.getSum(), value.getCount());
+    }
+
+    public void putAll(Map<AggregationKey, AggregationValue> map) {
+        for (Map.Entry<AggregationKey, AggregationValue> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public AggregationValue get(AggregationKey key) {
+        int seriesId = seriesRegistry.findId(key.getBaseReportingKey());
+        if (seriesId == SeriesRegistry.NO_ID) {
+            return null;
+        }
+        return getSegment(seriesId).get(toKey(seriesId, key.ts));
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all entries with period before the current one.
+     *
+     * @return - removed entries.
+     */
+    public Map<AggregationKey, AggregationValue> removeOutdated(long nowTruncatedToPeriod) {
+        Map<AggregationKey, AggregationValue> removed = new HashMap<>();
+        removeOutdated(nowTruncatedToPeriod, removed);
+        return removed;
+    }
+
+    void removeOutdated(long nowTruncatedToPeriod, Map<AggregationKey, AggregationValue> removed) {
+        for (Segment segment : segments) {
+            segment.removeOutdated(nowTruncatedToPeriod, removed);
+        }
+        if (nowTruncatedToPeriod > removedBefore) {
+            removedBefore = nowTruncatedToPeriod;
+        }
+    }
+
+    /**
+     * Removes all entries of the series.
+     */
+    void removeSeries(BitSet seriesIds) {
+        for (Segment segment : segments) {
+            segment.removeSeries(seriesIds);
+        }
+    }
+
+    long getRemovedBefore() {
+        return removedBefore;
+    }
+
+    void markReplayed(long lastPeriod) {
+        if (lastPeriod > lastReplayedPeriod) {
+            lastReplayedPeriod = lastPeriod;
+        }
+    }
+
+    /**
+     * @return true in case entry of the period was replayed after crash and may be already flushed.
+     */
+    public boolean isReplayed(long period) {
+        return period <= lastReplayedPeriod;
+    }
+
+    /**
+     * Visits all entries. Segment is locked while its entries are visited.
+     */
+    void forEach(EntryConsumer consumer) throws IOException {
+        forEach(consumer, false);
+    }
+
+    /**
+     * Visited entries are marked as not changed.
+     *
+     * @param changedOnly - visit only entries changed since the previous visit.
+     */
+    void forEach(EntryConsumer consumer, boolean changedOnly) throws IOException {
+        for (Segment segment : segments) {
+            segment.forEach(consumer, changedOnly);
+            consumer.segmentVisited();
+        }
+    }
+
+    private AggregationKey toAggregationKey(long key) {
+        BaseReportingKey baseReportingKey = seriesRegistry.getKey(getSeriesId(key));
+        return new AggregationKey(baseReportingKey, getPeriod(key));
+    }
+
+    private final class Segment {
+
+        private long[] keys;
+        private double[] sums;
+        private long[] counts;
+        //entries changed since the last checkpoint
+        private boolean[] changed;
+        private int size;
+
+        Segment() {
+            allocate(SEGMENT_INITIAL_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            this.keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            this.sums = new double[capacity];
+            this.counts = new long[capacity];
+            this.changed = new boolean[capacity];
+        }
+
+        private int indexOf(long key) {
+            int mask = keys.length - 1;
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int i = (int) (hash ^ (hash >>> 32)) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        synchronized void add(long key, double sum, long count) {
+            int index = insert(key);
+            sums[index] += sum;
+            counts[index] += count;
+            changed[index] = true;
+        }
+
+        synchronized void set(long key, double sum, long count) {
+            int index = insert(key);
+            sums[index] = sum;
+            counts[index] = count;
+            changed[index] = true;
+        }
+
+        private int insert(long key) {
+            int index = indexOf(key);
+            if (keys[index] == EMPTY) {
+                //table is never filled more than a half
+                if ((size + 1) * 2 > keys.length) {
+                    rehash(keys.length << 1);
+                    index = indexOf(key);
+                }
+                keys[index] = key;
+                size++;
+            }
+            return index;
+        }
+
+        synchronized void ensureCapacity(long expectedSize) {
+            int capacity = keys.length;
+            while (capacity < (expectedSize + size) * 2 && capacity < (1 << 30)) {
+                capacity <<= 1;
+            }
+            if (capacity != keys.length) {
+                rehash(capacity);
+            }
+        }
+
+        synchronized AggregationValue get(long key) {
+            int index = indexOf(key);
+            if (keys[index] == EMPTY) {
+                return null;
+            }
+            return new AggregationValue(sums[index], counts[index]);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void removeOutdated(long nowTruncatedToPeriod, Map<AggregationKey, AggregationValue> removed) {
+            int removedCount = 0;
+            for (int i = 0; i < keys.length; i++) {
+                long key = keys[i];
+                if (key != EMPTY && getPeriod(key) < nowTruncatedToPeriod) {
+                    if (removed != null) {
+                        removed.put(toAggregationKey(key), new AggregationValue(sums[i], counts[i]));
+                    }
+                    keys[i] = EMPTY;
+                    removedCount++;
+                }
+            }
+            if (removedCount > 0) {
+                size -= removedCount;
+                //removal breaks probe sequences, so table is rebuilt with the same capacity
+                rehash(keys.length);
+            }
+        }
+
+        synchronized void removeSeries(BitSet seriesIds) {
+            int removedCount = 0;
+            for (int i = 0; i < keys.length; i++) {
+                long key = keys[i];
+                if (key != EMPTY && seriesIds.get(getSeriesId(key))) {
+                    keys[i] = EMPTY;
+                    removedCount++;
+                }
+            }
+            if (removedCount > 0) {
+                size -= removedCount;
+                rehash(keys.length);
+            }
+        }
+
+        synchronized void forEach(EntryConsumer consumer, boolean changedOnly) throws IOException {
+            for (int i = 0; i < keys.length; i++) {
+                long key = keys[i];
+                if (key != EMPTY && (!changedOnly || changed[i])) {
+                    changed[i] = false;
+                    consumer.accept(getSeriesId(key), getPeriod(key), sums[i], counts[i]);
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            double[] oldSums = sums;
+            long[] oldCounts = counts;
+            boolean[] oldChanged = changed;
+            allocate(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    sums[index] = oldSums[i];
+                    counts[index] = oldCounts[i];
+                    changed[index] = oldChanged[i];
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        void accept(int seriesId, long period, double sum, long count) throws IOException;
+
+        /**
+         * Called after all entries of the segment are visited and segment lock is released.
+         */
+        default void segmentVisited() throws IOException {
+        }
+    }
+
+}
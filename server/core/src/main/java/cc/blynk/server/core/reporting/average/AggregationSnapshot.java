@@ -0,0 +1,282 @@
+package cc.blynk.server.core.reporting.average;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.reporting.raw.BaseReportingKey;
+import cc.blynk.server.internal.ReportingUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Binary snapshot of the aggregation map, so not flushed aggregates survive server restart.
+ * Entries have fixed size and refer to the series section, so they could be restored in parallel.
+ *
+ * File layout :
+ * header - magic (int), version (int), entries count (long), series section offset (long)
+ * entries - entries count * (series index (int), period (int), sum (double), count (long))
+ * series section - strings count (int), strings * (length (int), utf-8 bytes),
+ *                  series count (int), series * (email index (int), app name index (int),
+ *                  dash id (int), device id (int), pin type (byte), pin (byte))
+ */
+public final class AggregationSnapshot {
+
+    //"BAGG"
+    private static final int MAGIC = 0x42414747;
+    private static final int VERSION = 1;
+    //java serialization stream magic. Such files were created by previous versions
+    private static final short LEGACY_MAGIC = (short) 0xACED;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = 24;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    //entries restored within one parallel task
+    private static final int RESTORE_CHUNK_SIZE = 64 * 1024;
+    private static final int NULL_STRING = -1;
+
+    private AggregationSnapshot() {
+    }
+
+    /**
+     * Writes all entries of the map to the file. File is replaced atomically.
+     *
+     * @return - number of written entries.
+     */
+    public static long write(Path path, AggregationMap map) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        SnapshotWriter writer;
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            writer = new SnapshotWriter(channel, map.seriesRegistry);
+            map.forEach(writer);
+            writer.finish();
+        }
+        Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        return writer.entriesCount;
+    }
+
+    /**
+     * Adds all entries from the file to the map.
+     *
+     * @return - number of restored entries.
+     */
+    public static long read(Path path, AggregationMap map) throws IOException {
+        if (Files.notExists(path)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " is too big.");
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                if (size >= 2 && buffer.getShort(0) == LEGACY_MAGIC) {
+                    return readLegacy(path, map);
+                }
+                if (size < HEADER_SIZE) {
+                    throw new IOException("Corrupted snapshot " + path);
+                }
+                return read(path, buffer, map);
+            } finally {
+                PlatformDependent.freeDirectBuffer(buffer);
+            }
+        }
+    }
+
+    private static long readLegacy(Path path, AggregationMap map) {
+        Map<AggregationKey, AggregationValue> legacy = ReportingUtil.read(path);
+        map.putAll(legacy);
+        return legacy.size();
+    }
+
+    private static long read(Path path, ByteBuffer buffer, AggregationMap map) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot format " + path);
+        }
+        long entriesCount = buffer.getLong(8);
+        long seriesOffset = buffer.getLong(16);
+        if (entriesCount < 0 || HEADER_SIZE + entriesCount * ENTRY_SIZE != seriesOffset
+                || seriesOffset > buffer.limit()) {
+            throw new IOException("Corrupted snapshot " + path);
+        }
+
+        ((Buffer) buffer).position((int) seriesOffset);
+        int[] seriesIds = readSeries(buffer, map.seriesRegistry);
+
+        map.ensureCapacity(entriesCount);
+        //absolute reads don't modify buffer, so it is safely shared between tasks
+        int chunks = (int) ((entriesCount + RESTORE_CHUNK_SIZE - 1) / RESTORE_CHUNK_SIZE);
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = HEADER_SIZE + chunk * RESTORE_CHUNK_SIZE * ENTRY_SIZE;
+            int to = (int) Math.min(from + (long) RESTORE_CHUNK_SIZE * ENTRY_SIZE, seriesOffset);
+            for (int offset = from; offset < to; offset += ENTRY_SIZE) {
+                map.add(seriesIds[buffer.getInt(offset)], buffer.getInt(offset + 4),
+                        buffer.getDouble(offset + 8), buffer.getLong(offset + 16));
+            }
+        });
+        return entriesCount;
+    }
+
+    private static int[] readSeries(ByteBuffer buffer, SeriesRegistry seriesRegistry) {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int[] seriesIds = new int[buffer.getInt()];
+        for (int i = 0; i < seriesIds.length; i++) {
+            int emailIndex = buffer.getInt();
+            int appNameIndex = buffer.getInt();
+            int dashId = buffer.getInt();
+            int deviceId = buffer.getInt();
+            PinType pinType = PinType.getPinType((char) buffer.get());
+            byte pin = buffer.get();
+            seriesIds[i] = seriesRegistry.getId(
+                    emailIndex == NULL_STRING ? null : strings[emailIndex],
+                    appNameIndex == NULL_STRING ? null : strings[appNameIndex],
+                    dashId, deviceId, pinType, pin);
+        }
+        return seriesIds;
+    }
+
+    /**
+     * Streams entries right after the header and collects series they refer to.
+     * Series section and header are written when all entries are visited.
+     */
+    private static final class SnapshotWriter implements AggregationMap.EntryConsumer {
+
+        private final FileChannel channel;
+        private final SeriesRegistry seriesRegistry;
+        private final ByteBuffer buffer;
+        private final List<BaseReportingKey> series;
+        //registry series id -> index in the series section + 1
+        private int[] seriesIndexes;
+        private long entriesCount;
+
+        SnapshotWriter(FileChannel channel, SeriesRegistry seriesRegistry) {
+            this.channel = channel;
+            this.seriesRegistry = seriesRegistry;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.series = new ArrayList<>();
+            this.seriesIndexes = new int[seriesRegistry.size()];
+            ((Buffer) buffer).position(HEADER_SIZE);
+        }
+
+        @Override
+        public void accept(int seriesId, long period, double sum, long count) throws IOException {
+            ensureRemaining(ENTRY_SIZE);
+            buffer.putInt(getSeriesIndex(seriesId))
+                  .putInt((int) period)
+                  .putDouble(sum)
+                  .putLong(count);
+            entriesCount++;
+        }
+
+        private int getSeriesIndex(int seriesId) {
+            if (seriesId >= seriesIndexes.length) {
+                seriesIndexes = Arrays.copyOf(seriesIndexes, Math.max(seriesId + 1, seriesIndexes.length * 2));
+            }
+            int index = seriesIndexes[seriesId] - 1;
+            if (index < 0) {
+                index = series.size();
+                series.add(seriesRegistry.getKey(seriesId));
+                seriesIndexes[seriesId] = index + 1;
+            }
+            return index;
+        }
+
+        void finish() throws IOException {
+            flush();
+            long seriesOffset = channel.position();
+
+            Map<String, Integer> stringIndexes = new HashMap<>();
+            List<byte[]> strings = new ArrayList<>();
+            for (BaseReportingKey key : series) {
+                addString(key.email, stringIndexes, strings);
+                addString(key.appName, stringIndexes, strings);
+            }
+
+            ensureRemaining(4);
+            buffer.putInt(strings.size());
+            for (byte[] string : strings) {
+                ensureRemaining(4 + string.length);
+                buffer.putInt(string.length).put(string);
+            }
+
+            ensureRemaining(4);
+            buffer.putInt(series.size());
+            for (BaseReportingKey key : series) {
+                ensureRemaining(18);
+                buffer.putInt(getStringIndex(key.email, stringIndexes))
+                      .putInt(getStringIndex(key.appName, stringIndexes))
+                      .putInt(key.dashId)
+                      .putInt(key.deviceId)
+                      .put((byte) key.pinType.pintTypeChar)
+                      .put(key.pin);
+            }
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(entriesCount)
+                    .putLong(seriesOffset);
+            ((Buffer) header).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        private static void addString(String string, Map<String, Integer> stringIndexes, List<byte[]> strings) {
+            if (string != null && !stringIndexes.containsKey(string)) {
+                stringIndexes.put(string, strings.size());
+                strings.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private static int getStringIndex(String string, Map<String, Integer> stringIndexes) {
+            return string == null ? NULL_STRING : stringIndexes.get(string);
+        }
+
+        private void ensureRemaining(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+                if (buffer.remaining() < size) {
+                    throw new IOException("Value is too big for snapshot.");
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            ((Buffer) buffer).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            ((Buffer) buffer).clear();
+        }
+    }
+
+}
@@ -9,6 +9,9 @@ import java.io.Serializable;
  */
 public class AggregationValue implements Serializable {
 
+    //keeps temp files created by previous versions readable
+    private static final long serialVersionUID = 2165743203609644899L;
+
     private double values = 0;
     private long count = 0;
 
@@ -20,11 +23,24 @@ public class AggregationValue implements Serializable {
         this.count = 1;
     }
 
+    AggregationValue(double values, long count) {
+        this.values = values;
+        this.count = count;
+    }
+
     public void update(double val) {
         values += val;
         count++;
     }
 
+    public double getSum() {
+        return values;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
     public double calcAverage() {
         return values / count;
     }
@@ -6,13 +6,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static cc.blynk.server.internal.ReportingUtil.read;
-import static cc.blynk.server.internal.ReportingUtil.write;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.Predicate;
 
 /**
  * The Blynk Project.
@@ -29,69 +29,189 @@ public class AverageAggregatorProcessor implements Closeable {
     public static final String MINUTE_TEMP_FILENAME = "minute_temp.bin";
     public static final String HOURLY_TEMP_FILENAME = "hourly_temp.bin";
     public static final String DAILY_TEMP_FILENAME = "daily_temp.bin";
+    public static final String CHECKPOINT_FILENAME = "aggregation.wal";
     private final String dataFolder;
-    private final ConcurrentHashMap<AggregationKey, AggregationValue> minute;
-    private final ConcurrentHashMap<AggregationKey, AggregationValue> hourly;
-    private final ConcurrentHashMap<AggregationKey, AggregationValue> daily;
+    public final SeriesRegistry seriesRegistry;
+    private final AggregationMap minute;
+    private final AggregationMap hourly;
+    private final AggregationMap daily;
+    private final AggregationCheckpoint checkpoint;
 
     public AverageAggregatorProcessor(String dataFolder) {
         this.dataFolder = dataFolder;
+        this.seriesRegistry = new SeriesRegistry();
+        this.minute = new AggregationMap(seriesRegistry);
+        this.hourly = new AggregationMap(seriesRegistry);
+        this.daily = new AggregationMap(seriesRegistry);
+
+        Path checkpointPath = Paths.get(dataFolder, CHECKPOINT_FILENAME);
+        //temp files are created on normal shutdown, so they are newer than the checkpoint log
+        boolean minuteRestored = restore(MINUTE_TEMP_FILENAME, minute);
+        boolean hourlyRestored = restore(HOURLY_TEMP_FILENAME, hourly);
+        boolean dailyRestored = restore(DAILY_TEMP_FILENAME, daily);
+        replay(checkpointPath,
+                minuteRestored ? null : minute,
+                hourlyRestored ? null : hourly,
+                dailyRestored ? null : daily);
+
+        this.checkpoint = new AggregationCheckpoint(checkpointPath, seriesRegistry, minute, hourly, daily);
+    }
 
-        Path path;
-
-        path = Paths.get(dataFolder, MINUTE_TEMP_FILENAME);
-        this.minute = read(path);
+    /**
+     * @return true in case temp file existed.
+     */
+    private boolean restore(String fileName, AggregationMap map) {
+        Path path = Paths.get(dataFolder, fileName);
+        if (Files.notExists(path)) {
+            return false;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long restored = AggregationSnapshot.read(path, map);
+            if (restored > 0) {
+                log.info("Restored {} aggregation entries from {} in {} ms.",
+                        restored, path, System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            log.error("Error restoring aggregation entries from {}.", path, e);
+        }
         FileUtils.deleteQuietly(path);
+        return true;
+    }
 
-        path = Paths.get(dataFolder, HOURLY_TEMP_FILENAME);
-        this.hourly = read(path);
-        FileUtils.deleteQuietly(path);
+    private void replay(Path path, AggregationMap... maps) {
+        if (Files.notExists(path)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long replayed = AggregationCheckpoint.replay(path, seriesRegistry, maps);
+            log.info("Replayed {} aggregation checkpoint records from {} in {} ms.",
+                    replayed, path, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Error replaying aggregation checkpoint {}.", path, e);
+        }
+    }
 
-        path = Paths.get(dataFolder, DAILY_TEMP_FILENAME);
-        this.daily = read(path);
-        FileUtils.deleteQuietly(path);
+    /**
+     * Starts periodic checkpoints of the not flushed aggregates.
+     * Without it aggregates are stored only on normal shutdown.
+     */
+    public void startCheckpoints() throws IOException {
+        checkpoint.start();
     }
 
-    private static void aggregate(Map<AggregationKey, AggregationValue> map, AggregationKey key, double value) {
-        AggregationValue aggregationValue = map.get(key);
-        if (aggregationValue == null) {
-            aggregationValue = map.putIfAbsent(key, new AggregationValue(value));
-            if (aggregationValue == null) {
-                return;
-            }
-        }
+    /**
+     * Appends aggregates changed since the previous checkpoint to the checkpoint log.
+     *
+     * @return - number of bytes written.
+     */
+    public long checkpoint() throws IOException {
+        return checkpoint.checkpoint();
+    }
 
-        aggregationValue.update(value);
+    private void store(String fileName, AggregationMap map) {
+        if (map.isEmpty()) {
+            return;
+        }
+        Path path = Paths.get(dataFolder, fileName);
+        try {
+            long start = System.currentTimeMillis();
+            long stored = AggregationSnapshot.write(path, map);
+            log.info("Stored {} aggregation entries to {} in {} ms.",
+                    stored, path, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Error storing aggregation entries to {}.", path, e);
+        }
     }
 
     public void collect(BaseReportingKey baseReportingKey, long ts, double val) {
-        aggregate(minute, new AggregationKey(baseReportingKey, ts / MINUTE), val);
-        aggregate(hourly, new AggregationKey(baseReportingKey, ts / HOUR), val);
-        aggregate(daily, new AggregationKey(baseReportingKey, ts / DAY), val);
+        collect(seriesRegistry.getId(baseReportingKey), ts, val);
     }
 
-    public ConcurrentHashMap<AggregationKey, AggregationValue> getMinute() {
+    /**
+     * Allocation free aggregation for the already registered series.
+     *
+     * @param seriesId - id of the series from the seriesRegistry.
+     */
+    public void collect(int seriesId, long ts, double val) {
+        minute.aggregate(seriesId, ts / MINUTE, val);
+        hourly.aggregate(seriesId, ts / HOUR, val);
+        daily.aggregate(seriesId, ts / DAY, val);
+    }
+
+    /**
+     * Releases all series of the user.
+     */
+    public void deleteSeries(String email, String appName) {
+        deleteSeries(key -> Objects.equals(key.email, email) && Objects.equals(key.appName, appName));
+    }
+
+    /**
+     * Releases all series of the dashboard.
+     */
+    public void deleteSeries(String email, String appName, int dashId) {
+        deleteSeries(key -> key.dashId == dashId
+                && Objects.equals(key.email, email) && Objects.equals(key.appName, appName));
+    }
+
+    /**
+     * Releases all series of the device.
+     */
+    public void deleteSeries(String email, String appName, int dashId, int deviceId) {
+        deleteSeries(key -> key.dashId == dashId && key.deviceId == deviceId
+                && Objects.equals(key.email, email) && Objects.equals(key.appName, appName));
+    }
+
+    private void deleteSeries(Predicate<BaseReportingKey> filter) {
+        int[] ids = seriesRegistry.release(filter);
+        if (ids.length > 0) {
+            removeSeries(ids);
+        }
+    }
+
+    /**
+     * Makes ids of the series released before the previous call available for the new series.
+     * Should be called periodically, at least few seconds apart.
+     */
+    public void reuseDeletedSeries() {
+        int[] ids = seriesRegistry.expire();
+        if (ids.length > 0) {
+            //values aggregated after the release are removed as well
+            removeSeries(ids);
+            seriesRegistry.reuse(ids);
+        }
+    }
+
+    private void removeSeries(int[] ids) {
+        BitSet seriesIds = new BitSet();
+        for (int id : ids) {
+            seriesIds.set(id);
+        }
+        minute.removeSeries(seriesIds);
+        hourly.removeSeries(seriesIds);
+        daily.removeSeries(seriesIds);
+        checkpoint.requireCompaction();
+    }
+
+    public AggregationMap getMinute() {
         return minute;
     }
 
-    public ConcurrentHashMap<AggregationKey, AggregationValue> getHourly() {
+    public AggregationMap getHourly() {
         return hourly;
     }
 
-    public ConcurrentHashMap<AggregationKey, AggregationValue> getDaily() {
+    public AggregationMap getDaily() {
         return daily;
     }
 
     @Override
     public void close() {
-        if (minute.size() > 100_000) {
-            log.info("Too many minute records ({}). "
-                    + "This may cause performance issues on server start. Skipping.", minute.size());
-        } else {
-            write(Paths.get(dataFolder, MINUTE_TEMP_FILENAME), minute);
-        }
-        write(Paths.get(dataFolder, HOURLY_TEMP_FILENAME), hourly);
-        write(Paths.get(dataFolder, DAILY_TEMP_FILENAME), daily);
+        store(MINUTE_TEMP_FILENAME, minute);
+        store(HOURLY_TEMP_FILENAME, hourly);
+        store(DAILY_TEMP_FILENAME, daily);
+        checkpoint.close();
     }
 
 }
@@ -0,0 +1,221 @@
+package cc.blynk.server.core.reporting.average;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.reporting.raw.BaseReportingKey;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Interns every reporting series (user, dash, device, pin) into the compact int id,
+ * so reporting hot path could aggregate values without creating the keys for every
+ * incoming value. Lookup of already known series is lock free and doesn't allocate.
+ *
+ * Series of the removed users, dashes and devices are released. Released series is not found
+ * by the lookup right away, but its id is reused only after it went through the two expire() calls,
+ * as values of the series could still be aggregated by the threads that got the id before release.
+ */
+public final class SeriesRegistry {
+
+    public static final int NO_ID = -1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private volatile Table table;
+    private int size;
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    //ids released since the last expire() call
+    private final BitSet released = new BitSet();
+    //ids released before the last expire() call, they are returned by the next one
+    private final BitSet expiring = new BitSet();
+    //ids that are not found by the lookup, but not reused yet
+    private final BitSet notReusable = new BitSet();
+
+    public SeriesRegistry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    SeriesRegistry(int initialCapacity) {
+        int slotsCount = 2;
+        while (slotsCount < initialCapacity * 2) {
+            slotsCount <<= 1;
+        }
+        this.table = new Table(slotsCount);
+    }
+
+    public int getId(BaseReportingKey key) {
+        return getId(key.email, key.appName, key.dashId, key.deviceId, key.pinType, key.pin);
+    }
+
+    public int getId(String email, String appName, int dashId, int deviceId, PinType pinType, byte pin) {
+        int hash = BaseReportingKey.hash(email, appName, dashId, deviceId, pinType, pin);
+        int id = table.find(hash, email, appName, dashId, deviceId, pinType, pin);
+        if (id != NO_ID) {
+            return id;
+        }
+        return register(hash, email, appName, dashId, deviceId, pinType, pin);
+    }
+
+    /**
+     * @return id of the series or NO_ID in case series wasn't registered yet.
+     */
+    public int findId(BaseReportingKey key) {
+        int hash = key.hashCode();
+        int id = table.find(hash, key.email, key.appName, key.dashId, key.deviceId, key.pinType, key.pin);
+        if (id != NO_ID) {
+            return id;
+        }
+        synchronized (this) {
+            return table.find(hash, key.email, key.appName, key.dashId, key.deviceId, key.pinType, key.pin);
+        }
+    }
+
+    /**
+     * @return key of the series. Key of the released series is kept till its id is reused.
+     */
+    public BaseReportingKey getKey(int id) {
+        return table.keys.get(id);
+    }
+
+    /**
+     * @return upper bound of the series ids, including released ones.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int register(int hash, String email, String appName,
+                                      int dashId, int deviceId, PinType pinType, byte pin) {
+        Table table = this.table;
+        int id = table.find(hash, email, appName, dashId, deviceId, pinType, pin);
+        if (id != NO_ID) {
+            return id;
+        }
+
+        if (freeIds.isEmpty()) {
+            id = size;
+            if (id == table.keys.length()) {
+                table = table.copy(table.slots.length() << 1, notReusable);
+            }
+            size++;
+        } else {
+            id = freeIds.poll();
+        }
+        //key is always set before the slot, so lock free readers never see slot without the key
+        table.keys.set(id, new BaseReportingKey(email, appName, dashId, deviceId, pinType, pin));
+        table.insert(hash, id);
+        this.table = table;
+        return id;
+    }
+
+    /**
+     * Removes matching series from the lookup. Table is rebuilt and replaced,
+     * as removal from the open addressing table breaks probe sequences.
+     *
+     * @return - released ids.
+     */
+    synchronized int[] release(Predicate<BaseReportingKey> filter) {
+        Table table = this.table;
+        BitSet ids = new BitSet();
+        for (int id = 0; id < size; id++) {
+            BaseReportingKey key = table.keys.get(id);
+            if (key != null && !notReusable.get(id) && filter.test(key)) {
+                ids.set(id);
+            }
+        }
+        if (!ids.isEmpty()) {
+            released.or(ids);
+            notReusable.or(ids);
+            this.table = table.copy(table.slots.length(), notReusable);
+        }
+        return ids.stream().toArray();
+    }
+
+    /**
+     * Called periodically. Ids returned by this method have to be passed to reuse(),
+     * when all values of them are removed.
+     *
+     * @return - ids released before the previous call.
+     */
+    synchronized int[] expire() {
+        int[] expired = expiring.stream().toArray();
+        expiring.clear();
+        expiring.or(released);
+        released.clear();
+        return expired;
+    }
+
+    synchronized void reuse(int[] ids) {
+        Table table = this.table;
+        for (int id : ids) {
+            if (notReusable.get(id)) {
+                notReusable.clear(id);
+                table.keys.set(id, null);
+                freeIds.add(id);
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Open addressing table with linear probing. Slot holds id + 1, so 0 means empty slot.
+     * Table is never filled more than a half.
+     */
+    private static final class Table {
+
+        private final AtomicIntegerArray slots;
+        private final AtomicReferenceArray<BaseReportingKey> keys;
+
+        Table(int slotsCount) {
+            this.slots = new AtomicIntegerArray(slotsCount);
+            this.keys = new AtomicReferenceArray<>(slotsCount / 2);
+        }
+
+        int find(int hash, String email, String appName, int dashId, int deviceId, PinType pinType, byte pin) {
+            int mask = slots.length() - 1;
+            int i = spread(hash) & mask;
+            int slot;
+            while ((slot = slots.get(i)) != 0) {
+                BaseReportingKey key = keys.get(slot - 1);
+                if (key != null && key.matches(email, appName, dashId, deviceId, pinType, pin)) {
+                    return slot - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            return NO_ID;
+        }
+
+        void insert(int hash, int id) {
+            int mask = slots.length() - 1;
+            int i = spread(hash) & mask;
+            while (slots.get(i) != 0) {
+                i = (i + 1) & mask;
+            }
+            slots.set(i, id + 1);
+        }
+
+        /**
+         * @param notFound - ids that keep their keys, but are not inserted into the slots.
+         */
+        Table copy(int slotsCount, BitSet notFound) {
+            Table copy = new Table(slotsCount);
+            for (int id = 0; id < keys.length(); id++) {
+                BaseReportingKey key = keys.get(id);
+                if (key != null) {
+                    copy.keys.set(id, key);
+                    if (!notFound.get(id)) {
+                        copy.insert(key.hashCode(), id);
+                    }
+                }
+            }
+            return copy;
+        }
+    }
+
+}
@@ -13,6 +13,9 @@ import java.io.Serializable;
  */
 public final class BaseReportingKey implements Serializable {
 
+    //keeps temp files created by previous versions readable
+    private static final long serialVersionUID = 8109353604942608718L;
+
     public final String email;
     public final String appName;
     public final int dashId;
@@ -35,6 +38,28 @@ public final class BaseReportingKey implements Serializable {
         this.pin = pin;
     }
 
+    public static int hash(String email, String appName, int dashId, int deviceId, PinType pinType, byte pin) {
+        int result = email != null ? email.hashCode() : 0;
+        result = 31 * result + (appName != null ? appName.hashCode() : 0);
+        result = 31 * result + dashId;
+        result = 31 * result + deviceId;
+        result = 31 * result + (pinType != null ? pinType.hashCode() : 0);
+        result = 31 * result + (int) pin;
+        return result;
+    }
+
+    /**
+     * Same as equals, but doesn't require key instance.
+     */
+    public boolean matches(String email, String appName, int dashId, int deviceId, PinType pinType, byte pin) {
+        return this.dashId == dashId
+                && this.deviceId == deviceId
+                && this.pin == pin
+                && this.pinType == pinType
+                && (this.email != null ? this.email.equals(email) : email == null)
+                && (this.appName != null ? this.appName.equals(appName) : appName == null);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -45,33 +70,11 @@ public final class BaseReportingKey implements Serializable {
         }
 
         BaseReportingKey that = (BaseReportingKey) o;
-
-        if (dashId != that.dashId) {
-            return false;
-        }
-        if (deviceId != that.deviceId) {
-            return false;
-        }
-        if (pin != that.pin) {
-            return false;
-        }
-        if (email != null ? !email.equals(that.email) : that.email != null) {
-            return false;
-        }
-        if (appName != null ? !appName.equals(that.appName) : that.appName != null) {
-            return false;
-        }
-        return pinType == that.pinType;
+        return matches(that.email, that.appName, that.dashId, that.deviceId, that.pinType, that.pin);
     }
 
     @Override
     public int hashCode() {
-        int result = email != null ? email.hashCode() : 0;
-        result = 31 * result + (appName != null ? appName.hashCode() : 0);
-        result = 31 * result + dashId;
-        result = 31 * result + deviceId;
-        result = 31 * result + (pinType != null ? pinType.hashCode() : 0);
-        result = 31 * result + (int) pin;
-        return result;
+        return hash(email, appName, dashId, deviceId, pinType, pin);
     }
 }
@@ -0,0 +1,68 @@
+package cc.blynk.server.core.reporting.storage;
+
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import cc.blynk.utils.FileUtils;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Default storage. Every record is appended to the end of the series file.
+ */
+public class FileReportingStorage implements ReportingStorage {
+
+    @Override
+    public void write(Path reportingFile, GraphGranularityType type, ByteBuffer records) throws IOException {
+        FileUtils.write(reportingFile, records);
+    }
+
+    @Override
+    public ByteBuffer read(Path reportingFile, GraphGranularityType type, int count, int skip) throws IOException {
+        return FileUtils.read(reportingFile, count, skip);
+    }
+
+    @Override
+    public int read(Path reportingFile, GraphGranularityType type, int count, int skip, ByteBuf target)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(reportingFile, READ)) {
+            long end = channel.size() - (long) skip * SIZE_OF_REPORT_ENTRY;
+            long start = Math.max(0, end - (long) count * SIZE_OF_REPORT_ENTRY);
+            if (end <= start) {
+                return 0;
+            }
+
+            int length = (int) (end - start);
+            target.ensureWritable(length);
+            int read = 0;
+            while (read < length) {
+                int bytes = target.writeBytes(channel, start + read, length - read);
+                if (bytes < 0) {
+                    break;
+                }
+                read += bytes;
+            }
+            return read;
+        }
+    }
+
+    @Override
+    public void delete(Path reportingFile) {
+        FileUtils.deleteQuietly(reportingFile);
+    }
+
+    @Override
+    public boolean isTruncationRequired() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
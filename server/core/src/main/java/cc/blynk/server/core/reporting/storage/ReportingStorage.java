@@ -0,0 +1,50 @@
+package cc.blynk.server.core.reporting.storage;
+
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import io.netty.buffer.ByteBuf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Storage engine for the history graph data. Every pin/granularity series is stored
+ * in separate file, every record is value (double) and timestamp (long).
+ */
+public interface ReportingStorage extends Closeable {
+
+    /**
+     * Appends bunch of records to the series with single write.
+     *
+     * @param records - records sorted by timestamp, ready for read.
+     */
+    void write(Path reportingFile, GraphGranularityType type, ByteBuffer records) throws IOException;
+
+    /**
+     * Reads bunch of last records of the series.
+     *
+     * @return - byte buffer with data in chronological order, position points to the end of data.
+     *           null in case there is nothing to read.
+     */
+    ByteBuffer read(Path reportingFile, GraphGranularityType type, int count, int skip) throws IOException;
+
+    /**
+     * Reads bunch of last records of the series right into the target buffer,
+     * so no intermediate arrays are created.
+     *
+     * @return - number of bytes read, data is in chronological order.
+     */
+    int read(Path reportingFile, GraphGranularityType type, int count, int skip, ByteBuf target) throws IOException;
+
+    void delete(Path reportingFile);
+
+    /**
+     * Append only files grow endlessly and have to be truncated from time to time.
+     */
+    boolean isTruncationRequired();
+
+    @Override
+    void close();
+
+}
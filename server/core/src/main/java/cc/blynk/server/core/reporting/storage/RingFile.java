@@ -0,0 +1,228 @@
+package cc.blynk.server.core.reporting.storage;
+
+import cc.blynk.utils.FileUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Preallocated, memory-mapped file with fixed amount of reporting records.
+ * When file is full, new record overrides the oldest one.
+ *
+ * File layout :
+ * header - magic (int), version (int), capacity (int), reserved (int), written records counter (long), reserved (long)
+ * records - capacity * (value (double) + timestamp (long))
+ */
+public final class RingFile implements Closeable {
+
+    //"BRNG"
+    private static final int MAGIC = 0x42524E47;
+    private static final int VERSION = 1;
+
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int WRITTEN_OFFSET = 16;
+    static final int HEADER_SIZE = 32;
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private boolean closed;
+
+    private RingFile(MappedByteBuffer buffer, int capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    public static RingFile open(Path path, int capacity) throws IOException {
+        convert(path, capacity);
+
+        try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                //new file. size is extended by the mapping, so file is sparse until written
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeOf(capacity));
+                buffer.putInt(0, MAGIC)
+                      .putInt(VERSION_OFFSET, VERSION)
+                      .putInt(CAPACITY_OFFSET, capacity)
+                      .putLong(WRITTEN_OFFSET, 0);
+                return new RingFile(buffer, capacity);
+            }
+
+            //existing file always keeps capacity it was created with
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int existingCapacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.getInt(0) != MAGIC || sizeOf(existingCapacity) != channel.size()) {
+                PlatformDependent.freeDirectBuffer(buffer);
+                throw new IOException("Corrupted ring file " + path);
+            }
+            return new RingFile(buffer, existingCapacity);
+        }
+    }
+
+    /**
+     * Converts append only reporting file into the ring file.
+     * Only last 'capacity' records are preserved. Conversion is atomic.
+     *
+     * @return true in case file was converted.
+     */
+    public static boolean convert(Path path, int capacity) throws IOException {
+        if (Files.notExists(path)) {
+            return false;
+        }
+        long size = Files.size(path);
+        if (size == 0 || isRingFile(path)) {
+            return false;
+        }
+
+        //legacy file could have partially written last record, so reading only full records
+        long records = size / SIZE_OF_REPORT_ENTRY;
+        int count = (int) Math.min(capacity, records);
+        ByteBuffer legacyData = ByteBuffer.allocate(count * SIZE_OF_REPORT_ENTRY);
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long position = (records - count) * SIZE_OF_REPORT_ENTRY;
+            int read = 0;
+            while (legacyData.hasRemaining() && read >= 0) {
+                read = channel.read(legacyData, position + legacyData.position());
+            }
+        }
+        ((Buffer) legacyData).flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileUtils.deleteQuietly(tmp);
+        try (RingFile ringFile = open(tmp, capacity)) {
+            ringFile.write(legacyData);
+        }
+        Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        return true;
+    }
+
+    public static boolean isRingFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC;
+        }
+    }
+
+    private static long sizeOf(int capacity) {
+        return HEADER_SIZE + (long) capacity * SIZE_OF_REPORT_ENTRY;
+    }
+
+    public synchronized void write(double value, long ts) throws IOException {
+        checkNotClosed();
+        long written = buffer.getLong(WRITTEN_OFFSET);
+        int index = HEADER_SIZE + (int) (written % capacity) * SIZE_OF_REPORT_ENTRY;
+        buffer.putDouble(index, value)
+              .putLong(index + 8, ts)
+              .putLong(WRITTEN_OFFSET, written + 1);
+    }
+
+    public synchronized void write(ByteBuffer records) throws IOException {
+        checkNotClosed();
+        while (records.remaining() >= SIZE_OF_REPORT_ENTRY) {
+            write(records.getDouble(), records.getLong());
+        }
+    }
+
+    /**
+     * Read bunch of last records from file.
+     *
+     * @param count - number of records to read
+     * @param skip  - number of entries to skip from the end
+     * @return - byte buffer with data in chronological order, same as for append only file.
+     */
+    public synchronized ByteBuffer read(int count, int skip) throws IOException {
+        checkNotClosed();
+        long end = end(skip);
+        long start = start(count, end);
+        if (end <= start) {
+            return null;
+        }
+
+        int size = (int) (end - start) * SIZE_OF_REPORT_ENTRY;
+        ByteBuffer result = ByteBuffer.allocate(size);
+        read(count, skip, Unpooled.wrappedBuffer(result).clear());
+        ((Buffer) result).position(size);
+        return result;
+    }
+
+    /**
+     * Copies bunch of last records from the mapped file right into the target buffer.
+     *
+     * @return - number of bytes read.
+     */
+    public synchronized int read(int count, int skip, ByteBuf target) throws IOException {
+        checkNotClosed();
+        long end = end(skip);
+        long start = start(count, end);
+        if (end <= start) {
+            return 0;
+        }
+
+        int before = target.writerIndex();
+        ByteBuffer source = buffer.duplicate();
+        int startSlot = (int) (start % capacity);
+        int endSlot = (int) (end % capacity);
+        if (startSlot < endSlot) {
+            copy(source, target, startSlot, endSlot);
+        } else {
+            copy(source, target, startSlot, capacity);
+            copy(source, target, 0, endSlot);
+        }
+        return target.writerIndex() - before;
+    }
+
+    private long end(int skip) {
+        return buffer.getLong(WRITTEN_OFFSET) - skip;
+    }
+
+    private long start(int count, long end) {
+        long written = buffer.getLong(WRITTEN_OFFSET);
+        return Math.max(written - Math.min(written, capacity), end - count);
+    }
+
+    private static void copy(ByteBuffer source, ByteBuf target, int fromSlot, int toSlot) {
+        ((Buffer) source).limit(HEADER_SIZE + toSlot * SIZE_OF_REPORT_ENTRY)
+                         .position(HEADER_SIZE + fromSlot * SIZE_OF_REPORT_ENTRY);
+        target.writeBytes(source);
+    }
+
+    private void checkNotClosed() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    public synchronized void force() {
+        if (!closed) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            PlatformDependent.freeDirectBuffer(buffer);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package cc.blynk.server.core.reporting.storage;
+
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import cc.blynk.utils.FileUtils;
+import cc.blynk.utils.properties.ServerProperties;
+import io.netty.buffer.ByteBuf;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps every series in fixed-capacity, memory-mapped ring file.
+ * Write is just a put into the mapping, so there is no open/append/close per record
+ * and no need for truncation of the old data.
+ * Only limited number of files is mapped at once, least recently used are unmapped.
+ */
+public class RingReportingStorage implements ReportingStorage {
+
+    private static final Logger log = LogManager.getLogger(RingReportingStorage.class);
+
+    private final int minuteCapacity;
+    private final int hourlyCapacity;
+    private final int dailyCapacity;
+    private final MappedFiles mappedFiles;
+    private final Object openLock = new Object();
+
+    public RingReportingStorage(ServerProperties props) {
+        this(props.getIntProperty("reporting.storage.ring.minute.capacity", 30 * 24 * 60),
+             props.getIntProperty("reporting.storage.ring.hourly.capacity", 365 * 24),
+             props.getIntProperty("reporting.storage.ring.daily.capacity", 10 * 365),
+             props.getIntProperty("reporting.storage.ring.mapped.files.limit", 10_000));
+    }
+
+    public RingReportingStorage(int minuteCapacity, int hourlyCapacity, int dailyCapacity, int mappedFilesLimit) {
+        this.minuteCapacity = minuteCapacity;
+        this.hourlyCapacity = hourlyCapacity;
+        this.dailyCapacity = dailyCapacity;
+        this.mappedFiles = new MappedFiles(mappedFilesLimit);
+    }
+
+    public int getCapacity(GraphGranularityType type) {
+        switch (type) {
+            case HOURLY :
+                return hourlyCapacity;
+            case DAILY :
+                return dailyCapacity;
+            default :
+                return minuteCapacity;
+        }
+    }
+
+    @Override
+    public void write(Path reportingFile, GraphGranularityType type, ByteBuffer records) throws IOException {
+        while (true) {
+            try {
+                getOrOpen(reportingFile, type).write(records);
+                return;
+            } catch (ClosedChannelException e) {
+                //file was unmapped by another thread right before write, retrying
+                log.trace("Ring file {} was closed during write.", reportingFile);
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer read(Path reportingFile, GraphGranularityType type, int count, int skip) throws IOException {
+        while (true) {
+            RingFile ringFile = getForRead(reportingFile, type);
+            if (ringFile == null) {
+                return null;
+            }
+            try {
+                return ringFile.read(count, skip);
+            } catch (ClosedChannelException e) {
+                log.trace("Ring file {} was closed during read.", reportingFile);
+            }
+        }
+    }
+
+    @Override
+    public int read(Path reportingFile, GraphGranularityType type, int count, int skip, ByteBuf target)
+            throws IOException {
+        while (true) {
+            RingFile ringFile = getForRead(reportingFile, type);
+            if (ringFile == null) {
+                return 0;
+            }
+            try {
+                return ringFile.read(count, skip, target);
+            } catch (ClosedChannelException e) {
+                log.trace("Ring file {} was closed during read.", reportingFile);
+            }
+        }
+    }
+
+    private RingFile getForRead(Path reportingFile, GraphGranularityType type) throws IOException {
+        RingFile ringFile;
+        synchronized (mappedFiles) {
+            ringFile = mappedFiles.get(reportingFile);
+        }
+        if (ringFile == null) {
+            if (Files.notExists(reportingFile)) {
+                return null;
+            }
+            ringFile = getOrOpen(reportingFile, type);
+        }
+        return ringFile;
+    }
+
+    private RingFile getOrOpen(Path reportingFile, GraphGranularityType type) throws IOException {
+        RingFile ringFile;
+        synchronized (mappedFiles) {
+            ringFile = mappedFiles.get(reportingFile);
+        }
+        if (ringFile != null) {
+            return ringFile;
+        }
+
+        //opening is serialized, so legacy file is never converted twice
+        synchronized (openLock) {
+            synchronized (mappedFiles) {
+                ringFile = mappedFiles.get(reportingFile);
+            }
+            if (ringFile == null) {
+                ringFile = RingFile.open(reportingFile, getCapacity(type));
+                synchronized (mappedFiles) {
+                    mappedFiles.put(reportingFile, ringFile);
+                }
+            }
+            return ringFile;
+        }
+    }
+
+    @Override
+    public void delete(Path reportingFile) {
+        RingFile ringFile;
+        synchronized (mappedFiles) {
+            ringFile = mappedFiles.remove(reportingFile);
+        }
+        if (ringFile != null) {
+            ringFile.close();
+        }
+        FileUtils.deleteQuietly(reportingFile);
+    }
+
+    @Override
+    public boolean isTruncationRequired() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        synchronized (mappedFiles) {
+            for (RingFile ringFile : mappedFiles.values()) {
+                ringFile.force();
+                ringFile.close();
+            }
+            mappedFiles.clear();
+        }
+    }
+
+    private static final class MappedFiles extends LinkedHashMap<Path, RingFile> {
+
+        private final int maxSize;
+
+        MappedFiles(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, RingFile> eldest) {
+            if (size() > maxSize) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    }
+}
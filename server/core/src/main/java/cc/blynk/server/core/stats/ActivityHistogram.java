@@ -0,0 +1,76 @@
+package cc.blynk.server.core.stats;
+
+import java.util.Arrays;
+
+/**
+ * Number of users by the hour of their last profile change for the last month.
+ * Every user is counted once in the hour of its last change, change moves the user
+ * to the current hour. Hours older than month are dropped when their slot is reused,
+ * so number of users active for the last day/week/month is the sum of few hundred slots
+ * instead of the walk over all profiles.
+ */
+public class ActivityHistogram {
+
+    public static final int NO_ACTIVITY = -1;
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final int SLOTS = 30 * 24;
+
+    //users counter and the hour it belongs to per slot, guarded by this
+    private final int[] counts = new int[SLOTS];
+    private final int[] hours = new int[SLOTS];
+
+    public ActivityHistogram() {
+        Arrays.fill(hours, NO_ACTIVITY);
+    }
+
+    public static int hour(long ts) {
+        return ts <= 0 ? NO_ACTIVITY : (int) (ts / HOUR);
+    }
+
+    public synchronized void add(int hour) {
+        if (hour == NO_ACTIVITY) {
+            return;
+        }
+        int slot = hour % SLOTS;
+        if (hours[slot] < hour) {
+            //slot keeps hour that is out of the window already
+            hours[slot] = hour;
+            counts[slot] = 0;
+        }
+        if (hours[slot] == hour) {
+            counts[slot]++;
+        }
+    }
+
+    public synchronized void remove(int hour) {
+        if (hour == NO_ACTIVITY) {
+            return;
+        }
+        int slot = hour % SLOTS;
+        if (hours[slot] == hour && counts[slot] > 0) {
+            counts[slot]--;
+        }
+    }
+
+    public synchronized void move(int fromHour, int toHour) {
+        remove(fromHour);
+        add(toHour);
+    }
+
+    /**
+     * @return number of users changed within period (rounded to hours) before now.
+     */
+    public synchronized int activeSince(long now, long period) {
+        int nowHour = hour(now);
+        int fromHour = nowHour - (int) Math.min(SLOTS, period / HOUR);
+        int sum = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int hour = hours[slot];
+            if (hour > fromHour && hour <= nowHour) {
+                sum += counts[slot];
+            }
+        }
+        return sum;
+    }
+}
@@ -21,6 +21,19 @@ public class GlobalStats {
     //2 last load adders are used as separate counters
     public final LongAdder[] specificCounters;
 
+    //reporting data flushed to disk since last stats run
+    public final LongAdder reportingBytesWritten;
+    //duration of the last reporting flush in millis
+    public volatile long lastReportingFlushTime;
+
+    //webhooks waiting for the free connection to their host right now
+    public final LongAdder webhooksQueued;
+    //counters since last stats run
+    public final LongAdder webhooksCompleted;
+    public final LongAdder webhooksLatency;
+    public final LongAdder webhooksCoalesced;
+    public final LongAdder webhooksDropped;
+
     public GlobalStats() {
         this.totalMessages = new Meter();
 
@@ -29,6 +42,12 @@ public class GlobalStats {
         for (int i = 0; i < LAST_COMMAND_INDEX; i++) {
             specificCounters[i] = new LongAdder();
         }
+        this.reportingBytesWritten = new LongAdder();
+        this.webhooksQueued = new LongAdder();
+        this.webhooksCompleted = new LongAdder();
+        this.webhooksLatency = new LongAdder();
+        this.webhooksCoalesced = new LongAdder();
+        this.webhooksDropped = new LongAdder();
     }
 
     public void markWithoutGlobal(short cmd) {
@@ -57,6 +76,16 @@ public class GlobalStats {
         return reset ? longAdder.sumThenReset() : longAdder.sum();
     }
 
+    public void markReportingFlush(long flushTime, long bytesWritten) {
+        this.lastReportingFlushTime = flushTime;
+        this.reportingBytesWritten.add(bytesWritten);
+    }
+
+    public void markWebhookCompleted(long latency) {
+        this.webhooksCompleted.increment();
+        this.webhooksLatency.add(latency);
+    }
+
     public long getTotalMqttCounter(boolean reset) {
         LongAdder longAdder = specificCounters[MQTT_STAT_COUNTER_INDEX];
         return reset ? longAdder.sumThenReset() : longAdder.sum();
@@ -0,0 +1,83 @@
+package cc.blynk.server.core.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Online sessions and channels of all users. Updated by sessions when channels are added and closed,
+ * so stats don't need to walk all sessions.
+ */
+public class SessionCounters {
+
+    //sessions with both app and hardware online
+    private final LongAdder connected = new LongAdder();
+    //sessions with at least one app / hardware channel
+    private final LongAdder onlineApps = new LongAdder();
+    private final LongAdder onlineHards = new LongAdder();
+    //all app / hardware channels
+    private final LongAdder totalOnlineApps = new LongAdder();
+    private final LongAdder totalOnlineHards = new LongAdder();
+
+    /**
+     * @param apps number of the app channels of the session after the change
+     * @param hards number of the hardware channels of the session after the change
+     */
+    public void appAdded(int apps, int hards) {
+        totalOnlineApps.increment();
+        if (apps == 1) {
+            onlineApps.increment();
+            if (hards > 0) {
+                connected.increment();
+            }
+        }
+    }
+
+    public void appRemoved(int apps, int hards) {
+        totalOnlineApps.decrement();
+        if (apps == 0) {
+            onlineApps.decrement();
+            if (hards > 0) {
+                connected.decrement();
+            }
+        }
+    }
+
+    public void hardAdded(int apps, int hards) {
+        totalOnlineHards.increment();
+        if (hards == 1) {
+            onlineHards.increment();
+            if (apps > 0) {
+                connected.increment();
+            }
+        }
+    }
+
+    public void hardRemoved(int apps, int hards) {
+        totalOnlineHards.decrement();
+        if (hards == 0) {
+            onlineHards.decrement();
+            if (apps > 0) {
+                connected.decrement();
+            }
+        }
+    }
+
+    public int getConnected() {
+        return connected.intValue();
+    }
+
+    public int getOnlineApps() {
+        return onlineApps.intValue();
+    }
+
+    public int getOnlineHards() {
+        return onlineHards.intValue();
+    }
+
+    public int getTotalOnlineApps() {
+        return totalOnlineApps.intValue();
+    }
+
+    public int getTotalOnlineHards() {
+        return totalOnlineHards.intValue();
+    }
+}
@@ -0,0 +1,25 @@
+package cc.blynk.server.core.stats.model;
+
+import cc.blynk.server.notifications.mail.MailWrapper;
+
+/**
+ * Outgoing mails queue. Latency is average time from the queueing to the end of sending, in millis.
+ */
+public class MailStat {
+
+    public final int queued;
+
+    public final long sent;
+
+    public final long failed;
+
+    public final long avgLatency;
+
+    public MailStat(MailWrapper mailWrapper, boolean reset) {
+        this.queued = mailWrapper.getQueueSize();
+        this.sent = mailWrapper.getSent(reset);
+        this.failed = mailWrapper.getFailed(reset);
+        long latency = mailWrapper.getLatency(reset);
+        this.avgLatency = sent + failed == 0 ? 0 : latency / (sent + failed);
+    }
+}
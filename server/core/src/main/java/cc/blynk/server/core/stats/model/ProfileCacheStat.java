@@ -0,0 +1,24 @@
+package cc.blynk.server.core.stats.model;
+
+import cc.blynk.server.core.dao.UserDao;
+
+/**
+ * Profiles kept in memory and profiles evicted to disk.
+ */
+public class ProfileCacheStat {
+
+    public final int loaded;
+
+    public final int evicted;
+
+    public final long evictions;
+
+    public final long reloads;
+
+    public ProfileCacheStat(UserDao userDao) {
+        this.loaded = userDao.users.size();
+        this.evicted = userDao.getColdUsersCount();
+        this.evictions = userDao.getEvictions();
+        this.reloads = userDao.getReloads();
+    }
+}
@@ -0,0 +1,17 @@
+package cc.blynk.server.core.stats.model;
+
+import cc.blynk.server.core.stats.GlobalStats;
+
+public class ReportingStat {
+
+    public final long lastFlushTime;
+
+    public final long bytesWritten;
+
+    public ReportingStat(GlobalStats globalStats, boolean reset) {
+        this.lastFlushTime = globalStats.lastReportingFlushTime;
+        this.bytesWritten = reset
+                ? globalStats.reportingBytesWritten.sumThenReset()
+                : globalStats.reportingBytesWritten.sum();
+    }
+}
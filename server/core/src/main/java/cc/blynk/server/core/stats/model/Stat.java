@@ -3,16 +3,14 @@ package cc.blynk.server.core.stats.model;
 import cc.blynk.server.core.BlockingIOProcessor;
 import cc.blynk.server.core.dao.SessionDao;
 import cc.blynk.server.core.dao.UserDao;
-import cc.blynk.server.core.dao.UserKey;
-import cc.blynk.server.core.model.DashBoard;
-import cc.blynk.server.core.model.auth.Session;
-import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.serialization.JsonParser;
 import cc.blynk.server.core.protocol.enums.Command;
+import cc.blynk.server.core.stats.ActivityHistogram;
 import cc.blynk.server.core.stats.GlobalStats;
+import cc.blynk.server.core.stats.SessionCounters;
+import cc.blynk.server.notifications.mail.MailWrapper;
 import io.netty.buffer.ByteBufAllocator;
 
-import java.util.Map;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -30,6 +28,10 @@ public class Stat {
     public final HttpStat http = new HttpStat();
     public final BlockingIOStat ioStat;
     public final MemoryStat memoryStat;
+    public final ReportingStat reportingStat;
+    public final ProfileCacheStat profileCacheStat;
+    public final WebhookStat webhookStat;
+    public final MailStat mailStat;
 
     public final int oneMinRate;
     public final int registrations;
@@ -44,7 +46,7 @@ public class Stat {
     public final transient long ts;
 
     public Stat(SessionDao sessionDao, UserDao userDao, BlockingIOProcessor blockingIOProcessor,
-                GlobalStats globalStats, boolean reset) {
+                MailWrapper mailWrapper, GlobalStats globalStats, boolean reset) {
         //yeap, some stats updates may be lost (because of sumThenReset()),
         //but we don't care, cause this is just for general monitoring
         for (Short command : Command.VALUES_NAME.keySet()) {
@@ -59,76 +61,28 @@ public class Stat {
         this.commands.mqttTotal = (int) globalStats.getTotalMqttCounter(reset);
 
         this.oneMinRate = (int) globalStats.totalMessages.getOneMinuteRate();
-        int connectedSessions = 0;
-
-        int hardActive = 0;
-        int totalOnlineHards = 0;
-
-        int appActive = 0;
-        int totalOnlineApps = 0;
-
-        int active = 0;
-        int activeWeek = 0;
-        int activeMonth = 0;
-
         this.ts = System.currentTimeMillis();
-        for (Map.Entry<UserKey, Session> entry: sessionDao.userSession.entrySet()) {
-            Session session = entry.getValue();
-
-            if (session.isHardwareConnected() && session.isAppConnected()) {
-                connectedSessions++;
-            }
-            if (session.isHardwareConnected()) {
-                hardActive++;
-                totalOnlineHards += session.hardwareChannels.size();
-            }
-            if (session.isAppConnected()) {
-                appActive++;
-                totalOnlineApps += session.appChannels.size();
-            }
-            UserKey userKey = entry.getKey();
-            User user = userDao.users.get(userKey);
 
-            if (user != null) {
-                if (this.ts - user.lastModifiedTs < ONE_DAY || dashUpdated(user, this.ts, ONE_DAY)) {
-                    active++;
-                    activeWeek++;
-                    activeMonth++;
-                    continue;
-                }
-                if (this.ts - user.lastModifiedTs < ONE_WEEK || dashUpdated(user, this.ts, ONE_WEEK)) {
-                    activeWeek++;
-                    activeMonth++;
-                    continue;
-                }
-                if (this.ts - user.lastModifiedTs < ONE_MONTH || dashUpdated(user, this.ts, ONE_MONTH)) {
-                    activeMonth++;
-                }
-            }
-        }
-
-        this.connected = connectedSessions;
-        this.onlineApps = appActive;
-        this.totalOnlineApps = totalOnlineApps;
-        this.onlineHards = hardActive;
-        this.totalOnlineHards = totalOnlineHards;
+        //counters are maintained by sessions and profiles, so no walk over all users here
+        SessionCounters counters = sessionDao.counters;
+        this.connected = counters.getConnected();
+        this.onlineApps = counters.getOnlineApps();
+        this.totalOnlineApps = counters.getTotalOnlineApps();
+        this.onlineHards = counters.getOnlineHards();
+        this.totalOnlineHards = counters.getTotalOnlineHards();
 
-        this.active = active;
-        this.activeWeek = activeWeek;
-        this.activeMonth = activeMonth;
-        this.registrations = userDao.users.size();
+        ActivityHistogram activity = userDao.activity;
+        this.active = activity.activeSince(this.ts, ONE_DAY);
+        this.activeWeek = activity.activeSince(this.ts, ONE_WEEK);
+        this.activeMonth = activity.activeSince(this.ts, ONE_MONTH);
+        this.registrations = userDao.getRegistrationsCount();
 
         this.ioStat = new BlockingIOStat(blockingIOProcessor);
         this.memoryStat = new MemoryStat(ByteBufAllocator.DEFAULT);
-    }
-
-    private boolean dashUpdated(User user, long now, long period) {
-        for (DashBoard dash : user.profile.dashBoards) {
-            if (now - dash.updatedAt < period) {
-                return true;
-            }
-        }
-        return false;
+        this.reportingStat = new ReportingStat(globalStats, reset);
+        this.profileCacheStat = new ProfileCacheStat(userDao);
+        this.webhookStat = new WebhookStat(globalStats, reset);
+        this.mailStat = new MailStat(mailWrapper, reset);
     }
 
     @Override
@@ -0,0 +1,28 @@
+package cc.blynk.server.core.stats.model;
+
+import cc.blynk.server.core.stats.GlobalStats;
+
+/**
+ * Outgoing webhooks queue. Latency is average time from the trigger to the response, in millis.
+ */
+public class WebhookStat {
+
+    public final long queued;
+
+    public final long completed;
+
+    public final long avgLatency;
+
+    public final long coalesced;
+
+    public final long dropped;
+
+    public WebhookStat(GlobalStats globalStats, boolean reset) {
+        this.queued = globalStats.webhooksQueued.sum();
+        this.completed = reset ? globalStats.webhooksCompleted.sumThenReset() : globalStats.webhooksCompleted.sum();
+        long latency = reset ? globalStats.webhooksLatency.sumThenReset() : globalStats.webhooksLatency.sum();
+        this.avgLatency = completed == 0 ? 0 : latency / completed;
+        this.coalesced = reset ? globalStats.webhooksCoalesced.sumThenReset() : globalStats.webhooksCoalesced.sum();
+        this.dropped = reset ? globalStats.webhooksDropped.sumThenReset() : globalStats.webhooksDropped.sum();
+    }
+}
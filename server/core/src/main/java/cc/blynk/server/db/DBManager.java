@@ -27,7 +27,6 @@ import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -143,7 +142,7 @@ public class DBManager implements Closeable {
         }
     }
 
-    public void saveUsers(ArrayList<User> users) {
+    public void saveUsers(List<User> users) {
         if (isDBEnabled() && users.size() > 0) {
             blockingIOProcessor.executeDB(() -> userDBDao.save(users));
         }
@@ -13,7 +13,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -123,7 +123,7 @@ public class UserDBDao {
         return t == null ? 0 : t.getTime();
     }
 
-    public void save(ArrayList<User> users) {
+    public void save(List<User> users) {
         long start = System.currentTimeMillis();
         log.info("Storing users...");
 
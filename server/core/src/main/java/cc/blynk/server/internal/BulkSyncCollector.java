@@ -0,0 +1,150 @@
+package cc.blynk.server.internal;
+
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
+import cc.blynk.server.core.protocol.model.messages.MessageBase;
+import cc.blynk.server.core.protocol.model.messages.StringMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.Closeable;
+import java.util.zip.Deflater;
+
+/**
+ * Collects sync messages and sends them as few big frames instead of the frame per message.
+ * Widgets write their sync messages as usual, but into the channel that only keeps them,
+ * so sync logic of every widget is the same for the usual and the bulk sync.
+ *
+ * Frame body : flags (1 byte), entries. Entry : command (1 byte), body length (4 bytes), utf-8 body.
+ * When entries are bigger than COMPRESSION_THRESHOLD they are deflated, if it makes them smaller,
+ * in that case flags is DEFLATED and all the data after flags is deflated entries.
+ */
+public final class BulkSyncCollector implements Closeable {
+
+    public static final byte PLAIN = 0;
+    public static final byte DEFLATED = 1;
+
+    static final int COMPRESSION_THRESHOLD = 1024;
+    private static final int MIN_WRITABLE_BYTES = 1024;
+    //collector is used within the event loop threads only, so deflater is reused per thread
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter());
+
+    //for the app widgets sync
+    public Channel channel() {
+        return channel;
+    }
+
+    //for the hardware widgets sync
+    public ChannelHandlerContext context() {
+        return channel.pipeline().firstContext();
+    }
+
+    /**
+     * Writes all collected messages to the ctx (without flush) as the command messages with msgId.
+     *
+     * @param maxBodyLength - entries are split into few frames, so every frame body fits the limit.
+     *                        Entry that doesn't fit the limit alone goes in the separate frame.
+     */
+    public void writeTo(ChannelHandlerContext ctx, short command, int msgId, int maxBodyLength) {
+        //written messages become readable only after the flush
+        channel.flush();
+        ByteBuf body = newFrame(ctx);
+        try {
+            Object msg;
+            while ((msg = channel.readOutbound()) != null) {
+                try {
+                    if (!(msg instanceof MessageBase)) {
+                        continue;
+                    }
+                    int entryIndex = body.writerIndex();
+                    writeEntry(body, (MessageBase) msg);
+                    if (body.readableBytes() > maxBodyLength && entryIndex > body.readerIndex() + 1) {
+                        ByteBuf next = newFrame(ctx);
+                        next.writeBytes(body, entryIndex, body.writerIndex() - entryIndex);
+                        body.writerIndex(entryIndex);
+                        ByteBuf ready = body;
+                        body = next;
+                        ctx.write(new ByteBufMessage(msgId, command, compress(ready)), ctx.voidPromise());
+                    }
+                } finally {
+                    ReferenceCountUtil.release(msg);
+                }
+            }
+            ByteBuf ready = body;
+            body = null;
+            ctx.write(new ByteBufMessage(msgId, command, compress(ready)), ctx.voidPromise());
+        } finally {
+            if (body != null) {
+                body.release();
+            }
+        }
+    }
+
+    private static ByteBuf newFrame(ChannelHandlerContext ctx) {
+        ByteBuf body = ByteBufMessage.newBody(ctx.alloc());
+        body.writeByte(PLAIN);
+        return body;
+    }
+
+    private static void writeEntry(ByteBuf body, MessageBase msg) {
+        body.writeByte(msg.command);
+        int lengthIndex = body.writerIndex();
+        body.writeInt(0);
+        if (msg instanceof StringMessage) {
+            //ascii messages are valid utf-8 as well
+            int length = ByteBufUtil.writeUtf8(body, ((StringMessage) msg).body);
+            body.setInt(lengthIndex, length);
+        } else {
+            byte[] bytes = msg.getBytes();
+            body.writeBytes(bytes);
+            body.setInt(lengthIndex, bytes.length);
+        }
+    }
+
+    private static ByteBuf compress(ByteBuf body) {
+        int entriesIndex = body.readerIndex() + 1;
+        int entriesLength = body.writerIndex() - entriesIndex;
+        if (entriesLength < COMPRESSION_THRESHOLD) {
+            return body;
+        }
+
+        ByteBuf compressed = ByteBufMessage.newBody(body.alloc());
+        Deflater deflater = DEFLATER.get();
+        try {
+            compressed.writeByte(DEFLATED);
+            deflater.setInput(body.array(), body.arrayOffset() + entriesIndex, entriesLength);
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed.ensureWritable(MIN_WRITABLE_BYTES);
+                int writerIndex = compressed.writerIndex();
+                int written = deflater.deflate(compressed.array(),
+                        compressed.arrayOffset() + writerIndex, compressed.writableBytes());
+                compressed.writerIndex(writerIndex + written);
+            }
+        } finally {
+            //input array goes back to the pool, so deflater should not refer it
+            deflater.reset();
+        }
+
+        if (compressed.readableBytes() < body.readableBytes()) {
+            body.release();
+            return compressed;
+        }
+        compressed.release();
+        return body;
+    }
+
+    @Override
+    public void close() {
+        //not flushed messages would fail on close
+        channel.flush();
+        channel.finishAndReleaseAll();
+    }
+
+}
@@ -1,8 +1,11 @@
 package cc.blynk.server.internal;
 
 import cc.blynk.server.core.protocol.model.messages.BinaryMessage;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
 import cc.blynk.server.core.protocol.model.messages.ResponseMessage;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 
 import java.nio.charset.StandardCharsets;
 
@@ -24,6 +27,7 @@ import static cc.blynk.server.core.protocol.enums.Response.SERVER_ERROR;
 import static cc.blynk.server.core.protocol.enums.Response.USER_ALREADY_REGISTERED;
 import static cc.blynk.server.core.protocol.enums.Response.USER_NOT_AUTHENTICATED;
 import static cc.blynk.server.core.protocol.enums.Response.USER_NOT_REGISTERED;
+import static cc.blynk.utils.StringUtils.BODY_SEPARATOR;
 import static cc.blynk.utils.StringUtils.DEVICE_SEPARATOR;
 
 /**
@@ -128,4 +132,39 @@ public final class CommonByteBufUtil {
         return new BinaryMessage(msgId, cmd, byteData);
     }
 
+    public static ByteBufMessage makeBinaryMessage(short cmd, int msgId, ByteBuf body) {
+        return new ByteBufMessage(msgId, cmd, body);
+    }
+
+    /**
+     * Same as prependDashIdAndDeviceId(), but body bytes are copied right into the outbound buffer.
+     */
+    public static ByteBufMessage makeDeviceMessage(ByteBufAllocator alloc, short cmd, int msgId,
+                                                   int dashId, int deviceId, ByteBuf body) {
+        //2 ints with sign + 2 separators
+        ByteBuf out = ByteBufMessage.newBody(alloc, 24 + body.readableBytes());
+        writeAsciiInt(out, dashId);
+        out.writeByte(DEVICE_SEPARATOR);
+        writeAsciiInt(out, deviceId);
+        out.writeByte(BODY_SEPARATOR);
+        out.writeBytes(body, body.readerIndex(), body.readableBytes());
+        return new ByteBufMessage(msgId, cmd, out);
+    }
+
+    static void writeAsciiInt(ByteBuf out, int value) {
+        long val = value;
+        if (val < 0) {
+            out.writeByte('-');
+            val = -val;
+        }
+        long divider = 1;
+        while (divider * 10 <= val) {
+            divider *= 10;
+        }
+        while (divider > 0) {
+            out.writeByte((int) ('0' + val / divider % 10));
+            divider /= 10;
+        }
+    }
+
 }
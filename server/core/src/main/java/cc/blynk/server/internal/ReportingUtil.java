@@ -7,13 +7,11 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Blynk Project.
@@ -33,29 +31,21 @@ public final class ReportingUtil {
         return Paths.get(dataFolder, "data").toString();
     }
 
+    /**
+     * Reads aggregation entries stored with java serialization by previous versions.
+     */
     @SuppressWarnings("unchecked")
-    public static ConcurrentHashMap<AggregationKey, AggregationValue> read(Path path) {
+    public static Map<AggregationKey, AggregationValue> read(Path path) {
         if (Files.exists(path)) {
             try (InputStream is = Files.newInputStream(path);
                  ObjectInputStream objectinputstream = new ObjectInputStream(is)) {
-                return (ConcurrentHashMap<AggregationKey, AggregationValue>) objectinputstream.readObject();
+                return (Map<AggregationKey, AggregationValue>) objectinputstream.readObject();
             } catch (Exception e) {
                 log.error(e);
             }
         }
 
-        return new ConcurrentHashMap<>();
-    }
-
-    public static void write(Path path, Map<AggregationKey, AggregationValue> map) {
-        if (map.size() > 0) {
-            try (OutputStream os = Files.newOutputStream(path);
-                 ObjectOutputStream oos = new ObjectOutputStream(os)) {
-                oos.writeObject(map);
-            } catch (Exception e) {
-                log.error(e);
-            }
-        }
+        return Collections.emptyMap();
     }
 
 }
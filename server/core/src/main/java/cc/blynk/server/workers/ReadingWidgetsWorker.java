@@ -12,15 +12,25 @@ import cc.blynk.server.core.model.widgets.Widget;
 import cc.blynk.server.core.model.widgets.ui.tiles.DeviceTiles;
 import cc.blynk.server.core.model.widgets.ui.tiles.Tile;
 import cc.blynk.server.core.model.widgets.ui.tiles.TileTemplate;
-import cc.blynk.server.core.session.HardwareStateHolder;
-import cc.blynk.server.internal.StateHolderUtil;
 import io.netty.channel.Channel;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
+ * Sends reading commands to the hardware for the widgets with frequency.
+ *
+ * Every connected device is registered on login and is kept in the hashed wheel
+ * with one second slots. Device is placed in the slot of the second it should be read next time,
+ * so every tick touches only devices that are due. Device is due when the earliest of its
+ * reading widgets is due, so widgets with different frequencies are read in time.
+ * Devices without reading widgets, with inactive dash or
+ * without opened app are checked again every few seconds, so the changes of widgets are picked up.
+ * Devices are removed when hardware channel is closed.
+ *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
  * Created on 02.02.17.
@@ -29,11 +39,25 @@ public class ReadingWidgetsWorker implements Runnable {
 
     private static final Logger log = LogManager.getLogger(ReadingWidgetsWorker.class);
 
+    private static final long TICK = 1000;
+    //wheel covers 64 seconds, devices with longer period wait for the next round
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int RECHECK_TICKS = 5;
+
     private final SessionDao sessionDao;
     private final UserDao userDao;
     private final boolean allowRunWithoutApp;
 
+    //devices are registered from the event loops, wheel itself is accessed only from the worker thread
+    private final Queue<DeviceReading> registrations = new ConcurrentLinkedQueue<>();
+    @SuppressWarnings("unchecked")
+    private final ArrayList<DeviceReading>[] wheel = new ArrayList[WHEEL_SIZE];
+    private long lastTick = -1;
+    private int devices;
+
     private int tickedWidgets = 0;
+    private int processedDevices = 0;
     private int counter = 0;
     private long totalTime = 0;
 
@@ -41,13 +65,25 @@ public class ReadingWidgetsWorker implements Runnable {
         this.sessionDao = sessionDao;
         this.userDao = userDao;
         this.allowRunWithoutApp = allowRunWithoutApp;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Registers hardware channel of the logged in device. Device is checked on the next tick.
+     */
+    public void register(Channel channel, UserKey userKey, int dashId, int deviceId) {
+        DeviceReading deviceReading = new DeviceReading(channel, userKey, dashId, deviceId);
+        channel.closeFuture().addListener(future -> deviceReading.closed = true);
+        registrations.offer(deviceReading);
     }
 
     @Override
     public void run() {
         long now = System.currentTimeMillis();
         try {
-            process(now, allowRunWithoutApp);
+            process(now);
             totalTime += System.currentTimeMillis() - now;
         } catch (Exception e) {
             log.error("Error processing reading widgets. ", e);
@@ -55,46 +91,119 @@ public class ReadingWidgetsWorker implements Runnable {
 
         counter++;
         if (counter == 60) {
-            log.info("Ticked widgets for 1 minute : {}. Per second : {}, total time : {} ms",
-                    tickedWidgets, tickedWidgets / 60, totalTime);
+            log.info("Ticked widgets for 1 minute : {}. Per second : {}, total time : {} ms. "
+                            + "Devices : {}, processed per second : {}",
+                    tickedWidgets, tickedWidgets / 60, totalTime, devices, processedDevices / 60);
             tickedWidgets = 0;
+            processedDevices = 0;
             counter = 0;
             totalTime = 0;
         }
     }
 
-    private void process(long now, boolean allowRunWithoutApp) {
-        for (Map.Entry<UserKey, Session> entry : sessionDao.userSession.entrySet()) {
-            Session session = entry.getValue();
-            //for now checking widgets for active app only
-            if ((allowRunWithoutApp || session.isAppConnected()) && session.isHardwareConnected()) {
-                UserKey userKey = entry.getKey();
-                User user = userDao.users.get(userKey);
-                if (user != null) {
-                    for (DashBoard dashBoard : user.profile.dashBoards) {
-                        if (dashBoard.isActive) {
-                            for (Channel channel : session.hardwareChannels) {
-                                HardwareStateHolder stateHolder = StateHolderUtil.getHardState(channel);
-                                if (stateHolder != null && stateHolder.dash.id == dashBoard.id) {
-                                    int deviceId = stateHolder.device.id;
-                                    for (Widget widget : dashBoard.widgets) {
-                                        if (widget instanceof FrequencyWidget) {
-                                            process(channel, (FrequencyWidget) widget, dashBoard, deviceId, now);
-                                        } else if (widget instanceof DeviceTiles) {
-                                            processDeviceTile(channel, (DeviceTiles) widget, deviceId, now);
-                                        }
-                                    }
-                                    channel.flush();
-                                }
-                            }
-                        }
-                    }
-                }
+    void process(long now) {
+        long currentTick = now / TICK;
+        if (lastTick < 0 || currentTick - lastTick > WHEEL_SIZE) {
+            lastTick = currentTick - 1;
+        }
+
+        DeviceReading registered;
+        while ((registered = registrations.poll()) != null) {
+            devices++;
+            schedule(registered, currentTick);
+        }
+
+        //ticks missed because of the slow run are processed now
+        for (long tick = lastTick + 1; tick <= currentTick; tick++) {
+            processSlot(tick, now);
+        }
+        lastTick = currentTick;
+    }
+
+    private void processSlot(long tick, long now) {
+        int slot = (int) (tick & WHEEL_MASK);
+        ArrayList<DeviceReading> deviceReadings = wheel[slot];
+        if (deviceReadings.isEmpty()) {
+            return;
+        }
+        //due devices may be scheduled back into this slot
+        wheel[slot] = new ArrayList<>();
+        for (DeviceReading deviceReading : deviceReadings) {
+            if (deviceReading.dueTick > tick) {
+                //next round
+                wheel[slot].add(deviceReading);
+                continue;
+            }
+            long dueTick = process(deviceReading, tick, now);
+            if (dueTick > 0) {
+                schedule(deviceReading, dueTick);
+            } else {
+                devices--;
             }
         }
     }
 
-    private void processDeviceTile(Channel channel,  DeviceTiles deviceTiles, int deviceId, long now) {
+    private void schedule(DeviceReading deviceReading, long dueTick) {
+        deviceReading.dueTick = dueTick;
+        wheel[(int) (dueTick & WHEEL_MASK)].add(deviceReading);
+    }
+
+    /**
+     * @return tick of the next check of the device or 0 if device should be removed.
+     */
+    private long process(DeviceReading deviceReading, long tick, long now) {
+        Channel channel = deviceReading.channel;
+        if (deviceReading.closed || !channel.isActive()) {
+            return 0;
+        }
+        Session session = sessionDao.userSession.get(deviceReading.userKey);
+        User user = userDao.users.get(deviceReading.userKey);
+        if (session == null || user == null) {
+            return 0;
+        }
+        DashBoard dash = user.profile.getDashById(deviceReading.dashId);
+        if (dash == null) {
+            return 0;
+        }
+        //for now checking widgets for active app only
+        if (!dash.isActive || !(allowRunWithoutApp || session.isAppConnected())) {
+            return tick + RECHECK_TICKS;
+        }
+
+        deviceReading.refresh(dash.widgets);
+        if (deviceReading.periodTicks == 0) {
+            return tick + RECHECK_TICKS;
+        }
+
+        processedDevices++;
+        int deviceId = deviceReading.deviceId;
+        boolean written = false;
+        long nextRequestTS = Long.MAX_VALUE;
+        for (FrequencyWidget frequencyWidget : deviceReading.readers) {
+            //widgets of other devices don't affect the schedule of this one
+            if (sameDeviceId(dash, frequencyWidget.getDeviceId(), deviceId)) {
+                written |= process(channel, frequencyWidget, now);
+                nextRequestTS = Math.min(nextRequestTS, frequencyWidget.getNextRequestTS());
+            }
+        }
+        for (DeviceTiles deviceTiles : deviceReading.tiles) {
+            written |= processDeviceTile(channel, deviceTiles, deviceId, now);
+        }
+        if (written) {
+            channel.flush();
+        }
+
+        //tiles are read every tick
+        if (nextRequestTS == Long.MAX_VALUE || deviceReading.tiles.length > 0) {
+            return tick + deviceReading.periodTicks;
+        }
+        //first tick when the earliest widget is ticked
+        long dueTick = (nextRequestTS - FrequencyWidget.READING_TOLERANCE + TICK - 1) / TICK;
+        return Math.max(tick + 1, dueTick);
+    }
+
+    private boolean processDeviceTile(Channel channel, DeviceTiles deviceTiles, int deviceId, long now) {
+        boolean written = false;
         for (Tile tile : deviceTiles.tiles) {
             if (tile.deviceId == deviceId && tile.isTicked(now)) {
                 TileTemplate tileTemplate = deviceTiles.getTileTemplateById(tile.templateId);
@@ -105,27 +214,82 @@ public class ReadingWidgetsWorker implements Runnable {
                             if (channel.isWritable()) {
                                 frequencyWidget.writeReadingCommand(channel);
                                 tickedWidgets++;
+                                written = true;
                             }
                         }
                     }
                 }
             }
         }
+        return written;
     }
 
-    private void process(Channel channel, FrequencyWidget frequencyWidget,
-                         DashBoard dashBoard, int deviceId, long now) {
-        if (channel.isWritable()
-                && sameDeviceId(dashBoard, frequencyWidget.getDeviceId(), deviceId)
-                && frequencyWidget.isTicked(now)) {
+    private boolean process(Channel channel, FrequencyWidget frequencyWidget, long now) {
+        if (channel.isWritable() && frequencyWidget.isTicked(now)) {
             frequencyWidget.writeReadingCommand(channel);
             tickedWidgets++;
+            return true;
         }
+        return false;
     }
 
+    //target is checked on every read, as device selector may switch the device without changing widgets
     private boolean sameDeviceId(DashBoard dash, int targetId, int channelDeviceId) {
         Target target = dash.getTarget(targetId);
         return target != null && target.isSelected(channelDeviceId);
     }
 
+    private static final class DeviceReading {
+
+        private static final FrequencyWidget[] NO_READERS = {};
+        private static final DeviceTiles[] NO_TILES = {};
+
+        private final Channel channel;
+        private final UserKey userKey;
+        private final int dashId;
+        private final int deviceId;
+
+        private volatile boolean closed;
+        private long dueTick;
+
+        //reading widgets of the dash, rebuilt when widgets of the dash are changed
+        private Widget[] widgets;
+        private FrequencyWidget[] readers = NO_READERS;
+        private DeviceTiles[] tiles = NO_TILES;
+        private long periodTicks;
+
+        private DeviceReading(Channel channel, UserKey userKey, int dashId, int deviceId) {
+            this.channel = channel;
+            this.userKey = userKey;
+            this.dashId = dashId;
+            this.deviceId = deviceId;
+        }
+
+        private void refresh(Widget[] dashWidgets) {
+            if (this.widgets == dashWidgets) {
+                return;
+            }
+            ArrayList<FrequencyWidget> readers = new ArrayList<>();
+            ArrayList<DeviceTiles> tiles = new ArrayList<>();
+            long minFrequency = Long.MAX_VALUE;
+            for (Widget widget : dashWidgets) {
+                if (widget instanceof FrequencyWidget) {
+                    FrequencyWidget frequencyWidget = (FrequencyWidget) widget;
+                    if (frequencyWidget.getFrequency() > 0) {
+                        readers.add(frequencyWidget);
+                        minFrequency = Math.min(minFrequency, frequencyWidget.getFrequency());
+                    }
+                } else if (widget instanceof DeviceTiles) {
+                    //tiles are read once a second
+                    tiles.add((DeviceTiles) widget);
+                    minFrequency = TICK;
+                }
+            }
+            this.widgets = dashWidgets;
+            this.readers = readers.toArray(NO_READERS);
+            this.tiles = tiles.toArray(NO_TILES);
+            this.periodTicks = minFrequency == Long.MAX_VALUE ? 0 : Math.max(1, minFrequency / TICK);
+        }
+    }
+
 }
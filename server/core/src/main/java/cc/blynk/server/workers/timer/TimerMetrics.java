@@ -0,0 +1,72 @@
+package cc.blynk.server.workers.timer;
+
+/**
+ * Timings of the timer ticks. Tick duration is measured from the second boundary
+ * till the last batch of the tick is processed, so it includes the delay of the tick start.
+ * Fire is late when timer is processed in the next second or later.
+ */
+public final class TimerMetrics {
+
+    private static final long LATE_THRESHOLD = 1000;
+
+    private long ticks;
+    private long lastTickDuration;
+    private long maxTickDuration;
+    private long fired;
+    private long lateFired;
+    private long maxLateness;
+
+    synchronized void tickFinished(long duration) {
+        ticks++;
+        lastTickDuration = duration;
+        if (duration > maxTickDuration) {
+            maxTickDuration = duration;
+        }
+    }
+
+    synchronized void fired(int timers, long lateness) {
+        fired += timers;
+        if (lateness >= LATE_THRESHOLD) {
+            lateFired += timers;
+        }
+        if (lateness > maxLateness) {
+            maxLateness = lateness;
+        }
+    }
+
+    public synchronized long getTicks() {
+        return ticks;
+    }
+
+    public synchronized long getLastTickDurationMillis() {
+        return lastTickDuration;
+    }
+
+    public synchronized long getMaxTickDurationMillis() {
+        return maxTickDuration;
+    }
+
+    public synchronized long getFired() {
+        return fired;
+    }
+
+    public synchronized long getLateFired() {
+        return lateFired;
+    }
+
+    public synchronized long getMaxLatenessMillis() {
+        return maxLateness;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Timers{ticks=" + ticks
+                + ", lastTickDuration=" + lastTickDuration
+                + ", maxTickDuration=" + maxTickDuration
+                + ", fired=" + fired
+                + ", lateFired=" + lateFired
+                + ", maxLateness=" + maxLateness
+                + '}';
+    }
+
+}
@@ -22,16 +22,21 @@ import cc.blynk.server.core.processors.EventorProcessor;
 import cc.blynk.server.notifications.push.GCMWrapper;
 import cc.blynk.utils.ArrayUtil;
 import cc.blynk.utils.DateTimeUtils;
+import io.netty.channel.EventLoop;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
 import static cc.blynk.server.internal.EmptyArraysUtil.EMPTY_INTS;
@@ -46,6 +51,7 @@ import static cc.blynk.server.internal.EmptyArraysUtil.EMPTY_INTS;
  * with iteration over all profiles every second
  *
  * + Concurrency around it as timerWorker may be accessed from different threads.
+ * + Timers of the same second are executed in parallel on the event loops of the user sessions.
  *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
@@ -62,6 +68,7 @@ public class TimerWorker implements Runnable {
     private final GCMWrapper gcmWrapper;
     private final AtomicReferenceArray<ConcurrentHashMap<TimerKey, BaseAction[]>> timerExecutors;
     private final static int size = 86400;
+    public final TimerMetrics metrics = new TimerMetrics();
 
     @SuppressWarnings("unchecked")
     public TimerWorker(UserDao userDao, SessionDao sessionDao, GCMWrapper gcmWrapper) {
@@ -189,14 +196,13 @@ public class TimerWorker implements Runnable {
         return timerExecutors.get(seconds);
     }
 
-    private int actuallySendTimers;
-    private int activeTimers;
-
     @Override
     public void run() {
         log.trace("Starting timer...");
+        run(ZonedDateTime.now(DateTimeUtils.UTC));
+    }
 
-        ZonedDateTime currentDateTime = ZonedDateTime.now(DateTimeUtils.UTC);
+    void run(ZonedDateTime currentDateTime) {
         int curSeconds = currentDateTime.toLocalTime().toSecondOfDay();
 
         ConcurrentMap<TimerKey, BaseAction[]> tickedExecutors = timerExecutors.get(curSeconds);
@@ -208,38 +214,104 @@ public class TimerWorker implements Runnable {
         long now = System.currentTimeMillis();
 
         try {
-            this.activeTimers = 0;
-            this.actuallySendTimers = 0;
             send(tickedExecutors, currentDateTime, curSeconds, now);
         } catch (Exception e) {
             log.error("Error running timers. ", e);
         }
-
-        if (activeTimers > 0) {
-            log.info("Timer finished. Ready {}, Active {}, Actual {}. Processing time : {} ms",
-                    tickedExecutors.size(), activeTimers, actuallySendTimers, System.currentTimeMillis() - now);
-        }
     }
 
+    /**
+     * Timers of the tick are grouped by user and every user batch is executed on the event loop
+     * of the user session, so timers of different users are processed in parallel
+     * and messages are written from the thread that owns the channels.
+     * Users without session have nothing to send, so they are processed right here.
+     */
     private void send(ConcurrentMap<TimerKey, BaseAction[]> tickedExecutors,
                       ZonedDateTime currentDateTime, int curSeconds, long now) {
+        Map<UserKey, List<Map.Entry<TimerKey, BaseAction[]>>> byUser = new HashMap<>();
         for (Map.Entry<TimerKey, BaseAction[]> entry : tickedExecutors.entrySet()) {
             TimerKey key = entry.getKey();
-            BaseAction[] actions = entry.getValue();
             if (key.time.isTickTime(curSeconds, currentDateTime)) {
-                User user = userDao.users.get(key.userKey);
-                if (user != null) {
-                    DashBoard dash = user.profile.getDashById(key.dashId);
-                    if (dash != null && dash.isActive) {
-                        activeTimers++;
-                        process(dash, key, actions, now);
-                    }
-                }
+                byUser.computeIfAbsent(key.userKey, k -> new ArrayList<>()).add(entry);
+            }
+        }
+        if (byUser.isEmpty()) {
+            return;
+        }
+
+        Map<EventLoop, List<List<Map.Entry<TimerKey, BaseAction[]>>>> byEventLoop = new HashMap<>();
+        List<List<Map.Entry<TimerKey, BaseAction[]>>> offline = new ArrayList<>();
+        for (Map.Entry<UserKey, List<Map.Entry<TimerKey, BaseAction[]>>> userTimers : byUser.entrySet()) {
+            Session session = sessionDao.userSession.get(userTimers.getKey());
+            if (session == null) {
+                offline.add(userTimers.getValue());
+            } else {
+                byEventLoop.computeIfAbsent(session.initialEventLoop, k -> new ArrayList<>())
+                        .add(userTimers.getValue());
+            }
+        }
+
+        //tick start is a second boundary, so lateness includes the delay of the scheduler itself
+        Tick tick = new Tick(tickedExecutors.size(), now - now % 1000, byEventLoop.size() + 1);
+        for (Map.Entry<EventLoop, List<List<Map.Entry<TimerKey, BaseAction[]>>>> batch : byEventLoop.entrySet()) {
+            List<List<Map.Entry<TimerKey, BaseAction[]>>> usersTimers = batch.getValue();
+            try {
+                batch.getKey().execute(() -> fire(usersTimers, tick));
+            } catch (RejectedExecutionException e) {
+                //event loop is shutting down
+                batchFinished(tick);
+            }
+        }
+        fire(offline, tick);
+    }
+
+    private void fire(List<List<Map.Entry<TimerKey, BaseAction[]>>> usersTimers, Tick tick) {
+        long now = System.currentTimeMillis();
+        int timers = 0;
+        for (List<Map.Entry<TimerKey, BaseAction[]>> userTimers : usersTimers) {
+            timers += userTimers.size();
+            try {
+                fireUserTimers(userTimers, tick, now);
+            } catch (Exception e) {
+                log.error("Error running timers. ", e);
             }
         }
+        metrics.fired(timers, now - tick.start);
+        batchFinished(tick);
     }
 
-    private void process(DashBoard dash, TimerKey key, BaseAction[] actions, long now) {
+    private void fireUserTimers(List<Map.Entry<TimerKey, BaseAction[]>> userTimers, Tick tick, long now) {
+        //user and dash are resolved once for all timers of the user
+        User user = userDao.get(userTimers.get(0).getKey().userKey);
+        if (user == null) {
+            return;
+        }
+        DashBoard dash = null;
+        for (Map.Entry<TimerKey, BaseAction[]> entry : userTimers) {
+            TimerKey key = entry.getKey();
+            if (dash == null || dash.id != key.dashId) {
+                dash = user.profile.getDashById(key.dashId);
+            }
+            if (dash != null && dash.isActive) {
+                tick.activeTimers.increment();
+                process(user, dash, key, entry.getValue(), now, tick);
+            }
+        }
+    }
+
+    private void batchFinished(Tick tick) {
+        if (tick.pendingBatches.decrementAndGet() == 0) {
+            long duration = System.currentTimeMillis() - tick.start;
+            metrics.tickFinished(duration);
+            long active = tick.activeTimers.sum();
+            if (active > 0) {
+                log.info("Timer finished. Ready {}, Active {}, Actual {}. Processing time : {} ms",
+                        tick.ready, active, tick.actuallySendTimers.sum(), duration);
+            }
+        }
+    }
+
+    private void process(User user, DashBoard dash, TimerKey key, BaseAction[] actions, long now, Tick tick) {
         for (BaseAction action : actions) {
             if (action instanceof SetPinAction) {
                 SetPinAction setPinAction = (SetPinAction) action;
@@ -276,8 +348,9 @@ public class TimerWorker implements Runnable {
                     dash.update(deviceId, setPinAction.dataStream.pin,
                             setPinAction.dataStream.pinType, setPinAction.value, now);
                 }
+                user.markDirty();
 
-                triggerTimer(sessionDao, key.userKey, setPinAction.makeHardwareBody(), key.dashId, deviceIds);
+                triggerTimer(key.userKey, setPinAction.makeHardwareBody(), key.dashId, deviceIds, tick);
             } else if (action instanceof NotifyAction) {
                 NotifyAction notifyAction = (NotifyAction) action;
                 EventorProcessor.push(gcmWrapper, dash, notifyAction.message);
@@ -285,11 +358,11 @@ public class TimerWorker implements Runnable {
         }
     }
 
-    private void triggerTimer(SessionDao sessionDao, UserKey userKey, String value, int dashId, int[] deviceIds) {
+    private void triggerTimer(UserKey userKey, String value, int dashId, int[] deviceIds, Tick tick) {
         Session session = sessionDao.userSession.get(userKey);
         if (session != null) {
             if (!session.sendMessageToHardware(dashId, HARDWARE, TIMER_MSG_ID, value, deviceIds)) {
-                actuallySendTimers++;
+                tick.actuallySendTimers.increment();
             }
             for (int deviceId : deviceIds) {
                 session.sendToApps(HARDWARE, TIMER_MSG_ID, dashId, deviceId, value);
@@ -319,4 +392,19 @@ public class TimerWorker implements Runnable {
             }
         }
     }
+
+    //state of the single tick shared between the event loops that process it
+    private static final class Tick {
+        private final int ready;
+        private final long start;
+        private final AtomicInteger pendingBatches;
+        private final LongAdder activeTimers = new LongAdder();
+        private final LongAdder actuallySendTimers = new LongAdder();
+
+        private Tick(int ready, long start, int batches) {
+            this.ready = ready;
+            this.start = start;
+            this.pendingBatches = new AtomicInteger(batches);
+        }
+    }
 }
@@ -0,0 +1,149 @@
+package cc.blynk.server.core.dao;
+
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import cc.blynk.server.core.protocol.exceptions.NoDataException;
+import cc.blynk.utils.AppNameUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CSVChunkedInputTest {
+
+    private static final byte PIN = 7;
+
+    private Path dataDir;
+    private ReportingDao reportingDao;
+    private User user;
+
+    @Before
+    public void init() throws Exception {
+        dataDir = Files.createTempDirectory("blynk-csv");
+        reportingDao = new ReportingDao(dataDir.toString(), true);
+        user = new User("test@blynk.cc", "pass", AppNameUtil.BLYNK, "local", "127.0.0.1", false, false);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(dataDir.toFile());
+    }
+
+    private List<String> writeData(int deviceId, int count) throws Exception {
+        Path file = reportingDao.getDataFile(user, 1, deviceId, PinType.VIRTUAL, PIN, GraphGranularityType.MINUTE);
+        Files.createDirectories(file.getParent());
+        ByteBuffer records = ByteBuffer.allocate(count * 16);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double value = i % 3 == 0 ? i : i / 100D;
+            long ts = 1_500_000_000_000L + i * 60_000L;
+            records.putDouble(value).putLong(ts);
+            lines.add("" + value + ',' + ts + ',' + deviceId);
+        }
+        records.flip();
+        reportingDao.storage.write(file, GraphGranularityType.MINUTE, records);
+        return lines;
+    }
+
+    private static List<String> readAll(CSVChunkedInput csv) throws Exception {
+        ByteBuf gzipped = Unpooled.buffer();
+        ByteBuf chunk;
+        while ((chunk = csv.readChunk(ByteBufAllocator.DEFAULT)) != null) {
+            gzipped.writeBytes(chunk);
+            chunk.release();
+        }
+        csv.close();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteBufInputStream(gzipped, true)), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testDevicesAreExportedInChronologicalOrder() throws Exception {
+        List<String> expected = writeData(1, 2500);
+        expected.addAll(writeData(2, 10));
+
+        CSVChunkedInput csv = reportingDao.csvGenerator.streamCSV(user, 1, PinType.VIRTUAL, PIN, 1, 3, 2);
+        assertEquals(expected, readAll(csv));
+    }
+
+    @Test(expected = NoDataException.class)
+    public void testNoData() throws Exception {
+        reportingDao.csvGenerator.streamCSV(user, 1, PinType.VIRTUAL, PIN, 1);
+    }
+
+    @Test
+    public void testFileExportIsTheSame() throws Exception {
+        List<String> expected = writeData(1, 100);
+
+        Path path = reportingDao.csvGenerator.createCSV(user, 1, 1, PinType.VIRTUAL, PIN, 1);
+        try {
+            ByteBuf gzipped = Unpooled.wrappedBuffer(Files.readAllBytes(path));
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteBufInputStream(gzipped, true)), StandardCharsets.US_ASCII))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+            assertEquals(expected, lines);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static String format(double value) {
+        byte[] buf = new byte[64];
+        return new String(buf, 0, CSVChunkedInput.writeDouble(buf, 0, value), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testNumbersAreFormattedAsToString() {
+        double[] values = {0, -0D, 1, -1, 1.11, 0.001, 0.0001, 123.456, 9999999, 10000000, 1e20, 0.1 + 0.2,
+                Double.NaN, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, -25.5, 1.234567};
+        for (double value : values) {
+            assertEquals(Double.toString(value), format(value));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            double value = Math.round(random.nextGaussian() * 1_000_000) / 1000D;
+            String formatted = format(value);
+            assertEquals(formatted, value, Double.parseDouble(formatted), 0);
+            assertFalse(formatted, formatted.contains("E"));
+        }
+
+        byte[] buf = new byte[32];
+        for (long value : new long[] {0, 9, 10, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1_500_000_000_000L}) {
+            assertEquals(Long.toString(value),
+                    new String(buf, 0, CSVChunkedInput.writeLong(buf, 0, value), StandardCharsets.US_ASCII));
+        }
+    }
+
+}
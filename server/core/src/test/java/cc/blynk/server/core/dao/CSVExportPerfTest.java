@@ -0,0 +1,113 @@
+package cc.blynk.server.core.dao;
+
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import cc.blynk.utils.AppNameUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export of the month of minute points (43200 records) of one pin.
+ * "lines" is the previous approach - whole series is read into heap buffer
+ * and every line is built as string, "chunked" is the streamed export.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class CSVExportPerfTest {
+
+    private static final int RECORDS = 43200;
+    private static final byte PIN = 1;
+
+    private Path dataDir;
+    private ReportingDao reportingDao;
+    private User user;
+
+    @Setup
+    public void setup() throws Exception {
+        dataDir = Files.createTempDirectory("blynk-csv-perf");
+        reportingDao = new ReportingDao(dataDir.toString(), true);
+        user = new User("test@blynk.cc", "pass", AppNameUtil.BLYNK, "local", "127.0.0.1", false, false);
+        Path file = reportingDao.getDataFile(user, 1, 0, PinType.VIRTUAL, PIN, GraphGranularityType.MINUTE);
+        Files.createDirectories(file.getParent());
+        ByteBuffer records = ByteBuffer.allocate(RECORDS * 16);
+        for (int i = 0; i < RECORDS; i++) {
+            records.putDouble(20 + (i % 100) / 10D).putLong(1_500_000_000_000L + i * 60_000L);
+        }
+        records.flip();
+        reportingDao.storage.write(file, GraphGranularityType.MINUTE, records);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dataDir.toFile());
+    }
+
+    @Benchmark
+    public void lines() throws Exception {
+        ByteBuffer data = reportingDao.getByteBufferFromDisk(user, 1, 0, PinType.VIRTUAL, PIN,
+                RECORDS, GraphGranularityType.MINUTE, 0);
+        data.flip();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new NullOutputStream()), StandardCharsets.US_ASCII))) {
+            while (data.remaining() > 0) {
+                double value = data.getDouble();
+                long ts = data.getLong();
+                writer.write("" + value + ',' + ts + ',' + 0 + '\n');
+            }
+        }
+    }
+
+    @Benchmark
+    public long chunked() throws Exception {
+        CSVChunkedInput csv = reportingDao.csvGenerator.streamCSV(user, 1, PinType.VIRTUAL, PIN, 0);
+        long size = 0;
+        ByteBuf chunk;
+        while ((chunk = csv.readChunk(ByteBufAllocator.DEFAULT)) != null) {
+            size += chunk.readableBytes();
+            chunk.release();
+        }
+        csv.close();
+        return size;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CSVExportPerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
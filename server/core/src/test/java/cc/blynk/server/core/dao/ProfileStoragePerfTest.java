@@ -0,0 +1,109 @@
+package cc.blynk.server.core.dao;
+
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.serialization.JsonParser;
+import cc.blynk.utils.AppNameUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares startup load of the user profiles stored as json and as smile.
+ * "sequential" is the loader used before - one file after another via stream parsing.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ProfileStoragePerfTest {
+
+    @Param({"20000"})
+    private int usersCount;
+
+    @Param({"json", "smile"})
+    private String format;
+
+    private Path dataDir;
+    private FileManager fileManager;
+
+    @Setup
+    public void setup() throws Exception {
+        dataDir = Files.createTempDirectory("blynk-profiles");
+        fileManager = new FileManager(dataDir.toString(), null, "smile".equals(format));
+
+        Path profilePath = Paths.get(getClass().getResource("/json_test/user_profile_json_5.txt").toURI());
+        String profile = new String(Files.readAllBytes(profilePath), StandardCharsets.UTF_8);
+        for (int i = 0; i < usersCount; i++) {
+            User user = new User("user" + i + "@blynk.cc", "pass", AppNameUtil.BLYNK,
+                    "local", "127.0.0.1", false, false);
+            user.profile = JsonParser.parseProfileFromString(profile);
+            fileManager.overrideUserFile(user);
+        }
+
+        long bytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(fileManager.getDataDir())) {
+            for (Path file : files) {
+                bytes += Files.size(file);
+            }
+        }
+        System.out.println(format + " profiles on disk : " + bytes + " bytes.");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        org.apache.commons.io.FileUtils.deleteDirectory(dataDir.toFile());
+    }
+
+    @Benchmark
+    public Map<UserKey, User> sequential() throws IOException {
+        Map<UserKey, User> users = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(fileManager.getDataDir(), "*.user")) {
+            for (Path file : files) {
+                User user = JsonParser.parseUserFromFile(new File(file.toString()));
+                users.put(new UserKey(user), user);
+            }
+        }
+        return users;
+    }
+
+    @Benchmark
+    public Map<UserKey, User> parallel() {
+        return fileManager.deserializeUsers();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProfileStoragePerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,212 @@
+package cc.blynk.server.core.dao;
+
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.auth.Session;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.device.Device;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.Widget;
+import cc.blynk.server.core.model.widgets.controls.Timer;
+import cc.blynk.server.db.DBManager;
+import cc.blynk.utils.AppNameUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class UserDaoEvictionTest {
+
+    private static final long IDLE_TIME = 1000;
+
+    private Path dataDir;
+    private FileManager fileManager;
+    private UserDao userDao;
+    private SessionDao sessionDao;
+    private TokenManager tokenManager;
+
+    @Before
+    public void init() throws Exception {
+        dataDir = Files.createTempDirectory("blynk-eviction");
+        fileManager = new FileManager(dataDir.toString(), "127.0.0.1");
+        for (int i = 0; i < 3; i++) {
+            fileManager.overrideUserFile(createUser(i));
+        }
+        userDao = new UserDao(fileManager.deserializeUsers(), "local", "127.0.0.1", fileManager);
+        sessionDao = new SessionDao();
+        tokenManager = new TokenManager(userDao, mock(DBManager.class), "127.0.0.1");
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        org.apache.commons.io.FileUtils.deleteDirectory(dataDir.toFile());
+    }
+
+    private static User createUser(int i) {
+        User user = new User("user" + i + "@blynk.cc", "pass", AppNameUtil.BLYNK,
+                "local", "127.0.0.1", false, false);
+        DashBoard dash = new DashBoard();
+        dash.id = 1;
+        dash.sharedToken = "shared" + i;
+        Device device = new Device(0, "device", "ESP8266");
+        device.token = "token" + i;
+        dash.devices = new Device[] {device};
+        user.profile.dashBoards = new DashBoard[] {dash};
+        //user0 is the least active one
+        user.lastModifiedTs = i;
+        return user;
+    }
+
+    private static UserKey key(int i) {
+        return new UserKey("user" + i + "@blynk.cc", AppNameUtil.BLYNK);
+    }
+
+    @Test
+    public void testLeastActiveUsersAreEvictedTillLimit() {
+        int evicted = userDao.evictColdUsers(sessionDao, tokenManager, 1, IDLE_TIME, System.currentTimeMillis());
+
+        assertEquals(2, evicted);
+        assertEquals(1, userDao.users.size());
+        assertNotNull(userDao.users.get(key(2)));
+        assertEquals(3, userDao.getRegistrationsCount());
+        assertEquals(3, userDao.getAllUserKeys().size());
+        assertTrue(userDao.contains(key(0).email, AppNameUtil.BLYNK));
+        assertEquals(2, userDao.getEvictions());
+    }
+
+    @Test
+    public void testEvictedUserIsLoadedOnAccess() {
+        User user = userDao.users.get(key(0));
+        userDao.evictColdUsers(sessionDao, tokenManager, 2, IDLE_TIME, System.currentTimeMillis());
+        assertNull(userDao.users.get(key(0)));
+
+        User loaded = userDao.getByName(key(0).email, AppNameUtil.BLYNK);
+        assertNotNull(loaded);
+        assertNotSame(user, loaded);
+        assertEquals("token0", loaded.profile.dashBoards[0].devices[0].token);
+        assertSame(loaded, userDao.users.get(key(0)));
+        assertEquals(0, userDao.getColdUsersCount());
+        assertEquals(1, userDao.getReloads());
+    }
+
+    @Test
+    public void testEvictedUserIsLoadedByToken() {
+        userDao.evictColdUsers(sessionDao, tokenManager, 2, IDLE_TIME, System.currentTimeMillis());
+
+        TokenValue tokenValue = tokenManager.getTokenValueByToken("token0");
+        assertNotNull(tokenValue);
+        assertSame(userDao.users.get(key(0)), tokenValue.user);
+        assertEquals(0, tokenValue.device.id);
+
+        SharedTokenValue sharedTokenValue = tokenManager.getUserBySharedToken("shared0");
+        assertNotNull(sharedTokenValue);
+        assertSame(tokenValue.user, sharedTokenValue.user);
+        assertEquals(1, userDao.getReloads());
+
+        assertNull(tokenManager.getTokenValueByToken("unknown"));
+    }
+
+    @Test
+    public void testOnlineDirtyAndRecentUsersAreNotEvicted() {
+        Session session = sessionDao.getOrCreateSessionByUser(key(0), new EmbeddedChannel().eventLoop());
+        session.addAppChannel(new EmbeddedChannel());
+        userDao.users.get(key(1)).setDirtyUsers(new ConcurrentLinkedQueue<>());
+        userDao.users.get(key(1)).markDirty();
+        userDao.users.get(key(2)).lastLoggedAt = System.currentTimeMillis();
+
+        int evicted = userDao.evictColdUsers(sessionDao, tokenManager, 1, IDLE_TIME, System.currentTimeMillis());
+
+        assertEquals(0, evicted);
+        assertEquals(3, userDao.users.size());
+    }
+
+    @Test
+    public void testProfileWithoutFileIsWrittenBeforeEviction() throws Exception {
+        //like the profile restored from DB
+        Files.delete(fileManager.generateFileName(key(0).email, AppNameUtil.BLYNK));
+
+        userDao.evictColdUsers(sessionDao, tokenManager, 2, IDLE_TIME, System.currentTimeMillis());
+        assertNull(userDao.users.get(key(0)));
+
+        User loaded = userDao.getByName(key(0).email, AppNameUtil.BLYNK);
+        assertNotNull(loaded);
+        assertEquals("token0", loaded.profile.dashBoards[0].devices[0].token);
+    }
+
+    @Test
+    public void testUsersWithTimersAreNotEvicted() {
+        Timer timer = new Timer();
+        timer.pin = 1;
+        timer.pinType = PinType.VIRTUAL;
+        timer.startTime = 60;
+        timer.startValue = "1";
+        userDao.users.get(key(0)).profile.dashBoards[0].widgets = new Widget[] {timer};
+
+        int evicted = userDao.evictColdUsers(sessionDao, tokenManager, 1, IDLE_TIME, System.currentTimeMillis());
+
+        assertEquals(2, evicted);
+        assertEquals(1, userDao.users.size());
+        assertNotNull(userDao.users.get(key(0)));
+    }
+
+    @Test
+    public void testEvictedUserIsLoadedInBackground() {
+        userDao.evictColdUsers(sessionDao, tokenManager, 2, IDLE_TIME, System.currentTimeMillis());
+        EmbeddedChannel channel = new EmbeddedChannel();
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicBoolean loggedIn = new AtomicBoolean();
+
+        assertTrue(tokenManager.loadEvictedUser("token0", tasks::add, channel.eventLoop(),
+                () -> loggedIn.set(tokenManager.getTokenValueByToken("token0") != null)));
+        assertNull(userDao.users.get(key(0)));
+
+        tasks.remove(0).run();
+        assertNotNull(userDao.users.get(key(0)));
+        assertFalse(loggedIn.get());
+        channel.runPendingTasks();
+        assertTrue(loggedIn.get());
+
+        //profile is in memory now, so token is used right away
+        assertFalse(tokenManager.loadEvictedUser("token0", tasks::add, channel.eventLoop(), () -> { }));
+        assertFalse(userDao.loadColdUser(key(2), tasks::add, channel.eventLoop(), () -> { }));
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void testEvictionIsDisabledWithoutLimit() {
+        int evicted = userDao.evictColdUsers(sessionDao, tokenManager, 0, IDLE_TIME, System.currentTimeMillis());
+        assertEquals(0, evicted);
+        assertEquals(3, userDao.users.size());
+
+        UserDao withoutStorage = new UserDao(new ConcurrentHashMap<>(userDao.users), "local", "127.0.0.1");
+        assertEquals(0, withoutStorage.evictColdUsers(sessionDao, tokenManager, 1, IDLE_TIME, Long.MAX_VALUE));
+        assertFalse(withoutStorage.users.isEmpty());
+    }
+
+    @Test
+    public void testEvictedUserIsDeleted() {
+        userDao.evictColdUsers(sessionDao, tokenManager, 2, IDLE_TIME, System.currentTimeMillis());
+
+        User deleted = userDao.delete(key(0));
+        assertNotNull(deleted);
+        assertFalse(userDao.contains(key(0).email, AppNameUtil.BLYNK));
+        assertNull(userDao.getByName(key(0).email, AppNameUtil.BLYNK));
+    }
+
+}
@@ -0,0 +1,21 @@
+package cc.blynk.server.core.dao.functions;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MaxGraphFunctionTest {
+
+    @Test
+    public void testMaxOfNegativeValuesAfterReset() {
+        MaxGraphFunction maxFunction = new MaxGraphFunction();
+        maxFunction.apply(10);
+        assertEquals(10, maxFunction.getResult(), 0.0001);
+
+        maxFunction.reset();
+        maxFunction.apply(-5);
+        maxFunction.apply(-2);
+        assertEquals(-2, maxFunction.getResult(), 0.0001);
+    }
+
+}
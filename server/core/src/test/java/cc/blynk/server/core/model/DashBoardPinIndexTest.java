@@ -0,0 +1,201 @@
+package cc.blynk.server.core.model;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.OnePinWidget;
+import cc.blynk.server.core.model.widgets.Widget;
+import cc.blynk.server.core.model.widgets.controls.Button;
+import cc.blynk.server.core.model.widgets.controls.Terminal;
+import cc.blynk.server.core.model.widgets.others.eventor.Eventor;
+import cc.blynk.server.core.model.widgets.others.eventor.Rule;
+import cc.blynk.server.core.model.widgets.others.eventor.model.action.BaseAction;
+import cc.blynk.server.core.model.widgets.others.eventor.model.action.notification.NotifyAction;
+import cc.blynk.server.core.model.widgets.others.eventor.model.condition.number.GreaterThan;
+import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
+import cc.blynk.server.core.model.widgets.outputs.LCD;
+import cc.blynk.server.core.model.widgets.ui.tiles.DeviceTiles;
+import cc.blynk.server.core.model.widgets.ui.tiles.Tile;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DashBoardPinIndexTest {
+
+    private static final int DEVICES = 3;
+    private static final int PINS = 4;
+
+    private static DataStream dataStream(Random random) {
+        return new DataStream((byte) random.nextInt(PINS), random.nextBoolean(), false,
+                PinType.values()[random.nextInt(PinType.values().length)], null, 0, 255, null);
+    }
+
+    private static <T extends OnePinWidget> T onePin(T widget, Random random) {
+        widget.deviceId = random.nextInt(DEVICES);
+        widget.pin = (byte) random.nextInt(PINS);
+        widget.pinType = PinType.values()[random.nextInt(PinType.values().length)];
+        widget.pwmMode = random.nextBoolean();
+        return widget;
+    }
+
+    private static Widget[] randomWidgets(Random random, int count) {
+        Widget[] widgets = new Widget[count];
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(5)) {
+                case 0 :
+                    widgets[i] = onePin(new Button(), random);
+                    break;
+                case 1 :
+                    widgets[i] = onePin(new Terminal(), random);
+                    break;
+                case 2 :
+                    widgets[i] = onePin(new WebHook(), random);
+                    break;
+                case 3 :
+                    LCD lcd = new LCD();
+                    lcd.deviceId = random.nextInt(DEVICES);
+                    lcd.dataStreams = new DataStream[] {dataStream(random), dataStream(random)};
+                    widgets[i] = lcd;
+                    break;
+                default :
+                    DeviceTiles deviceTiles = new DeviceTiles();
+                    deviceTiles.tiles = new Tile[] {
+                            new Tile(random.nextInt(DEVICES), 1, null, dataStream(random)),
+                            new Tile(random.nextInt(DEVICES), 1, null, dataStream(random))
+                    };
+                    widgets[i] = deviceTiles;
+                    break;
+            }
+            widgets[i].id = i;
+        }
+        return widgets;
+    }
+
+    private static Widget findByScan(Widget[] widgets, int deviceId, byte pin, PinType pinType) {
+        for (Widget widget : widgets) {
+            if (widget.isSame(deviceId, pin, pinType)) {
+                return widget;
+            }
+        }
+        return null;
+    }
+
+    private static WebHook findWebhookByScan(Widget[] widgets, int deviceId, byte pin, PinType pinType) {
+        for (Widget widget : widgets) {
+            if (widget instanceof WebHook && ((WebHook) widget).isSameWebHook(deviceId, pin, pinType)) {
+                return (WebHook) widget;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testIndexMatchesScan() {
+        Random random = new Random(7);
+        for (int run = 0; run < 20; run++) {
+            DashBoard dash = new DashBoard();
+            dash.widgets = randomWidgets(random, 30);
+            for (int deviceId = 0; deviceId < DEVICES; deviceId++) {
+                for (byte pin = 0; pin < PINS; pin++) {
+                    for (PinType pinType : PinType.values()) {
+                        assertSame(findByScan(dash.widgets, deviceId, pin, pinType),
+                                dash.findWidgetByPin(deviceId, pin, pinType));
+                        assertSame(findWebhookByScan(dash.widgets, deviceId, pin, pinType),
+                                dash.findWebhookByPin(deviceId, pin, pinType));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWidgetIsUpdatedOnce() {
+        int[] updates = new int[1];
+        Button button = new Button() {
+            @Override
+            public boolean updateIfSame(int deviceId, byte pin, PinType type, String value) {
+                updates[0]++;
+                return super.updateIfSame(deviceId, pin, type, value);
+            }
+        };
+        button.deviceId = 1;
+        button.pin = 1;
+        button.pinType = PinType.ANALOG;
+        button.pwmMode = true;
+
+        DashBoard dash = new DashBoard();
+        dash.widgets = new Widget[] {button};
+        dash.update(1, (byte) 1, PinType.ANALOG, "1", 1);
+        dash.update(1, (byte) 1, PinType.DIGITAL, "0", 1);
+
+        assertEquals(2, updates[0]);
+        assertEquals("0", button.value);
+        assertTrue(dash.pinsStorage.isEmpty());
+    }
+
+    @Test
+    public void testIndexIsRebuiltWhenWidgetsChange() {
+        DashBoard dash = new DashBoard();
+        assertNull(dash.findWidgetByPin(1, (byte) 1, PinType.VIRTUAL));
+        assertNull(dash.getEventor());
+
+        Button button = new Button();
+        button.deviceId = 1;
+        button.pin = 1;
+        button.pinType = PinType.VIRTUAL;
+        DeviceTiles deviceTiles = new DeviceTiles();
+        Eventor eventor = new Eventor();
+        dash.widgets = new Widget[] {button, deviceTiles, eventor};
+        assertSame(button, dash.findWidgetByPin(1, (byte) 1, PinType.VIRTUAL));
+        assertSame(eventor, dash.getEventor());
+        assertNull(dash.findWidgetByPin(2, (byte) 1, PinType.VIRTUAL));
+
+        Tile tile = new Tile(2, 1, null, new DataStream((byte) 1, false, false, PinType.VIRTUAL, null, 0, 255, null));
+        deviceTiles.tiles = new Tile[] {tile};
+        assertSame(deviceTiles, dash.findWidgetByPin(2, (byte) 1, PinType.VIRTUAL));
+
+        dash.update(2, (byte) 1, PinType.VIRTUAL, "10", 1);
+        assertEquals("10", tile.dataStream.value);
+        assertFalse(dash.needRawDataForGraph(2, (byte) 1, PinType.VIRTUAL));
+    }
+
+    private static Rule rule(DataStream trigger, boolean isActive) {
+        return new Rule(trigger, null, new GreaterThan(10), new BaseAction[] {new NotifyAction("yo")}, isActive);
+    }
+
+    @Test
+    public void testEventorRulesAreIndexedByTriggerPin() {
+        Rule v1 = rule(new DataStream((byte) 1, PinType.VIRTUAL), true);
+        Rule v1Second = rule(new DataStream((byte) 1, PinType.VIRTUAL), true);
+        Rule inactive = rule(new DataStream((byte) 1, PinType.VIRTUAL), false);
+        Rule noTrigger = rule(null, true);
+        Rule pwm = rule(new DataStream((byte) 2, true, false, PinType.ANALOG, null, 0, 255, null), true);
+        Rule digitalPwm = rule(new DataStream((byte) 3, true, false, PinType.DIGITAL, null, 0, 255, null), true);
+        Eventor eventor = new Eventor(new Rule[] {v1, inactive, noTrigger, pwm, v1Second, digitalPwm});
+        eventor.deviceId = 1;
+
+        DashBoard dash = new DashBoard();
+        dash.widgets = new Widget[] {eventor};
+
+        Rule[] rules = dash.getEventorRules(1, (byte) 1, PinType.VIRTUAL);
+        assertEquals(2, rules.length);
+        assertSame(v1, rules[0]);
+        assertSame(v1Second, rules[1]);
+        assertEquals(0, dash.getEventorRules(0, (byte) 1, PinType.VIRTUAL).length);
+        assertEquals(0, dash.getEventorRules(1, (byte) 1, PinType.DIGITAL).length);
+        assertEquals(0, dash.getEventorRules(1, (byte) 1, null).length);
+
+        assertEquals(1, dash.getEventorRules(1, (byte) 2, PinType.ANALOG).length);
+        assertSame(digitalPwm, dash.getEventorRules(1, (byte) 3, PinType.DIGITAL)[0]);
+        assertSame(digitalPwm, dash.getEventorRules(1, (byte) 3, PinType.ANALOG)[0]);
+
+        eventor.rules = new Rule[] {pwm};
+        assertEquals(0, dash.getEventorRules(1, (byte) 1, PinType.VIRTUAL).length);
+        assertSame(pwm, dash.getEventorRules(1, (byte) 2, PinType.ANALOG)[0]);
+    }
+
+}
@@ -0,0 +1,118 @@
+package cc.blynk.server.core.model.auth;
+
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.device.Device;
+import cc.blynk.server.core.session.HardwareStateHolder;
+import cc.blynk.utils.AppNameUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
+import static cc.blynk.server.internal.StateHolderUtil.isSameDashAndDeviceId;
+
+/**
+ * Routing of the message to the single device and to the apps of the dash
+ * compared to the full scan of the user channels used before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class SessionPerfTest {
+
+    @Param({"1", "100", "1000"})
+    private int devicesCount;
+
+    private Session session;
+    private int deviceId;
+
+    //drops all writes, so only routing is measured
+    private static final class DiscardHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        User user = new User();
+        user.email = "test@test.com";
+        user.appName = AppNameUtil.BLYNK;
+        DashBoard dash = new DashBoard();
+        dash.id = 1;
+        session = new Session(null);
+        for (int i = 0; i < devicesCount; i++) {
+            EmbeddedChannel channel = SessionTest.channel(
+                    new HardwareStateHolder(user, dash, new Device(i, "", "ESP8266")));
+            channel.pipeline().addFirst(new DiscardHandler());
+            session.addHardChannel(channel);
+        }
+        EmbeddedChannel app = SessionTest.channel(null);
+        app.pipeline().addFirst(new DiscardHandler());
+        session.addAppChannel(app);
+        deviceId = devicesCount / 2;
+    }
+
+    @Benchmark
+    public boolean fullScan() {
+        Set<Channel> targetChannels = new HashSet<>();
+        for (Channel channel : session.hardwareChannels) {
+            if (isSameDashAndDeviceId(channel, 1, deviceId)) {
+                targetChannels.add(channel);
+            }
+        }
+        for (Channel channel : targetChannels) {
+            channel.isWritable();
+        }
+        return targetChannels.isEmpty();
+    }
+
+    @Benchmark
+    public boolean sendToDevice() {
+        return session.sendMessageToHardware(1, HARDWARE, 1, "vw 1 1", deviceId);
+    }
+
+    @Benchmark
+    public boolean isHardwareConnected() {
+        return session.isHardwareConnected(1, deviceId);
+    }
+
+    @Benchmark
+    public void sendToApps() {
+        session.sendToApps(HARDWARE, 1, 1, "vw 1 1");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SessionPerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,168 @@
+package cc.blynk.server.core.model.auth;
+
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.device.Device;
+import cc.blynk.server.core.session.HardwareStateHolder;
+import cc.blynk.server.core.session.StateHolderBase;
+import cc.blynk.server.core.stats.SessionCounters;
+import cc.blynk.server.handlers.BaseSimpleChannelInboundHandler;
+import cc.blynk.utils.AppNameUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionTest {
+
+    private User user;
+    private Session session;
+    private SessionCounters counters;
+
+    @Before
+    public void init() {
+        user = new User();
+        user.email = "test@test.com";
+        user.appName = AppNameUtil.BLYNK;
+        counters = new SessionCounters();
+        session = new Session(null, counters);
+    }
+
+    static EmbeddedChannel channel(StateHolderBase state) {
+        return new EmbeddedChannel(new BaseSimpleChannelInboundHandler<Object>(Object.class) {
+            @Override
+            public void messageReceived(ChannelHandlerContext ctx, Object msg) {
+            }
+
+            @Override
+            public StateHolderBase getState() {
+                return state;
+            }
+        });
+    }
+
+    private EmbeddedChannel hardware(int dashId, int deviceId) {
+        DashBoard dash = new DashBoard();
+        dash.id = dashId;
+        EmbeddedChannel channel = channel(new HardwareStateHolder(user, dash, new Device(deviceId, "", "ESP8266")));
+        session.addHardChannel(channel);
+        return channel;
+    }
+
+    private EmbeddedChannel app() {
+        EmbeddedChannel channel = channel(null);
+        session.addAppChannel(channel);
+        return channel;
+    }
+
+    private EmbeddedChannel sharedApp(int dashId) {
+        EmbeddedChannel channel = channel(null);
+        session.addAppChannel(channel, dashId);
+        return channel;
+    }
+
+    private static int received(EmbeddedChannel channel) {
+        int count = 0;
+        while (channel.readOutbound() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testHardwareRouting() {
+        EmbeddedChannel device1 = hardware(1, 1);
+        EmbeddedChannel device2 = hardware(1, 2);
+        EmbeddedChannel otherDash = hardware(2, 1);
+
+        assertFalse(session.sendMessageToHardware(1, HARDWARE, 1, "body", 1));
+        assertEquals(1, received(device1));
+        assertEquals(0, received(device2));
+        assertEquals(0, received(otherDash));
+
+        assertFalse(session.sendMessageToHardware(1, HARDWARE, 1, "body", new int[0]));
+        assertEquals(1, received(device1));
+        assertEquals(1, received(device2));
+        assertEquals(0, received(otherDash));
+
+        //repeated device receives message only once
+        assertFalse(session.sendMessageToHardware(1, HARDWARE, 1, "body", 2, 3, 2));
+        assertEquals(0, received(device1));
+        assertEquals(1, received(device2));
+
+        assertTrue(session.sendMessageToHardware(1, HARDWARE, 1, "body", 3, 4));
+        assertTrue(session.sendMessageToHardware(3, HARDWARE, 1, "body", 1));
+        assertTrue(session.isHardwareConnected(2, 1));
+        assertFalse(session.isHardwareConnected(2, 2));
+    }
+
+    @Test
+    public void testClosedChannelsAreRemovedFromIndex() {
+        EmbeddedChannel device1 = hardware(1, 1);
+        EmbeddedChannel device2 = hardware(1, 2);
+
+        session.closeHardwareChannelByDeviceId(1, 1);
+        assertFalse(device1.isOpen());
+        assertTrue(device2.isOpen());
+        assertFalse(session.isHardwareConnected(1, 1));
+        assertTrue(session.isHardwareConnected(1));
+        assertEquals(1, session.hardwareChannels.size());
+
+        session.closeHardwareChannelByDashId(1);
+        assertFalse(device2.isOpen());
+        assertFalse(session.isHardwareConnected(1));
+        assertTrue(session.sendMessageToHardware(1, HARDWARE, 1, "body", new int[0]));
+        assertTrue(session.hardwareChannels.isEmpty());
+    }
+
+    @Test
+    public void testSharedAppsReceiveOnlyTheirDash() {
+        EmbeddedChannel app = app();
+        EmbeddedChannel shared1 = sharedApp(1);
+        EmbeddedChannel shared2 = sharedApp(2);
+
+        session.sendToApps(HARDWARE, 1, 1, "body");
+        assertEquals(1, received(app));
+        assertEquals(1, received(shared1));
+        assertEquals(0, received(shared2));
+
+        app.close();
+        shared1.close();
+        session.sendToApps(HARDWARE, 1, 1, "body");
+        assertNull(shared2.readOutbound());
+        assertEquals(1, session.appChannels.size());
+    }
+
+    @Test
+    public void testCountersFollowChannels() {
+        EmbeddedChannel device1 = hardware(1, 1);
+        hardware(1, 2);
+        assertEquals(0, counters.getConnected());
+        assertEquals(1, counters.getOnlineHards());
+        assertEquals(2, counters.getTotalOnlineHards());
+
+        EmbeddedChannel app = app();
+        EmbeddedChannel shared = sharedApp(1);
+        assertEquals(1, counters.getConnected());
+        assertEquals(1, counters.getOnlineApps());
+        assertEquals(2, counters.getTotalOnlineApps());
+
+        app.close();
+        shared.close();
+        assertEquals(0, counters.getConnected());
+        assertEquals(0, counters.getOnlineApps());
+        assertEquals(0, counters.getTotalOnlineApps());
+
+        device1.close();
+        //closed twice, counted once
+        device1.close();
+        assertEquals(1, counters.getOnlineHards());
+        assertEquals(1, counters.getTotalOnlineHards());
+    }
+
+}
@@ -0,0 +1,60 @@
+package cc.blynk.server.core.model.widgets.others.webhook;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WebhookTemplateTest {
+
+    private static String format(String template, String value) {
+        return WebhookTemplate.compile(template).format(value);
+    }
+
+    @Test
+    public void testPlaceholders() {
+        assertEquals("http://host/123?x=123", format("http://host//pin/?x=%s", "123"));
+        //only first occurrence is replaced
+        assertEquals("http://host/1/pin/", format("http://host//pin//pin/", "1"));
+        assertEquals("{\"a\":\"1\",\"b\":\"2\",\"c\":\"/pin[2]/\"}",
+                format("{\"a\":\"/pin[0]/\",\"b\":\"/pin[1]/\",\"c\":\"/pin[2]/\"}", "1\u00002"));
+        //values with regex replacement symbols are taken as is
+        assertEquals("v=$1\\x", format("v=%s", "$1\\x"));
+        //too many values - parts are not replaced
+        String elevenValues = String.join("\u0000", "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "a");
+        assertEquals("/pin[0]/", format("/pin[0]/", elevenValues));
+    }
+
+    @Test
+    public void testOverlappingPlaceholders() {
+        //placeholders are taken in the old replacement order, overlapping ones are skipped
+        assertEquals("1pin[0]/", format("/pin/pin[0]/", "1"));
+        assertEquals("a/pin[0]1", format("a/pin[0]/pin/", "1"));
+        assertEquals("2pin[0]1", format("/pin[1]/pin[0]/pin[0]/", "1\u00002"));
+        assertEquals("http://host/datetime_iso1", format("http://host/datetime_iso/pin/", "1"));
+        assertEquals("11", format("/pin/%s", "1"));
+    }
+
+    @Test
+    public void testDateTime() {
+        String formatted = format("time=/datetime_iso/&v=%s", "1");
+        assertTrue(formatted, formatted.matches("time=\\d{4}-\\d\\d-\\d\\dT.*Z&v=1"));
+    }
+
+    @Test
+    public void testNoPlaceholders() {
+        String url = "http://host/api";
+        assertSame(url, format(url, "1"));
+    }
+
+    @Test
+    public void testWebHookRecompilesChangedUrl() {
+        WebHook webHook = new WebHook();
+        webHook.url = "http://host/%s";
+        assertEquals("http://host/1", webHook.formatUrl("1"));
+        webHook.url = "http://other//pin/";
+        assertEquals("http://other/2", webHook.formatUrl("2"));
+    }
+
+}
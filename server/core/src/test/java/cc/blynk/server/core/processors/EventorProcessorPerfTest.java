@@ -0,0 +1,117 @@
+package cc.blynk.server.core.processors;
+
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.DataStream;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.Widget;
+import cc.blynk.server.core.model.widgets.others.eventor.Eventor;
+import cc.blynk.server.core.model.widgets.others.eventor.Rule;
+import cc.blynk.server.core.model.widgets.others.eventor.model.action.BaseAction;
+import cc.blynk.server.core.model.widgets.others.eventor.model.action.notification.NotifyAction;
+import cc.blynk.server.core.model.widgets.others.eventor.model.condition.number.GreaterThan;
+import cc.blynk.server.core.stats.GlobalStats;
+import cc.blynk.utils.NumberUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares eventor processing of the hardware value with the scan of all rules used before
+ * and the rules index of the dashboard.
+ * Rule i is triggered by the virtual pin i % 100 and never matches the sent value,
+ * so only the lookup and the condition checks are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class EventorProcessorPerfTest {
+
+    private static final byte RULE_PIN = 0;
+    private static final byte NO_RULE_PIN = 127;
+    private static final String VALUE = "10.5";
+
+    @Param({"1", "50", "500"})
+    private int rulesCount;
+
+    private DashBoard dash;
+    private EventorProcessor eventorProcessor;
+
+    @Setup
+    public void setup() {
+        Rule[] rules = new Rule[rulesCount];
+        for (int i = 0; i < rulesCount; i++) {
+            rules[i] = new Rule(new DataStream((byte) (i % 100), PinType.VIRTUAL), null,
+                    new GreaterThan(1000 + i), new BaseAction[] {new NotifyAction("Value is /pin/")}, true);
+        }
+        Eventor eventor = new Eventor(rules);
+        dash = new DashBoard();
+        dash.isActive = true;
+        dash.widgets = new Widget[] {eventor};
+        eventorProcessor = new EventorProcessor(null, null, null, new GlobalStats());
+    }
+
+    //processing as it was before the rules index
+    private int scan(byte pin) {
+        Eventor eventor = dash.getWidgetByType(Eventor.class);
+        if (eventor == null || eventor.rules == null || eventor.deviceId != 0 || !dash.isActive) {
+            return 0;
+        }
+        double valueParsed = NumberUtil.parseDouble(VALUE);
+        int matched = 0;
+        for (Rule rule : eventor.rules) {
+            if (rule.isReady(pin, PinType.VIRTUAL)) {
+                if (rule.matchesCondition(VALUE, valueParsed)) {
+                    matched++;
+                } else {
+                    rule.isProcessed = false;
+                }
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int scanRulePin() {
+        return scan(RULE_PIN);
+    }
+
+    @Benchmark
+    public int scanNoRulePin() {
+        return scan(NO_RULE_PIN);
+    }
+
+    @Benchmark
+    public void indexRulePin() {
+        eventorProcessor.process(null, null, dash, 0, RULE_PIN, PinType.VIRTUAL, VALUE, 0);
+    }
+
+    @Benchmark
+    public void indexNoRulePin() {
+        eventorProcessor.process(null, null, dash, 0, NO_RULE_PIN, PinType.VIRTUAL, VALUE, 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EventorProcessorPerfTest.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
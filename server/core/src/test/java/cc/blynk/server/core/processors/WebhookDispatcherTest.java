@@ -0,0 +1,150 @@
+package cc.blynk.server.core.processors;
+
+import cc.blynk.server.core.model.widgets.others.webhook.WebHook;
+import cc.blynk.server.core.stats.GlobalStats;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+public class WebhookDispatcherTest {
+
+    private final GlobalStats stats = new GlobalStats();
+    private final List<String> sent = new ArrayList<>();
+    private final List<TestFuture> futures = new ArrayList<>();
+
+    private static final class TestFuture extends CompletableFuture<Object> implements ListenableFuture<Object> {
+
+        @Override
+        public void done() {
+            complete(null);
+        }
+
+        @Override
+        public void abort(Throwable t) {
+            completeExceptionally(t);
+        }
+
+        @Override
+        public void touch() {
+        }
+
+        @Override
+        public ListenableFuture<Object> addListener(Runnable listener, Executor exec) {
+            whenComplete((r, t) -> listener.run());
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<Object> toCompletableFuture() {
+            return this;
+        }
+    }
+
+    private WebhookRequest request(WebHook webHook, String url, String value) {
+        return new WebhookRequest(webHook, url, value) {
+            @Override
+            ListenableFuture<?> send(AsyncHttpClient httpclient, String url, String value) {
+                sent.add(url + " " + value);
+                TestFuture future = new TestFuture();
+                futures.add(future);
+                return future;
+            }
+        };
+    }
+
+    private void completeFirst() {
+        futures.remove(0).done();
+    }
+
+    @Test
+    public void testRequestsAreLimitedPerHost() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(null, 2, 2, false, stats);
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch(request(new WebHook(), "http://busy.com:8080/" + i, "" + i));
+        }
+        dispatcher.dispatch(request(new WebHook(), "https://other.com?x=1", "x"));
+
+        assertEquals(3, sent.size());
+        assertEquals("https://other.com?x=1 x", sent.get(2));
+        assertEquals(2, stats.webhooksQueued.sum());
+        assertEquals(1, stats.webhooksDropped.sum());
+
+        completeFirst();
+        assertEquals("http://busy.com:8080/2 2", sent.get(3));
+        assertEquals(1, stats.webhooksQueued.sum());
+
+        while (!futures.isEmpty()) {
+            completeFirst();
+        }
+        assertEquals(5, sent.size());
+        assertEquals(0, stats.webhooksQueued.sum());
+        assertEquals(5, stats.webhooksCompleted.sum());
+    }
+
+    @Test
+    public void testLatestValueWins() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(null, 1, 10, true, stats);
+        WebHook first = new WebHook();
+        WebHook second = new WebHook();
+
+        dispatcher.dispatch(request(first, "http://host/1", "1"));
+        dispatcher.dispatch(request(second, "http://host/a", "a"));
+        dispatcher.dispatch(request(first, "http://host/2", "2"));
+        dispatcher.dispatch(request(second, "http://host/b", "b"));
+        dispatcher.dispatch(request(first, "http://host/3", "3"));
+        assertEquals(3, stats.webhooksCoalesced.sum());
+
+        completeFirst();
+        completeFirst();
+        completeFirst();
+        assertEquals(0, futures.size());
+        assertEquals("[http://host/1 1, http://host/b b, http://host/3 3]", sent.toString());
+    }
+
+    @Test
+    public void testRequestThatCouldNotBeStarted() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(null, 1, 10, false, stats);
+        dispatcher.dispatch(new WebhookRequest(new WebHook(), "http://host/1", "1") {
+            @Override
+            ListenableFuture<?> send(AsyncHttpClient httpclient, String url, String value) {
+                return null;
+            }
+        });
+        dispatcher.dispatch(request(new WebHook(), "http://host/2", "2"));
+        assertEquals("[http://host/2 2]", sent.toString());
+    }
+
+    @Test
+    public void testAlreadyCompletedRequestsDoNotGrowStack() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(null, 1, 1000, false, stats);
+        List<Integer> depths = new ArrayList<>();
+        dispatcher.dispatch(request(new WebHook(), "http://host/first", "0"));
+        for (int i = 1; i < 100; i++) {
+            dispatcher.dispatch(new WebhookRequest(new WebHook(), "http://host/" + i, "" + i) {
+                @Override
+                ListenableFuture<?> send(AsyncHttpClient httpclient, String url, String value) {
+                    sent.add(url + " " + value);
+                    depths.add(Thread.currentThread().getStackTrace().length);
+                    //like http client that fails request right away
+                    TestFuture future = new TestFuture();
+                    future.abort(new Exception());
+                    return future;
+                }
+            });
+        }
+        assertEquals(1, sent.size());
+
+        completeFirst();
+        assertEquals(100, sent.size());
+        assertEquals(depths.get(0), depths.get(depths.size() - 1));
+        assertEquals(100, stats.webhooksCompleted.sum());
+    }
+
+}
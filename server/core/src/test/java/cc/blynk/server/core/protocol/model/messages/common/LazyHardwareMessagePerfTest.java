@@ -0,0 +1,103 @@
+package cc.blynk.server.core.protocol.model.messages.common;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
+import static cc.blynk.server.internal.CommonByteBufUtil.makeDeviceMessage;
+import static cc.blynk.utils.StringUtils.prependDashIdAndDeviceId;
+import static cc.blynk.utils.StringUtils.split3;
+
+/**
+ * Decoding of the hardware write command, parsing and forwarding it to the app:
+ * string body used before compared to the lazy parsing of the inbound buffer slice.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class LazyHardwareMessagePerfTest {
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+    private ByteBuf in;
+    private int length;
+
+    @Setup
+    public void setup() {
+        in = alloc.buffer();
+        length = in.writeCharSequence("vw\u000015\u000023.45", CharsetUtil.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        in.release();
+    }
+
+    @Benchmark
+    public void stringBody(Blackhole bh) {
+        in.readerIndex(0);
+        String body = (String) in.readCharSequence(length, CharsetUtil.UTF_8);
+        String[] splitBody = split3(body);
+        bh.consume(PinType.getPinType(splitBody[0].charAt(0)));
+        bh.consume(Byte.parseByte(splitBody[1]));
+        bh.consume(splitBody[2]);
+
+        //what app encoder did with the forwarded body
+        byte[] bytes = prependDashIdAndDeviceId(1, 200, body).getBytes(StandardCharsets.UTF_8);
+        ByteBuf out = alloc.buffer(7 + bytes.length);
+        out.writeByte(HARDWARE).writeShort(1).writeInt(bytes.length).writeBytes(bytes);
+        out.release();
+    }
+
+    @Benchmark
+    public void lazyBody(Blackhole bh) {
+        in.readerIndex(0);
+        LazyHardwareMessage message = new LazyHardwareMessage(1, in.readRetainedSlice(length));
+        try {
+            if (message.isWriteOperation() && message.hasPinAndValue()) {
+                bh.consume(message.getPinType());
+                bh.consume(message.getPin());
+                bh.consume(message.getValue());
+            }
+            ByteBufMessage out = makeDeviceMessage(alloc, HARDWARE, message.id, 1, 200, message.body);
+            out.toFrame(4).release();
+        } finally {
+            message.release();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LazyHardwareMessagePerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
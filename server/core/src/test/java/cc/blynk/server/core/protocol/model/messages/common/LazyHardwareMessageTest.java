@@ -0,0 +1,88 @@
+package cc.blynk.server.core.protocol.model.messages.common;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
+import static cc.blynk.server.internal.CommonByteBufUtil.makeDeviceMessage;
+import static cc.blynk.utils.StringUtils.prependDashIdAndDeviceId;
+import static cc.blynk.utils.StringUtils.split3;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LazyHardwareMessageTest {
+
+    private static LazyHardwareMessage message(String body) {
+        return new LazyHardwareMessage(1, Unpooled.copiedBuffer(body, CharsetUtil.UTF_8));
+    }
+
+    //same check as in HardwareLogic for the string body
+    private static boolean isValidWrite(String body) {
+        String[] splitBody = split3(body);
+        return splitBody.length == 3 && splitBody[0].length() > 0 && splitBody[2].length() > 0;
+    }
+
+    @Test
+    public void testParsingIsSameAsForString() {
+        String[] bodies = {
+                "vw\u00001\u0000100", "dw\u000013\u00001", "aw\u00000\u00001.5", "vw\u0000127\u0000a\u0000b",
+                "vw\u0000-1\u0000x", "vw\u0000+5\u0000x", "vw\u0000\u0000x", "vw\u00001\u0000", "vw\u00001",
+                "vw", "vw\u0000128\u0000x", "vw\u0000-128\u0000x", "vw\u00001a\u0000x",
+                "vw\u00001\u0000привіт"
+        };
+        for (String body : bodies) {
+            LazyHardwareMessage message = message(body);
+            assertEquals(body, isValidWrite(body), message.hasPinAndValue());
+            if (!message.hasPinAndValue()) {
+                continue;
+            }
+            String[] splitBody = split3(body);
+            assertEquals(body, PinType.getPinType(splitBody[0].charAt(0)), message.getPinType());
+            assertEquals(body, splitBody[2], message.getValue());
+            try {
+                byte pin = Byte.parseByte(splitBody[1]);
+                assertEquals(body, pin, message.getPin());
+            } catch (NumberFormatException e) {
+                try {
+                    message.getPin();
+                    fail(body);
+                } catch (NumberFormatException expected) {
+                    //expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWriteOperation() {
+        assertTrue(message("vw\u00001\u00001").isWriteOperation());
+        assertFalse(message("vr\u00001").isWriteOperation());
+        assertFalse(message("v").isWriteOperation());
+        assertFalse(message("").hasPinAndValue());
+    }
+
+    @Test
+    public void testDeviceMessageIsSameAsStringPrepend() {
+        ByteBuf body = Unpooled.copiedBuffer("vw\u00001\u0000привіт", CharsetUtil.UTF_8);
+        int[][] ids = {{0, 0}, {1, 200000}, {Integer.MAX_VALUE, Integer.MIN_VALUE}, {-5, 10}};
+        for (int[] id : ids) {
+            ByteBufMessage message = makeDeviceMessage(UnpooledByteBufAllocator.DEFAULT, HARDWARE, 7,
+                    id[0], id[1], body);
+            ByteBuf frame = message.toFrame(0);
+            assertEquals(HARDWARE, frame.readUnsignedByte());
+            assertEquals(7, frame.readUnsignedShort());
+            assertEquals(prependDashIdAndDeviceId(id[0], id[1], body.toString(CharsetUtil.UTF_8)),
+                    frame.toString(CharsetUtil.UTF_8));
+            frame.release();
+        }
+        assertEquals(0, body.readerIndex());
+    }
+
+}
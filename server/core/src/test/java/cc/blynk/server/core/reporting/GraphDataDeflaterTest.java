@@ -0,0 +1,214 @@
+package cc.blynk.server.core.reporting;
+
+import cc.blynk.server.core.dao.ReportingDao;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import cc.blynk.server.core.protocol.exceptions.NoDataException;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
+import cc.blynk.server.core.reporting.storage.RingReportingStorage;
+import cc.blynk.utils.AppNameUtil;
+import cc.blynk.utils.FileUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.InflaterOutputStream;
+
+import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA_RESPONSE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphDataDeflaterTest {
+
+    private Path folder;
+    private User user;
+
+    @Before
+    public void init() throws Exception {
+        folder = Files.createTempDirectory("graph");
+        user = new User();
+        user.email = "test@test.com";
+        user.appName = AppNameUtil.BLYNK;
+        Files.createDirectories(folder.resolve(FileUtils.getUserReportingDir(user.email, user.appName)));
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        org.apache.commons.io.FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    private Path reportingFile(int dashId, byte pin) {
+        return folder.resolve(FileUtils.getUserReportingDir(user.email, user.appName))
+                .resolve(ReportingDao.generateFilename(dashId, 0, PinType.VIRTUAL, pin, GraphGranularityType.MINUTE));
+    }
+
+    private static GraphPinRequest request(int dashId, byte pin, int count) {
+        String[] parts = {"v", String.valueOf(pin), String.valueOf(count), "m"};
+        return new GraphPinRequest(dashId, 0, parts, 0, 4);
+    }
+
+    private static ByteBuffer inflate(ByteBuf compressed) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InflaterOutputStream out = new InflaterOutputStream(baos)) {
+            compressed.getBytes(compressed.readerIndex(), out, compressed.readableBytes());
+        }
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+
+    private static void assertRecords(ByteBuffer data, int count, int firstValue) {
+        assertEquals(count, data.getInt());
+        for (int i = firstValue; i < firstValue + count; i++) {
+            assertEquals(i, data.getDouble(), 0.0001);
+            assertEquals(i * 1000L, data.getLong());
+        }
+    }
+
+    private void writeRecords(Path reportingFile, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            FileUtils.write(reportingFile, i, i * 1000L);
+        }
+    }
+
+    @Test
+    public void testPinsAreDeflatedIntoSingleBuffer() throws Exception {
+        ReportingDao reportingDao = new ReportingDao(folder.toString(), false);
+        writeRecords(reportingFile(1, (byte) 1), 100);
+        writeRecords(reportingFile(1, (byte) 2), 5000);
+
+        GraphPinRequest[] requestedPins = {
+                request(1, (byte) 1, 60),
+                request(1, (byte) 3, 60),
+                request(1, (byte) 2, 5000)
+        };
+
+        ByteBuf body = ByteBufMessage.newBody(PooledByteBufAllocator.DEFAULT);
+        try {
+            GraphDataDeflater.deflate(reportingDao, user, requestedPins, body);
+            ByteBuffer data = inflate(body);
+
+            assertEquals(1, data.getInt());
+            assertRecords(data, 60, 40);
+            assertRecords(data, 0, 0);
+            assertRecords(data, 5000, 0);
+            assertFalse(data.hasRemaining());
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void testRingStorageIsReadIntoBuffer() throws Exception {
+        ReportingDao reportingDao = new ReportingDao(folder.toString(),
+                new RingReportingStorage(100, 10, 10, 10), false);
+        writeRecords(reportingFile(1, (byte) 1), 250);
+
+        ByteBuf body = ByteBufMessage.newBody(PooledByteBufAllocator.DEFAULT);
+        try {
+            GraphDataDeflater.deflate(reportingDao, user, new GraphPinRequest[] {request(1, (byte) 1, 50)}, body);
+            ByteBuffer data = inflate(body);
+
+            assertEquals(1, data.getInt());
+            assertRecords(data, 50, 200);
+            assertFalse(data.hasRemaining());
+        } finally {
+            body.release();
+            reportingDao.close();
+        }
+    }
+
+    @Test(expected = NoDataException.class)
+    public void testNoData() throws Exception {
+        ReportingDao reportingDao = new ReportingDao(folder.toString(), false);
+
+        ByteBuf body = ByteBufMessage.newBody(PooledByteBufAllocator.DEFAULT);
+        try {
+            GraphDataDeflater.deflate(reportingDao, user, new GraphPinRequest[] {request(1, (byte) 1, 50)}, body);
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void testChunksAreDeflatedSeparately() throws Exception {
+        ReportingDao reportingDao = new ReportingDao(folder.toString(), false);
+        writeRecords(reportingFile(1, (byte) 1), 100);
+        writeRecords(reportingFile(1, (byte) 2), 5000);
+
+        GraphPinRequest[] requestedPins = {
+                request(1, (byte) 3, 60),
+                request(1, (byte) 1, 60),
+                request(1, (byte) 2, 5000)
+        };
+
+        int chunkSize = 4096;
+        List<ByteBuf> chunks = new ArrayList<>();
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        try {
+            GraphDataDeflater.deflateChunks(reportingDao, user, requestedPins,
+                    PooledByteBufAllocator.DEFAULT, chunkSize, chunks::add);
+            for (int i = 0; i < chunks.size(); i++) {
+                ByteBuffer chunk = inflate(chunks.get(i));
+                //all chunks except last one have the same size
+                if (i < chunks.size() - 1) {
+                    assertEquals(chunkSize, chunk.remaining());
+                }
+                uncompressed.write(chunk.array(), 0, chunk.remaining());
+            }
+        } finally {
+            chunks.forEach(ByteBuf::release);
+        }
+
+        assertEquals(4 + 4 + 4 + 60 * 16 + 4 + 5000 * 16, uncompressed.size());
+        assertEquals((uncompressed.size() + chunkSize - 1) / chunkSize, chunks.size());
+        ByteBuffer data = ByteBuffer.wrap(uncompressed.toByteArray());
+        assertEquals(1, data.getInt());
+        assertRecords(data, 0, 0);
+        assertRecords(data, 60, 40);
+        assertRecords(data, 5000, 0);
+        assertFalse(data.hasRemaining());
+    }
+
+    @Test
+    public void testNoChunksWithoutData() throws Exception {
+        ReportingDao reportingDao = new ReportingDao(folder.toString(), false);
+
+        List<ByteBuf> chunks = new ArrayList<>();
+        try {
+            GraphDataDeflater.deflateChunks(reportingDao, user,
+                    new GraphPinRequest[] {request(1, (byte) 1, 50), request(1, (byte) 2, 50)},
+                    PooledByteBufAllocator.DEFAULT, 4, chunks::add);
+            fail();
+        } catch (NoDataException e) {
+            assertTrue(chunks.isEmpty());
+        }
+    }
+
+    @Test
+    public void testHeaderIsWrittenInPlace() {
+        ByteBuf body = ByteBufMessage.newBody(PooledByteBufAllocator.DEFAULT);
+        body.writeBytes(new byte[] {1, 2, 3});
+
+        ByteBuf frame = new ByteBufMessage(7, GET_GRAPH_DATA_RESPONSE, body).toFrame(4);
+        try {
+            assertEquals(10, frame.readableBytes());
+            assertEquals(GET_GRAPH_DATA_RESPONSE, frame.readUnsignedByte());
+            assertEquals(7, frame.readUnsignedShort());
+            assertEquals(3, frame.readInt());
+            assertEquals(1, frame.readByte());
+        } finally {
+            frame.release();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package cc.blynk.server.core.reporting;
+
+import cc.blynk.server.core.dao.functions.GraphFunction;
+import cc.blynk.server.core.model.widgets.outputs.graph.AggregationFunctionType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
+
+/**
+ * Compares merge of the tag graph data with TreeMap used before and k-way merge.
+ * Every device has day of minute points, devices report with small time shift.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class GraphDataMergerPerfTest {
+
+    private static final int POINTS_PER_DEVICE = 1440;
+
+    @Param({"10", "200"})
+    private int devicesCount;
+
+    @Param({"AVG", "MED"})
+    private AggregationFunctionType functionType;
+
+    private ByteBuffer[] devicesData;
+    private ByteBuf records;
+    private int[] offsets;
+    private ByteBuf result;
+
+    @Setup
+    public void setup() {
+        devicesData = new ByteBuffer[devicesCount];
+        records = PooledByteBufAllocator.DEFAULT.buffer();
+        offsets = new int[devicesCount + 1];
+        for (int device = 0; device < devicesCount; device++) {
+            ByteBuffer data = ByteBuffer.allocate(POINTS_PER_DEVICE * SIZE_OF_REPORT_ENTRY);
+            for (int i = 0; i < POINTS_PER_DEVICE; i++) {
+                //every 3rd device is shifted, so not all timestamps match
+                long ts = i * 60_000L + (device % 3) * 1000;
+                data.putDouble(device + i).putLong(ts);
+                records.writeDouble(device + i).writeLong(ts);
+            }
+            devicesData[device] = data;
+            offsets[device + 1] = records.writerIndex();
+        }
+        result = PooledByteBufAllocator.DEFAULT.buffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        records.release();
+        result.release();
+    }
+
+    @Benchmark
+    public ByteBuffer treeMap() {
+        TreeMap<Long, GraphFunction> data = new TreeMap<>();
+        for (ByteBuffer deviceData : devicesData) {
+            ByteBuffer localByteBuf = deviceData.duplicate();
+            ((Buffer) localByteBuf).flip();
+            while (localByteBuf.hasRemaining()) {
+                double newVal = localByteBuf.getDouble();
+                Long ts = localByteBuf.getLong();
+                GraphFunction graphFunctionObj = data.get(ts);
+                if (graphFunctionObj == null) {
+                    graphFunctionObj = functionType.produce();
+                    data.put(ts, graphFunctionObj);
+                }
+                graphFunctionObj.apply(newVal);
+            }
+        }
+
+        ByteBuffer byteBuffer = ByteBuffer.allocate(data.size() * SIZE_OF_REPORT_ENTRY);
+        for (Map.Entry<Long, GraphFunction> entry : data.entrySet()) {
+            byteBuffer.putDouble(entry.getValue().getResult())
+                    .putLong(entry.getKey());
+        }
+        return byteBuffer;
+    }
+
+    @Benchmark
+    public int kWayMerge() {
+        result.clear();
+        return GraphDataMerger.merge(records, offsets, functionType.produce(), result);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GraphDataMergerPerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
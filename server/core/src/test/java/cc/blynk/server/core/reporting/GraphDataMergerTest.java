@@ -0,0 +1,96 @@
+package cc.blynk.server.core.reporting;
+
+import cc.blynk.server.core.dao.functions.GraphFunction;
+import cc.blynk.server.core.model.widgets.outputs.graph.AggregationFunctionType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class GraphDataMergerTest {
+
+    private static ByteBuf merge(AggregationFunctionType functionType, double[][] values, long[][] timestamps) {
+        ByteBuf records = Unpooled.buffer();
+        int[] offsets = new int[values.length + 1];
+        for (int source = 0; source < values.length; source++) {
+            for (int i = 0; i < values[source].length; i++) {
+                records.writeDouble(values[source][i]).writeLong(timestamps[source][i]);
+            }
+            offsets[source + 1] = records.writerIndex();
+        }
+        ByteBuf result = Unpooled.buffer();
+        int written = GraphDataMerger.merge(records, offsets, functionType.produce(), result);
+        assertEquals(result.readableBytes(), written);
+        return result;
+    }
+
+    private static void assertRecord(ByteBuf result, double value, long ts) {
+        assertEquals(value, result.readDouble(), 0.0001);
+        assertEquals(ts, result.readLong());
+    }
+
+    @Test
+    public void testSourcesAreMergedByTimestamp() {
+        ByteBuf result = merge(AggregationFunctionType.AVG,
+                new double[][] {{1, 2, 3}, {}, {10, 20}, {100}},
+                new long[][] {{1000, 2000, 3000}, {}, {2000, 4000}, {1000}});
+
+        assertRecord(result, 50.5, 1000);
+        assertRecord(result, 6, 2000);
+        assertRecord(result, 3, 3000);
+        assertRecord(result, 20, 4000);
+        assertEquals(0, result.readableBytes());
+    }
+
+    @Test
+    public void testMedianIsCalculatedPerTimestamp() {
+        ByteBuf result = merge(AggregationFunctionType.MED,
+                new double[][] {{5, 1}, {1, 2}, {3, 3}, {4}},
+                new long[][] {{1000, 2000}, {1000, 2000}, {1000, 2000}, {1000}});
+
+        assertRecord(result, 3.5, 1000);
+        assertRecord(result, 2, 2000);
+        assertEquals(0, result.readableBytes());
+    }
+
+    @Test
+    public void testSameResultAsTreeMap() {
+        Random random = new Random(42);
+        int sourcesCount = 50;
+        double[][] values = new double[sourcesCount][];
+        long[][] timestamps = new long[sourcesCount][];
+        for (int source = 0; source < sourcesCount; source++) {
+            int count = random.nextInt(100);
+            values[source] = new double[count];
+            timestamps[source] = new long[count];
+            long ts = random.nextInt(10);
+            for (int i = 0; i < count; i++) {
+                values[source][i] = random.nextInt(1000) - 500;
+                timestamps[source][i] = ts;
+                ts += 1 + random.nextInt(3);
+            }
+        }
+
+        for (AggregationFunctionType functionType : AggregationFunctionType.values()) {
+            TreeMap<Long, GraphFunction> expected = new TreeMap<>();
+            for (int source = 0; source < sourcesCount; source++) {
+                for (int i = 0; i < values[source].length; i++) {
+                    expected.computeIfAbsent(timestamps[source][i], ts -> functionType.produce())
+                            .apply(values[source][i]);
+                }
+            }
+
+            ByteBuf result = merge(functionType, values, timestamps);
+            for (Map.Entry<Long, GraphFunction> entry : expected.entrySet()) {
+                assertRecord(result, entry.getValue().getResult(), entry.getKey());
+            }
+            assertEquals(0, result.readableBytes());
+        }
+    }
+
+}
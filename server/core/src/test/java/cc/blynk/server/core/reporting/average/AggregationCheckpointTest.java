@@ -0,0 +1,187 @@
+package cc.blynk.server.core.reporting.average;
+
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.reporting.raw.BaseReportingKey;
+import cc.blynk.utils.AppNameUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AggregationCheckpointTest {
+
+    private Path folder;
+    private Path logPath;
+    private SeriesRegistry seriesRegistry;
+    private AggregationMap minute;
+    private AggregationMap hourly;
+    private AggregationCheckpoint checkpoint;
+
+    @Before
+    public void init() throws IOException {
+        folder = Files.createTempDirectory("checkpoint");
+        logPath = folder.resolve(AverageAggregatorProcessor.CHECKPOINT_FILENAME);
+        seriesRegistry = new SeriesRegistry();
+        minute = new AggregationMap(seriesRegistry);
+        hourly = new AggregationMap(seriesRegistry);
+        checkpoint = new AggregationCheckpoint(logPath, seriesRegistry, minute, hourly);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        checkpoint.close();
+        Files.deleteIfExists(folder);
+    }
+
+    private static AggregationKey key(int dashId, long period) {
+        BaseReportingKey baseReportingKey =
+                new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, dashId, 0, PinType.VIRTUAL, (byte) 1);
+        return new AggregationKey(baseReportingKey, period);
+    }
+
+    private static void assertValue(AggregationMap map, AggregationKey key, double sum, long count) {
+        AggregationValue value = map.get(key);
+        assertNotNull(value);
+        assertEquals(sum, value.getSum(), 0.0001);
+        assertEquals(count, value.getCount());
+    }
+
+    @Test
+    public void testCheckpointIsNotWrittenBeforeStart() throws IOException {
+        minute.put(key(1, 1), new AggregationValue(1, 1));
+        assertEquals(0, checkpoint.checkpoint());
+        assertFalse(Files.exists(logPath));
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws IOException {
+        minute.put(key(1, 1), new AggregationValue(10, 2));
+        checkpoint.start();
+
+        minute.put(key(1, 1), new AggregationValue(5, 1));
+        minute.put(key(2, 1), new AggregationValue(3, 1));
+        hourly.put(key(1, 0), new AggregationValue(18, 4));
+        assertTrue(checkpoint.checkpoint() > 0);
+        //nothing changed
+        assertEquals(0, checkpoint.checkpoint());
+
+        SeriesRegistry restoredRegistry = new SeriesRegistry();
+        AggregationMap restoredMinute = new AggregationMap(restoredRegistry);
+        AggregationMap restoredHourly = new AggregationMap(restoredRegistry);
+        AggregationCheckpoint.replay(logPath, restoredRegistry, restoredMinute, restoredHourly);
+
+        assertEquals(2, restoredMinute.size());
+        assertValue(restoredMinute, key(1, 1), 15, 3);
+        assertValue(restoredMinute, key(2, 1), 3, 1);
+        assertEquals(1, restoredHourly.size());
+        assertValue(restoredHourly, key(1, 0), 18, 4);
+
+        //replayed entries may be already flushed
+        assertTrue(restoredMinute.isReplayed(1));
+        assertFalse(restoredMinute.isReplayed(2));
+        assertTrue(restoredHourly.isReplayed(0));
+        assertFalse(minute.isReplayed(1));
+    }
+
+    @Test
+    public void testNullMapIsSkippedOnReplay() throws IOException {
+        checkpoint.start();
+        minute.put(key(1, 1), new AggregationValue(10, 2));
+        hourly.put(key(1, 0), new AggregationValue(18, 4));
+        checkpoint.checkpoint();
+
+        SeriesRegistry restoredRegistry = new SeriesRegistry();
+        AggregationMap restoredHourly = new AggregationMap(restoredRegistry);
+        AggregationCheckpoint.replay(logPath, restoredRegistry, null, restoredHourly);
+
+        assertEquals(1, restoredHourly.size());
+        assertValue(restoredHourly, key(1, 0), 18, 4);
+    }
+
+    @Test
+    public void testRemovedEntriesAreNotReplayed() throws IOException {
+        checkpoint.start();
+        minute.put(key(1, 1), new AggregationValue(10, 2));
+        minute.put(key(1, 2), new AggregationValue(7, 1));
+        checkpoint.checkpoint();
+
+        minute.removeOutdated(2);
+        checkpoint.checkpoint();
+
+        SeriesRegistry restoredRegistry = new SeriesRegistry();
+        AggregationMap restoredMinute = new AggregationMap(restoredRegistry);
+        AggregationCheckpoint.replay(logPath, restoredRegistry, restoredMinute, null);
+
+        assertEquals(1, restoredMinute.size());
+        assertNull(restoredMinute.get(key(1, 1)));
+        assertValue(restoredMinute, key(1, 2), 7, 1);
+    }
+
+    @Test
+    public void testTornBatchIsIgnored() throws IOException {
+        checkpoint.start();
+        minute.put(key(1, 1), new AggregationValue(10, 2));
+        checkpoint.checkpoint();
+        long validSize = Files.size(logPath);
+
+        minute.put(key(1, 1), new AggregationValue(5, 1));
+        minute.put(key(2, 1), new AggregationValue(3, 1));
+        checkpoint.checkpoint();
+
+        //crash in the middle of the last write
+        try (FileChannel channel = FileChannel.open(logPath, WRITE)) {
+            channel.truncate(validSize + 20);
+        }
+
+        SeriesRegistry restoredRegistry = new SeriesRegistry();
+        AggregationMap restoredMinute = new AggregationMap(restoredRegistry);
+        AggregationCheckpoint.replay(logPath, restoredRegistry, restoredMinute, null);
+
+        assertEquals(1, restoredMinute.size());
+        assertValue(restoredMinute, key(1, 1), 10, 2);
+    }
+
+    @Test
+    public void testCompactionKeepsOnlyActualEntries() throws IOException {
+        checkpoint.start();
+        long compactedSize = Files.size(logPath);
+        for (int i = 0; i < 1000; i++) {
+            minute.put(key(i, 1), new AggregationValue(i, 1));
+            checkpoint.checkpoint();
+        }
+        minute.removeOutdated(2);
+        checkpoint.checkpoint();
+        assertTrue(Files.size(logPath) > compactedSize);
+
+        //empty maps compacted to the header and removal markers
+        checkpoint.close();
+        checkpoint = new AggregationCheckpoint(logPath, seriesRegistry, minute, hourly);
+        checkpoint.start();
+        assertEquals(compactedSize, Files.size(logPath));
+
+        SeriesRegistry restoredRegistry = new SeriesRegistry();
+        AggregationMap restoredMinute = new AggregationMap(restoredRegistry);
+        AggregationCheckpoint.replay(logPath, restoredRegistry, restoredMinute, null);
+        assertTrue(restoredMinute.isEmpty());
+    }
+
+    @Test
+    public void testLogIsRemovedOnClose() throws IOException {
+        checkpoint.start();
+        assertTrue(Files.exists(logPath));
+        checkpoint.close();
+        assertFalse(Files.exists(logPath));
+    }
+
+}
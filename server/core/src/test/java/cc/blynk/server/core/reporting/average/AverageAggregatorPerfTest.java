@@ -0,0 +1,83 @@
+package cc.blynk.server.core.reporting.average;
+
+import cc.blynk.server.core.dao.ReportingDao;
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.utils.AppNameUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot reporting path for the already known series should not allocate.
+ * Run main and check "gc.alloc.rate.norm" is ~0 bytes/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class AverageAggregatorPerfTest {
+
+    private static final int SERIES_COUNT = 1024;
+
+    private ReportingDao reportingDao;
+    private User[] users;
+    private DashBoard dash;
+    private long ts;
+    private int counter;
+
+    @Setup
+    public void setup() throws IOException {
+        reportingDao = new ReportingDao(Files.createTempDirectory("reporting").toString(), false);
+        users = new User[SERIES_COUNT];
+        for (int i = 0; i < users.length; i++) {
+            User user = new User();
+            user.email = "user" + i + "@blynk.cc";
+            user.appName = AppNameUtil.BLYNK;
+            users[i] = user;
+        }
+        dash = new DashBoard();
+        dash.id = 1;
+        ts = System.currentTimeMillis();
+    }
+
+    @TearDown
+    public void tearDown() {
+        reportingDao.close();
+    }
+
+    @Benchmark
+    public void process() {
+        int i = counter++ & (SERIES_COUNT - 1);
+        reportingDao.process(users[i], dash, 0, (byte) (i & 127), PinType.VIRTUAL, "123.45", ts);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AverageAggregatorPerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
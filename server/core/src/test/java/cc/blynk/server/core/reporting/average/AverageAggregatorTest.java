@@ -8,16 +8,20 @@ import cc.blynk.utils.AppNameUtil;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static cc.blynk.server.core.reporting.average.AverageAggregatorProcessor.DAY;
 import static cc.blynk.server.core.reporting.average.AverageAggregatorProcessor.HOUR;
 import static cc.blynk.server.internal.ReportingUtil.getReportingFolder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -143,11 +147,13 @@ public class AverageAggregatorTest {
 
         averageAggregator.close();
 
+        assertTrue(Files.exists(Paths.get(reportingFolder, AverageAggregatorProcessor.MINUTE_TEMP_FILENAME)));
         assertTrue(Files.exists(Paths.get(reportingFolder, AverageAggregatorProcessor.HOURLY_TEMP_FILENAME)));
         assertTrue(Files.exists(Paths.get(reportingFolder, AverageAggregatorProcessor.DAILY_TEMP_FILENAME)));
 
         averageAggregator = new AverageAggregatorProcessor(reportingFolder);
 
+        assertEquals(24, averageAggregator.getMinute().size());
         assertEquals(24, averageAggregator.getHourly().size());
         assertEquals(1, averageAggregator.getDaily().size());
         assertEquals(expectedDailyAverage, averageAggregator.getDaily().get(new AggregationKey(new BaseReportingKey(user.email, user.appName, dashId, 0, pinType, pin), getMillis(2015, 8, 1, 0, 0) / DAY)).calcAverage(), 0);
@@ -162,4 +168,139 @@ public class AverageAggregatorTest {
         assertTrue(Files.notExists(Paths.get(reportingFolder, AverageAggregatorProcessor.DAILY_TEMP_FILENAME)));
     }
 
+    @Test
+    public void testOutdatedEntriesAreRemoved() {
+        AverageAggregatorProcessor averageAggregator = new AverageAggregatorProcessor("");
+        PinType pinType = PinType.VIRTUAL;
+        long ts = getMillis(2015, 8, 1, 0, 0);
+
+        //enough series to force registry and segments resize
+        for (int dashId = 0; dashId < 5000; dashId++) {
+            BaseReportingKey key = new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, dashId, 0, pinType, (byte) 1);
+            averageAggregator.collect(key, ts, dashId);
+            averageAggregator.collect(key, ts + HOUR, dashId);
+        }
+
+        assertEquals(5000, averageAggregator.seriesRegistry.size());
+        assertEquals(10000, averageAggregator.getHourly().size());
+
+        Map<AggregationKey, AggregationValue> removed = averageAggregator.getHourly().removeOutdated(ts / HOUR + 1);
+        assertEquals(5000, removed.size());
+        assertEquals(5000, averageAggregator.getHourly().size());
+
+        for (int dashId = 0; dashId < 5000; dashId++) {
+            BaseReportingKey key = new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, dashId, 0, pinType, (byte) 1);
+            assertEquals(dashId, removed.get(new AggregationKey(key, ts / HOUR)).calcAverage(), 0);
+            assertNull(averageAggregator.getHourly().get(new AggregationKey(key, ts / HOUR)));
+            assertEquals(dashId, averageAggregator.getHourly().get(new AggregationKey(key, ts / HOUR + 1)).calcAverage(), 0);
+        }
+    }
+
+    @Test
+    public void testSeriesOfDeletedDeviceAreReleased() {
+        AverageAggregatorProcessor averageAggregator = new AverageAggregatorProcessor("");
+        SeriesRegistry seriesRegistry = averageAggregator.seriesRegistry;
+        long ts = getMillis(2015, 8, 1, 0, 0);
+
+        //enough series of the other device to check lookup after the table rebuild
+        for (int pin = 0; pin < 100; pin++) {
+            averageAggregator.collect(new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, 1, 0, PinType.VIRTUAL, (byte) pin), ts, pin);
+        }
+        BaseReportingKey deleted = new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, 1, 1, PinType.VIRTUAL, (byte) 1);
+        averageAggregator.collect(deleted, ts, 10);
+        int deletedId = seriesRegistry.getId(deleted);
+        assertEquals(101, averageAggregator.getHourly().size());
+
+        averageAggregator.deleteSeries("test@test.com", AppNameUtil.BLYNK, 1, 1);
+        assertEquals(SeriesRegistry.NO_ID, seriesRegistry.findId(deleted));
+        assertEquals(100, averageAggregator.getHourly().size());
+        for (int pin = 0; pin < 100; pin++) {
+            BaseReportingKey key = new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, 1, 0, PinType.VIRTUAL, (byte) pin);
+            assertEquals(pin, seriesRegistry.findId(key));
+        }
+
+        //value aggregated by the thread that got the id before the release
+        averageAggregator.collect(deletedId, ts, 20);
+        assertEquals(deleted, seriesRegistry.getKey(deletedId));
+
+        //id is not reused till the second call
+        averageAggregator.reuseDeletedSeries();
+        BaseReportingKey created = new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, 1, 2, PinType.VIRTUAL, (byte) 1);
+        assertEquals(101, seriesRegistry.getId(created));
+
+        averageAggregator.reuseDeletedSeries();
+        assertEquals(100, averageAggregator.getHourly().size());
+        BaseReportingKey another = new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, 1, 3, PinType.VIRTUAL, (byte) 1);
+        assertEquals(deletedId, seriesRegistry.getId(another));
+        assertEquals(another, seriesRegistry.getKey(deletedId));
+        assertEquals(102, seriesRegistry.size());
+    }
+
+    @Test
+    public void testSeriesOfDeletedUserAreReleased() {
+        AverageAggregatorProcessor averageAggregator = new AverageAggregatorProcessor("");
+        long ts = getMillis(2015, 8, 1, 0, 0);
+        for (int dashId = 0; dashId < 10; dashId++) {
+            averageAggregator.collect(new BaseReportingKey("test@test.com", AppNameUtil.BLYNK, dashId, 0, PinType.VIRTUAL, (byte) 1), ts, 1);
+            averageAggregator.collect(new BaseReportingKey("test2@test.com", AppNameUtil.BLYNK, dashId, 0, PinType.VIRTUAL, (byte) 1), ts, 1);
+        }
+
+        averageAggregator.deleteSeries("test@test.com", AppNameUtil.BLYNK, 1);
+        assertEquals(19, averageAggregator.getMinute().size());
+        averageAggregator.deleteSeries("test@test.com", AppNameUtil.BLYNK);
+        assertEquals(10, averageAggregator.getMinute().size());
+        assertEquals(10, averageAggregator.getDaily().size());
+
+        averageAggregator.reuseDeletedSeries();
+        averageAggregator.reuseDeletedSeries();
+        for (int dashId = 0; dashId < 10; dashId++) {
+            averageAggregator.collect(new BaseReportingKey("test3@test.com", AppNameUtil.BLYNK, dashId, 0, PinType.VIRTUAL, (byte) 1), ts, 1);
+        }
+        assertEquals(20, averageAggregator.seriesRegistry.size());
+    }
+
+    @Test
+    public void testManyMinuteEntriesAreRestored() throws IOException {
+        Files.createDirectories(Paths.get(reportingFolder));
+        AverageAggregatorProcessor averageAggregator = new AverageAggregatorProcessor(reportingFolder);
+        long ts = getMillis(2015, 8, 1, 0, 0);
+
+        for (int dashId = 0; dashId < 1000; dashId++) {
+            BaseReportingKey key = new BaseReportingKey("test" + dashId + "@test.com", AppNameUtil.BLYNK, dashId, 0, PinType.VIRTUAL, (byte) 1);
+            for (int minute = 0; minute < 200; minute++) {
+                averageAggregator.collect(key, ts + minute * AverageAggregatorProcessor.MINUTE, minute);
+            }
+        }
+        averageAggregator.close();
+
+        averageAggregator = new AverageAggregatorProcessor(reportingFolder);
+        assertEquals(200_000, averageAggregator.getMinute().size());
+        assertEquals(4000, averageAggregator.getHourly().size());
+        BaseReportingKey key = new BaseReportingKey("test999@test.com", AppNameUtil.BLYNK, 999, 0, PinType.VIRTUAL, (byte) 1);
+        assertEquals(199, averageAggregator.getMinute().get(new AggregationKey(key, ts / AverageAggregatorProcessor.MINUTE + 199)).calcAverage(), 0);
+        assertEquals(29.5, averageAggregator.getHourly().get(new AggregationKey(key, ts / HOUR)).calcAverage(), 0);
+    }
+
+    @Test
+    public void testLegacyTempFileIsRestored() throws IOException {
+        Files.createDirectories(Paths.get(reportingFolder));
+        long ts = getMillis(2015, 8, 1, 0, 0);
+        AggregationKey key = new AggregationKey("test@test.com", AppNameUtil.BLYNK, 1, 0, PinType.VIRTUAL, (byte) 1, ts / HOUR);
+        AggregationValue value = new AggregationValue();
+        value.update(10);
+        value.update(20);
+        ConcurrentHashMap<AggregationKey, AggregationValue> legacy = new ConcurrentHashMap<>();
+        legacy.put(key, value);
+
+        Path path = Paths.get(reportingFolder, AverageAggregatorProcessor.HOURLY_TEMP_FILENAME);
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(path))) {
+            oos.writeObject(legacy);
+        }
+
+        AverageAggregatorProcessor averageAggregator = new AverageAggregatorProcessor(reportingFolder);
+        assertEquals(1, averageAggregator.getHourly().size());
+        assertEquals(15, averageAggregator.getHourly().get(key).calcAverage(), 0);
+        assertTrue(Files.notExists(path));
+    }
+
 }
@@ -0,0 +1,118 @@
+package cc.blynk.server.core.reporting.storage;
+
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import cc.blynk.utils.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingReportingStorageTest {
+
+    private final Path reportingFile = Paths.get(System.getProperty("java.io.tmpdir"), "history_1_v1_minute.bin");
+
+    private RingReportingStorage storage;
+
+    @Before
+    public void init() {
+        FileUtils.deleteQuietly(reportingFile);
+        storage = new RingReportingStorage(10, 10, 10, 2);
+    }
+
+    @After
+    public void close() {
+        storage.close();
+        FileUtils.deleteQuietly(reportingFile);
+    }
+
+    @Test
+    public void testReadNotExistingFile() throws Exception {
+        assertNull(storage.read(reportingFile, GraphGranularityType.MINUTE, 10, 0));
+        assertFalse(Files.exists(reportingFile));
+    }
+
+    @Test
+    public void testWriteAndReadWithoutWrap() throws Exception {
+        write(0, 5);
+
+        assertEquals(32 + 16 * 10, Files.size(reportingFile));
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 10, 0), 0, 5);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 2, 0), 3, 5);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 2, 1), 2, 4);
+        assertNull(storage.read(reportingFile, GraphGranularityType.MINUTE, 2, 5));
+    }
+
+    @Test
+    public void testOldestRecordsAreOverridden() throws Exception {
+        write(0, 25);
+
+        assertEquals(32 + 16 * 10, Files.size(reportingFile));
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 100, 0), 15, 25);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 3, 0), 22, 25);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 6, 2), 17, 23);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 100, 8), 15, 17);
+    }
+
+    @Test
+    public void testDataSurvivesUnmapping() throws Exception {
+        write(0, 7);
+        storage.close();
+
+        storage = new RingReportingStorage(10, 10, 10, 2);
+        write(7, 12);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 10, 0), 2, 12);
+    }
+
+    @Test
+    public void testLegacyFileIsConverted() throws Exception {
+        for (int i = 0; i < 15; i++) {
+            FileUtils.write(reportingFile, i, i);
+        }
+        assertFalse(RingFile.isRingFile(reportingFile));
+
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 10, 0), 5, 15);
+        assertTrue(RingFile.isRingFile(reportingFile));
+
+        write(15, 17);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 10, 0), 7, 17);
+        assertFalse(RingFile.convert(reportingFile, 10));
+    }
+
+    @Test
+    public void testDeleteUnmapsFile() throws Exception {
+        write(0, 3);
+        storage.delete(reportingFile);
+        assertFalse(Files.exists(reportingFile));
+
+        write(3, 4);
+        assertData(storage.read(reportingFile, GraphGranularityType.MINUTE, 10, 0), 3, 4);
+    }
+
+    private void write(int from, int to) throws Exception {
+        ByteBuffer records = ByteBuffer.allocate((to - from) * 16);
+        for (int i = from; i < to; i++) {
+            records.putDouble(i).putLong(i);
+        }
+        records.flip();
+        storage.write(reportingFile, GraphGranularityType.MINUTE, records);
+    }
+
+    private static void assertData(ByteBuffer data, int from, int to) {
+        data.flip();
+        assertEquals((to - from) * 16, data.remaining());
+        for (int i = from; i < to; i++) {
+            assertEquals(i, data.getDouble(), 0.0001);
+            assertEquals(i, data.getLong());
+        }
+    }
+
+}
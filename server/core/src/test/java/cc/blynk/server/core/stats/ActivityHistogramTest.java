@@ -0,0 +1,78 @@
+package cc.blynk.server.core.stats;
+
+import cc.blynk.server.core.dao.UserDao;
+import cc.blynk.server.core.dao.UserKey;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.utils.AppNameUtil;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class ActivityHistogramTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long NOW = 1000 * DAY;
+
+    @Test
+    public void testUsersAreCountedWithinPeriod() {
+        ActivityHistogram activity = new ActivityHistogram();
+        activity.add(ActivityHistogram.hour(NOW));
+        activity.add(ActivityHistogram.hour(NOW - 2 * DAY));
+        activity.add(ActivityHistogram.hour(NOW - 10 * DAY));
+        activity.add(ActivityHistogram.hour(NOW - 40 * DAY));
+
+        assertEquals(1, activity.activeSince(NOW, DAY));
+        assertEquals(2, activity.activeSince(NOW, 7 * DAY));
+        assertEquals(3, activity.activeSince(NOW, 30 * DAY));
+
+        activity.move(ActivityHistogram.hour(NOW - 10 * DAY), ActivityHistogram.hour(NOW));
+        assertEquals(2, activity.activeSince(NOW, DAY));
+        assertEquals(3, activity.activeSince(NOW, 30 * DAY));
+    }
+
+    @Test
+    public void testOutdatedSlotIsReused() {
+        ActivityHistogram activity = new ActivityHistogram();
+        activity.add(ActivityHistogram.hour(NOW - 30 * DAY));
+        assertEquals(0, activity.activeSince(NOW, 30 * DAY));
+
+        //same slot, a month later
+        activity.add(ActivityHistogram.hour(NOW));
+        assertEquals(1, activity.activeSince(NOW, DAY));
+
+        //outdated user moved to the current hour is counted once
+        activity.move(ActivityHistogram.hour(NOW - 30 * DAY), ActivityHistogram.hour(NOW));
+        assertEquals(2, activity.activeSince(NOW, DAY));
+    }
+
+    private static int active(UserDao userDao, long period) {
+        return userDao.activity.activeSince(System.currentTimeMillis(), period);
+    }
+
+    @Test
+    public void testUserChangesAreTracked() {
+        User old = new User("old@blynk.cc", "pass", AppNameUtil.BLYNK, "local", "127.0.0.1", false, false);
+        old.lastModifiedTs = System.currentTimeMillis() - 10 * DAY;
+        ConcurrentHashMap<UserKey, User> users = new ConcurrentHashMap<>();
+        users.put(new UserKey(old), old);
+        UserDao userDao = new UserDao(users, "local", "127.0.0.1");
+        assertEquals(0, active(userDao, DAY));
+        assertEquals(1, active(userDao, 30 * DAY));
+
+        old.markDirty();
+        assertEquals(1, active(userDao, DAY));
+
+        User created = new User("new@blynk.cc", "pass", AppNameUtil.BLYNK, "local", "127.0.0.1", false, false);
+        userDao.add(created);
+        //changes of the same hour don't move user
+        created.markDirty();
+        assertEquals(2, active(userDao, DAY));
+
+        userDao.delete(new UserKey(old));
+        assertEquals(1, active(userDao, 30 * DAY));
+    }
+
+}
@@ -8,6 +8,9 @@ import cc.blynk.server.core.stats.GlobalStats;
 import cc.blynk.server.core.stats.model.CommandStat;
 import cc.blynk.server.core.stats.model.HttpStat;
 import cc.blynk.server.core.stats.model.Stat;
+import cc.blynk.server.notifications.mail.MailWrapper;
+import cc.blynk.utils.AppNameUtil;
+import cc.blynk.utils.properties.MailProperties;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -17,6 +20,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -63,7 +67,9 @@ public class RealtimeStatsDBTest {
         UserDao userDao = new UserDao(new ConcurrentHashMap<>(), "test", "127.0.0.1");
         BlockingIOProcessor blockingIOProcessor = new BlockingIOProcessor(6, 1000);
 
-        Stat stat = new Stat(sessionDao, userDao, blockingIOProcessor, new GlobalStats(), false);
+        MailWrapper mailWrapper = new MailWrapper(new MailProperties(Collections.emptyMap()), AppNameUtil.BLYNK);
+
+        Stat stat = new Stat(sessionDao, userDao, blockingIOProcessor, mailWrapper, new GlobalStats(), false);
         int i;
 
         final HttpStat hs = stat.http;
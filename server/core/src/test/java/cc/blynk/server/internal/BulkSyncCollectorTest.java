@@ -0,0 +1,155 @@
+package cc.blynk.server.internal;
+
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.PinStorageKey;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.Inflater;
+
+import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC;
+import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC_BULK;
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_SYNC_BULK;
+import static cc.blynk.server.internal.CommonByteBufUtil.makeUTF8StringMessage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BulkSyncCollectorTest {
+
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+
+    @Before
+    public void init() {
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+    }
+
+    @After
+    public void close() {
+        channel.finishAndReleaseAll();
+    }
+
+    private ByteBufMessage read() {
+        channel.flush();
+        return channel.readOutbound();
+    }
+
+    //returns frame flags followed by the "command:body" of every entry
+    private static List<String> decode(ByteBufMessage msg) throws Exception {
+        try {
+            byte[] frame = msg.getBytes();
+            List<String> result = new ArrayList<>();
+            result.add(String.valueOf(frame[0]));
+            byte[] entries = Arrays.copyOfRange(frame, 1, frame.length);
+            if (frame[0] == BulkSyncCollector.DEFLATED) {
+                Inflater inflater = new Inflater();
+                inflater.setInput(entries);
+                ByteBuf inflated = Unpooled.buffer();
+                byte[] chunk = new byte[1024];
+                while (!inflater.finished()) {
+                    inflated.writeBytes(chunk, 0, inflater.inflate(chunk));
+                }
+                inflater.end();
+                entries = Arrays.copyOf(inflated.array(), inflated.writerIndex());
+            }
+            ByteBuf buf = Unpooled.wrappedBuffer(entries);
+            while (buf.isReadable()) {
+                short command = buf.readUnsignedByte();
+                int length = buf.readInt();
+                result.add(command + ":" + buf.readCharSequence(length, StandardCharsets.UTF_8));
+            }
+            return result;
+        } finally {
+            msg.release();
+        }
+    }
+
+    @Test
+    public void testAppSyncsAreSentInOneMessage() throws Exception {
+        DashBoard dash = new DashBoard();
+        dash.id = 1;
+        dash.pinsStorage = new HashMap<>();
+        PinStorageKey key1 = new PinStorageKey(0, PinType.VIRTUAL, (byte) 1);
+        PinStorageKey key2 = new PinStorageKey(0, PinType.VIRTUAL, (byte) 2);
+        dash.pinsStorage.put(key1, "1");
+        dash.pinsStorage.put(key2, "привіт");
+
+        try (BulkSyncCollector collector = new BulkSyncCollector()) {
+            dash.sendSyncs(collector.channel(), -1);
+            collector.writeTo(ctx, APP_SYNC_BULK, 7, Integer.MAX_VALUE);
+        }
+
+        ByteBufMessage msg = read();
+        assertNull(channel.readOutbound());
+        assertEquals(APP_SYNC_BULK, msg.command);
+        assertEquals(7, msg.id);
+        List<String> entries = decode(msg);
+        assertEquals(3, entries.size());
+        assertEquals(String.valueOf(BulkSyncCollector.PLAIN), entries.get(0));
+        assertTrue(entries.contains(APP_SYNC + ":" + key1.toStringMessage(1, "1").body));
+        assertTrue(entries.contains(APP_SYNC + ":" + key2.toStringMessage(1, "привіт").body));
+    }
+
+    @Test
+    public void testEmptySyncIsSentAsEmptyMessage() throws Exception {
+        try (BulkSyncCollector collector = new BulkSyncCollector()) {
+            collector.writeTo(ctx, APP_SYNC_BULK, 1, Integer.MAX_VALUE);
+        }
+
+        List<String> entries = decode(read());
+        assertEquals(1, entries.size());
+        assertEquals(String.valueOf(BulkSyncCollector.PLAIN), entries.get(0));
+    }
+
+    @Test
+    public void testBigSyncIsCompressed() throws Exception {
+        try (BulkSyncCollector collector = new BulkSyncCollector()) {
+            for (int i = 0; i < 100; i++) {
+                collector.context().write(makeUTF8StringMessage(HARDWARE, 3, "vw\0" + i + "\0value"));
+            }
+            collector.writeTo(ctx, HARDWARE_SYNC_BULK, 3, 0xFFFF);
+        }
+
+        List<String> entries = decode(read());
+        assertNull(channel.readOutbound());
+        assertEquals(101, entries.size());
+        assertEquals(String.valueOf(BulkSyncCollector.DEFLATED), entries.get(0));
+        assertEquals(HARDWARE + ":vw\0" + 0 + "\0value", entries.get(1));
+        assertEquals(HARDWARE + ":vw\0" + 99 + "\0value", entries.get(100));
+    }
+
+    @Test
+    public void testSyncIsSplitByBodyLimit() throws Exception {
+        //1 byte of flags + 3 entries of 1 + 4 + 10 bytes
+        try (BulkSyncCollector collector = new BulkSyncCollector()) {
+            for (int i = 0; i < 7; i++) {
+                collector.context().write(makeUTF8StringMessage(HARDWARE, 3, "vw\0" + i + "\0value"));
+            }
+            collector.writeTo(ctx, HARDWARE_SYNC_BULK, 3, 46);
+        }
+
+        assertEquals(4, decode(read()).size());
+        assertEquals(4, decode(read()).size());
+        List<String> last = decode(read());
+        assertEquals(2, last.size());
+        assertEquals(HARDWARE + ":vw\0" + 6 + "\0value", last.get(1));
+        assertNull(channel.readOutbound());
+    }
+
+}
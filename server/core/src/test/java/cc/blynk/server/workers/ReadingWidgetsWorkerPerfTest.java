@@ -0,0 +1,181 @@
+package cc.blynk.server.workers;
+
+import cc.blynk.server.core.dao.SessionDao;
+import cc.blynk.server.core.dao.UserDao;
+import cc.blynk.server.core.dao.UserKey;
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.auth.Session;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.device.Device;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.FrequencyWidget;
+import cc.blynk.server.core.model.widgets.Target;
+import cc.blynk.server.core.model.widgets.Widget;
+import cc.blynk.server.core.model.widgets.outputs.Gauge;
+import cc.blynk.server.core.session.HardwareStateHolder;
+import cc.blynk.server.core.session.StateHolderBase;
+import cc.blynk.server.handlers.BaseSimpleChannelInboundHandler;
+import cc.blynk.utils.AppNameUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the single reading tick with 1M registered reading widgets:
+ * 100k connected devices with 10 widgets each, widgets of the device have the same frequency
+ * from 1 second to 1 minute. "fullScan" is the walk over all sessions and widgets used before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class ReadingWidgetsWorkerPerfTest {
+
+    private static final int[] FREQUENCIES = {1000, 5000, 10000, 30000, 60000};
+    private static final int WIDGETS_PER_DEVICE = 10;
+
+    @ChannelHandler.Sharable
+    private static final class DiscardHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            promise.trySuccess();
+        }
+    }
+
+    //session finds dash and device of the hardware channel by its state
+    private static final class StateHandler extends BaseSimpleChannelInboundHandler<Object> {
+
+        private final StateHolderBase state;
+
+        private StateHandler(StateHolderBase state) {
+            super(Object.class);
+            this.state = state;
+        }
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, Object msg) {
+        }
+
+        @Override
+        public StateHolderBase getState() {
+            return state;
+        }
+    }
+
+    @Param({"100000"})
+    private int devicesCount;
+
+    private SessionDao sessionDao;
+    private UserDao userDao;
+    private ReadingWidgetsWorker worker;
+    private long now;
+
+    @Setup
+    public void setup() {
+        sessionDao = new SessionDao();
+        userDao = new UserDao(new ConcurrentHashMap<>(), "local", "127.0.0.1");
+        worker = new ReadingWidgetsWorker(sessionDao, userDao, true);
+        DiscardHandler discardHandler = new DiscardHandler();
+        EmbeddedChannel loopChannel = new EmbeddedChannel();
+
+        for (int i = 0; i < devicesCount; i++) {
+            User user = new User("user" + i, "pass", AppNameUtil.BLYNK, "local", "127.0.0.1", false, false);
+            DashBoard dash = new DashBoard();
+            dash.id = 1;
+            dash.isActive = true;
+            dash.devices = new Device[] {new Device(0, "device", "ESP8266")};
+            Widget[] widgets = new Widget[WIDGETS_PER_DEVICE];
+            for (int pin = 0; pin < WIDGETS_PER_DEVICE; pin++) {
+                Gauge gauge = new Gauge();
+                gauge.id = pin;
+                gauge.deviceId = 0;
+                gauge.pin = (byte) pin;
+                gauge.pinType = PinType.VIRTUAL;
+                gauge.frequency = FREQUENCIES[i % FREQUENCIES.length];
+                widgets[pin] = gauge;
+            }
+            dash.widgets = widgets;
+            user.profile.dashBoards = new DashBoard[] {dash};
+            userDao.add(user);
+
+            UserKey userKey = new UserKey(user);
+            Channel channel = new EmbeddedChannel(discardHandler,
+                    new StateHandler(new HardwareStateHolder(user, dash, dash.devices[0])));
+            Session session = sessionDao.getOrCreateSessionByUser(userKey, loopChannel.eventLoop());
+            session.addHardChannel(channel);
+            worker.register(channel, userKey, dash.id, 0);
+        }
+        now = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public void wheel() {
+        now += 1000;
+        worker.process(now);
+    }
+
+    @Benchmark
+    public int fullScan() {
+        now += 1000;
+        int ticked = 0;
+        for (Map.Entry<UserKey, Session> entry : sessionDao.userSession.entrySet()) {
+            Session session = entry.getValue();
+            if (session.isHardwareConnected()) {
+                User user = userDao.users.get(entry.getKey());
+                for (DashBoard dashBoard : user.profile.dashBoards) {
+                    if (dashBoard.isActive) {
+                        for (Channel channel : session.hardwareChannels) {
+                            for (Widget widget : dashBoard.widgets) {
+                                if (widget instanceof FrequencyWidget) {
+                                    FrequencyWidget frequencyWidget = (FrequencyWidget) widget;
+                                    Target target = dashBoard.getTarget(frequencyWidget.getDeviceId());
+                                    if (channel.isWritable() && target != null && target.isSelected(0)
+                                            && frequencyWidget.isTicked(now)) {
+                                        frequencyWidget.writeReadingCommand(channel);
+                                        ticked++;
+                                    }
+                                }
+                            }
+                            channel.flush();
+                        }
+                    }
+                }
+            }
+        }
+        return ticked;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ReadingWidgetsWorkerPerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,166 @@
+package cc.blynk.server.workers;
+
+import cc.blynk.server.core.dao.SessionDao;
+import cc.blynk.server.core.dao.UserDao;
+import cc.blynk.server.core.dao.UserKey;
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.device.Device;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.Widget;
+import cc.blynk.server.core.model.widgets.outputs.Gauge;
+import cc.blynk.utils.AppNameUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReadingWidgetsWorkerTest {
+
+    private static final long START = 1_000_000_000L;
+
+    private final UserKey userKey = new UserKey("test@blynk.cc", AppNameUtil.BLYNK);
+
+    private DashBoard dash;
+    private ReadingWidgetsWorker worker;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void init() {
+        UserDao userDao = new UserDao(new ConcurrentHashMap<>(), "local", "127.0.0.1");
+        SessionDao sessionDao = new SessionDao();
+        User user = new User(userKey.email, "pass", AppNameUtil.BLYNK, "local", "127.0.0.1", false, false);
+        dash = new DashBoard();
+        dash.id = 1;
+        dash.isActive = true;
+        dash.devices = new Device[] {new Device(0, "device", "ESP8266")};
+        dash.widgets = new Widget[] {gauge(1, 1, 3000), gauge(2, 2, 10000)};
+        user.profile.dashBoards = new DashBoard[] {dash};
+        userDao.add(user);
+
+        channel = new EmbeddedChannel();
+        sessionDao.getOrCreateSessionByUser(userKey, channel.eventLoop());
+        worker = new ReadingWidgetsWorker(sessionDao, userDao, true);
+    }
+
+    private static Gauge gauge(long id, int pin, int frequency) {
+        Gauge gauge = new Gauge();
+        gauge.id = id;
+        gauge.deviceId = 0;
+        gauge.pin = (byte) pin;
+        gauge.pinType = PinType.VIRTUAL;
+        gauge.frequency = frequency;
+        return gauge;
+    }
+
+    private int readings() {
+        int count = 0;
+        while (channel.readOutbound() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testDeviceIsReadWithItsFrequency() {
+        worker.register(channel, userKey, 1, 0);
+
+        worker.process(START);
+        assertEquals(2, readings());
+
+        //device is not touched till the most frequent widget is due
+        worker.process(START + 1000);
+        worker.process(START + 2000);
+        assertEquals(0, readings());
+
+        worker.process(START + 3000);
+        assertEquals(1, readings());
+
+        //missed ticks are processed on the next run
+        worker.process(START + 10000);
+        assertEquals(2, readings());
+    }
+
+    @Test
+    public void testMixedFrequenciesAreReadInTime() {
+        dash.widgets = new Widget[] {gauge(1, 1, 2500), gauge(2, 2, 4000)};
+        worker.register(channel, userKey, 1, 0);
+
+        worker.process(START);
+        assertEquals(2, readings());
+        worker.process(START + 1000);
+        worker.process(START + 2000);
+        assertEquals(0, readings());
+
+        //first tick after 2500 ms, not the tick of the shortest period multiple
+        worker.process(START + 3000);
+        assertEquals(1, readings());
+        worker.process(START + 4000);
+        assertEquals(1, readings());
+        worker.process(START + 5000);
+        assertEquals(0, readings());
+        worker.process(START + 6000);
+        assertEquals(1, readings());
+        worker.process(START + 8000);
+        assertEquals(1, readings());
+    }
+
+    @Test
+    public void testJitterDoesNotSkipPeriod() {
+        worker.register(channel, userKey, 1, 0);
+
+        //run is a bit late, so widgets are read later than the tick
+        worker.process(START + 50);
+        assertEquals(2, readings());
+
+        //next run is a bit early, widget is still read on this tick
+        worker.process(START + 3000);
+        assertEquals(1, readings());
+        worker.process(START + 6030);
+        assertEquals(1, readings());
+    }
+
+    @Test
+    public void testWidgetsChangeIsPickedUp() {
+        dash.widgets = new Widget[0];
+        worker.register(channel, userKey, 1, 0);
+        worker.process(START);
+        assertEquals(0, readings());
+
+        dash.widgets = new Widget[] {gauge(3, 3, 1000)};
+        worker.process(START + 4000);
+        assertEquals(0, readings());
+        worker.process(START + 5000);
+        assertEquals(1, readings());
+        worker.process(START + 6000);
+        assertEquals(1, readings());
+    }
+
+    @Test
+    public void testClosedDeviceIsRemoved() {
+        worker.register(channel, userKey, 1, 0);
+        worker.process(START);
+        assertEquals(2, readings());
+
+        channel.close();
+        worker.process(START + 3000);
+        worker.process(START + 10000);
+        assertEquals(0, readings());
+    }
+
+    @Test
+    public void testInactiveDashIsNotRead() {
+        dash.isActive = false;
+        worker.register(channel, userKey, 1, 0);
+        worker.process(START);
+        assertEquals(0, readings());
+
+        dash.isActive = true;
+        worker.process(START + 5000);
+        assertEquals(2, readings());
+    }
+
+}
@@ -0,0 +1,123 @@
+package cc.blynk.server.workers.timer;
+
+import cc.blynk.server.core.dao.SessionDao;
+import cc.blynk.server.core.dao.UserDao;
+import cc.blynk.server.core.dao.UserKey;
+import cc.blynk.server.core.model.DashBoard;
+import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.device.Device;
+import cc.blynk.server.core.model.enums.PinType;
+import cc.blynk.server.core.model.widgets.Widget;
+import cc.blynk.server.core.model.widgets.controls.Timer;
+import cc.blynk.server.notifications.push.GCMWrapper;
+import cc.blynk.utils.AppNameUtil;
+import cc.blynk.utils.DateTimeUtils;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TimerWorkerTest {
+
+    private static final int TIME = 8 * 3600;
+
+    private final ZonedDateTime tickTime = ZonedDateTime.now(DateTimeUtils.UTC)
+            .withHour(8).withMinute(0).withSecond(0).withNano(0);
+
+    private EventLoop eventLoop;
+    private UserDao userDao;
+    private SessionDao sessionDao;
+
+    @Before
+    public void init() {
+        eventLoop = new DefaultEventLoop();
+        userDao = new UserDao(new ConcurrentHashMap<>(), "local", "127.0.0.1");
+        sessionDao = new SessionDao();
+    }
+
+    @After
+    public void shutdown() {
+        eventLoop.shutdownGracefully();
+    }
+
+    private Timer addUser(String email, int startTime) {
+        User user = new User(email, "pass", AppNameUtil.BLYNK, "local", "127.0.0.1", false, false);
+        Timer timer = new Timer();
+        timer.id = 1;
+        timer.deviceId = 0;
+        timer.pin = 1;
+        timer.pinType = PinType.VIRTUAL;
+        timer.startTime = startTime;
+        timer.startValue = "1";
+        DashBoard dash = new DashBoard();
+        dash.id = 1;
+        dash.isActive = true;
+        dash.devices = new Device[] {new Device(0, "device", "ESP8266")};
+        dash.widgets = new Widget[] {timer};
+        user.profile.dashBoards = new DashBoard[] {dash};
+        userDao.add(user);
+        return timer;
+    }
+
+    @Test
+    public void testTimersAreFiredOnSessionEventLoopAndInPlace() throws Exception {
+        Timer online = addUser("online@blynk.cc", TIME);
+        Timer offline = addUser("offline@blynk.cc", TIME);
+        Timer other = addUser("other@blynk.cc", TIME + 1);
+        sessionDao.getOrCreateSessionByUser(new UserKey("online@blynk.cc", AppNameUtil.BLYNK), eventLoop);
+
+        TimerWorker timerWorker = new TimerWorker(userDao, sessionDao, mock(GCMWrapper.class));
+        timerWorker.run(tickTime);
+
+        //offline user is processed by the timer thread
+        assertEquals("1", offline.value);
+        CountDownLatch latch = new CountDownLatch(1);
+        eventLoop.execute(latch::countDown);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals("1", online.value);
+        assertNull(other.value);
+
+        TimerMetrics metrics = timerWorker.metrics;
+        assertEquals(1, metrics.getTicks());
+        assertEquals(2, metrics.getFired());
+    }
+
+    @Test
+    public void testTickIsFinishedAfterAllBatches() throws Exception {
+        Timer online = addUser("online@blynk.cc", TIME);
+        sessionDao.getOrCreateSessionByUser(new UserKey("online@blynk.cc", AppNameUtil.BLYNK), eventLoop);
+        TimerWorker timerWorker = new TimerWorker(userDao, sessionDao, mock(GCMWrapper.class));
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        eventLoop.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        timerWorker.run(tickTime);
+        assertEquals(0, timerWorker.metrics.getTicks());
+        assertNull(online.value);
+
+        blocked.countDown();
+        CountDownLatch latch = new CountDownLatch(1);
+        eventLoop.execute(latch::countDown);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals("1", online.value);
+        assertEquals(1, timerWorker.metrics.getTicks());
+        assertEquals(0, timerWorker.metrics.getLateFired());
+    }
+
+}
@@ -3,16 +3,19 @@ package cc.blynk.utils;
 import cc.blynk.server.core.dao.FileManager;
 import cc.blynk.server.core.dao.UserKey;
 import cc.blynk.server.core.model.auth.User;
+import cc.blynk.server.core.model.serialization.JsonParser;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -81,4 +84,39 @@ public class FileManagerIntegrationTest {
         assertNotNull(users.get(new UserKey(user1.email, AppNameUtil.BLYNK)));
     }
 
+    @Test
+    public void testNoTempFileLeftAfterOverride() throws IOException {
+        fileManager.overrideUserFile(user1);
+        user1.name = "updated";
+        fileManager.overrideUserFile(user1);
+
+        Path file = fileManager.generateFileName(user1.email, user1.appName);
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        User user = fileManager.deserializeUsers().get(new UserKey(user1.email, AppNameUtil.BLYNK));
+        assertEquals("updated", user.name);
+    }
+
+    @Test
+    public void testBinaryAndJsonProfilesAreRead() throws Exception {
+        FileManager binaryFileManager = new FileManager(fileManager.getDataDir().toString(), null, true);
+        user1.profile = JsonParser.parseProfileFromString(readTestProfile());
+        binaryFileManager.overrideUserFile(user1);
+        fileManager.overrideUserFile(user2);
+
+        byte[] binary = Files.readAllBytes(fileManager.generateFileName(user1.email, user1.appName));
+        assertEquals(':', binary[0]);
+        assertEquals(')', binary[1]);
+
+        Map<UserKey, User> users = fileManager.deserializeUsers();
+        assertEquals(2, users.size());
+        User user = users.get(new UserKey(user1.email, AppNameUtil.BLYNK));
+        assertEquals(JsonParser.toJson(user1.profile), JsonParser.toJson(user.profile));
+        assertNotNull(users.get(new UserKey(user2.email, AppNameUtil.BLYNK)));
+    }
+
+    private String readTestProfile() throws Exception {
+        Path path = Paths.get(getClass().getResource("/json_test/user_profile_json_5.txt").toURI());
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
 }
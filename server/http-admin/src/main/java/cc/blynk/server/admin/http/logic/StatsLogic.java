@@ -19,12 +19,15 @@ import cc.blynk.server.core.model.device.Device;
 import cc.blynk.server.core.model.serialization.JsonParser;
 import cc.blynk.server.core.stats.GlobalStats;
 import cc.blynk.server.core.stats.model.Stat;
+import cc.blynk.server.notifications.mail.MailWrapper;
 import io.netty.channel.ChannelHandler;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import static cc.blynk.core.http.Response.ok;
 import static cc.blynk.utils.AdminHttpUtil.convertMapToPair;
@@ -41,23 +44,31 @@ import static cc.blynk.utils.AdminHttpUtil.sortStringAsInt;
 @ChannelHandler.Sharable
 public class StatsLogic extends CookiesBaseHttpHandler {
 
+    private static final long REPORT_TTL = 60_000L;
+
     private final UserDao userDao;
     private final FileManager fileManager;
     private final BlockingIOProcessor blockingIOProcessor;
+    private final MailWrapper mailWrapper;
     private final GlobalStats globalStats;
 
+    //usage reports walk all profiles, so they are built at most once per minute
+    private final Map<String, Report> reports = new ConcurrentHashMap<>();
+
     public StatsLogic(Holder holder, String rootPath) {
         super(holder, rootPath);
         this.userDao = holder.userDao;
         this.fileManager = holder.fileManager;
         this.blockingIOProcessor = holder.blockingIOProcessor;
+        this.mailWrapper = holder.mailWrapper;
         this.globalStats = holder.stats;
     }
 
     @GET
     @Path("/realtime")
     public Response getReatime() {
-       return ok(Collections.singletonList(new Stat(sessionDao, userDao, blockingIOProcessor, globalStats, false)));
+       return ok(Collections.singletonList(
+               new Stat(sessionDao, userDao, blockingIOProcessor, mailWrapper, globalStats, false)));
     }
 
     @GET
@@ -83,7 +94,7 @@ public class StatsLogic extends CookiesBaseHttpHandler {
     public Response getMessages(@QueryParam("_sortField") String sortField,
                                     @QueryParam("_sortDir") String sortOrder) {
         return ok(sort(convertObjectToMap(
-                new Stat(sessionDao, userDao, blockingIOProcessor, globalStats, false).commands),
+                new Stat(sessionDao, userDao, blockingIOProcessor, mailWrapper, globalStats, false).commands),
                 sortField, sortOrder));
     }
 
@@ -91,42 +102,45 @@ public class StatsLogic extends CookiesBaseHttpHandler {
     @Path("/widgets")
     public Response getWidgets(@QueryParam("_sortField") String sortField,
                                    @QueryParam("_sortDir") String sortOrder) {
-        return ok(sort(convertMapToPair(userDao.getWidgetsUsage()), sortField, sortOrder));
+        return ok(sort(convertMapToPair(report("widgets", userDao::getWidgetsUsage)), sortField, sortOrder));
     }
 
     @GET
     @Path("/projectsPerUser")
     public Response getProjectsPerUser(@QueryParam("_sortField") String sortField,
                                            @QueryParam("_sortDir") String sortOrder) {
-        return ok(sortStringAsInt(convertMapToPair(userDao.getProjectsPerUser()), sortField, sortOrder));
+        Map<String, Integer> data = report("projectsPerUser", userDao::getProjectsPerUser);
+        return ok(sortStringAsInt(convertMapToPair(data), sortField, sortOrder));
     }
 
     @GET
     @Path("/boards")
     public Response getBoards(@QueryParam("_sortField") String sortField,
                                     @QueryParam("_sortDir") String sortOrder) {
-        return ok(sort(convertMapToPair(userDao.getBoardsUsage()), sortField, sortOrder));
+        return ok(sort(convertMapToPair(report("boards", userDao::getBoardsUsage)), sortField, sortOrder));
     }
 
     @GET
     @Path("/facebookLogins")
     public Response getFacebookLogins(@QueryParam("_sortField") String sortField,
                               @QueryParam("_sortDir") String sortOrder) {
-        return ok(sort(convertMapToPair(userDao.getFacebookLogin()), sortField, sortOrder));
+        return ok(sort(convertMapToPair(report("facebookLogins", userDao::getFacebookLogin)), sortField, sortOrder));
     }
 
     @GET
     @Path("/filledSpace")
     public Response getFilledSpace(@QueryParam("_sortField") String sortField,
                                   @QueryParam("_sortDir") String sortOrder) {
-        return ok(sortStringAsInt(convertMapToPair(userDao.getFilledSpace()), sortField, sortOrder));
+        Map<String, Integer> data = report("filledSpace", userDao::getFilledSpace);
+        return ok(sortStringAsInt(convertMapToPair(data), sortField, sortOrder));
     }
 
     @GET
     @Path("/userProfileSize")
     public Response getUserProfileSize(@QueryParam("_sortField") String sortField,
                                    @QueryParam("_sortDir") String sortOrder) {
-        return ok(sortStringAsInt(convertMapToPair(fileManager.getUserProfilesSize()), sortField, sortOrder));
+        Map<String, Integer> data = report("userProfileSize", fileManager::getUserProfilesSize);
+        return ok(sortStringAsInt(convertMapToPair(data), sortField, sortOrder));
     }
 
 
@@ -134,7 +148,8 @@ public class StatsLogic extends CookiesBaseHttpHandler {
     @Path("/webHookHosts")
     public Response getWebHookHosts(@QueryParam("_sortField") String sortField,
                                        @QueryParam("_sortDir") String sortOrder) {
-        return ok(sortStringAsInt(convertMapToPair(userDao.getWebHookHosts()), sortField, sortOrder));
+        Map<String, Integer> data = report("webHookHosts", userDao::getWebHookHosts);
+        return ok(sortStringAsInt(convertMapToPair(data), sortField, sortOrder));
     }
 
     @GET
@@ -153,6 +168,26 @@ public class StatsLogic extends CookiesBaseHttpHandler {
         return ok(sort(searchByIP(filterParam), sortField, sortOrder));
     }
 
+    private Map<String, Integer> report(String name, Supplier<Map<String, Integer>> builder) {
+        long now = System.currentTimeMillis();
+        Report report = reports.get(name);
+        if (report == null || now - report.builtAt > REPORT_TTL) {
+            report = new Report(builder.get(), now);
+            reports.put(name, report);
+        }
+        return report.data;
+    }
+
+    private static final class Report {
+        private final Map<String, Integer> data;
+        private final long builtAt;
+
+        private Report(Map<String, Integer> data, long builtAt) {
+            this.data = data;
+            this.builtAt = builtAt;
+        }
+    }
+
     private static class IpFilter {
         public String ip;
     }
@@ -104,7 +104,7 @@ public class UsersLogic extends CookiesBaseHttpHandler {
     @GET
     @Path("/names/getAll")
     public Response getAllUserNames() {
-        return ok(userDao.users.keySet());
+        return ok(userDao.getAllUserKeys());
     }
 
     @GET
@@ -128,7 +128,7 @@ public class UsersLogic extends CookiesBaseHttpHandler {
                                @QueryParam("deviceId") int deviceId,
                                @QueryParam("new") String newToken) {
 
-        User user = userDao.getUsers().get(new UserKey(email, app));
+        User user = userDao.getByName(email, app);
 
         if (user == null) {
             return badRequest("No user with such email.");
@@ -196,7 +196,7 @@ public class UsersLogic extends CookiesBaseHttpHandler {
             }
         }
 
-        updatedUser.lastModifiedTs = System.currentTimeMillis();
+        updatedUser.updateLastModifiedTs(System.currentTimeMillis());
         log.debug("Adding new user {}", updatedUser.email);
 
         return ok(updatedUser);
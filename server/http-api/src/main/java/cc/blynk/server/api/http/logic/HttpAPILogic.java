@@ -3,6 +3,7 @@ package cc.blynk.server.api.http.logic;
 import cc.blynk.core.http.Response;
 import cc.blynk.core.http.TokenBaseHttpHandler;
 import cc.blynk.core.http.annotation.Consumes;
+import cc.blynk.core.http.annotation.Context;
 import cc.blynk.core.http.annotation.GET;
 import cc.blynk.core.http.annotation.Metric;
 import cc.blynk.core.http.annotation.POST;
@@ -15,6 +16,8 @@ import cc.blynk.server.api.http.pojo.EmailPojo;
 import cc.blynk.server.api.http.pojo.PinData;
 import cc.blynk.server.api.http.pojo.PushMessagePojo;
 import cc.blynk.server.core.BlockingIOProcessor;
+import cc.blynk.server.core.dao.CSVChunkedInput;
+import cc.blynk.server.core.dao.CSVGenerator;
 import cc.blynk.server.core.dao.FileManager;
 import cc.blynk.server.core.dao.ReportingDao;
 import cc.blynk.server.core.dao.TokenValue;
@@ -38,20 +41,27 @@ import cc.blynk.server.core.processors.EventorProcessor;
 import cc.blynk.server.core.protocol.exceptions.IllegalCommandBodyException;
 import cc.blynk.server.core.protocol.exceptions.NoDataException;
 import cc.blynk.server.db.DBManager;
+import cc.blynk.server.notifications.mail.MailPriority;
 import cc.blynk.server.notifications.mail.MailWrapper;
 import cc.blynk.server.notifications.push.GCMWrapper;
+import cc.blynk.utils.ContentTypeUtil;
 import cc.blynk.utils.StringUtils;
 import cc.blynk.utils.TokenGeneratorUtil;
 import cc.blynk.utils.http.MediaType;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
 import net.glxn.qrgen.core.image.ImageType;
 import net.glxn.qrgen.javase.QRCode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import static cc.blynk.core.http.Response.badRequest;
+import static cc.blynk.core.http.Response.noResponse;
 import static cc.blynk.core.http.Response.ok;
-import static cc.blynk.core.http.Response.redirect;
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
 import static cc.blynk.server.core.protocol.enums.Command.HTTP_EMAIL;
 import static cc.blynk.server.core.protocol.enums.Command.HTTP_GET_HISTORY_DATA;
@@ -64,6 +74,11 @@ import static cc.blynk.server.core.protocol.enums.Command.HTTP_QR;
 import static cc.blynk.server.core.protocol.enums.Command.HTTP_UPDATE_PIN_DATA;
 import static cc.blynk.server.core.protocol.enums.Command.SET_WIDGET_PROPERTY;
 import static cc.blynk.utils.StringUtils.BODY_SEPARATOR;
+import static io.netty.handler.codec.http.HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_DISPOSITION;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 /**
  * The Blynk Project.
@@ -86,7 +101,7 @@ public class HttpAPILogic extends TokenBaseHttpHandler {
     private final String httpsPort;
 
     public HttpAPILogic(Holder holder) {
-        super(holder.tokenManager, holder.sessionDao, holder.stats, "");
+        super(holder, "");
         this.blockingIOProcessor = holder.blockingIOProcessor;
         this.mailWrapper = holder.mailWrapper;
         this.gcmWrapper = holder.gcmWrapper;
@@ -281,7 +296,8 @@ public class HttpAPILogic extends TokenBaseHttpHandler {
     @GET
     @Path("{token}/data/{pin}")
     @Metric(HTTP_GET_HISTORY_DATA)
-    public Response getPinHistoryData(@PathParam("token") String token,
+    public Response getPinHistoryData(@Context ChannelHandlerContext ctx,
+                                      @PathParam("token") String token,
                                       @PathParam("pin") String pinString) {
         TokenValue tokenValue = tokenManager.getTokenValueByToken(token);
 
@@ -305,11 +321,11 @@ public class HttpAPILogic extends TokenBaseHttpHandler {
             return badRequest("Wrong pin format.");
         }
 
-        //todo may be optimized
         try {
-            java.nio.file.Path path = reportingDao.csvGenerator.createCSV(
-                    user, dashId, deviceId, pinType, pin, deviceId);
-            return redirect("/" + path.getFileName().toString());
+            CSVChunkedInput csv = reportingDao.csvGenerator.streamCSV(user, dashId, pinType, pin, deviceId);
+            String fileName = CSVGenerator.fileName(user.email, dashId, deviceId, pinType, pin);
+            writeChunked(ctx, csv, fileName);
+            return noResponse();
         } catch (NoDataException | IllegalStateException noData) {
             log.debug(noData.getMessage());
             return badRequest(noData.getMessage());
@@ -319,6 +335,18 @@ public class HttpAPILogic extends TokenBaseHttpHandler {
         }
     }
 
+    //gzipped csv goes right to the response, chunks are pulled by the ChunkedWriteHandler
+    private static void writeChunked(ChannelHandlerContext ctx, CSVChunkedInput csv, String fileName) {
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+        response.headers()
+                .set(CONTENT_TYPE, ContentTypeUtil.getContentType(fileName))
+                .set(CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .set(ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        HttpUtil.setTransferEncodingChunked(response, true);
+        ctx.write(response);
+        ctx.writeAndFlush(new HttpChunkedInput(csv));
+    }
+
     public Response updateWidgetProperty(String token,
                                          String pinString,
                                          String property,
@@ -477,6 +505,7 @@ public class HttpAPILogic extends TokenBaseHttpHandler {
         reportingDao.process(user, dash, deviceId, pin, pinType, pinValue, now);
 
         dash.update(deviceId, pin, pinType, pinValue, now);
+        user.markDirty();
 
         String body = makeBody(dash, deviceId, pin, pinType, pinValue);
 
@@ -540,6 +569,7 @@ public class HttpAPILogic extends TokenBaseHttpHandler {
 
         long now = System.currentTimeMillis();
         dash.update(deviceId, pin, pinType, pinsData[0].value, now);
+        user.markDirty();
 
         String body = makeBody(dash, deviceId, pin, pinType, pinsData[0].value);
 
@@ -646,10 +676,8 @@ public class HttpAPILogic extends TokenBaseHttpHandler {
     }
 
     private void mail(String email, String to, String subj, String body) {
-        blockingIOProcessor.execute(() -> {
-            try {
-                mailWrapper.sendText(to, subj, body);
-            } catch (Exception e) {
+        mailWrapper.sendText(to, subj, body, MailPriority.LOW).whenComplete((ignored, e) -> {
+            if (e != null) {
                 log.error("Error sending email from HTTP. From : '{}', to : '{}'. Reason : {}",
                         email, to, e.getMessage());
             }
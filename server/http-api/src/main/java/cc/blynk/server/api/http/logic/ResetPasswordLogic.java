@@ -117,13 +117,12 @@ public class ResetPasswordLogic extends BaseHttpHandler {
         String message = emailBody.replace("{RESET_URL}", resetPassUrl + token);
         log.info("Sending token to {} address", trimmedEmail);
 
-        blockingIOProcessor.execute(() -> {
+        mailWrapper.sendHtml(trimmedEmail, emailSubj, message).whenComplete((ignored, e) -> {
             Response response;
-            try {
-                mailWrapper.sendHtml(trimmedEmail, emailSubj, message);
+            if (e == null) {
                 log.info("{} mail sent.", trimmedEmail);
                 response = ok("Email was sent.");
-            } catch (Exception e) {
+            } else {
                 log.info("Error sending mail for {}. Reason : {}", trimmedEmail, e.getMessage());
                 response = badRequest("Error sending reset email.");
             }
@@ -167,7 +166,7 @@ public class ResetPasswordLogic extends BaseHttpHandler {
         }
 
         user.pass = password;
-        user.lastModifiedTs = System.currentTimeMillis();
+        user.updateLastModifiedTs(System.currentTimeMillis());
 
         log.info("{} password was reset.", user.email);
         tokensPool.removeToken(token);
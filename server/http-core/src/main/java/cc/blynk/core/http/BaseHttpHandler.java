@@ -2,6 +2,7 @@ package cc.blynk.core.http;
 
 import cc.blynk.core.http.rest.HandlerHolder;
 import cc.blynk.core.http.rest.HandlerWrapper;
+import cc.blynk.core.http.rest.Router;
 import cc.blynk.core.http.rest.URIDecoder;
 import cc.blynk.server.Holder;
 import cc.blynk.server.core.dao.SessionDao;
@@ -17,9 +18,6 @@ import io.netty.util.ReferenceCountUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.Map;
-import java.util.regex.Matcher;
-
 import static cc.blynk.core.http.Response.serverError;
 import static cc.blynk.server.core.protocol.handlers.DefaultExceptionHandler.handleUnexpectedException;
 
@@ -36,6 +34,7 @@ public abstract class BaseHttpHandler extends ChannelInboundHandlerAdapter
     protected final TokenManager tokenManager;
     protected final SessionDao sessionDao;
     protected final HandlerWrapper[] handlers;
+    private final Router router;
     protected final String rootPath;
 
     public BaseHttpHandler(Holder holder, String rootPath) {
@@ -48,6 +47,7 @@ public abstract class BaseHttpHandler extends ChannelInboundHandlerAdapter
         this.sessionDao = sessionDao;
         this.rootPath = rootPath;
         this.handlers = AnnotationsUtil.register(rootPath, this, globalStats);
+        this.router = new Router(handlers);
     }
 
     @Override
@@ -62,7 +62,7 @@ public abstract class BaseHttpHandler extends ChannelInboundHandlerAdapter
     }
 
     public boolean process(ChannelHandlerContext ctx, HttpRequest req) {
-        HandlerHolder handlerHolder = lookupHandler(req);
+        HandlerHolder handlerHolder = router.lookup(req.method(), req.uri());
 
         if (handlerHolder != null) {
             try {
@@ -80,9 +80,9 @@ public abstract class BaseHttpHandler extends ChannelInboundHandlerAdapter
     }
 
     private void invokeHandler(ChannelHandlerContext ctx, HttpRequest req,
-                               HandlerWrapper handler, Map<String, String> extractedParams) {
+                               HandlerWrapper handler, String[] extractedParams) {
         log.debug("{} : {}", req.method().name(), req.uri());
-        try (URIDecoder uriDecoder = new URIDecoder(req, extractedParams)) {
+        try (URIDecoder uriDecoder = new URIDecoder(req, handler.pathParamNames, extractedParams)) {
             Object[] params = handler.fetchParams(ctx, uriDecoder);
             finishHttp(ctx, uriDecoder, handler, params);
         }
@@ -96,19 +96,6 @@ public abstract class BaseHttpHandler extends ChannelInboundHandlerAdapter
         }
     }
 
-    private HandlerHolder lookupHandler(HttpRequest req) {
-        for (HandlerWrapper handler : handlers) {
-            if (handler.httpMethod == req.method()) {
-                Matcher matcher = handler.uriTemplate.matcher(req.uri());
-                if (matcher.matches()) {
-                    Map<String, String> extractedParams = handler.uriTemplate.extractParameters(matcher);
-                    return new HandlerHolder(handler, extractedParams);
-                }
-            }
-        }
-        return null;
-    }
-
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         handleUnexpectedException(ctx, cause);
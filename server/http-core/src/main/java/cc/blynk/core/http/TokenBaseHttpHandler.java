@@ -2,12 +2,11 @@ package cc.blynk.core.http;
 
 import cc.blynk.core.http.rest.HandlerWrapper;
 import cc.blynk.core.http.rest.URIDecoder;
-import cc.blynk.server.core.dao.SessionDao;
-import cc.blynk.server.core.dao.TokenManager;
+import cc.blynk.server.Holder;
+import cc.blynk.server.core.BlockingIOProcessor;
 import cc.blynk.server.core.dao.TokenValue;
 import cc.blynk.server.core.dao.UserKey;
 import cc.blynk.server.core.model.auth.Session;
-import cc.blynk.server.core.stats.GlobalStats;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpResponse;
@@ -19,20 +18,32 @@ import io.netty.handler.codec.http.FullHttpResponse;
  */
 public abstract class TokenBaseHttpHandler extends BaseHttpHandler {
 
-    public TokenBaseHttpHandler(TokenManager tokenManager, SessionDao sessionDao,
-                                GlobalStats globalStats, String rootPath) {
-        super(tokenManager, sessionDao, globalStats, rootPath);
+    private final BlockingIOProcessor blockingIOProcessor;
+
+    public TokenBaseHttpHandler(Holder holder, String rootPath) {
+        super(holder, rootPath);
+        this.blockingIOProcessor = holder.blockingIOProcessor;
     }
 
     @Override
     public void finishHttp(ChannelHandlerContext ctx, URIDecoder uriDecoder,
                            HandlerWrapper handler, Object[] params) {
-        String tokenPathParam = uriDecoder.pathData.get("token");
+        String tokenPathParam = uriDecoder.getPathParam("token");
         if (tokenPathParam == null) {
             ctx.writeAndFlush(Response.badRequest("No token provided."));
             return;
         }
 
+        //profile of the idle user is read from disk outside of the event loop
+        if (tokenManager.loadEvictedUser(tokenPathParam, blockingIOProcessor::execute, ctx.channel().eventLoop(),
+                () -> finishHttp(ctx, tokenPathParam, handler, params))) {
+            return;
+        }
+        finishHttp(ctx, tokenPathParam, handler, params);
+    }
+
+    private void finishHttp(ChannelHandlerContext ctx, String tokenPathParam,
+                            HandlerWrapper handler, Object[] params) {
         //reregister logic
         TokenValue tokenValue = tokenManager.getTokenValueByToken(tokenPathParam);
         if (tokenValue == null) {
@@ -52,7 +63,10 @@ public abstract class TokenBaseHttpHandler extends BaseHttpHandler {
     }
 
     private void completeLogin(Channel channel, FullHttpResponse response) {
-        channel.writeAndFlush(response);
+        //handler has already written the response itself, like streamed csv
+        if (response != Response.NO_RESPONSE) {
+            channel.writeAndFlush(response);
+        }
         log.debug("Re registering http channel finished.");
     }
 }
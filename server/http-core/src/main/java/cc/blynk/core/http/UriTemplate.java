@@ -1,9 +1,7 @@
 package cc.blynk.core.http;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,18 +59,23 @@ public class UriTemplate {
         }
     }
 
-    public Map<String, String> extractParameters(Matcher matcher) {
-        Map<String, String> values = new HashMap<>();
-
-        for (int i = 0; i < matcher.groupCount(); i++) {
-            String value = matcher.group(i + 1);
-
-            if (value != null) {
-                values.put(parameterNames.get(i), value);
-            }
+    /**
+     * @return parameter values in the order of getParameterNames()
+     */
+    public String[] extractParameters(Matcher matcher) {
+        String[] values = new String[parameterNames.size()];
+        for (int i = 0; i < values.length && i < matcher.groupCount(); i++) {
+            values[i] = matcher.group(i + 1);
         }
-
         return values;
     }
 
+    public String getPattern() {
+        return urlPattern;
+    }
+
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
 }
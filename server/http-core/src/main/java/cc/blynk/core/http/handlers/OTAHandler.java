@@ -116,7 +116,7 @@ public class OTAHandler extends UploadHandler {
     private Response singleUserOTA(ChannelHandlerContext ctx, UserKey userKey,
                                    String projectName, String pathToFirmware) {
         User initiator = ctx.channel().attr(AuthHeadersBaseHttpHandler.USER).get();
-        User user = userDao.users.get(userKey);
+        User user = userDao.get(userKey);
 
         if (user == null) {
             log.info("Requested user {} not found.", userKey);
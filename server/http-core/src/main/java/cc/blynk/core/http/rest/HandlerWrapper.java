@@ -14,6 +14,9 @@ import io.netty.handler.codec.http.HttpMethod;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 import static cc.blynk.server.core.protocol.enums.Command.HTTP_TOTAL;
@@ -32,12 +35,17 @@ public class HandlerWrapper {
 
     public final UriTemplate uriTemplate;
 
+    public final String[] pathParamNames;
+
     public final HttpMethod httpMethod;
 
     public final Method classMethod;
 
     public final Object handler;
 
+    //(Object[]) -> FullHttpResponse, bound to the handler. Avoids reflective access checks and argument copying
+    private final MethodHandle invoker;
+
     public final Param[] params;
 
     public final short metricIndex;
@@ -46,8 +54,10 @@ public class HandlerWrapper {
 
     public HandlerWrapper(UriTemplate uriTemplate, Method method, Object handler, GlobalStats globalStats) {
         this.uriTemplate = uriTemplate;
+        this.pathParamNames = uriTemplate.getParameterNames().toArray(new String[0]);
         this.classMethod = method;
         this.handler = handler;
+        this.invoker = invoker(method, handler);
 
         if (method.isAnnotationPresent(POST.class)) {
             this.httpMethod = HttpMethod.POST;
@@ -70,6 +80,18 @@ public class HandlerWrapper {
         this.globalStats = globalStats;
     }
 
+    private static MethodHandle invoker(Method method, Object handler) {
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method)
+                    .bindTo(handler)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(FullHttpResponse.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Handler method " + method + " is not accessible.", e);
+        }
+    }
+
     public Object[] fetchParams(ChannelHandlerContext ctx, URIDecoder uriDecoder) {
         Object[] res = new Object[params.length];
         for (int i = 0; i < params.length; i++) {
@@ -82,18 +104,15 @@ public class HandlerWrapper {
     public FullHttpResponse invoke(Object[] params) {
         try {
             mark();
-            return (FullHttpResponse) classMethod.invoke(handler, params);
-        } catch (Exception e) {
-            Throwable cause = e.getCause();
-            if (cause == null) {
-                log.error("Error invoking handler. Reason : {}.", e.getMessage());
-                log.debug(e);
-            } else {
-                log.error("Error invoking handler. Reason : {}.", cause.getMessage());
-                log.debug(cause);
-            }
-
-            return Response.serverError(e.getMessage());
+            return (FullHttpResponse) invoker.invokeExact(params);
+        } catch (Error e) {
+            //errors like OOM are not the handler failures, so they are not turned into the response
+            throw e;
+        } catch (Throwable e) {
+            log.error("Error invoking handler. Reason : {}.", e.getMessage());
+            log.debug(e);
+            //exceptions of the handler are not wrapped with MethodHandle, so message is not exposed
+            return Response.serverError();
         }
     }
 
@@ -0,0 +1,210 @@
+package cc.blynk.core.http.rest;
+
+import io.netty.handler.codec.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Trie of the handler uri templates split by path segments.
+ * Request uri is walked segment by segment without regex and substrings,
+ * so lookup cost depends on the depth of the uri and not on the number of handlers.
+ * Literal segment has priority over the "{param}" one. Parameter value follows
+ * the same rules as in UriTemplate - non empty and without '/'.
+ * Templates that can't be split into segments (e.g. with ".{format}") are matched with regex.
+ */
+public final class Router {
+
+    private static final String[] EMPTY = {};
+    //same symbols as in UriTemplate param regex
+    private static final boolean[] PARAM_CHARS = new boolean[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            PARAM_CHARS[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            PARAM_CHARS[c] = true;
+            PARAM_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c : "%_-.~!$&'()*+,;=:[]@".toCharArray()) {
+            PARAM_CHARS[c] = true;
+        }
+    }
+
+    private final Node root = new Node();
+    private final HandlerWrapper[] regexHandlers;
+    private final int maxParams;
+
+    public Router(HandlerWrapper[] handlers) {
+        List<HandlerWrapper> regexHandlers = new ArrayList<>();
+        int maxParams = 0;
+        for (HandlerWrapper handler : handlers) {
+            if (add(handler)) {
+                maxParams = Math.max(maxParams, handler.pathParamNames.length);
+            } else {
+                regexHandlers.add(handler);
+            }
+        }
+        this.regexHandlers = regexHandlers.toArray(new HandlerWrapper[regexHandlers.size()]);
+        this.maxParams = maxParams;
+    }
+
+    private boolean add(HandlerWrapper handler) {
+        String[] segments = handler.uriTemplate.getPattern().split("/", -1);
+        for (String segment : segments) {
+            if (segment.indexOf('{') != -1 && !isParam(segment)) {
+                return false;
+            }
+        }
+        Node node = root;
+        for (String segment : segments) {
+            node = isParam(segment) ? node.param() : node.literal(segment);
+        }
+        node.add(handler);
+        return true;
+    }
+
+    private static boolean isParam(String segment) {
+        int last = segment.length() - 1;
+        if (last < 1 || segment.charAt(0) != '{' || segment.charAt(last) != '}') {
+            return false;
+        }
+        for (int i = 1; i < last; i++) {
+            char c = segment.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public HandlerHolder lookup(HttpMethod method, String uri) {
+        int end = uri.indexOf('?');
+        if (end == -1) {
+            end = uri.length();
+        }
+        String[] values = maxParams == 0 ? EMPTY : new String[maxParams];
+        HandlerWrapper handler = find(root, method, uri, 0, end, values, 0);
+        if (handler != null) {
+            return new HandlerHolder(handler, values);
+        }
+
+        for (HandlerWrapper regexHandler : regexHandlers) {
+            if (regexHandler.httpMethod == method) {
+                Matcher matcher = regexHandler.uriTemplate.matcher(uri);
+                if (matcher.matches()) {
+                    return new HandlerHolder(regexHandler, regexHandler.uriTemplate.extractParameters(matcher));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static HandlerWrapper find(Node node, HttpMethod method, String uri,
+                                       int from, int end, String[] values, int paramIndex) {
+        int to = uri.indexOf('/', from);
+        if (to == -1 || to > end) {
+            to = end;
+        }
+
+        Node literal = node.literal(uri, from, to);
+        if (literal != null) {
+            HandlerWrapper handler = next(literal, method, uri, to, end, values, paramIndex);
+            if (handler != null) {
+                return handler;
+            }
+        }
+
+        if (node.param != null && isParamValue(uri, from, to)) {
+            HandlerWrapper handler = next(node.param, method, uri, to, end, values, paramIndex + 1);
+            if (handler != null) {
+                //value is taken only for the matched branch
+                values[paramIndex] = uri.substring(from, to);
+                return handler;
+            }
+        }
+        return null;
+    }
+
+    private static HandlerWrapper next(Node node, HttpMethod method, String uri,
+                                       int to, int end, String[] values, int paramIndex) {
+        if (to == end) {
+            return node.handler(method);
+        }
+        return find(node, method, uri, to + 1, end, values, paramIndex);
+    }
+
+    private static boolean isParamValue(String uri, int from, int to) {
+        if (from == to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = uri.charAt(i);
+            if (c >= PARAM_CHARS.length || !PARAM_CHARS[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+
+        //literal children are few per node, so plain arrays are faster than map with substring keys
+        private String[] names = EMPTY;
+        private Node[] children = {};
+        private Node param;
+        private HandlerWrapper[] handlers = {};
+
+        Node literal(String uri, int from, int to) {
+            int length = to - from;
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                if (name.length() == length && uri.startsWith(name, from)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node literal(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return children[i];
+                }
+            }
+            Node child = new Node();
+            names = Arrays.copyOf(names, names.length + 1);
+            names[names.length - 1] = name;
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = child;
+            return child;
+        }
+
+        Node param() {
+            if (param == null) {
+                param = new Node();
+            }
+            return param;
+        }
+
+        void add(HandlerWrapper handler) {
+            //first registered handler wins, as with the linear lookup
+            if (handler(handler.httpMethod) == null) {
+                handlers = Arrays.copyOf(handlers, handlers.length + 1);
+                handlers[handlers.length - 1] = handler;
+            }
+        }
+
+        HandlerWrapper handler(HttpMethod method) {
+            for (HandlerWrapper handler : handlers) {
+                if (handler.httpMethod == method) {
+                    return handler;
+                }
+            }
+            return null;
+        }
+    }
+}
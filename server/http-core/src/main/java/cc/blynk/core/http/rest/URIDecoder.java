@@ -23,17 +23,16 @@ import java.util.Map;
  */
 public class URIDecoder extends QueryStringDecoder implements Closeable {
 
-    public final String[] paths;
-    public final Map<String, String> pathData;
+    private final String[] pathParamNames;
+    private final String[] pathParams;
     public String contentType;
     public Map<String, String> headers;
 
     private HttpPostRequestDecoder decoder;
     private ByteBuf bodyData;
 
-    public URIDecoder(HttpRequest httpRequest, Map<String, String> extractedParams) {
+    public URIDecoder(HttpRequest httpRequest, String[] pathParamNames, String[] pathParams) {
         super(httpRequest.uri());
-        this.paths = path().split("/");
         if (httpRequest.method() == HttpMethod.PUT || httpRequest.method() == HttpMethod.POST) {
             if (httpRequest instanceof HttpContent) {
                 this.contentType = httpRequest.headers().get(HttpHeaderNames.CONTENT_TYPE);
@@ -44,7 +43,17 @@ public class URIDecoder extends QueryStringDecoder implements Closeable {
                 }
             }
         }
-        this.pathData = extractedParams;
+        this.pathParamNames = pathParamNames;
+        this.pathParams = pathParams;
+    }
+
+    public String getPathParam(String name) {
+        for (int i = 0; i < pathParamNames.length; i++) {
+            if (pathParamNames[i].equals(name)) {
+                return pathParams[i];
+            }
+        }
+        return null;
     }
 
     public List<InterfaceHttpData> getBodyHttpDatas() {
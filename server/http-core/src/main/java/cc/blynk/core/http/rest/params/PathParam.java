@@ -16,7 +16,7 @@ public class PathParam extends Param {
 
     @Override
     public Object get(ChannelHandlerContext ctx, URIDecoder uriDecoder) {
-        return convertTo(uriDecoder.pathData.get(name));
+        return convertTo(uriDecoder.getPathParam(name));
     }
 
 }
@@ -0,0 +1,156 @@
+package cc.blynk.core.http.rest;
+
+import cc.blynk.core.http.Response;
+import cc.blynk.core.http.annotation.GET;
+import cc.blynk.core.http.annotation.PUT;
+import cc.blynk.core.http.annotation.Path;
+import cc.blynk.core.http.annotation.PathParam;
+import cc.blynk.server.core.stats.GlobalStats;
+import cc.blynk.utils.AnnotationsUtil;
+import io.netty.handler.codec.http.HttpMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Lookup and invocation of the hardware update request with the set of routes of the http api.
+ * "regex" is the previous approach - every template is tried one by one,
+ * params are collected to the map and method is invoked via reflection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class RouterPerfTest {
+
+    private static final String URI = "/4ae3851817194e2596cf1b7103603ef8/update/V10?value=1";
+
+    private final HandlerWrapper[] handlers = AnnotationsUtil.register("", new ApiLogic(), new GlobalStats());
+    private final Router router = new Router(handlers);
+
+    @Path("/")
+    public static class ApiLogic {
+
+        private static Response ok(String token) {
+            return null;
+        }
+
+        @GET
+        @Path("{token}/project")
+        public Response project(@PathParam("token") String token) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/isHardwareConnected")
+        public Response isHardwareConnected(@PathParam("token") String token) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/isAppConnected")
+        public Response isAppConnected(@PathParam("token") String token) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/get/{pin}")
+        public Response get(@PathParam("token") String token, @PathParam("pin") String pin) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/pin/{pin}")
+        public Response pin(@PathParam("token") String token, @PathParam("pin") String pin) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/rtc")
+        public Response rtc(@PathParam("token") String token) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/qr")
+        public Response qr(@PathParam("token") String token) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/data/{pin}")
+        public Response data(@PathParam("token") String token, @PathParam("pin") String pin) {
+            return ok(token);
+        }
+
+        @PUT
+        @Path("{token}/update/property/{pin}")
+        public Response property(@PathParam("token") String token, @PathParam("pin") String pin) {
+            return ok(token);
+        }
+
+        @PUT
+        @Path("{token}/update/{pin}")
+        public Response put(@PathParam("token") String token, @PathParam("pin") String pin) {
+            return ok(token);
+        }
+
+        @GET
+        @Path("{token}/update/{pin}")
+        public Response update(@PathParam("token") String token, @PathParam("pin") String pin) {
+            return ok(token);
+        }
+    }
+
+    @Benchmark
+    public Object regex() throws Exception {
+        for (HandlerWrapper handler : handlers) {
+            if (handler.httpMethod == HttpMethod.GET) {
+                Matcher matcher = handler.uriTemplate.matcher(URI);
+                if (matcher.matches()) {
+                    String[] values = handler.uriTemplate.extractParameters(matcher);
+                    Map<String, String> params = new HashMap<>();
+                    for (int i = 0; i < values.length; i++) {
+                        params.put(handler.pathParamNames[i], values[i]);
+                    }
+                    return handler.classMethod.invoke(handler.handler,
+                            new Object[] {params.get("token"), params.get("pin")});
+                }
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Object trie() {
+        HandlerHolder holder = router.lookup(HttpMethod.GET, URI);
+        return holder.handler.invoke(new Object[] {holder.extractedParams[0], holder.extractedParams[1]});
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RouterPerfTest.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,149 @@
+package cc.blynk.core.http.rest;
+
+import cc.blynk.core.http.Response;
+import cc.blynk.core.http.annotation.GET;
+import cc.blynk.core.http.annotation.PUT;
+import cc.blynk.core.http.annotation.Path;
+import cc.blynk.core.http.annotation.PathParam;
+import cc.blynk.core.http.annotation.QueryParam;
+import cc.blynk.server.core.stats.GlobalStats;
+import cc.blynk.utils.AnnotationsUtil;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RouterTest {
+
+    private final HandlerWrapper[] handlers = AnnotationsUtil.register("/api", new TestLogic(), new GlobalStats());
+    private final Router router = new Router(handlers);
+
+    @Path("")
+    public static class TestLogic {
+
+        @GET
+        @Path("/{token}/update/{pin}")
+        public Response update(@PathParam("token") String token, @PathParam("pin") String pin,
+                               @QueryParam("value") String value) {
+            return Response.ok(token + pin + value);
+        }
+
+        @PUT
+        @Path("/{token}/update/{pin}")
+        public Response put(@PathParam("token") String token, @PathParam("pin") String pin) {
+            return Response.ok("put");
+        }
+
+        @GET
+        @Path("/users/{name}")
+        public Response user(@PathParam("name") String name) {
+            return Response.ok(name);
+        }
+
+        @GET
+        @Path("/users/names/getAll")
+        public Response names() {
+            return Response.ok("all");
+        }
+
+        @GET
+        @Path("/users/{name}/{id}")
+        public Response userDevice(@PathParam("name") String name, @PathParam("id") int id) {
+            return Response.ok(name + id);
+        }
+
+        @GET
+        @Path("/users/names/{id}/getAll")
+        public Response namesById(@PathParam("id") int id) {
+            return Response.ok("names" + id);
+        }
+
+        @GET
+        @Path("/fail")
+        public Response fail() {
+            throw new IllegalStateException("Internal details.");
+        }
+
+        @GET
+        @Path("/error")
+        public Response error() {
+            throw new StackOverflowError();
+        }
+    }
+
+    private String call(HttpMethod method, String uri) {
+        HandlerHolder holder = router.lookup(method, uri);
+        if (holder == null) {
+            return null;
+        }
+        HttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+        try (URIDecoder uriDecoder = new URIDecoder(request, holder.handler.pathParamNames, holder.extractedParams)) {
+            FullHttpResponse response = holder.handler.invoke(holder.handler.fetchParams(null, uriDecoder));
+            return response.content().toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testParamsAreExtracted() {
+        HandlerHolder holder = router.lookup(HttpMethod.GET, "/api/1234/update/v1?value=1&value=2");
+        assertArrayEquals(new String[] {"token", "pin"}, holder.handler.pathParamNames);
+        assertEquals("1234", holder.extractedParams[0]);
+        assertEquals("v1", holder.extractedParams[1]);
+        assertEquals("1234v11", call(HttpMethod.GET, "/api/1234/update/v1?value=1"));
+        assertEquals("put", call(HttpMethod.PUT, "/api/1234/update/v1"));
+        assertNull(call(HttpMethod.POST, "/api/1234/update/v1"));
+    }
+
+    @Test
+    public void testLiteralSegmentWins() {
+        assertEquals("all", call(HttpMethod.GET, "/api/users/names/getAll"));
+        assertEquals("dmitriy@blynk.cc", call(HttpMethod.GET, "/api/users/dmitriy@blynk.cc"));
+        //literal branch doesn't match till the end, so param one is taken
+        assertEquals("names10", call(HttpMethod.GET, "/api/users/names/10"));
+        assertEquals("names7", call(HttpMethod.GET, "/api/users/names/7/getAll"));
+    }
+
+    @Test
+    public void testSameAsUriTemplate() {
+        String[] uris = {
+                "/api/users/a", "/api/users/a/", "/api/users/", "/api/users//1", "/api/users/a b",
+                "/api/users/a?x=/y", "/api/users/%40a", "/api/users/a/1?", "/api/users", "/api", "/",
+                "/api/users/names", "/api/users/names/getAll/", "/api/users/a#b", "/api/users/ж",
+                "/api/1234/update/v1/", "api/1234/update/v1", "/api/1234/update"
+        };
+        for (String uri : uris) {
+            HandlerWrapper expected = null;
+            for (HandlerWrapper handler : handlers) {
+                if (handler.httpMethod == HttpMethod.GET && handler.uriTemplate.matcher(uri).matches()) {
+                    expected = handler;
+                }
+            }
+            HandlerHolder holder = router.lookup(HttpMethod.GET, uri);
+            assertEquals(uri, expected, holder == null ? null : holder.handler);
+        }
+    }
+
+    @Test
+    public void testHandlerErrorIsNotExposed() {
+        HandlerHolder holder = router.lookup(HttpMethod.GET, "/api/fail");
+        FullHttpResponse response = holder.handler.invoke(new Object[0]);
+        assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status());
+        assertEquals(0, response.content().readableBytes());
+    }
+
+    @Test(expected = StackOverflowError.class)
+    public void testErrorIsNotTurnedIntoResponse() {
+        HandlerHolder holder = router.lookup(HttpMethod.GET, "/api/error");
+        holder.handler.invoke(new Object[0]);
+    }
+
+}
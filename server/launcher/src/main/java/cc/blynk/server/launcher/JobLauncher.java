@@ -4,6 +4,7 @@ import cc.blynk.server.Holder;
 import cc.blynk.server.core.reporting.average.AverageAggregatorProcessor;
 import cc.blynk.server.internal.ReportingUtil;
 import cc.blynk.server.servers.BaseServer;
+import cc.blynk.server.workers.AggregationCheckpointWorker;
 import cc.blynk.server.workers.CertificateRenewalWorker;
 import cc.blynk.server.workers.HistoryGraphUnusedPinDataCleanerWorker;
 import cc.blynk.server.workers.ProfileSaverWorker;
@@ -11,17 +12,22 @@ import cc.blynk.server.workers.ReportingTruncateWorker;
 import cc.blynk.server.workers.ReportingWorker;
 import cc.blynk.server.workers.ShutdownHookWorker;
 import cc.blynk.server.workers.StatsWorker;
+import cc.blynk.server.workers.scheduler.JobScheduler;
 import cc.blynk.utils.structure.LRUCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static cc.blynk.server.workers.scheduler.JobScheduler.Lane.BACKGROUND;
+import static cc.blynk.server.workers.scheduler.JobScheduler.Lane.REPORTING;
+import static cc.blynk.server.workers.scheduler.JobScheduler.Lane.TIMERS;
 import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
- * Launches a bunch of separate jobs/schedulers responsible for different aspects of business logic
+ * Launches a bunch of separate jobs/schedulers responsible for different aspects of business logic.
+ * Timers and reporting run on own lanes, so background jobs can't delay them.
  *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
@@ -29,65 +35,87 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  */
 final class JobLauncher {
 
+    private static final Logger log = LogManager.getLogger(JobLauncher.class);
+
     private JobLauncher() {
     }
 
     public static void start(Holder holder, BaseServer[] servers) {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+        JobScheduler scheduler = new JobScheduler();
 
         long startDelay;
 
         ReportingWorker reportingWorker = new ReportingWorker(
                 holder.reportingDao,
                 ReportingUtil.getReportingFolder(holder.props.getProperty("data.folder")),
-                holder.dbManager
+                holder.dbManager,
+                holder.stats
         );
 
         //to start at the beggining of an minute
         startDelay = AverageAggregatorProcessor.MINUTE
                 - (System.currentTimeMillis() % AverageAggregatorProcessor.MINUTE);
-        scheduler.scheduleAtFixedRate(reportingWorker, startDelay,
+        scheduler.scheduleAtFixedRate("reporting", REPORTING, reportingWorker, startDelay,
                 AverageAggregatorProcessor.MINUTE, MILLISECONDS);
 
+        int checkpointPeriod = holder.props.getIntProperty("reporting.checkpoint.period", 5000);
+        if (checkpointPeriod > 0) {
+            AverageAggregatorProcessor averageAggregator = holder.reportingDao.averageAggregator;
+            try {
+                averageAggregator.startCheckpoints();
+                scheduler.scheduleAtFixedRate("aggregationCheckpoint", REPORTING,
+                        new AggregationCheckpointWorker(averageAggregator),
+                        checkpointPeriod, checkpointPeriod, MILLISECONDS);
+            } catch (Exception e) {
+                log.error("Error starting aggregation checkpoints.", e);
+            }
+        }
+
         ProfileSaverWorker profileSaverWorker =
-                new ProfileSaverWorker(holder.userDao, holder.fileManager, holder.dbManager);
+                new ProfileSaverWorker(holder.userDao, holder.fileManager, holder.dbManager,
+                        holder.sessionDao, holder.tokenManager,
+                        holder.props.getIntProperty("profile.memory.limit", 0),
+                        HOURS.toMillis(holder.props.getIntProperty("profile.eviction.idle.hours", 72)));
 
         //running 1 sec later after reporting
-        scheduler.scheduleAtFixedRate(profileSaverWorker, startDelay + 1000,
+        scheduler.scheduleAtFixedRate("profileSaver", BACKGROUND, profileSaverWorker, startDelay + 1000,
                 holder.props.getIntProperty("profile.save.worker.period"), MILLISECONDS);
 
-        StatsWorker statsWorker = new StatsWorker(holder);
-        scheduler.scheduleAtFixedRate(statsWorker, 1000,
+        StatsWorker statsWorker = new StatsWorker(holder, scheduler);
+        scheduler.scheduleAtFixedRate("stats", BACKGROUND, statsWorker, 1000,
                 holder.props.getIntProperty("stats.print.worker.period"), MILLISECONDS);
 
         if (holder.sslContextHolder.isAutoGenerationEnabled) {
-            scheduler.scheduleAtFixedRate(
+            scheduler.scheduleAtFixedRate("certificateRenewal", BACKGROUND,
                     new CertificateRenewalWorker(holder.sslContextHolder.acmeClient, 21), 1, 1, TimeUnit.DAYS
             );
         }
-        scheduler.scheduleAtFixedRate(LRUCache.LOGIN_TOKENS_CACHE::clear, 1, 1, HOURS);
+        scheduler.scheduleAtFixedRate("loginTokensCacheCleaner", BACKGROUND,
+                LRUCache.LOGIN_TOKENS_CACHE::clear, 1, 1, HOURS);
 
-        //running once every 3 day
         HistoryGraphUnusedPinDataCleanerWorker reportingDataDiskCleaner =
                 new HistoryGraphUnusedPinDataCleanerWorker(holder.userDao, holder.reportingDao);
         //once every 3 days
-        scheduler.scheduleAtFixedRate(reportingDataDiskCleaner, 72, 72, HOURS);
+        scheduler.scheduleAtFixedRate("unusedPinDataCleaner", BACKGROUND, reportingDataDiskCleaner, 72, 72, HOURS);
 
-        ReportingTruncateWorker reportingTruncateWorker = new ReportingTruncateWorker(holder.reportingDao);
-        //once every week
-        scheduler.scheduleAtFixedRate(reportingTruncateWorker, 1, 144, HOURS);
+        //ring files have fixed size, so only append only files have to be truncated
+        if (holder.reportingDao.storage.isTruncationRequired()) {
+            ReportingTruncateWorker reportingTruncateWorker = new ReportingTruncateWorker(holder.reportingDao);
+            //once every week
+            scheduler.scheduleAtFixedRate("reportingTruncate", BACKGROUND, reportingTruncateWorker, 1, 144, HOURS);
+        }
 
         //millis we need to wait to start scheduler at the beginning of a second.
         startDelay = 1000 - (System.currentTimeMillis() % 1000);
 
-        //separate thread for timer and reading widgets
-        ScheduledExecutorService ses = Executors.newScheduledThreadPool(1);
-        ses.scheduleAtFixedRate(holder.timerWorker, startDelay, 1000, MILLISECONDS);
-        ses.scheduleAtFixedRate(holder.readingWidgetsWorker, startDelay + 400, 1000, MILLISECONDS);
+        //separate lane for timer and reading widgets
+        scheduler.scheduleAtFixedRate("timers", TIMERS, holder.timerWorker, startDelay, 1000, MILLISECONDS);
+        scheduler.scheduleAtFixedRate("readingWidgets", TIMERS, holder.readingWidgetsWorker,
+                startDelay + 400, 1000, MILLISECONDS);
 
         //shutdown hook thread catcher
         Runtime.getRuntime().addShutdownHook(new Thread(
-                new ShutdownHookWorker(servers, holder, scheduler, profileSaverWorker)
+                new ShutdownHookWorker(servers, holder, scheduler, profileSaverWorker, reportingWorker)
         ));
     }
 
@@ -0,0 +1,33 @@
+package cc.blynk.server.workers;
+
+import cc.blynk.server.core.reporting.average.AverageAggregatorProcessor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Worker that periodically appends not flushed aggregates to the checkpoint log,
+ * so in case of crash server loses only aggregates of the last checkpoint period.
+ */
+public class AggregationCheckpointWorker implements Runnable {
+
+    private static final Logger log = LogManager.getLogger(AggregationCheckpointWorker.class);
+
+    private final AverageAggregatorProcessor averageAggregator;
+
+    public AggregationCheckpointWorker(AverageAggregatorProcessor averageAggregator) {
+        this.averageAggregator = averageAggregator;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long start = System.currentTimeMillis();
+            long bytesWritten = averageAggregator.checkpoint();
+            log.debug("Aggregation checkpoint took {} ms. Bytes written : {}.",
+                    System.currentTimeMillis() - start, bytesWritten);
+        } catch (Exception e) {
+            log.error("Error during aggregation checkpoint.", e);
+        }
+    }
+
+}
@@ -14,29 +14,38 @@ import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
 import cc.blynk.server.core.model.widgets.ui.tiles.DeviceTiles;
 import cc.blynk.server.core.model.widgets.ui.tiles.TileTemplate;
 import cc.blynk.server.internal.EmptyArraysUtil;
+import cc.blynk.server.workers.scheduler.ResumableJob;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 /**
  * Daily job used to clean reporting data that is not used by the history graphs
  * but stored anyway on the disk.
+ * Job is resumable, every slice handles part of the users.
  *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
  * Created on 04.01.18.
  */
-public class HistoryGraphUnusedPinDataCleanerWorker implements Runnable {
+public class HistoryGraphUnusedPinDataCleanerWorker implements ResumableJob {
 
     private static final Logger log = LogManager.getLogger(HistoryGraphUnusedPinDataCleanerWorker.class);
 
     private final UserDao userDao;
     private final ReportingDao reportingDao;
+    private final Set<String> doNotRemovePaths = new HashSet<>();
 
     private long lastStart;
 
+    //progress of the current run, kept between the slices
+    private Iterator<User> users;
+    private int removedFilesCounter;
+    private long start;
+
     public HistoryGraphUnusedPinDataCleanerWorker(UserDao userDao, ReportingDao reportingDao) {
         this.userDao = userDao;
         this.reportingDao = reportingDao;
@@ -45,57 +54,62 @@ public class HistoryGraphUnusedPinDataCleanerWorker implements Runnable {
     }
 
     @Override
-    public void run() {
+    public boolean runSlice(long deadlineNanos) {
         try {
-            log.info("Start removing unused reporting data...");
+            if (users == null) {
+                log.info("Start removing unused reporting data...");
+                start = System.currentTimeMillis();
+                removedFilesCounter = 0;
+                users = userDao.getUsers().values().iterator();
+            }
 
-            long now = System.currentTimeMillis();
             //todo
             //actually, it is better to do not save data for such pins
             //but fow now this approach is simpler and quicker
-            int result = removeUnsedInHistoryGraphData();
+            while (users.hasNext()) {
+                if (System.nanoTime() >= deadlineNanos) {
+                    return false;
+                }
+                removeUnusedInHistoryGraphData(users.next());
+            }
 
-            lastStart = now;
+            lastStart = start;
 
-            log.info("Removed {} files. Time : {} ms.", result, System.currentTimeMillis() - now);
+            log.info("Removed {} files. Time : {} ms.", removedFilesCounter, System.currentTimeMillis() - start);
         } catch (Throwable t) {
             log.error("Error removing unused reporting data.", t);
         }
+        users = null;
+        return true;
     }
 
-    private int removeUnsedInHistoryGraphData() {
-        int removedFilesCounter = 0;
-        Set<String> doNotRemovePaths = new HashSet<>();
-
-        for (User user : userDao.getUsers().values()) {
-            //we don't want to do a lot of work here,
-            //so we check only active profiles that actually write data
-            if (user.isUpdated(lastStart)) {
-                doNotRemovePaths.clear();
-                try {
-                    for (DashBoard dashBoard : user.profile.dashBoards) {
-                        for (Widget widget : dashBoard.widgets) {
-                            if (widget instanceof DeviceTiles) {
-                                DeviceTiles deviceTiles = (DeviceTiles) widget;
-                                for (TileTemplate tileTemplate : deviceTiles.templates) {
-                                    for (Widget tilesWidget : tileTemplate.widgets) {
-                                        add(doNotRemovePaths, dashBoard, tilesWidget, tileTemplate.deviceIds);
-                                    }
+    private void removeUnusedInHistoryGraphData(User user) {
+        //we don't want to do a lot of work here,
+        //so we check only active profiles that actually write data
+        if (user.isUpdated(lastStart)) {
+            doNotRemovePaths.clear();
+            try {
+                for (DashBoard dashBoard : user.profile.dashBoards) {
+                    for (Widget widget : dashBoard.widgets) {
+                        if (widget instanceof DeviceTiles) {
+                            DeviceTiles deviceTiles = (DeviceTiles) widget;
+                            for (TileTemplate tileTemplate : deviceTiles.templates) {
+                                for (Widget tilesWidget : tileTemplate.widgets) {
+                                    add(doNotRemovePaths, dashBoard, tilesWidget, tileTemplate.deviceIds);
                                 }
-                            } else {
-                                add(doNotRemovePaths, dashBoard, widget, null);
                             }
+                        } else {
+                            add(doNotRemovePaths, dashBoard, widget, null);
                         }
                     }
-
-                    removedFilesCounter += reportingDao.delete(user,
-                            reportingFile -> !doNotRemovePaths.contains(reportingFile.getFileName().toString()));
-                } catch (Exception e) {
-                    log.error("Error cleaning reporting record for user {}. {}", user.email, e.getMessage());
                 }
+
+                removedFilesCounter += reportingDao.delete(user,
+                        reportingFile -> !doNotRemovePaths.contains(reportingFile.getFileName().toString()));
+            } catch (Exception e) {
+                log.error("Error cleaning reporting record for user {}. {}", user.email, e.getMessage());
             }
         }
-        return removedFilesCounter;
     }
 
     private static void add(Set<String> doNotRemovePaths, DashBoard dash, Widget widget, int[] deviceIds) {
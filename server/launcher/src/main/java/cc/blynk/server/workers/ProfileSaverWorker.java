@@ -1,7 +1,10 @@
 package cc.blynk.server.workers;
 
 import cc.blynk.server.core.dao.FileManager;
+import cc.blynk.server.core.dao.SessionDao;
+import cc.blynk.server.core.dao.TokenManager;
 import cc.blynk.server.core.dao.UserDao;
+import cc.blynk.server.core.dao.UserKey;
 import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.serialization.JsonParser;
 import cc.blynk.server.db.DBManager;
@@ -11,9 +14,18 @@ import org.apache.logging.log4j.Logger;
 import java.io.Closeable;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
- * Background thread that once a minute stores all user DB to disk in case profile was changed since last saving.
+ * Background thread that once a minute stores changed users to disk.
+ * Changed users are taken from the dirty queue of the UserDao, so only they are touched.
+ * First run and the run on close also check timestamps of all users, just in case.
+ * Users are serialized in parallel.
+ * After saving, profiles of idle users above the memory limit are evicted from memory.
  *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
@@ -23,29 +35,48 @@ public class ProfileSaverWorker implements Runnable, Closeable {
 
     private static final Logger log = LogManager.getLogger(ProfileSaverWorker.class);
 
-    //1 min
     private final UserDao userDao;
     private final FileManager fileManager;
     private final DBManager dbManager;
+    private final SessionDao sessionDao;
+    private final TokenManager tokenManager;
+    private final int maxLoadedUsers;
+    private final long idleTime;
     private long lastStart;
     private long backupTs;
+    private boolean isFirstRun;
 
     public ProfileSaverWorker(UserDao userDao, FileManager fileManager, DBManager dbManager) {
+        this(userDao, fileManager, dbManager, null, null, 0, 0);
+    }
+
+    public ProfileSaverWorker(UserDao userDao, FileManager fileManager, DBManager dbManager,
+                              SessionDao sessionDao, TokenManager tokenManager, int maxLoadedUsers, long idleTime) {
         this.userDao = userDao;
         this.fileManager = fileManager;
         this.dbManager = dbManager;
+        this.sessionDao = sessionDao;
+        this.tokenManager = tokenManager;
+        this.maxLoadedUsers = maxLoadedUsers;
+        this.idleTime = idleTime;
         this.lastStart = System.currentTimeMillis();
         this.backupTs = 0;
+        this.isFirstRun = true;
     }
 
     @Override
     public void run() {
+        run(isFirstRun);
+        isFirstRun = false;
+    }
+
+    private void run(boolean fullScan) {
         try {
             log.debug("Starting saving user db.");
 
             final long now = System.currentTimeMillis();
 
-            ArrayList<User> users = saveModified();
+            List<User> users = saveModified(fullScan);
 
             dbManager.saveUsers(users);
 
@@ -57,6 +88,15 @@ public class ProfileSaverWorker implements Runnable, Closeable {
             lastStart = now;
 
             log.debug("Saving user db finished. Modified {} users.", users.size());
+
+            //all changes are on disk at this point, so idle profiles could be dropped from memory
+            if (maxLoadedUsers > 0) {
+                int evicted = userDao.evictColdUsers(sessionDao, tokenManager, maxLoadedUsers, idleTime, now);
+                if (evicted > 0) {
+                    log.info("Evicted {} idle profiles. In memory {}, on disk only {}. Reloaded {} in total.",
+                            evicted, userDao.users.size(), userDao.getColdUsersCount(), userDao.getReloads());
+                }
+            }
         } catch (Throwable t) {
             log.error("Error saving users.", t);
         }
@@ -77,25 +117,43 @@ public class ProfileSaverWorker implements Runnable, Closeable {
         }
     }
 
-    private ArrayList<User> saveModified() {
-        ArrayList<User> users = new ArrayList<>();
+    private List<User> saveModified(boolean fullScan) {
+        List<User> modified = userDao.pollDirtyUsers();
 
-        for (User user : userDao.getUsers().values()) {
-            if (user.isUpdated(lastStart)) {
-                try {
-                    fileManager.overrideUserFile(user);
-                    users.add(user);
-                } catch (Exception e) {
-                    log.error("Error saving : {}.", user);
+        if (fullScan) {
+            Set<User> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+            dirty.addAll(modified);
+            modified = new ArrayList<>(modified);
+            for (User user : userDao.getUsers().values()) {
+                if (!dirty.contains(user) && user.isUpdated(lastStart)) {
+                    modified.add(user);
                 }
             }
         }
 
-        return users;
+        return modified.parallelStream()
+                .filter(this::save)
+                .collect(Collectors.toList());
+    }
+
+    private boolean save(User user) {
+        //user could be deleted after it was changed
+        if (userDao.getUsers().get(new UserKey(user)) != user) {
+            return false;
+        }
+        try {
+            fileManager.overrideUserFile(user);
+            return true;
+        } catch (Exception e) {
+            log.error("Error saving : {}.", user);
+            //will be saved on the next run
+            user.markDirty();
+            return false;
+        }
     }
 
     @Override
     public void close() {
-        run();
+        run(true);
     }
 }
@@ -1,6 +1,7 @@
 package cc.blynk.server.workers;
 
 import cc.blynk.server.core.dao.ReportingDao;
+import cc.blynk.server.workers.scheduler.ResumableJob;
 import cc.blynk.utils.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -14,16 +15,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.util.Iterator;
 
 import static cc.blynk.server.internal.ReportingUtil.REPORTING_RECORD_SIZE;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 
 /**
+ * Weekly job that truncates minute reporting files to the last 30 days.
+ * Job is resumable, every slice handles few user reporting folders.
+ *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
  * Created on 12.01.18.
  */
-public class ReportingTruncateWorker implements Runnable {
+public class ReportingTruncateWorker implements ResumableJob {
 
     private static final Logger log = LogManager.getLogger(ReportingTruncateWorker.class);
 
@@ -31,52 +36,77 @@ public class ReportingTruncateWorker implements Runnable {
     //storing minute points only for 30 days
     private final static int MAX_RECORD_COUNT = 30 * 24 * 60;
 
+    //progress of the current run, kept between the slices
+    private DirectoryStream<Path> reportingFolder;
+    private Iterator<Path> userReportingDirectories;
+    private int truncatedFilesCounter;
+    private long start;
+
     public ReportingTruncateWorker(ReportingDao reportingDao) {
         this.reportingDao = reportingDao;
     }
 
     @Override
-    public void run() {
+    public boolean runSlice(long deadlineNanos) {
         try {
-            log.info("Start truncate unused reporting data...");
-            long now = System.currentTimeMillis();
+            if (userReportingDirectories == null) {
+                log.info("Start truncate unused reporting data...");
+                start = System.currentTimeMillis();
+                truncatedFilesCounter = 0;
 
-            int result = truncateOutdatedData();
-            log.info("Truncated {} files. Time : {} ms.", result, System.currentTimeMillis() - now);
+                Path reportingFolderPath = Paths.get(reportingDao.dataFolder);
+                if (Files.notExists(reportingFolderPath)) {
+                    log.info("Truncated 0 files. Time : 0 ms.");
+                    return true;
+                }
+                reportingFolder = Files.newDirectoryStream(reportingFolderPath, "*");
+                userReportingDirectories = reportingFolder.iterator();
+            }
+
+            while (userReportingDirectories.hasNext()) {
+                if (System.nanoTime() >= deadlineNanos) {
+                    return false;
+                }
+                truncateOutdatedData(userReportingDirectories.next());
+            }
+            log.info("Truncated {} files. Time : {} ms.",
+                    truncatedFilesCounter, System.currentTimeMillis() - start);
         } catch (Throwable t) {
             log.error("Error truncating unused reporting data.", t);
         }
+        finish();
+        return true;
     }
 
-    private int truncateOutdatedData() throws Exception {
-        int truncatedFilesCounter = 0;
-
-        Path reportingFolderPath = Paths.get(reportingDao.dataFolder);
-        if (Files.notExists(reportingFolderPath)) {
-            return 0;
+    private void finish() {
+        userReportingDirectories = null;
+        if (reportingFolder != null) {
+            try {
+                reportingFolder.close();
+            } catch (IOException e) {
+                log.debug("Error closing reporting folder.", e);
+            }
+            reportingFolder = null;
         }
+    }
 
-        try (DirectoryStream<Path> reportingFolder = Files.newDirectoryStream(reportingFolderPath, "*")) {
-            for (Path userReportingDirectory : reportingFolder) {
-                if (Files.isDirectory(userReportingDirectory)) {
-                    try (DirectoryStream<Path> userReportingFolder = directoryStream(userReportingDirectory)) {
-                        for (Path userReportingFile : userReportingFolder) {
-                            long fileSize = Files.size(userReportingFile);
-                            if (fileSize > MAX_RECORD_COUNT * REPORTING_RECORD_SIZE) {
-                                ByteBuffer userReportingData = FileUtils.read(userReportingFile, MAX_RECORD_COUNT);
-                                try (OutputStream os = Files.newOutputStream(userReportingFile, TRUNCATE_EXISTING)) {
-                                    os.write(userReportingData.array());
-                                }
-                                truncatedFilesCounter++;
-                            }
+    private void truncateOutdatedData(Path userReportingDirectory) {
+        if (Files.isDirectory(userReportingDirectory)) {
+            try (DirectoryStream<Path> userReportingFolder = directoryStream(userReportingDirectory)) {
+                for (Path userReportingFile : userReportingFolder) {
+                    long fileSize = Files.size(userReportingFile);
+                    if (fileSize > MAX_RECORD_COUNT * REPORTING_RECORD_SIZE) {
+                        ByteBuffer userReportingData = FileUtils.read(userReportingFile, MAX_RECORD_COUNT);
+                        try (OutputStream os = Files.newOutputStream(userReportingFile, TRUNCATE_EXISTING)) {
+                            os.write(userReportingData.array());
                         }
-                    } catch (Exception e) {
-                        log.error("Truncation failed for {}. Reason : {}.", userReportingDirectory, e.getMessage());
+                        truncatedFilesCounter++;
                     }
                 }
+            } catch (Exception e) {
+                log.error("Truncation failed for {}. Reason : {}.", userReportingDirectory, e.getMessage());
             }
         }
-        return truncatedFilesCounter;
     }
 
     private static final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:*_minute.bin");
@@ -3,21 +3,38 @@ package cc.blynk.server.workers;
 import cc.blynk.server.core.dao.ReportingDao;
 import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
 import cc.blynk.server.core.reporting.average.AggregationKey;
+import cc.blynk.server.core.reporting.average.AggregationMap;
 import cc.blynk.server.core.reporting.average.AggregationValue;
+import cc.blynk.server.core.reporting.average.AverageAggregatorProcessor;
+import cc.blynk.server.core.reporting.raw.BaseReportingKey;
+import cc.blynk.server.core.stats.GlobalStats;
 import cc.blynk.server.db.DBManager;
 import cc.blynk.utils.FileUtils;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
 import static cc.blynk.server.core.dao.ReportingDao.generateFilename;
+import static cc.blynk.utils.FileUtils.SIZE_OF_REPORT_ENTRY;
 
 /**
  * Worker that runs once a minute. During run - stores all aggregated reporting data
@@ -27,29 +44,59 @@ import static cc.blynk.server.core.dao.ReportingDao.generateFilename;
  * Created by Dmitriy Dumanskiy.
  * Created on 10.08.15.
  */
-public class ReportingWorker implements Runnable {
+public class ReportingWorker implements Runnable, Closeable {
 
     private static final Logger log = LogManager.getLogger(ReportingWorker.class);
 
     private final ReportingDao reportingDao;
     private final String reportingPath;
     private final DBManager dbManager;
+    private final GlobalStats stats;
+    //user reporting folders that already exist, so we don't check them on every flush
+    private final Set<Path> existingFolders;
+    //minute, hourly and daily data are flushed in parallel
+    private final ExecutorService flushExecutor;
 
+    //for tests only
     public ReportingWorker(ReportingDao reportingDao, String reportingPath, DBManager dbManager) {
+        this(reportingDao, reportingPath, dbManager, new GlobalStats());
+    }
+
+    public ReportingWorker(ReportingDao reportingDao, String reportingPath, DBManager dbManager, GlobalStats stats) {
         this.reportingDao = reportingDao;
         this.reportingPath = reportingPath;
         this.dbManager = dbManager;
+        this.stats = stats;
+        this.existingFolders = ConcurrentHashMap.newKeySet();
+        this.flushExecutor = Executors.newFixedThreadPool(GraphGranularityType.values().length,
+                new DefaultThreadFactory("ReportingFlush", true));
     }
 
     @Override
     public void run() {
         try {
-            Map<AggregationKey, AggregationValue> removedKeysMinute =
-                    process(reportingDao.averageAggregator.getMinute(), GraphGranularityType.MINUTE);
-            Map<AggregationKey, AggregationValue> removedKeysHour =
-                    process(reportingDao.averageAggregator.getHourly(), GraphGranularityType.HOURLY);
-            Map<AggregationKey, AggregationValue> removedKeysDay =
-                    process(reportingDao.averageAggregator.getDaily(), GraphGranularityType.DAILY);
+            long start = System.currentTimeMillis();
+            LongAdder bytesWritten = new LongAdder();
+
+            AverageAggregatorProcessor averageAggregator = reportingDao.averageAggregator;
+            Future<Map<AggregationKey, AggregationValue>> minuteFlush = flushExecutor.submit(() ->
+                    process(averageAggregator.getMinute(), GraphGranularityType.MINUTE, bytesWritten));
+            Future<Map<AggregationKey, AggregationValue>> hourFlush = flushExecutor.submit(() ->
+                    process(averageAggregator.getHourly(), GraphGranularityType.HOURLY, bytesWritten));
+            Future<Map<AggregationKey, AggregationValue>> dayFlush = flushExecutor.submit(() ->
+                    process(averageAggregator.getDaily(), GraphGranularityType.DAILY, bytesWritten));
+
+            Map<AggregationKey, AggregationValue> removedKeysMinute = minuteFlush.get();
+            Map<AggregationKey, AggregationValue> removedKeysHour = hourFlush.get();
+            Map<AggregationKey, AggregationValue> removedKeysDay = dayFlush.get();
+
+            long flushTime = System.currentTimeMillis() - start;
+            stats.markReportingFlush(flushTime, bytesWritten.sum());
+            log.debug("Reporting flush took {} ms. Bytes written : {}.", flushTime, bytesWritten.sum());
+
+            //so flushed aggregates are not replayed after crash
+            checkpoint(averageAggregator);
+            averageAggregator.reuseDeletedSeries();
 
             dbManager.insertReporting(removedKeysMinute, GraphGranularityType.MINUTE);
             dbManager.insertReporting(removedKeysHour, GraphGranularityType.HOURLY);
@@ -63,46 +110,92 @@ public class ReportingWorker implements Runnable {
         }
     }
 
+    private static void checkpoint(AverageAggregatorProcessor averageAggregator) {
+        try {
+            averageAggregator.checkpoint();
+        } catch (Exception e) {
+            log.error("Error during aggregation checkpoint.", e);
+        }
+    }
+
     /**
      * Iterates over all reporting entries that were created during last minute.
-     * And stores all entries one by one to disk.
+     * Entries are grouped by target file and every file gets all its entries with single write.
      *
      * @param map - reporting entires that were created during last minute.
      * @param type - type of reporting. Could be minute, hourly, daily.
+     * @param bytesWritten - counter of flushed bytes.
+     * Entries that failed to be flushed are put back to the map, so they are flushed with the next run.
      * @return - returns list of reporting entries that were successfully flushed to disk.
      */
-    private Map<AggregationKey, AggregationValue>  process(Map<AggregationKey, AggregationValue> map,
-                                                           GraphGranularityType type) {
+    private Map<AggregationKey, AggregationValue> process(AggregationMap map,
+                                                          GraphGranularityType type, LongAdder bytesWritten) {
         long nowTruncatedToPeriod = System.currentTimeMillis() / type.period;
 
-        ArrayList<AggregationKey> keys = new ArrayList<>(map.keySet());
+        //entries of the previous periods are complete and could be flushed
+        Map<AggregationKey, AggregationValue> outdated = map.removeOutdated(nowTruncatedToPeriod);
+        ArrayList<AggregationKey> keys = new ArrayList<>(outdated.keySet());
         keys.sort(AggregationKey.AGGREGATION_KEY_COMPARATOR);
 
+        //keys are sorted, so entries within every file group are sorted by ts as well
+        Map<BaseReportingKey, List<AggregationKey>> keysByFile = new HashMap<>();
+        for (AggregationKey key : keys) {
+            keysByFile.computeIfAbsent(key.getBaseReportingKey(), k -> new ArrayList<>()).add(key);
+        }
+
         Map<AggregationKey, AggregationValue> removedKeys = new HashMap<>();
+        ByteBuffer records = ByteBuffer.allocate(SIZE_OF_REPORT_ENTRY);
 
-        for (AggregationKey keyToRemove : keys) {
-            //if prev hour
-            if (keyToRemove.isOutdated(nowTruncatedToPeriod)) {
-                AggregationValue value = map.get(keyToRemove);
+        for (Map.Entry<BaseReportingKey, List<AggregationKey>> entry : keysByFile.entrySet()) {
+            BaseReportingKey baseKey = entry.getKey();
+            List<AggregationKey> fileKeys = entry.getValue();
 
-                try {
-                    Path userReportFolder = Paths.get(reportingPath,
-                            FileUtils.getUserReportingDir(keyToRemove.getEmail(), keyToRemove.getAppName()));
-                    if (Files.notExists(userReportFolder)) {
-                        Files.createDirectories(userReportFolder);
+            int size = fileKeys.size() * SIZE_OF_REPORT_ENTRY;
+            if (records.capacity() < size) {
+                records = ByteBuffer.allocate(size);
+            }
+            ((Buffer) records).clear();
+
+            Path userReportFolder = null;
+            try {
+                userReportFolder = Paths.get(reportingPath,
+                        FileUtils.getUserReportingDir(baseKey.email, baseKey.appName));
+                String fileName = generateFilename(baseKey.dashId, baseKey.deviceId,
+                        baseKey.pinType, baseKey.pin, type);
+                Path reportingFile = userReportFolder.resolve(fileName);
+
+                //keys are sorted, so only the first one has to be checked
+                long lastWrittenTs = map.isReplayed(fileKeys.get(0).ts)
+                        ? readLastTs(reportingFile, type)
+                        : Long.MIN_VALUE;
+                for (AggregationKey key : fileKeys) {
+                    long ts = key.getTs(type);
+                    if (ts > lastWrittenTs) {
+                        records.putDouble(outdated.get(key).calcAverage())
+                               .putLong(ts);
+                    } else {
+                        log.debug("Skipping already flushed {} entry of {}.", type, reportingFile);
                     }
+                }
+                ((Buffer) records).flip();
 
-                    String fileName = generateFilename(keyToRemove.getDashId(),
-                            keyToRemove.getDeviceId(), keyToRemove.getPinType(), keyToRemove.getPin(), type);
-                    Path filePath = Paths.get(userReportFolder.toString(), fileName);
-
-                    FileUtils.write(filePath, value.calcAverage(), keyToRemove.getTs(type));
+                if (records.hasRemaining()) {
+                    createFolderIfNotExists(userReportFolder);
+                    reportingDao.storage.write(reportingFile, type, records);
+                    bytesWritten.add(records.limit());
+                }
 
-                    removedKeys.put(keyToRemove, value);
-                } catch (Exception ioe) {
-                    log.error("Error writing reporting file. Reason : {}", ioe.getMessage());
-                } finally {
-                    map.remove(keyToRemove);
+                for (AggregationKey key : fileKeys) {
+                    removedKeys.put(key, outdated.get(key));
+                }
+            } catch (Exception ioe) {
+                //folder may be removed, so checking it again next time
+                if (userReportFolder != null) {
+                    existingFolders.remove(userReportFolder);
+                }
+                log.error("Error writing reporting file. Reason : {}", ioe.getMessage());
+                for (AggregationKey key : fileKeys) {
+                    map.put(key, outdated.get(key));
                 }
             }
         }
@@ -110,4 +203,29 @@ public class ReportingWorker implements Runnable {
         return removedKeys;
     }
 
+    private long readLastTs(Path reportingFile, GraphGranularityType type) throws IOException {
+        if (Files.notExists(reportingFile)) {
+            return Long.MIN_VALUE;
+        }
+        ByteBuffer last = reportingDao.storage.read(reportingFile, type, 1, 0);
+        if (last == null || last.position() < SIZE_OF_REPORT_ENTRY) {
+            return Long.MIN_VALUE;
+        }
+        return last.getLong(last.position() - Long.BYTES);
+    }
+
+    private void createFolderIfNotExists(Path userReportFolder) throws IOException {
+        if (!existingFolders.contains(userReportFolder)) {
+            if (Files.notExists(userReportFolder)) {
+                Files.createDirectories(userReportFolder);
+            }
+            existingFolders.add(userReportFolder);
+        }
+    }
+
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+    }
+
 }
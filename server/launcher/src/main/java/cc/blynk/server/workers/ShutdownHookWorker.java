@@ -2,8 +2,7 @@ package cc.blynk.server.workers;
 
 import cc.blynk.server.Holder;
 import cc.blynk.server.servers.BaseServer;
-
-import java.util.concurrent.ScheduledExecutorService;
+import cc.blynk.server.workers.scheduler.JobScheduler;
 
 /**
  * Used to close and store all important info to disk.
@@ -17,14 +16,17 @@ public class ShutdownHookWorker implements Runnable {
     private final BaseServer[] servers;
     private final Holder holder;
     private final ProfileSaverWorker profileSaverWorker;
-    private final ScheduledExecutorService scheduler;
+    private final ReportingWorker reportingWorker;
+    private final JobScheduler scheduler;
 
     public ShutdownHookWorker(BaseServer[] servers, Holder holder,
-                              ScheduledExecutorService scheduler,
-                              ProfileSaverWorker profileSaverWorker) {
+                              JobScheduler scheduler,
+                              ProfileSaverWorker profileSaverWorker,
+                              ReportingWorker reportingWorker) {
         this.servers = servers;
         this.holder = holder;
         this.profileSaverWorker = profileSaverWorker;
+        this.reportingWorker = reportingWorker;
         this.scheduler = scheduler;
     }
 
@@ -43,6 +45,7 @@ public class ShutdownHookWorker implements Runnable {
 
         System.out.println("Stopping scheduler...");
         scheduler.shutdown();
+        reportingWorker.close();
 
         try {
             holder.close();
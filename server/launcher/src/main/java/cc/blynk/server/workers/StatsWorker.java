@@ -7,13 +7,17 @@ import cc.blynk.server.core.dao.UserDao;
 import cc.blynk.server.core.stats.GlobalStats;
 import cc.blynk.server.core.stats.model.Stat;
 import cc.blynk.server.db.DBManager;
+import cc.blynk.server.notifications.mail.MailWrapper;
+import cc.blynk.server.workers.scheduler.JobScheduler;
+import cc.blynk.server.workers.scheduler.ScheduledJob;
+import cc.blynk.server.workers.timer.TimerWorker;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Worker responsible for logging current request rate,
- * methods invocation statistics, active channels count and
- * currently pending blocking tasks.
+ * methods invocation statistics, active channels count,
+ * currently pending blocking tasks, timings of the scheduled jobs and timers.
  *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
@@ -29,22 +33,32 @@ public class StatsWorker implements Runnable {
     private final DBManager dbManager;
     private final String region;
     private final BlockingIOProcessor blockingIOProcessor;
+    private final MailWrapper mailWrapper;
+    private final JobScheduler jobScheduler;
+    private final TimerWorker timerWorker;
 
-    public StatsWorker(Holder holder) {
+    public StatsWorker(Holder holder, JobScheduler jobScheduler) {
         this.stats = holder.stats;
         this.sessionDao = holder.sessionDao;
         this.userDao = holder.userDao;
         this.dbManager = holder.dbManager;
         this.region = holder.region;
         this.blockingIOProcessor = holder.blockingIOProcessor;
+        this.mailWrapper = holder.mailWrapper;
+        this.jobScheduler = jobScheduler;
+        this.timerWorker = holder.timerWorker;
     }
 
     @Override
     public void run() {
         try {
-            Stat stat = new Stat(sessionDao, userDao, blockingIOProcessor, stats, true);
+            Stat stat = new Stat(sessionDao, userDao, blockingIOProcessor, mailWrapper, stats, true);
             log.info(stat);
             dbManager.insertStat(this.region, stat);
+            for (ScheduledJob job : jobScheduler.getJobs()) {
+                log.info(job);
+            }
+            log.info(timerWorker.metrics);
         } catch (Exception e) {
             log.error("Error making stats.", e);
         }
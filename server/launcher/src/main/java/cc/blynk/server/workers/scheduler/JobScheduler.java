@@ -0,0 +1,66 @@
+package cc.blynk.server.workers.scheduler;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs periodic server jobs on separate lanes, every lane is a single thread.
+ * Latency critical jobs (timers, reporting flush) have own lanes, so slow
+ * background jobs (profile saving, truncation, cleanups) can't delay them.
+ * Long background jobs implement ResumableJob and yield the lane every slice.
+ */
+public final class JobScheduler {
+
+    //max time resumable job holds the lane before yielding
+    static final long DEFAULT_SLICE_MILLIS = 200;
+
+    public enum Lane {
+        TIMERS,
+        REPORTING,
+        BACKGROUND
+    }
+
+    private final ScheduledExecutorService[] lanes;
+    private final List<ScheduledJob> jobs = new CopyOnWriteArrayList<>();
+    private final long sliceMillis;
+
+    public JobScheduler() {
+        this(DEFAULT_SLICE_MILLIS);
+    }
+
+    JobScheduler(long sliceMillis) {
+        this.sliceMillis = sliceMillis;
+        Lane[] values = Lane.values();
+        this.lanes = new ScheduledExecutorService[values.length];
+        for (Lane lane : values) {
+            lanes[lane.ordinal()] = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("jobs-" + lane.name().toLowerCase(), false));
+        }
+    }
+
+    public ScheduledJob scheduleAtFixedRate(String name, Lane lane, Runnable job,
+                                            long initialDelay, long period, TimeUnit unit) {
+        ScheduledExecutorService executor = lanes[lane.ordinal()];
+        ScheduledJob scheduledJob = new ScheduledJob(name, lane, job, executor,
+                initialDelay, period, unit, TimeUnit.MILLISECONDS.toNanos(sliceMillis));
+        jobs.add(scheduledJob);
+        executor.scheduleAtFixedRate(scheduledJob, initialDelay, period, unit);
+        return scheduledJob;
+    }
+
+    public List<ScheduledJob> getJobs() {
+        return jobs;
+    }
+
+    public void shutdown() {
+        for (ScheduledExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package cc.blynk.server.workers.scheduler;
+
+/**
+ * Long running job that is executed in slices, so it doesn't block other jobs of the same lane.
+ * Job keeps its progress between the slices.
+ */
+public interface ResumableJob extends Runnable {
+
+    /**
+     * Does part of the job until the deadline is reached.
+     *
+     * @param deadlineNanos - System.nanoTime() after which job should yield.
+     * @return true when whole job is done, false when it has to be resumed.
+     */
+    boolean runSlice(long deadlineNanos);
+
+    /**
+     * Does whole job at once.
+     */
+    @Override
+    default void run() {
+        while (!runSlice(Long.MAX_VALUE)) {
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package cc.blynk.server.workers.scheduler;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic job of the JobScheduler. Measures run time of the job, lag of the start
+ * behind schedule and counts overruns - runs that took longer than the period
+ * or ticks skipped because resumable job wasn't finished yet.
+ * Job errors are logged, so failed run doesn't cancel next runs.
+ */
+public final class ScheduledJob implements Runnable {
+
+    private static final Logger log = LogManager.getLogger(ScheduledJob.class);
+
+    public final String name;
+    public final JobScheduler.Lane lane;
+    private final Runnable job;
+    private final ResumableJob resumableJob;
+    private final ScheduledExecutorService executor;
+    private final long periodNanos;
+    private final long sliceNanos;
+
+    //accessed only from the lane thread
+    private long expectedStart;
+    private long jobStart;
+    private boolean inProgress;
+
+    //written only from the lane thread
+    private volatile long runs;
+    private volatile long overruns;
+    private volatile long lastRunTime;
+    private volatile long maxRunTime;
+    private volatile long lastLag;
+    private volatile long maxLag;
+
+    ScheduledJob(String name, JobScheduler.Lane lane, Runnable job, ScheduledExecutorService executor,
+                 long initialDelay, long period, TimeUnit unit, long sliceNanos) {
+        this.name = name;
+        this.lane = lane;
+        this.job = job;
+        this.resumableJob = job instanceof ResumableJob ? (ResumableJob) job : null;
+        this.executor = executor;
+        this.periodNanos = unit.toNanos(period);
+        this.sliceNanos = sliceNanos;
+        this.expectedStart = System.nanoTime() + unit.toNanos(initialDelay);
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        long lag = Math.max(0, now - expectedStart);
+        expectedStart += periodNanos;
+        lastLag = lag;
+        if (lag > maxLag) {
+            maxLag = lag;
+        }
+
+        if (resumableJob == null) {
+            try {
+                job.run();
+            } catch (Throwable t) {
+                log.error("Error running job {}.", name, t);
+            }
+            completed(System.nanoTime() - now);
+        } else if (inProgress) {
+            //previous run still resumes, skipping this tick
+            overruns++;
+        } else {
+            inProgress = true;
+            jobStart = now;
+            resume();
+        }
+    }
+
+    private void resume() {
+        boolean finished;
+        try {
+            finished = resumableJob.runSlice(System.nanoTime() + sliceNanos);
+        } catch (Throwable t) {
+            log.error("Error running job {}.", name, t);
+            finished = true;
+        }
+
+        if (finished) {
+            inProgress = false;
+            completed(System.nanoTime() - jobStart);
+        } else {
+            //next slice is queued after the ticks that are already due, so they are not blocked
+            try {
+                executor.execute(this::resume);
+            } catch (RejectedExecutionException e) {
+                inProgress = false;
+                log.debug("Job {} is stopped as scheduler is shut down.", name);
+            }
+        }
+    }
+
+    private void completed(long runTime) {
+        runs++;
+        lastRunTime = runTime;
+        if (runTime > maxRunTime) {
+            maxRunTime = runTime;
+        }
+        if (runTime > periodNanos) {
+            overruns++;
+        }
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getLastRunTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastRunTime);
+    }
+
+    public long getMaxRunTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRunTime);
+    }
+
+    public long getLastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLag);
+    }
+
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLag);
+    }
+
+    @Override
+    public String toString() {
+        return "Job{name=" + name
+                + ", lane=" + lane
+                + ", runs=" + runs
+                + ", lastRunTime=" + getLastRunTimeMillis()
+                + ", maxRunTime=" + getMaxRunTimeMillis()
+                + ", lastLag=" + getLastLagMillis()
+                + ", maxLag=" + getMaxLagMillis()
+                + ", overruns=" + overruns
+                + '}';
+    }
+
+}
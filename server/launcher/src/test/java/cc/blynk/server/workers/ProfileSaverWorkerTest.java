@@ -92,4 +92,30 @@ public class ProfileSaverWorkerTest {
         verifyNoMoreInteractions(fileManager);
     }
 
+    @Test
+    public void testOnlyDirtyProfilesAreSavedAfterFirstRun() throws Exception {
+        UserDao realUserDao = new UserDao(new ConcurrentHashMap<>(), "local", "127.0.0.1");
+        User user1 = realUserDao.add("1", "", AppNameUtil.BLYNK);
+        User user2 = realUserDao.add("2", "", AppNameUtil.BLYNK);
+        User user3 = realUserDao.add("3", "", AppNameUtil.BLYNK);
+
+        ProfileSaverWorker profileSaverWorker =
+                new ProfileSaverWorker(realUserDao, fileManager, new DBManager(blockingIOProcessor, true));
+        profileSaverWorker.run();
+        verify(fileManager, times(3)).overrideUserFile(any());
+
+        user2.markDirty();
+        user2.markDirty();
+        user3.markDirty();
+        realUserDao.delete(user3.email, user3.appName);
+        profileSaverWorker.run();
+
+        verify(fileManager, times(1)).overrideUserFile(user1);
+        verify(fileManager, times(2)).overrideUserFile(user2);
+        verify(fileManager, times(1)).overrideUserFile(user3);
+
+        profileSaverWorker.run();
+        verify(fileManager, times(4)).overrideUserFile(any());
+    }
+
 }
@@ -6,14 +6,17 @@ import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.enums.PinType;
 import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
 import cc.blynk.server.core.reporting.average.AggregationKey;
+import cc.blynk.server.core.reporting.average.AggregationMap;
 import cc.blynk.server.core.reporting.average.AggregationValue;
 import cc.blynk.server.core.reporting.average.AverageAggregatorProcessor;
+import cc.blynk.server.core.reporting.average.SeriesRegistry;
 import cc.blynk.server.db.DBManager;
 import cc.blynk.utils.AppNameUtil;
 import cc.blynk.utils.properties.ServerProperties;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -28,7 +31,6 @@ import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static cc.blynk.server.core.dao.ReportingDao.generateFilename;
 import static cc.blynk.server.internal.ReportingUtil.getReportingFolder;
@@ -60,6 +62,8 @@ public class ReportingWorkerTest {
 
     private BlockingIOProcessor blockingIOProcessor;
 
+    private ReportingWorker reportingWorker;
+
     @Before
     public void cleanup() throws IOException {
         blockingIOProcessor = new BlockingIOProcessor(4, 1);
@@ -72,6 +76,12 @@ public class ReportingWorkerTest {
         createReportingFolder(reportingFolder, "test2");
 
         reportingDaoMock = new ReportingDao(reportingFolder, averageAggregator, true);
+        reportingWorker = new ReportingWorker(reportingDaoMock, reportingFolder, new DBManager(blockingIOProcessor, true));
+    }
+
+    @After
+    public void close() {
+        reportingWorker.close();
     }
 
     private static void createReportingFolder(String reportingFolder, String email) {
@@ -90,9 +100,7 @@ public class ReportingWorkerTest {
         User user = new User();
         user.email = "test";
         user.appName = AppNameUtil.BLYNK;
-        ReportingWorker reportingWorker = new ReportingWorker(reportingDaoMock, reportingFolder, new DBManager(blockingIOProcessor, true));
-
-        ConcurrentHashMap<AggregationKey, AggregationValue> map = new ConcurrentHashMap<>();
+        AggregationMap map = new AggregationMap(new SeriesRegistry());
 
         long ts = getTS() / AverageAggregatorProcessor.HOUR;
 
@@ -103,9 +111,17 @@ public class ReportingWorkerTest {
         map.put(aggregationKey, aggregationValue);
 
         when(averageAggregator.getMinute()).thenReturn(map);
+        when(averageAggregator.getHourly()).thenReturn(new AggregationMap(new SeriesRegistry()));
+        when(averageAggregator.getDaily()).thenReturn(new AggregationMap(new SeriesRegistry()));
 
+        //entry that failed to be flushed is kept for the next run
         reportingWorker.run();
-        assertTrue(map.isEmpty());
+        assertEquals(1, map.size());
+        assertEquals(100.0, map.get(aggregationKey).calcAverage(), 0.001);
+
+        reportingWorker.run();
+        assertEquals(1, map.size());
+        assertEquals(1, map.get(aggregationKey).getCount());
     }
 
     @Test
@@ -113,9 +129,7 @@ public class ReportingWorkerTest {
         User user = new User();
         user.email = "test";
         user.appName = AppNameUtil.BLYNK;
-        ReportingWorker reportingWorker = new ReportingWorker(reportingDaoMock, reportingFolder, new DBManager(blockingIOProcessor, true));
-
-        ConcurrentHashMap<AggregationKey, AggregationValue> map = new ConcurrentHashMap<>();
+        AggregationMap map = new AggregationMap(new SeriesRegistry());
 
         long ts = getTS() / AverageAggregatorProcessor.HOUR;
 
@@ -133,9 +147,9 @@ public class ReportingWorkerTest {
         map.put(aggregationKey2, aggregationValue2);
         map.put(aggregationKey3, aggregationValue3);
 
-        when(averageAggregator.getMinute()).thenReturn(new ConcurrentHashMap<>());
+        when(averageAggregator.getMinute()).thenReturn(new AggregationMap(new SeriesRegistry()));
         when(averageAggregator.getHourly()).thenReturn(map);
-        when(averageAggregator.getDaily()).thenReturn(new ConcurrentHashMap<>());
+        when(averageAggregator.getDaily()).thenReturn(new AggregationMap(new SeriesRegistry()));
 
         reportingWorker.run();
 
@@ -168,11 +182,56 @@ public class ReportingWorkerTest {
         assertEquals(ts * AverageAggregatorProcessor.HOUR, data.getLong());
     }
 
+    private static AggregationValue value(double value) {
+        AggregationValue aggregationValue = new AggregationValue();
+        aggregationValue.update(value);
+        return aggregationValue;
+    }
+
     @Test
-    public void testStore2() throws IOException {
-        ReportingWorker reportingWorker = new ReportingWorker(reportingDaoMock, reportingFolder, new DBManager(blockingIOProcessor, true));
+    public void testEntriesReplayedAfterCrashAreNotFlushedTwice() throws IOException {
+        User user = new User();
+        user.email = "test";
+        user.appName = AppNameUtil.BLYNK;
+        Path walFolder = Files.createTempDirectory("reporting-wal");
+        try {
+            AverageAggregatorProcessor beforeCrash = new AverageAggregatorProcessor(walFolder.toString());
+            beforeCrash.getHourly().put(new AggregationKey("test", AppNameUtil.BLYNK, 1, 0, PinType.ANALOG, (byte) 1, 1),
+                    value(100));
+            beforeCrash.startCheckpoints();
+
+            //checkpoint of the mock does nothing, so crash happens right after the flush
+            when(averageAggregator.getMinute()).thenReturn(beforeCrash.getMinute());
+            when(averageAggregator.getHourly()).thenReturn(beforeCrash.getHourly());
+            when(averageAggregator.getDaily()).thenReturn(beforeCrash.getDaily());
+            reportingWorker.run();
+
+            AverageAggregatorProcessor afterCrash = new AverageAggregatorProcessor(walFolder.toString());
+            assertFalse(afterCrash.getHourly().isEmpty());
+            afterCrash.getHourly().put(new AggregationKey("test", AppNameUtil.BLYNK, 1, 0, PinType.ANALOG, (byte) 1, 2),
+                    value(200));
+            when(averageAggregator.getMinute()).thenReturn(afterCrash.getMinute());
+            when(averageAggregator.getHourly()).thenReturn(afterCrash.getHourly());
+            when(averageAggregator.getDaily()).thenReturn(afterCrash.getDaily());
+            reportingWorker.run();
+            assertTrue(afterCrash.getHourly().isEmpty());
+
+            ByteBuffer data = reportingDaoMock.getByteBufferFromDisk(user, 1, 0, PinType.ANALOG, (byte) 1, 10, GraphGranularityType.HOURLY, 0);
+            assertNotNull(data);
+            data.flip();
+            assertEquals(32, data.limit());
+            assertEquals(100.0, data.getDouble(), 0.001);
+            assertEquals(AverageAggregatorProcessor.HOUR, data.getLong());
+            assertEquals(200.0, data.getDouble(), 0.001);
+            assertEquals(2 * AverageAggregatorProcessor.HOUR, data.getLong());
+        } finally {
+            FileUtils.deleteDirectory(walFolder.toFile());
+        }
+    }
 
-        ConcurrentHashMap<AggregationKey, AggregationValue> map = new ConcurrentHashMap<>();
+    @Test
+    public void testStore2() throws IOException {
+        AggregationMap map = new AggregationMap(new SeriesRegistry());
 
         long ts = getTS() / AverageAggregatorProcessor.HOUR;
 
@@ -190,9 +249,9 @@ public class ReportingWorkerTest {
         map.put(aggregationKey2, aggregationValue2);
         map.put(aggregationKey3, aggregationValue3);
 
-        when(averageAggregator.getMinute()).thenReturn(new ConcurrentHashMap<>());
+        when(averageAggregator.getMinute()).thenReturn(new AggregationMap(new SeriesRegistry()));
         when(averageAggregator.getHourly()).thenReturn(map);
-        when(averageAggregator.getDaily()).thenReturn(new ConcurrentHashMap<>());
+        when(averageAggregator.getDaily()).thenReturn(new AggregationMap(new SeriesRegistry()));
 
         reportingWorker.run();
 
@@ -234,9 +293,7 @@ public class ReportingWorkerTest {
 
     @Test
     public void testDeleteCommand() throws IOException {
-        ReportingWorker reportingWorker = new ReportingWorker(reportingDaoMock, reportingFolder, new DBManager(blockingIOProcessor, true));
-
-        ConcurrentHashMap<AggregationKey, AggregationValue> map = new ConcurrentHashMap<>();
+        AggregationMap map = new AggregationMap(new SeriesRegistry());
 
         long ts = getTS() / AverageAggregatorProcessor.HOUR;
 
@@ -254,9 +311,9 @@ public class ReportingWorkerTest {
         map.put(aggregationKey2, aggregationValue2);
         map.put(aggregationKey3, aggregationValue3);
 
-        when(averageAggregator.getMinute()).thenReturn(new ConcurrentHashMap<>());
+        when(averageAggregator.getMinute()).thenReturn(new AggregationMap(new SeriesRegistry()));
         when(averageAggregator.getHourly()).thenReturn(map);
-        when(averageAggregator.getDaily()).thenReturn(new ConcurrentHashMap<>());
+        when(averageAggregator.getDaily()).thenReturn(new AggregationMap(new SeriesRegistry()));
         when(properties.getProperty("data.folder")).thenReturn(System.getProperty("java.io.tmpdir"));
 
         reportingWorker.run();
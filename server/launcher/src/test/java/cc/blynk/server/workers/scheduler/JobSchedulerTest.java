@@ -0,0 +1,108 @@
+package cc.blynk.server.workers.scheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cc.blynk.server.workers.scheduler.JobScheduler.Lane.BACKGROUND;
+import static cc.blynk.server.workers.scheduler.JobScheduler.Lane.TIMERS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JobSchedulerTest {
+
+    private JobScheduler scheduler;
+
+    @Before
+    public void init() {
+        scheduler = new JobScheduler(10);
+    }
+
+    @After
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //busy until the deadline, like a slice of the real work
+    private static void awaitDeadline(CountDownLatch never, long deadlineNanos) {
+        try {
+            never.await(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testSlowBackgroundJobDoesNotDelayOtherLane() throws Exception {
+        CountDownLatch ticks = new CountDownLatch(5);
+        scheduler.scheduleAtFixedRate("slow", BACKGROUND, () -> sleep(1000), 0, 1, TimeUnit.SECONDS);
+        ScheduledJob timers = scheduler.scheduleAtFixedRate("timers", TIMERS, ticks::countDown, 0, 20, MILLISECONDS);
+
+        assertTrue(ticks.await(500, MILLISECONDS));
+        assertTrue(timers.getMaxLagMillis() < 100);
+    }
+
+    @Test
+    public void testResumableJobYieldsToJobsOfSameLane() throws Exception {
+        AtomicInteger ticks = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch never = new CountDownLatch(1);
+        //resumable job needs 30 slices of 10 ms
+        ResumableJob longJob = new ResumableJob() {
+            private int slices;
+
+            @Override
+            public boolean runSlice(long deadlineNanos) {
+                awaitDeadline(never, deadlineNanos);
+                if (++slices == 30) {
+                    done.countDown();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        ScheduledJob resumable = scheduler.scheduleAtFixedRate("long", BACKGROUND, longJob, 0, 1, TimeUnit.HOURS);
+        ScheduledJob tick = scheduler.scheduleAtFixedRate("tick", BACKGROUND, ticks::incrementAndGet,
+                20, 20, MILLISECONDS);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        sleep(50);
+        //ticks are running while long job is in progress
+        assertTrue(ticks.get() >= 5);
+        assertTrue(tick.getMaxLagMillis() < 100);
+        assertEquals(1, resumable.getRuns());
+        assertTrue(resumable.getLastRunTimeMillis() >= 300);
+    }
+
+    @Test
+    public void testOverrunsAndFailuresAreCounted() throws Exception {
+        CountDownLatch runs = new CountDownLatch(3);
+        ScheduledJob job = scheduler.scheduleAtFixedRate("failing", BACKGROUND, () -> {
+            sleep(30);
+            runs.countDown();
+            throw new RuntimeException("test");
+        }, 0, 10, MILLISECONDS);
+
+        assertTrue(runs.await(1, TimeUnit.SECONDS));
+        sleep(50);
+        assertTrue(job.getRuns() >= 3);
+        assertTrue(job.getOverruns() >= 3);
+        assertTrue(job.getMaxRunTimeMillis() >= 30);
+        assertTrue(job.getLastLagMillis() > 0);
+    }
+
+}
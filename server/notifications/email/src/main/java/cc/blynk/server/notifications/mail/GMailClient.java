@@ -6,6 +6,7 @@ import org.apache.logging.log4j.Logger;
 
 import javax.activation.DataHandler;
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
@@ -28,10 +29,18 @@ public class GMailClient implements MailClient {
 
     private final Session session;
     private final InternetAddress from;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
 
     GMailClient(MailProperties mailProperties) {
         String username = mailProperties.getSMTPUsername();
         String password = mailProperties.getSMTPPassword();
+        this.username = username;
+        this.password = password;
+        this.host = mailProperties.getSMTPHost();
+        this.port = mailProperties.getSMTPPortNumber();
 
         log.info("Initializing gmail smtp mail transport. Username : {}. SMTP host : {}:{}",
                 username, mailProperties.getSMTPHost(), mailProperties.getSMTPort());
@@ -49,18 +58,8 @@ public class GMailClient implements MailClient {
     }
 
     @Override
-    public void sendText(String to, String subj, String body) throws Exception {
-        send(to, subj, body, TEXT_PLAIN_CHARSET_UTF_8);
-    }
-
-    @Override
-    public void sendHtml(String to, String subj, String body) throws Exception {
-        send(to, subj, body, TEXT_HTML_CHARSET_UTF_8);
-    }
-
-    @Override
-    public void sendHtmlWithAttachment(String to, String subj, String body,
-                                       QrHolder[] attachmentData) throws Exception {
+    public MimeMessage createMessageWithAttachment(String to, String subj, String body,
+                                                   QrHolder[] attachmentData) throws Exception {
         MimeMessage message = new MimeMessage(session);
         message.setFrom(from);
         message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
@@ -77,10 +76,7 @@ public class GMailClient implements MailClient {
         attachCSV(multipart, attachmentData);
 
         message.setContent(multipart);
-
-        Transport.send(message);
-
-        log.trace("Mail to {} was sent. Subj : {}, body : {}", to, subj, body);
+        return message;
     }
 
     private void attachCSV(Multipart multipart, QrHolder[] attachmentData) throws Exception {
@@ -111,15 +107,21 @@ public class GMailClient implements MailClient {
         }
     }
 
-    private void send(String to, String subj, String body, String contentType) throws Exception {
+    @Override
+    public MimeMessage createMessage(String to, String subj, String body, String contentType) throws Exception {
         MimeMessage message = new MimeMessage(session);
         message.setFrom(from);
         message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
         message.setSubject(subj, "UTF-8");
         message.setContent(body, contentType);
+        return message;
+    }
 
-        Transport.send(message);
-        log.trace("Mail to {} was sent. Subj : {}, body : {}", to, subj, body);
+    @Override
+    public Transport connect() throws MessagingException {
+        Transport transport = session.getTransport();
+        transport.connect(host, port, username, password);
+        return transport;
     }
 
 }
@@ -1,6 +1,13 @@
 package cc.blynk.server.notifications.mail;
 
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
 /**
+ * Builds messages for the specific smtp provider and opens connections to it.
+ * Sending itself is done by MailQueue over the pooled connections.
+ *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
  * Created on 14.09.16.
@@ -10,10 +17,12 @@ public interface MailClient {
     String TEXT_PLAIN_CHARSET_UTF_8 = "text/plain; charset=UTF-8";
     String TEXT_HTML_CHARSET_UTF_8 = "text/html; charset=UTF-8";
 
-    void sendText(String to, String subj, String body) throws Exception;
+    MimeMessage createMessage(String to, String subj, String body, String contentType) throws Exception;
 
-    void sendHtml(String to, String subj, String body) throws Exception;
+    MimeMessage createMessageWithAttachment(String to, String subj, String body,
+                                            QrHolder[] attachments) throws Exception;
 
-    void sendHtmlWithAttachment(String to, String subj, String body, QrHolder[] attachments) throws Exception;
+    //opens new authenticated connection, caller is responsible for closing it
+    Transport connect() throws MessagingException;
 
 }
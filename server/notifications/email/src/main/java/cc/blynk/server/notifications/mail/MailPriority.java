@@ -0,0 +1,12 @@
+package cc.blynk.server.notifications.mail;
+
+/**
+ * Mails requested by the user in the app (registration, password reset, tokens)
+ * go before the mails triggered by the devices.
+ */
+public enum MailPriority {
+
+    HIGH,
+    LOW
+
+}
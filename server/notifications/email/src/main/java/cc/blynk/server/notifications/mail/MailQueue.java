@@ -0,0 +1,195 @@
+package cc.blynk.server.notifications.mail;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded priority queue of the outgoing mails served by the fixed number of sender threads.
+ * Every sender keeps own authenticated smtp connection open between the mails and sends
+ * everything it took from the queue at once over it, so the connection and TLS handshake
+ * are paid only when the connection is opened first time, dropped by the server
+ * or closed after the idle timeout.
+ */
+public final class MailQueue implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(MailQueue.class);
+
+    private final MailClient client;
+    private final PriorityBlockingQueue<Mail> queue = new PriorityBlockingQueue<>();
+    //PriorityBlockingQueue is unbounded, so the limit is checked with the separate counter
+    private final AtomicInteger size = new AtomicInteger();
+    //keeps the order of the mails with the same priority
+    private final AtomicLong sequence = new AtomicLong();
+    private final int queueLimit;
+    private final int batchSize;
+    private final long idleTimeout;
+    private final Thread[] senders;
+    private volatile boolean closed;
+
+    final LongAdder sent = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    //sum of times from the offer to the end of sending, in millis
+    final LongAdder latency = new LongAdder();
+
+    MailQueue(MailClient client, int connections, int queueLimit, int batchSize, long idleTimeout) {
+        this.client = client;
+        this.queueLimit = queueLimit;
+        this.batchSize = Math.max(1, batchSize);
+        this.idleTimeout = idleTimeout;
+        this.senders = new Thread[Math.max(1, connections)];
+        for (int i = 0; i < senders.length; i++) {
+            Thread sender = new Thread(this::run, "mail-sender-" + i);
+            sender.setDaemon(true);
+            sender.start();
+            senders[i] = sender;
+        }
+    }
+
+    CompletableFuture<Void> offer(MimeMessage message, MailPriority priority) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (closed) {
+            failed.increment();
+            future.completeExceptionally(new IllegalStateException("Mail queue is closed."));
+            return future;
+        }
+        if (size.incrementAndGet() > queueLimit) {
+            size.decrementAndGet();
+            failed.increment();
+            future.completeExceptionally(new IllegalStateException("Mail queue is full."));
+            return future;
+        }
+        queue.add(new Mail(message, priority, sequence.getAndIncrement(), future));
+        return future;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void run() {
+        Transport transport = null;
+        List<Mail> batch = new ArrayList<>(batchSize);
+        while (!closed) {
+            try {
+                Mail mail = queue.poll(idleTimeout, TimeUnit.MILLISECONDS);
+                if (mail == null) {
+                    transport = close(transport);
+                    continue;
+                }
+                batch.add(mail);
+                queue.drainTo(batch, batchSize - 1);
+                size.addAndGet(-batch.size());
+                transport = send(transport, batch);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        close(transport);
+    }
+
+    private Transport send(Transport transport, List<Mail> batch) {
+        //connection could be closed by the server while idle, checked once per batch
+        if (transport != null && !transport.isConnected()) {
+            transport = close(transport);
+        }
+        for (Mail mail : batch) {
+            try {
+                if (transport == null) {
+                    transport = client.connect();
+                }
+                send(transport, mail);
+            } catch (SendFailedException e) {
+                //wrong recipients, connection is fine
+                fail(mail, e);
+            } catch (MessagingException e) {
+                //connection is broken, one more attempt over the new one
+                transport = close(transport);
+                try {
+                    transport = client.connect();
+                    send(transport, mail);
+                } catch (Exception retryError) {
+                    transport = close(transport);
+                    fail(mail, retryError);
+                }
+            } catch (Exception e) {
+                fail(mail, e);
+            }
+        }
+        return transport;
+    }
+
+    private void send(Transport transport, Mail mail) throws MessagingException {
+        transport.sendMessage(mail.message, mail.message.getAllRecipients());
+        sent.increment();
+        latency.add(System.currentTimeMillis() - mail.createdTs);
+        mail.future.complete(null);
+    }
+
+    private void fail(Mail mail, Exception e) {
+        failed.increment();
+        latency.add(System.currentTimeMillis() - mail.createdTs);
+        mail.future.completeExceptionally(e);
+    }
+
+    private static Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (Exception e) {
+                log.debug("Error closing smtp connection.", e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread sender : senders) {
+            sender.interrupt();
+        }
+        Mail mail;
+        while ((mail = queue.poll()) != null) {
+            size.decrementAndGet();
+            fail(mail, new IllegalStateException("Mail queue is closed."));
+        }
+    }
+
+    private static final class Mail implements Comparable<Mail> {
+        private final MimeMessage message;
+        private final MailPriority priority;
+        private final long sequence;
+        private final CompletableFuture<Void> future;
+        private final long createdTs;
+
+        private Mail(MimeMessage message, MailPriority priority, long sequence, CompletableFuture<Void> future) {
+            this.message = message;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.future = future;
+            this.createdTs = System.currentTimeMillis();
+        }
+
+        @Override
+        public int compareTo(Mail o) {
+            int result = priority.compareTo(o.priority);
+            return result != 0 ? result : Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -3,14 +3,22 @@ package cc.blynk.server.notifications.mail;
 import cc.blynk.utils.FileLoaderUtil;
 import cc.blynk.utils.properties.MailProperties;
 
+import javax.mail.internet.MimeMessage;
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
 /**
+ * Mails are not sent in the calling thread, they are put to the MailQueue.
+ * Returned future is completed when mail is sent or failed.
+ *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
  * Created on 06.04.15.
  */
-public class MailWrapper {
+public class MailWrapper implements Closeable {
 
     private final MailClient client;
+    private final MailQueue queue;
     private final String emailBody;
 
     public MailWrapper(MailProperties mailProperties, String productName) {
@@ -20,27 +28,83 @@ public class MailWrapper {
         } else {
             client = new GMailClient(mailProperties);
         }
+        this.queue = new MailQueue(client,
+                mailProperties.getConnectionsLimit(), mailProperties.getQueueLimit(),
+                mailProperties.getBatchSize(), mailProperties.getIdleTimeout());
         this.emailBody = FileLoaderUtil.readFileAsString("static/register-email.html");
     }
 
-    public void sendWelcomeEmailForNewUser(String to) throws Exception {
-        sendHtml(to, "Get started with Blynk", emailBody);
+    public CompletableFuture<Void> sendWelcomeEmailForNewUser(String to) {
+        return sendHtml(to, "Get started with Blynk", emailBody);
+    }
+
+    public CompletableFuture<Void> sendText(String to, String subj, String body) {
+        return sendText(to, subj, body, MailPriority.HIGH);
+    }
+
+    public CompletableFuture<Void> sendText(String to, String subj, String body, MailPriority priority) {
+        return send(to, subj, body, MailClient.TEXT_PLAIN_CHARSET_UTF_8, priority);
+    }
+
+    public CompletableFuture<Void> sendHtml(String to, String subj, String body) {
+        return sendHtml(to, subj, body, MailPriority.HIGH);
+    }
+
+    public CompletableFuture<Void> sendHtml(String to, String subj, String body, MailPriority priority) {
+        return send(to, subj, body, MailClient.TEXT_HTML_CHARSET_UTF_8, priority);
+    }
+
+    public CompletableFuture<Void> sendWithAttachment(String to, String subj, String body, QrHolder attachment) {
+        return sendWithAttachment(to, subj, body, new QrHolder[] {attachment});
+    }
+
+    public CompletableFuture<Void> sendWithAttachment(String to, String subj, String body, QrHolder[] attachments) {
+        MimeMessage message;
+        try {
+            message = client.createMessageWithAttachment(to, subj, body, attachments);
+        } catch (Exception e) {
+            return failed(e);
+        }
+        return queue.offer(message, MailPriority.HIGH);
+    }
+
+    private CompletableFuture<Void> send(String to, String subj, String body,
+                                         String contentType, MailPriority priority) {
+        MimeMessage message;
+        try {
+            message = client.createMessage(to, subj, body, contentType);
+        } catch (Exception e) {
+            return failed(e);
+        }
+        return queue.offer(message, priority);
+    }
+
+    private static CompletableFuture<Void> failed(Exception e) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
     }
 
-    public void sendText(String to, String subj, String body) throws Exception {
-        client.sendText(to, subj, body);
+    public long getSent(boolean reset) {
+        return reset ? queue.sent.sumThenReset() : queue.sent.sum();
     }
 
-    public void sendHtml(String to, String subj, String body) throws Exception {
-        client.sendHtml(to, subj, body);
+    public long getFailed(boolean reset) {
+        return reset ? queue.failed.sumThenReset() : queue.failed.sum();
     }
 
-    public void sendWithAttachment(String to, String subj, String body, QrHolder attachment) throws Exception {
-        client.sendHtmlWithAttachment(to, subj, body, new QrHolder[] {attachment});
+    //sum of the send latencies of the sent and failed mails, in millis
+    public long getLatency(boolean reset) {
+        return reset ? queue.latency.sumThenReset() : queue.latency.sum();
     }
 
-    public void sendWithAttachment(String to, String subj, String body, QrHolder[] attachments) throws Exception {
-        client.sendHtmlWithAttachment(to, subj, body, attachments);
+    @Override
+    public void close() {
+        queue.close();
     }
 
 }
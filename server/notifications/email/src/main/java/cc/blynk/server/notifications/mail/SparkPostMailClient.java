@@ -7,6 +7,7 @@ import org.apache.logging.log4j.Logger;
 
 import javax.activation.DataHandler;
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.Session;
 import javax.mail.Transport;
@@ -29,6 +30,7 @@ public class SparkPostMailClient implements MailClient {
     private final Session session;
     private final InternetAddress from;
     private final String host;
+    private final int port;
     private final String username;
     private final String password;
 
@@ -36,6 +38,7 @@ public class SparkPostMailClient implements MailClient {
         this.username = mailProperties.getSMTPUsername();
         this.password = mailProperties.getSMTPPassword();
         this.host = mailProperties.getSMTPHost();
+        this.port = mailProperties.getSMTPPortNumber();
 
         log.info("Initializing SparkPost smtp mail transport. Username : {}. SMTP host : {}:{}",
                 username, host, mailProperties.getSMTPort());
@@ -53,32 +56,18 @@ public class SparkPostMailClient implements MailClient {
     }
 
     @Override
-    public void sendText(String to, String subj, String body) throws Exception {
-        send(to, subj, body, TEXT_PLAIN_CHARSET_UTF_8);
-    }
-
-    @Override
-    public void sendHtml(String to, String subj, String body) throws Exception {
-        send(to, subj, body, TEXT_HTML_CHARSET_UTF_8);
-    }
-
-    private void send(String to, String subj, String body, String contentType) throws Exception {
+    public MimeMessage createMessage(String to, String subj, String body, String contentType) throws Exception {
         MimeMessage message = new MimeMessage(session);
         message.setFrom(from);
         message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
         message.setSubject(subj, "UTF-8");
         message.setContent(body, contentType);
-
-        try (Transport transport = session.getTransport()) {
-            transport.connect(host, username, password);
-            transport.sendMessage(message, message.getAllRecipients());
-        }
-
-        log.trace("Mail to {} was sent. Subj : {}, body : {}", to, subj, body);
+        return message;
     }
 
     @Override
-    public void sendHtmlWithAttachment(String to, String subj, String body, QrHolder[] attachments) throws Exception {
+    public MimeMessage createMessageWithAttachment(String to, String subj, String body,
+                                                   QrHolder[] attachments) throws Exception {
         MimeMessage message = new MimeMessage(session);
         message.setFrom(from);
         message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
@@ -98,13 +87,14 @@ public class SparkPostMailClient implements MailClient {
         }
 
         message.setContent(multipart);
+        return message;
+    }
 
-        try (Transport transport = session.getTransport()) {
-            transport.connect(host, username, password);
-            transport.sendMessage(message, message.getAllRecipients());
-        }
-
-        log.trace("Mail to {} was sent. Subj : {}, body : {}", to, subj, body);
+    @Override
+    public Transport connect() throws MessagingException {
+        Transport transport = session.getTransport();
+        transport.connect(host, port, username, password);
+        return transport;
     }
 
 }
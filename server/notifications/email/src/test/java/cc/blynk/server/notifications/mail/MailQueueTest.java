@@ -0,0 +1,219 @@
+package cc.blynk.server.notifications.mail;
+
+import cc.blynk.utils.properties.MailProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.SendFailedException;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Mail sending against local stand-in of the smtp server.
+ * Server rejects "bad@blynk.cc" recipient and records subjects of the received mails.
+ */
+public class MailQueueTest {
+
+    private final List<String> subjects = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    //data of the mails is accepted only when released, to keep sender busy
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    //server closes connection after every mail
+    private volatile boolean closeAfterMail;
+    private ServerSocket server;
+    private GMailClient client;
+    private MailQueue queue;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    Thread connection = new Thread(() -> serve(socket));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stop() throws Exception {
+        if (queue != null) {
+            queue.close();
+        }
+        server.close();
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = s.getOutputStream();
+            reply(out, "220 localhost");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 localhost");
+                } else if (command.startsWith("RCPT TO") && command.contains("BAD@")) {
+                    reply(out, "550 No such user");
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    String subject = null;
+                    while (!(line = reader.readLine()).equals(".")) {
+                        if (subject == null && line.startsWith("Subject: ")) {
+                            subject = line.substring(9);
+                        }
+                    }
+                    CountDownLatch latch = release;
+                    subjects.add(subject);
+                    latch.await();
+                    reply(out, "250 OK");
+                    if (closeAfterMail) {
+                        return;
+                    }
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "250 OK");
+                }
+            }
+        } catch (Exception e) {
+            //connection closed
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws Exception {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private MailQueue queue(int queueLimit, int batchSize) {
+        Map<String, String> props = new HashMap<>();
+        props.put("mail.smtp.host", "127.0.0.1");
+        props.put("mail.smtp.port", String.valueOf(server.getLocalPort()));
+        props.put("mail.smtp.auth", "false");
+        props.put("mail.smtp.starttls.enable", "false");
+        props.put("mail.smtp.starttls.required", "false");
+        props.put("mail.smtp.username", "test@blynk.cc");
+        client = new GMailClient(new MailProperties(props));
+        queue = new MailQueue(client, 1, queueLimit, batchSize, 60_000);
+        return queue;
+    }
+
+    private CompletableFuture<Void> send(MailQueue queue, String to, String subj, MailPriority priority)
+            throws Exception {
+        return queue.offer(client.createMessage(to, subj, "body", MailClient.TEXT_PLAIN_CHARSET_UTF_8), priority);
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timeout", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testMailsAreSentOverOneConnection() throws Exception {
+        MailQueue queue = queue(100, 5);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[12];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = send(queue, "test@blynk.cc", "Mail " + i, MailPriority.LOW);
+        }
+        CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+
+        assertEquals(12, subjects.size());
+        assertEquals("Mail 0", subjects.get(0));
+        assertEquals("Mail 11", subjects.get(11));
+        assertEquals(1, connections.get());
+        assertEquals(12, queue.sent.sum());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testHighPriorityGoesFirstAndQueueIsLimited() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        release = latch;
+        MailQueue queue = queue(2, 10);
+
+        CompletableFuture<Void> first = send(queue, "test@blynk.cc", "First", MailPriority.LOW);
+        await(() -> subjects.size() == 1);
+
+        CompletableFuture<Void> low = send(queue, "test@blynk.cc", "Low", MailPriority.LOW);
+        CompletableFuture<Void> high = send(queue, "test@blynk.cc", "High", MailPriority.HIGH);
+        CompletableFuture<Void> rejected = send(queue, "test@blynk.cc", "Rejected", MailPriority.HIGH);
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(2, queue.size());
+
+        release = new CountDownLatch(0);
+        latch.countDown();
+        CompletableFuture.allOf(first, low, high).get(5, TimeUnit.SECONDS);
+
+        assertEquals("First", subjects.get(0));
+        assertEquals("High", subjects.get(1));
+        assertEquals("Low", subjects.get(2));
+        assertEquals(3, subjects.size());
+        assertEquals(1, queue.failed.sum());
+    }
+
+    @Test
+    public void testWrongRecipientDoesNotBreakConnection() throws Exception {
+        MailQueue queue = queue(100, 5);
+        CompletableFuture<Void> bad = send(queue, "bad@blynk.cc", "Bad", MailPriority.LOW);
+        CompletableFuture<Void> good = send(queue, "test@blynk.cc", "Good", MailPriority.LOW);
+
+        good.get(5, TimeUnit.SECONDS);
+        try {
+            bad.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SendFailedException);
+        }
+        assertEquals(1, subjects.size());
+        assertEquals("Good", subjects.get(0));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void testClosedConnectionIsReopened() throws Exception {
+        closeAfterMail = true;
+        MailQueue queue = queue(100, 5);
+
+        send(queue, "test@blynk.cc", "Mail 1", MailPriority.LOW).get(5, TimeUnit.SECONDS);
+        send(queue, "test@blynk.cc", "Mail 2", MailPriority.LOW).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, subjects.size());
+        assertEquals(2, connections.get());
+    }
+
+}
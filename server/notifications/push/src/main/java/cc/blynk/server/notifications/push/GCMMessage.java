@@ -13,6 +13,11 @@ public interface GCMMessage {
 
     String toJson() throws JsonProcessingException;
 
+    /**
+     * @return json of the multicast message for the given tokens.
+     */
+    String toJson(String[] registrationIds) throws JsonProcessingException;
+
     default void setTitle(String title) {
     }
 
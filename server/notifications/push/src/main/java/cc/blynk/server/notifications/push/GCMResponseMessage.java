@@ -17,16 +17,21 @@ public class GCMResponseMessage {
     @JsonProperty("multicast_id")
     private final long multicastId;
 
+    @JsonProperty("canonical_ids")
+    final int canonicalIds;
+
     public final GCMResult[] results;
 
     @JsonCreator
     public GCMResponseMessage(@JsonProperty("success") int success,
                               @JsonProperty("failure") int failure,
                               @JsonProperty("multicast_id") long multicastId,
+                              @JsonProperty("canonical_ids") int canonicalIds,
                               @JsonProperty("results") GCMResult[] results) {
         this.success = success;
         this.failure = failure;
         this.multicastId = multicastId;
+        this.canonicalIds = canonicalIds;
         this.results = results;
     }
 }
@@ -12,8 +12,14 @@ public class GCMResult {
 
     public final String error;
 
+    //new token of the device, old one should be replaced
+    @JsonProperty("registration_id")
+    public final String registrationId;
+
     @JsonCreator
-    public GCMResult(@JsonProperty("error") String error) {
+    public GCMResult(@JsonProperty("error") String error,
+                     @JsonProperty("registration_id") String registrationId) {
         this.error = error;
+        this.registrationId = registrationId;
     }
 }
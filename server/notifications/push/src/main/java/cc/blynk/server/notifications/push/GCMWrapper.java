@@ -14,9 +14,19 @@ import org.asynchttpclient.AsyncCompletionHandler;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.Response;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Sends push notifications via GCM/FCM http api.
+ * All tokens of the message are sent within one multicast request (up to 1000 per request),
+ * identical request within the collapse window is skipped, number of running requests is limited
+ * and the rest waits in the bounded queue. Tokens reported as invalid in the response are removed.
+ *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
  * Created on 26.06.15.
@@ -25,6 +35,8 @@ public class GCMWrapper {
 
     private static final Logger log = LogManager.getLogger(GCMWrapper.class);
 
+    private static final int MAX_REGISTRATION_IDS = 1000;
+
     private final String apiKey;
     private final AsyncHttpClient httpclient;
     private final String gcmURI;
@@ -33,6 +45,16 @@ public class GCMWrapper {
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
             .readerFor(GCMResponseMessage.class);
 
+    private final int requestsInFlightLimit;
+    private final int queueLimit;
+    private final long collapseWindow;
+
+    //all below is guarded by this
+    private int requestsInFlight;
+    private final ArrayDeque<PushRequest> queue = new ArrayDeque<>();
+    //request body -> time it was sent, in the order of sending
+    private final LinkedHashMap<String, Long> recentRequests = new LinkedHashMap<>();
+
     public GCMWrapper(GCMProperties props, AsyncHttpClient httpclient, String productName) {
         this.apiKey = "key=" + props.getGCMApiKey();
         this.httpclient = httpclient;
@@ -40,63 +62,182 @@ public class GCMWrapper {
 
         String title = props.getNotificationTitle();
         this.title = title.replace(ServerProperties.PRODUCT_NAME, productName);
-    }
 
-    private static void processError(String errorMessage, Map<String, String> tokens, String uid) {
-        log.error("Error sending push. Reason {}", errorMessage);
-        clean(errorMessage, tokens, uid);
+        //with no requests in flight allowed nothing would be ever sent
+        this.requestsInFlightLimit = Math.max(1, props.getRequestsInFlightLimit());
+        this.queueLimit = props.getQueueLimit();
+        this.collapseWindow = props.getCollapseWindow();
     }
 
-    private static void clean(String errorMessage, Map<String, String> tokens, String uid) {
-        if (errorMessage != null && errorMessage.contains("NotRegistered")) {
-            log.error("Removing invalid token. UID {}", uid);
-            tokens.remove(uid);
-        }
+    private static boolean isInvalidToken(String error) {
+        return "NotRegistered".equals(error) || "InvalidRegistration".equals(error);
     }
 
-    public void send(GCMMessage messageBase, final Map<String, String> tokens, final String uid) {
+    /**
+     * Sends message to all tokens.
+     *
+     * @param tokens - uid -> token map of the notification widget, invalid tokens are removed from it.
+     */
+    public void send(GCMMessage message, Map<String, String> tokens) {
         if (gcmURI == null) {
             log.error("Error sending push. Google cloud messaging properties not provided.");
             return;
         }
 
-        String message;
-        try {
-            messageBase.setTitle(title);
-            message = messageBase.toJson();
-        } catch (JsonProcessingException e) {
-            log.error("Error sending push. Wrong message format.");
-            return;
+        message.setTitle(title);
+        Iterator<Map.Entry<String, String>> iterator = tokens.entrySet().iterator();
+        while (iterator.hasNext()) {
+            String[] uids = new String[MAX_REGISTRATION_IDS];
+            String[] registrationIds = new String[MAX_REGISTRATION_IDS];
+            int size = 0;
+            while (size < MAX_REGISTRATION_IDS && iterator.hasNext()) {
+                Map.Entry<String, String> entry = iterator.next();
+                uids[size] = entry.getKey();
+                registrationIds[size] = entry.getValue();
+                size++;
+            }
+            if (size < MAX_REGISTRATION_IDS) {
+                uids = Arrays.copyOf(uids, size);
+                registrationIds = Arrays.copyOf(registrationIds, size);
+            }
+
+            try {
+                submit(new PushRequest(message.toJson(registrationIds), tokens, uids, registrationIds));
+            } catch (JsonProcessingException e) {
+                log.error("Error sending push. Wrong message format.");
+                return;
+            }
+        }
+    }
+
+    private void submit(PushRequest request) {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            removeOutdated(now);
+            if (recentRequests.putIfAbsent(request.body, now) != null) {
+                log.debug("Same push was sent within {} ms. Skipping.", collapseWindow);
+                return;
+            }
+            if (requestsInFlight >= requestsInFlightLimit) {
+                if (queue.size() < queueLimit) {
+                    queue.add(request);
+                } else {
+                    log.error("Error sending push. Push queue is full.");
+                }
+                return;
+            }
+            requestsInFlight++;
+        }
+        execute(request);
+    }
+
+    private void removeOutdated(long now) {
+        Iterator<Long> iterator = recentRequests.values().iterator();
+        while (iterator.hasNext() && now - iterator.next() >= collapseWindow) {
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return next request to send instead of the completed one.
+     */
+    private PushRequest completed() {
+        synchronized (this) {
+            PushRequest next = queue.poll();
+            if (next == null) {
+                requestsInFlight--;
+            }
+            return next;
+        }
+    }
+
+    private void execute(PushRequest request) {
+        while (request != null) {
+            if (send(request)) {
+                return;
+            }
+            request = completed();
         }
+    }
 
-        httpclient.preparePost(gcmURI).setHeader("Authorization", apiKey)
-                .setHeader(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=utf-8")
-                .setBody(message)
-                .execute(new AsyncCompletionHandler<Response>() {
-                    @Override
-                    public Response onCompleted(Response response) throws Exception {
-                        if (response.getStatusCode() == HttpResponseStatus.OK.code()) {
-                            GCMResponseMessage gcmResponseMessage =
-                                    gcmResponseReader.readValue(response.getResponseBody());
-                            if (gcmResponseMessage.failure == 1) {
-                                String errorMessage =
-                                        gcmResponseMessage.results != null && gcmResponseMessage.results.length > 0
-                                                ? gcmResponseMessage.results[0].error
-                                                : messageBase.getToken();
-                                processError(errorMessage, tokens, uid);
+    /**
+     * @return false if request is already completed, so the next one should be sent by the caller.
+     */
+    private boolean send(PushRequest request) {
+        //null executor - listener is called in the thread that completes the request,
+        //or right within addListener when request is already completed. In the last case
+        //the next request is sent by the execute() loop, so the stack doesn't grow with the queue.
+        //Whoever comes second - the listener or this thread - sends the next request.
+        AtomicBoolean handOff = new AtomicBoolean();
+        try {
+            httpclient.preparePost(gcmURI).setHeader("Authorization", apiKey)
+                    .setHeader(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=utf-8")
+                    .setBody(request.body)
+                    .execute(new AsyncCompletionHandler<Response>() {
+                        @Override
+                        public Response onCompleted(Response response) throws Exception {
+                            if (response.getStatusCode() == HttpResponseStatus.OK.code()) {
+                                GCMResponseMessage gcmResponseMessage =
+                                        gcmResponseReader.readValue(response.getResponseBody());
+                                if (gcmResponseMessage.failure > 0 || gcmResponseMessage.canonicalIds > 0) {
+                                    processResults(request, gcmResponseMessage.results);
+                                }
+                            } else {
+                                log.error("Error sending push. Code {}.", response.getStatusCode());
                             }
                             return response;
                         }
 
-                        return response;
-                    }
+                        @Override
+                        public void onThrowable(Throwable t) {
+                            log.error("Error sending push. Reason {}", t.getMessage());
+                        }
+                    })
+                    .addListener(() -> {
+                        if (!handOff.compareAndSet(false, true)) {
+                            execute(completed());
+                        }
+                    }, null);
+            return handOff.compareAndSet(false, true);
+        } catch (Exception e) {
+            log.error("Error sending push. Reason {}", e.getMessage());
+            return false;
+        }
+    }
 
-                    @Override
-                    public void onThrowable(Throwable t) {
-                        processError(t.getMessage(), tokens, uid);
-                    }
-                });
+    //results are in the order of registration ids of the request
+    private static void processResults(PushRequest request, GCMResult[] results) {
+        if (results == null) {
+            return;
+        }
+        for (int i = 0; i < results.length && i < request.uids.length; i++) {
+            GCMResult result = results[i];
+            String uid = request.uids[i];
+            String token = request.registrationIds[i];
+            if (result.error != null) {
+                log.error("Error sending push. Reason {}", result.error);
+                if (isInvalidToken(result.error)) {
+                    log.error("Removing invalid token. UID {}", uid);
+                    request.tokens.remove(uid, token);
+                }
+            } else if (result.registrationId != null) {
+                request.tokens.replace(uid, token, result.registrationId);
+            }
+        }
+    }
 
+    private static final class PushRequest {
+        private final String body;
+        private final Map<String, String> tokens;
+        private final String[] uids;
+        private final String[] registrationIds;
+
+        private PushRequest(String body, Map<String, String> tokens, String[] uids, String[] registrationIds) {
+            this.body = body;
+            this.tokens = tokens;
+            this.uids = uids;
+            this.registrationIds = registrationIds;
+        }
     }
 
 }
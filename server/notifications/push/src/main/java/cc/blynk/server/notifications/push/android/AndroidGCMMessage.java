@@ -3,6 +3,8 @@ package cc.blynk.server.notifications.push.android;
 import cc.blynk.server.notifications.push.GCMMessage;
 import cc.blynk.server.notifications.push.enums.Priority;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,11 +20,19 @@ public class AndroidGCMMessage implements GCMMessage {
     private static final ObjectWriter WRITER = new ObjectMapper()
             .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
             .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
             .writerFor(AndroidGCMMessage.class);
     private final String to;
+    @JsonProperty("registration_ids")
+    private String[] registrationIds;
     private final Priority priority;
     private final AndroidBody data;
 
+    //multicast message, tokens are provided during serialization
+    public AndroidGCMMessage(Priority priority, String message, int dashId) {
+        this(null, priority, message, dashId);
+    }
+
     public AndroidGCMMessage(String to, Priority priority, String message, int dashId) {
         this.to = to;
         this.priority = priority;
@@ -39,4 +49,10 @@ public class AndroidGCMMessage implements GCMMessage {
         return WRITER.writeValueAsString(this);
     }
 
+    @Override
+    public String toJson(String[] registrationIds) throws JsonProcessingException {
+        this.registrationIds = registrationIds;
+        return WRITER.writeValueAsString(this);
+    }
+
 }
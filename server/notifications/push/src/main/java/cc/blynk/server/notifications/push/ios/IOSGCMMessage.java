@@ -3,6 +3,8 @@ package cc.blynk.server.notifications.push.ios;
 import cc.blynk.server.notifications.push.GCMMessage;
 import cc.blynk.server.notifications.push.enums.Priority;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,11 +20,19 @@ public class IOSGCMMessage implements GCMMessage {
     private static final ObjectWriter WRITER = new ObjectMapper()
             .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
             .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
             .writerFor(IOSGCMMessage.class);
     private final String to;
+    @JsonProperty("registration_ids")
+    private String[] registrationIds;
     private final Priority priority;
     private final IOSBody notification;
 
+    //multicast message, tokens are provided during serialization
+    public IOSGCMMessage(Priority priority, String message, int dashId) {
+        this(null, priority, message, dashId);
+    }
+
     public IOSGCMMessage(String to, Priority priority, String message, int dashId) {
         this.to = to;
         this.priority = priority;
@@ -43,4 +53,11 @@ public class IOSGCMMessage implements GCMMessage {
     public String toJson() throws JsonProcessingException {
         return WRITER.writeValueAsString(this);
     }
+
+    @Override
+    public String toJson(String[] registrationIds) throws JsonProcessingException {
+        this.registrationIds = registrationIds;
+        return WRITER.writeValueAsString(this);
+    }
+
 }
@@ -16,4 +16,9 @@ module cc.blynk.server.notifications.push {
     exports cc.blynk.server.notifications.push.android;
     exports cc.blynk.server.notifications.push.enums;
     exports cc.blynk.server.notifications.push.ios;
+
+    //push messages and gcm responses are (de)serialized via private fields
+    opens cc.blynk.server.notifications.push to com.fasterxml.jackson.databind;
+    opens cc.blynk.server.notifications.push.android to com.fasterxml.jackson.databind;
+    opens cc.blynk.server.notifications.push.ios to com.fasterxml.jackson.databind;
 }
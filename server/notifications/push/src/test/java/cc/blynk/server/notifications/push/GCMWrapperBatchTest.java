@@ -0,0 +1,219 @@
+package cc.blynk.server.notifications.push;
+
+import cc.blynk.server.notifications.push.android.AndroidGCMMessage;
+import cc.blynk.server.notifications.push.enums.Priority;
+import cc.blynk.server.notifications.push.ios.IOSGCMMessage;
+import cc.blynk.utils.AppNameUtil;
+import cc.blynk.utils.properties.GCMProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Push sending against local stand-in of the GCM server.
+ * Server answers with "NotRegistered" for the "bad" token and with new token for the "old" one.
+ */
+public class GCMWrapperBatchTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AsyncHttpClient client = new DefaultAsyncHttpClient();
+    private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+    //responses are held until released, to keep requests in flight
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private ServerSocket server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread connection = new Thread(() -> serve(socket));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    //minimal keep-alive http/1.1 server, enough for the POST requests with content-length
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = s.getOutputStream();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int contentLength = 0;
+                while (!(line = reader.readLine()).isEmpty()) {
+                    if (line.toLowerCase().startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                //only ascii bodies are sent in tests, so chars == bytes
+                char[] body = new char[contentLength];
+                int read = 0;
+                while (read < contentLength) {
+                    read += reader.read(body, read, contentLength - read);
+                }
+                JsonNode request = MAPPER.readTree(new String(body));
+                CountDownLatch latch = release;
+                requests.add(request);
+                latch.await();
+                byte[] response = answer(request);
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+                        + "Content-Length: " + response.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(response);
+                out.flush();
+            }
+        } catch (Exception e) {
+            //connection closed
+        }
+    }
+
+    private static byte[] answer(JsonNode request) throws Exception {
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode results = response.putArray("results");
+        int failure = 0;
+        int canonicalIds = 0;
+        for (JsonNode token : request.get("registration_ids")) {
+            ObjectNode result = results.addObject();
+            if (token.asText().equals("bad")) {
+                result.put("error", "NotRegistered");
+                failure++;
+            } else if (token.asText().equals("old")) {
+                result.put("message_id", "1").put("registration_id", "new");
+                canonicalIds++;
+            } else {
+                result.put("message_id", "1");
+            }
+        }
+        response.put("success", results.size() - failure).put("failure", failure)
+                .put("canonical_ids", canonicalIds);
+        return MAPPER.writeValueAsBytes(response);
+    }
+
+    private GCMWrapper gcmWrapper(int inFlightLimit, long collapseWindow) {
+        int port = server.getLocalPort();
+        Map<String, String> props = new HashMap<>();
+        props.put("gcm.server", "http://127.0.0.1:" + port + "/fcm/send");
+        props.put("gcm.requests.in.flight.limit", String.valueOf(inFlightLimit));
+        props.put("gcm.collapse.window", String.valueOf(collapseWindow));
+        return new GCMWrapper(new GCMProperties(props), client, AppNameUtil.BLYNK);
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timeout", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testAllTokensInOneRequestAndInvalidAreRemoved() throws Exception {
+        GCMWrapper gcmWrapper = gcmWrapper(10, 1000);
+        ConcurrentHashMap<String, String> tokens = new ConcurrentHashMap<>();
+        tokens.put("uid1", "good");
+        tokens.put("uid2", "bad");
+        tokens.put("uid3", "old");
+
+        gcmWrapper.send(new AndroidGCMMessage(Priority.high, "yo!!!", 1), tokens);
+
+        await(() -> tokens.size() == 2 && "new".equals(tokens.get("uid3")));
+        assertEquals(1, requests.size());
+        JsonNode request = requests.get(0);
+        assertEquals(3, request.get("registration_ids").size());
+        assertEquals("high", request.get("priority").asText());
+        assertEquals("yo!!!", request.get("data").get("message").asText());
+        assertEquals("good", tokens.get("uid1"));
+    }
+
+    @Test
+    public void testSamePushIsCollapsed() throws Exception {
+        GCMWrapper gcmWrapper = gcmWrapper(10, 60_000);
+        Map<String, String> tokens = new ConcurrentHashMap<>();
+        tokens.put("uid1", "good");
+
+        gcmWrapper.send(new IOSGCMMessage(Priority.normal, "yo!!!", 1), tokens);
+        gcmWrapper.send(new IOSGCMMessage(Priority.normal, "yo!!!", 1), tokens);
+        gcmWrapper.send(new IOSGCMMessage(Priority.normal, "yo 2", 1), tokens);
+
+        await(() -> requests.size() == 2);
+        Thread.sleep(100);
+        assertEquals(2, requests.size());
+        assertEquals("yo 2", requests.get(1).get("notification").get("body").asText());
+        assertEquals("Blynk Notification", requests.get(1).get("notification").get("title").asText());
+    }
+
+    @Test
+    public void testRequestsInFlightAreLimited() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        release = latch;
+        GCMWrapper gcmWrapper = gcmWrapper(1, 0);
+        Map<String, String> tokens = new ConcurrentHashMap<>();
+        tokens.put("uid1", "good");
+
+        for (int i = 0; i < 3; i++) {
+            gcmWrapper.send(new AndroidGCMMessage(Priority.normal, "push " + i, 1), tokens);
+        }
+
+        await(() -> requests.size() == 1);
+        Thread.sleep(100);
+        assertEquals(1, requests.size());
+
+        release = new CountDownLatch(0);
+        latch.countDown();
+        await(() -> requests.size() == 3);
+        assertEquals("push 2", requests.get(2).get("data").get("message").asText());
+    }
+
+    @Test
+    public void testNoRequestsInFlightLimitStillSends() throws Exception {
+        GCMWrapper gcmWrapper = gcmWrapper(0, 0);
+        Map<String, String> tokens = new ConcurrentHashMap<>();
+        tokens.put("uid1", "good");
+
+        gcmWrapper.send(new AndroidGCMMessage(Priority.normal, "push 1", 1), tokens);
+        gcmWrapper.send(new AndroidGCMMessage(Priority.normal, "push 2", 1), tokens);
+
+        await(() -> requests.size() == 2);
+    }
+
+}
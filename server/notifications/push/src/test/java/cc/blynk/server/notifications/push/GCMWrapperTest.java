@@ -16,6 +16,9 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.HashMap;
+
+import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
 
@@ -41,7 +44,7 @@ public class GCMWrapperTest {
     @Ignore
     public void testIOS() throws Exception {
         GCMWrapper gcmWrapper = new GCMWrapper(props, client, AppNameUtil.BLYNK);
-        gcmWrapper.send(new IOSGCMMessage("to", Priority.normal, "yo!!!", 1), null, null);
+        gcmWrapper.send(new IOSGCMMessage(Priority.normal, "yo!!!", 1), new HashMap<>(singletonMap("uid", "to")));
     }
 
     @Test
@@ -50,7 +53,7 @@ public class GCMWrapperTest {
         when(props.getProperty("gcm.api.key")).thenReturn("");
         when(props.getProperty("gcm.server")).thenReturn("");
         GCMWrapper gcmWrapper = new GCMWrapper(props, client, AppNameUtil.BLYNK);
-        gcmWrapper.send(new AndroidGCMMessage("", Priority.normal, "yo!!!", 1), null, null);
+        gcmWrapper.send(new AndroidGCMMessage(Priority.normal, "yo!!!", 1), new HashMap<>(singletonMap("uid", "")));
         Thread.sleep(5000);
     }
 
@@ -64,6 +64,7 @@ import static cc.blynk.server.core.protocol.enums.Command.ACTIVATE_DASHBOARD;
 import static cc.blynk.server.core.protocol.enums.Command.ADD_ENERGY;
 import static cc.blynk.server.core.protocol.enums.Command.ADD_PUSH_TOKEN;
 import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC;
+import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC_BULK;
 import static cc.blynk.server.core.protocol.enums.Command.ASSIGN_TOKEN;
 import static cc.blynk.server.core.protocol.enums.Command.CREATE_APP;
 import static cc.blynk.server.core.protocol.enums.Command.CREATE_DASH;
@@ -87,6 +88,7 @@ import static cc.blynk.server.core.protocol.enums.Command.GET_DEVICES;
 import static cc.blynk.server.core.protocol.enums.Command.GET_ENERGY;
 import static cc.blynk.server.core.protocol.enums.Command.GET_ENHANCED_GRAPH_DATA;
 import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA;
+import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA_STREAM;
 import static cc.blynk.server.core.protocol.enums.Command.GET_PROJECT_BY_CLONE_CODE;
 import static cc.blynk.server.core.protocol.enums.Command.GET_PROJECT_BY_TOKEN;
 import static cc.blynk.server.core.protocol.enums.Command.GET_PROVISION_TOKEN;
@@ -191,7 +193,7 @@ public class AppHandler extends BaseSimpleChannelInboundHandler<StringMessage> {
         this.updateDashSettingLogic = new UpdateDashSettingLogic(holder.limits.widgetSizeLimitBytes);
 
         this.createDeviceLogic = new CreateDeviceLogic(holder);
-        this.deleteDeviceLogic = new DeleteDeviceLogic(holder.tokenManager, holder.sessionDao);
+        this.deleteDeviceLogic = new DeleteDeviceLogic(holder.tokenManager, holder.sessionDao, holder.reportingDao);
 
         this.shareLogic = new ShareLogic(holder.sessionDao);
         this.redeemLogic = new RedeemLogic(holder.dbManager, holder.blockingIOProcessor);
@@ -251,6 +253,7 @@ public class AppHandler extends BaseSimpleChannelInboundHandler<StringMessage> {
                 break;
 
             case GET_GRAPH_DATA :
+            case GET_GRAPH_DATA_STREAM :
                 graphData.messageReceived(ctx, state.user, msg);
                 break;
             case GET_ENHANCED_GRAPH_DATA :
@@ -352,6 +355,7 @@ public class AppHandler extends BaseSimpleChannelInboundHandler<StringMessage> {
                 break;
 
             case APP_SYNC :
+            case APP_SYNC_BULK :
                 AppSyncLogic.messageReceived(ctx, state, msg);
                 break;
 
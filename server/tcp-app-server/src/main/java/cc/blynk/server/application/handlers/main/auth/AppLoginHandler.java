@@ -3,6 +3,7 @@ package cc.blynk.server.application.handlers.main.auth;
 import cc.blynk.server.Holder;
 import cc.blynk.server.application.handlers.main.AppHandler;
 import cc.blynk.server.application.handlers.sharing.auth.AppShareLoginHandler;
+import cc.blynk.server.core.dao.UserKey;
 import cc.blynk.server.core.model.DashBoard;
 import cc.blynk.server.core.model.auth.FacebookTokenResponse;
 import cc.blynk.server.core.model.auth.Session;
@@ -147,6 +148,16 @@ public class AppLoginHandler extends SimpleChannelInboundHandler<LoginMessage>
 
     private void blynkLogin(ChannelHandlerContext ctx, int msgId, String email, String pass,
                             Version version, String appName) {
+        //profile of the idle user is read from disk outside of the event loop
+        if (holder.userDao.loadColdUser(new UserKey(email, appName), holder.blockingIOProcessor::execute,
+                ctx.channel().eventLoop(), () -> checkCredentials(ctx, msgId, email, pass, version, appName))) {
+            return;
+        }
+        checkCredentials(ctx, msgId, email, pass, version, appName);
+    }
+
+    private void checkCredentials(ChannelHandlerContext ctx, int msgId, String email, String pass,
+                                  Version version, String appName) {
         User user = holder.userDao.getByName(email, appName);
 
         if (user == null) {
@@ -1,7 +1,6 @@
 package cc.blynk.server.application.handlers.main.auth;
 
 import cc.blynk.server.Holder;
-import cc.blynk.server.core.BlockingIOProcessor;
 import cc.blynk.server.core.dao.TokenManager;
 import cc.blynk.server.core.dao.UserDao;
 import cc.blynk.server.core.dao.UserKey;
@@ -54,7 +53,6 @@ public class RegisterHandler extends SimpleChannelInboundHandler<RegisterMessage
     private final TokenManager tokenManager;
     private final TimerWorker timerWorker;
     private final MailWrapper mailWrapper;
-    private final BlockingIOProcessor blockingIOProcessor;
     private final LimitChecker registrationLimitChecker;
     private final Set<String> allowedUsers;
 
@@ -63,7 +61,6 @@ public class RegisterHandler extends SimpleChannelInboundHandler<RegisterMessage
         this.tokenManager = holder.tokenManager;
         this.timerWorker = holder.timerWorker;
         this.mailWrapper = holder.mailWrapper;
-        this.blockingIOProcessor = holder.blockingIOProcessor;
         this.registrationLimitChecker = new LimitChecker(holder.limits.hourlyRegistrationsLimit, 3_600_000L);
 
         String[] allowedUsersArray = holder.props.getCommaSeparatedValueAsArray("allowed.users.list");
@@ -122,10 +119,8 @@ public class RegisterHandler extends SimpleChannelInboundHandler<RegisterMessage
 
         //sending greeting email only for Blynk apps
         if (AppNameUtil.BLYNK.equals(appName)) {
-            blockingIOProcessor.execute(() -> {
-                try {
-                    mailWrapper.sendWelcomeEmailForNewUser(email);
-                } catch (Exception e) {
+            mailWrapper.sendWelcomeEmailForNewUser(email).whenComplete((ignored, e) -> {
+                if (e != null) {
                     log.warn("Error sending greeting email for {}.", email);
                 }
             });
@@ -192,6 +187,7 @@ public class RegisterHandler extends SimpleChannelInboundHandler<RegisterMessage
                 tokenManager.assignToken(newUser, clonedDash, device, token);
             }
         }
+        newUser.markDirty();
     }
 
 }
@@ -46,7 +46,7 @@ public class ActivateDashboardLogic {
         log.debug("Activating dash {} for user {}", dashBoardIdString, user.email);
         DashBoard dash = user.profile.getDashByIdOrThrow(dashId);
         dash.activate();
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         Session session = sessionDao.userSession.get(state.userKey);
 
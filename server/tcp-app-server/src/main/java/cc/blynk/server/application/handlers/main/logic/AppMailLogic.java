@@ -1,7 +1,6 @@
 package cc.blynk.server.application.handlers.main.logic;
 
 import cc.blynk.server.Holder;
-import cc.blynk.server.core.BlockingIOProcessor;
 import cc.blynk.server.core.model.DashBoard;
 import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.device.Device;
@@ -15,6 +14,8 @@ import io.netty.channel.ChannelHandlerContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.concurrent.CompletableFuture;
+
 import static cc.blynk.server.internal.CommonByteBufUtil.illegalCommandBody;
 import static cc.blynk.server.internal.CommonByteBufUtil.notificationError;
 import static cc.blynk.server.internal.CommonByteBufUtil.ok;
@@ -32,12 +33,10 @@ public class AppMailLogic {
     private static final Logger log = LogManager.getLogger(AppMailLogic.class);
     private final String tokenMailBody;
 
-    private final BlockingIOProcessor blockingIOProcessor;
     private final MailWrapper mailWrapper;
     private final String templateIdMailBody;
 
     public AppMailLogic(Holder holder) {
-        this.blockingIOProcessor = holder.blockingIOProcessor;
         this.tokenMailBody = holder.textHolder.tokenBody;
         this.mailWrapper = holder.mailWrapper;
         this.templateIdMailBody = holder.textHolder.templateIdMailBody;
@@ -129,15 +128,13 @@ public class AppMailLogic {
     }
 
     private void mail(Channel channel, String to, String subj, String body, int msgId, boolean isHtml) {
-        blockingIOProcessor.execute(() -> {
-            try {
-                if (isHtml) {
-                    mailWrapper.sendHtml(to, subj, body);
-                } else {
-                    mailWrapper.sendText(to, subj, body);
-                }
+        CompletableFuture<Void> future = isHtml
+                ? mailWrapper.sendHtml(to, subj, body)
+                : mailWrapper.sendText(to, subj, body);
+        future.whenComplete((ignored, e) -> {
+            if (e == null) {
                 channel.writeAndFlush(ok(msgId), channel.voidPromise());
-            } catch (Exception e) {
+            } else {
                 log.error("Error sending email auth token to user : {}. Error: {}", to, e.getMessage());
                 if (channel.isActive() && channel.isWritable()) {
                     channel.writeAndFlush(notificationError(msgId), channel.voidPromise());
@@ -67,6 +67,7 @@ public final class AppSetWidgetPropertyLogic {
         try {
             widget.setProperty(widgetProperty, propertyValue);
             dash.updatedAt = System.currentTimeMillis();
+            user.markDirty();
         } catch (Exception e) {
             log.debug("Error setting widget property. Reason : {}", e.getMessage());
             ctx.writeAndFlush(illegalCommandBody(message.id), ctx.voidPromise());
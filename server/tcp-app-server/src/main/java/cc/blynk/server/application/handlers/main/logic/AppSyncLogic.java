@@ -4,14 +4,17 @@ import cc.blynk.server.application.handlers.main.auth.AppStateHolder;
 import cc.blynk.server.core.model.DashBoard;
 import cc.blynk.server.core.model.widgets.AppSyncWidget;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
+import cc.blynk.server.internal.BulkSyncCollector;
 import io.netty.channel.ChannelHandlerContext;
 
+import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC_BULK;
 import static cc.blynk.server.internal.CommonByteBufUtil.ok;
 import static cc.blynk.utils.StringUtils.split2Device;
 
 /**
  * Request state sync info for widgets.
- * Supports sync for all widgets and sync for specific target
+ * Supports sync for all widgets and sync for specific target.
+ * For the APP_SYNC_BULK all sync messages are sent within one message, instead of the OK response.
  *
  * The Blynk Project.
  * Created by Dmitriy Dumanskiy.
@@ -34,8 +37,15 @@ public final class AppSyncLogic {
             targetId = Integer.parseInt(dashIdAndTargetIdString[1]);
         }
 
-        ctx.write(ok(message.id), ctx.voidPromise());
-        dash.sendSyncs(ctx.channel(), targetId);
+        if (message.command == APP_SYNC_BULK) {
+            try (BulkSyncCollector collector = new BulkSyncCollector()) {
+                dash.sendSyncs(collector.channel(), targetId);
+                collector.writeTo(ctx, APP_SYNC_BULK, message.id, Integer.MAX_VALUE);
+            }
+        } else {
+            ctx.write(ok(message.id), ctx.voidPromise());
+            dash.sendSyncs(ctx.channel(), targetId);
+        }
         ctx.flush();
     }
 
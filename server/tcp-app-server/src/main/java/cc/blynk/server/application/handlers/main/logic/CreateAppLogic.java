@@ -66,7 +66,7 @@ public class CreateAppLogic {
         }
 
         user.profile.apps = ArrayUtil.add(user.profile.apps, newApp, App.class);
-        user.lastModifiedTs = System.currentTimeMillis();
+        user.updateLastModifiedTs(System.currentTimeMillis());
 
         ctx.writeAndFlush(makeUTF8StringMessage(CREATE_APP, message.id, JsonParser.toJson(newApp)), ctx.voidPromise());
     }
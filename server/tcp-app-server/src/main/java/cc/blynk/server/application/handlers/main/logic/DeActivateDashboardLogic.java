@@ -45,7 +45,7 @@ public class DeActivateDashboardLogic {
             }
             sharedToken = SharedTokenManager.ALL;
         }
-        user.lastModifiedTs = System.currentTimeMillis();
+        user.updateLastModifiedTs(System.currentTimeMillis());
 
         Session session = sessionDao.userSession.get(state.userKey);
         session.sendToSharedApps(ctx.channel(), sharedToken, message.command, message.id, message.body);
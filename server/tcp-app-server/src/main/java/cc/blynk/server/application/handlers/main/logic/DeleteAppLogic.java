@@ -2,6 +2,7 @@ package cc.blynk.server.application.handlers.main.logic;
 
 import cc.blynk.server.Holder;
 import cc.blynk.server.application.handlers.main.auth.AppStateHolder;
+import cc.blynk.server.core.dao.ReportingDao;
 import cc.blynk.server.core.dao.SessionDao;
 import cc.blynk.server.core.dao.TokenManager;
 import cc.blynk.server.core.model.DashBoard;
@@ -28,11 +29,13 @@ public final class DeleteAppLogic {
     private final TokenManager tokenManager;
     private final TimerWorker timerWorker;
     private final SessionDao sessionDao;
+    private final ReportingDao reportingDao;
 
     public DeleteAppLogic(Holder holder) {
         this.tokenManager = holder.tokenManager;
         this.timerWorker = holder.timerWorker;
         this.sessionDao = holder.sessionDao;
+        this.reportingDao = holder.reportingDao;
     }
 
     public void messageReceived(ChannelHandlerContext ctx, AppStateHolder state, StringMessage message) {
@@ -54,6 +57,7 @@ public final class DeleteAppLogic {
                 timerWorker.deleteTimers(state.userKey, dash);
                 tokenManager.deleteDash(dash);
                 sessionDao.closeHardwareChannelByDashId(state.userKey, dash.id);
+                reportingDao.deleteSeries(user, dash.id);
             } else {
                 result.add(dash);
             }
@@ -61,7 +65,7 @@ public final class DeleteAppLogic {
 
         user.profile.dashBoards = result.toArray(new DashBoard[result.size()]);
         user.profile.apps = ArrayUtil.remove(user.profile.apps, existingAppIndex, App.class);
-        user.lastModifiedTs = System.currentTimeMillis();
+        user.updateLastModifiedTs(System.currentTimeMillis());
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
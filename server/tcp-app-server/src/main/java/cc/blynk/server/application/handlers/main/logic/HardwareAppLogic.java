@@ -44,11 +44,10 @@ public class HardwareAppLogic extends BaseProcessorHandler {
     private final SessionDao sessionDao;
 
     public HardwareAppLogic(Holder holder, String email) {
-        super(holder.eventorProcessor, new WebhookProcessor(holder.asyncHttpClient,
+        super(holder.eventorProcessor, new WebhookProcessor(holder.webhookDispatcher,
                 holder.limits.webhookPeriodLimitation,
                 holder.limits.webhookResponseSizeLimitBytes,
                 holder.limits.webhookFailureLimit,
-                holder.stats,
                 email));
         this.sessionDao = holder.sessionDao;
     }
@@ -121,6 +120,7 @@ public class HardwareAppLogic extends BaseProcessorHandler {
                 if (target.isTag()) {
                     dash.update(targetId, pin, pinType, value, now);
                 }
+                state.user.markDirty();
 
                 //sending to shared dashes and master-master apps
                 session.sendToSharedApps(ctx.channel(), dash.sharedToken, APP_SYNC, message.id, message.body);
@@ -32,11 +32,10 @@ public class HardwareResendFromBTLogic extends BaseProcessorHandler {
     private final SessionDao sessionDao;
 
     public HardwareResendFromBTLogic(Holder holder, String email) {
-        super(holder.eventorProcessor, new WebhookProcessor(holder.asyncHttpClient,
+        super(holder.eventorProcessor, new WebhookProcessor(holder.webhookDispatcher,
                 holder.limits.webhookPeriodLimitation,
                 holder.limits.webhookResponseSizeLimitBytes,
                 holder.limits.webhookFailureLimit,
-                holder.stats,
                 email));
         this.sessionDao = holder.sessionDao;
         this.reportingDao = holder.reportingDao;
@@ -79,6 +78,7 @@ public class HardwareResendFromBTLogic extends BaseProcessorHandler {
 
             reportingDao.process(state.user, dash, deviceId, pin, pinType, value, now);
             dash.update(deviceId, pin, pinType, value, now);
+            state.user.markDirty();
 
             Session session = sessionDao.userSession.get(state.userKey);
             processEventorAndWebhook(state.user, dash, deviceId, session, pin, pinType, value, now);
@@ -95,8 +95,8 @@ public class MailQRsLogic {
                     String finalBody = textHolder.dynamicMailBody
                             .replace("{project_name}", dash.name);
 
-                    mailWrapper.sendWithAttachment(to, subj, finalBody, qrHolder);
-                    channel.writeAndFlush(ok(msgId), channel.voidPromise());
+                    mailWrapper.sendWithAttachment(to, subj, finalBody, qrHolder)
+                            .whenComplete((ignored, e) -> mailSent(channel, to, msgId, e));
                 } catch (Exception e) {
                     log.error("Error sending dynamic email from application. For user {}. Error: ", to, e);
                     channel.writeAndFlush(notificationError(msgId), channel.voidPromise());
@@ -115,8 +115,8 @@ public class MailQRsLogic {
                             .replace("{project_name}", dash.name)
                             .replace("{device_section}", sb.toString());
 
-                    mailWrapper.sendWithAttachment(to, subj, finalBody, qrHolders);
-                    channel.writeAndFlush(ok(msgId), channel.voidPromise());
+                    mailWrapper.sendWithAttachment(to, subj, finalBody, qrHolders)
+                            .whenComplete((ignored, e) -> mailSent(channel, to, msgId, e));
                 } catch (Exception e) {
                     log.error("Error sending static email from application. For user {}. Reason: {}", to, e);
                     channel.writeAndFlush(notificationError(msgId), channel.voidPromise());
@@ -125,6 +125,14 @@ public class MailQRsLogic {
         }
     }
 
+    private static void mailSent(Channel channel, String to, int msgId, Throwable e) {
+        if (e == null) {
+            channel.writeAndFlush(ok(msgId), channel.voidPromise());
+        } else {
+            log.error("Error sending email from application. For user {}. Reason: {}", to, e.getMessage());
+            channel.writeAndFlush(notificationError(msgId), channel.voidPromise());
+        }
+    }
 
     private QrHolder[] makeQRs(String username, String appId, DashBoard dash) throws Exception {
         int tokensCount = dash.devices.length;
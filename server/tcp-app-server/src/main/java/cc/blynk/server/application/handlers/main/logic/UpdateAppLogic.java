@@ -57,7 +57,7 @@ public class UpdateAppLogic {
 
         existingApp.update(newApp);
 
-        user.lastModifiedTs = System.currentTimeMillis();
+        user.updateLastModifiedTs(System.currentTimeMillis());
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
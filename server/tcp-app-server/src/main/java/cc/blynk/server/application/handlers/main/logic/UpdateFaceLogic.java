@@ -59,6 +59,8 @@ public class UpdateFaceLogic {
         boolean hasFaces = false;
         int count = 0;
         log.info("Updating face {} for user {}.", parentDashId, user.email);
+        //faces of the evicted users have to be updated as well
+        userDao.loadColdUsers(userKey -> appIds.contains(userKey.appName));
         for (User existingUser : userDao.users.values()) {
             for (DashBoard existingDash : existingUser.profile.dashBoards) {
                 if (existingDash.parentId == parentDashId && (existingUser == user
@@ -67,6 +69,7 @@ public class UpdateFaceLogic {
                     //we found child project-face
                     try {
                         existingDash.updateFaceFields(dash);
+                        existingUser.markDirty();
                         count++;
                     } catch (Exception e) {
                         log.error("Error updating face for user {}, dashId {}.",
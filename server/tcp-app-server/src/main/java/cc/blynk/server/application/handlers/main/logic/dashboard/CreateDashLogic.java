@@ -104,7 +104,7 @@ public class CreateDashLogic {
             }
         }
 
-        user.lastModifiedTs = System.currentTimeMillis();
+        user.updateLastModifiedTs(System.currentTimeMillis());
 
         newDash.addTimers(timerWorker, state.userKey);
 
@@ -2,6 +2,7 @@ package cc.blynk.server.application.handlers.main.logic.dashboard;
 
 import cc.blynk.server.Holder;
 import cc.blynk.server.application.handlers.main.auth.AppStateHolder;
+import cc.blynk.server.core.dao.ReportingDao;
 import cc.blynk.server.core.dao.SessionDao;
 import cc.blynk.server.core.dao.TokenManager;
 import cc.blynk.server.core.model.DashBoard;
@@ -28,18 +29,20 @@ public class DeleteDashLogic {
     private final TokenManager tokenManager;
     private final TimerWorker timerWorker;
     private final SessionDao sessionDao;
+    private final ReportingDao reportingDao;
 
     public DeleteDashLogic(Holder holder) {
         this.tokenManager = holder.tokenManager;
         this.timerWorker = holder.timerWorker;
         this.sessionDao = holder.sessionDao;
+        this.reportingDao = holder.reportingDao;
     }
 
     public void messageReceived(ChannelHandlerContext ctx, AppStateHolder state, StringMessage message) {
         int dashId = Integer.parseInt(message.body);
 
         deleteDash(state, dashId);
-        state.user.lastModifiedTs = System.currentTimeMillis();
+        state.user.updateLastModifiedTs(System.currentTimeMillis());
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -57,6 +60,7 @@ public class DeleteDashLogic {
         timerWorker.deleteTimers(state.userKey, dash);
         tokenManager.deleteDash(dash);
         sessionDao.closeHardwareChannelByDashId(state.userKey, dashId);
+        reportingDao.deleteSeries(user, dashId);
 
         user.profile.dashBoards = ArrayUtil.remove(user.profile.dashBoards, index, DashBoard.class);
     }
@@ -61,7 +61,7 @@ public class UpdateDashLogic {
         updatedDash.addTimers(timerWorker, state.userKey);
 
         existingDash.updateFields(updatedDash);
-        user.lastModifiedTs = existingDash.updatedAt;
+        user.updateLastModifiedTs(existingDash.updatedAt);
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -57,7 +57,7 @@ public class UpdateDashSettingLogic {
         DashBoard existingDash = user.profile.getDashByIdOrThrow(dashId);
 
         existingDash.updateSettings(settings);
-        user.lastModifiedTs = existingDash.updatedAt;
+        user.updateLastModifiedTs(existingDash.updatedAt);
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -76,7 +76,7 @@ public class CreateDeviceLogic {
         tokenManager.assignToken(user, dash, newDevice, newToken);
 
         dash.updatedAt = System.currentTimeMillis();
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         if (ctx.channel().isWritable()) {
             ctx.writeAndFlush(
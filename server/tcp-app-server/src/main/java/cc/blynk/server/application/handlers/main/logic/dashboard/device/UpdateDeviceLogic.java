@@ -60,7 +60,7 @@ public final class UpdateDeviceLogic {
 
         existingDevice.update(newDevice);
         dash.updatedAt = System.currentTimeMillis();
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -59,7 +59,7 @@ public final class CreateTagLogic {
 
         dash.tags = ArrayUtil.add(dash.tags, newTag, Tag.class);
         dash.updatedAt = System.currentTimeMillis();
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         if (ctx.channel().isWritable()) {
             ctx.writeAndFlush(makeUTF8StringMessage(CREATE_TAG, message.id, newTag.toString()), ctx.voidPromise());
@@ -43,7 +43,7 @@ public final class DeleteTagLogic {
 
         dash.tags = ArrayUtil.remove(dash.tags, existingTagIndex, Tag.class);
         dash.updatedAt = System.currentTimeMillis();
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -57,7 +57,7 @@ public final class UpdateTagLogic {
 
         existingTag.update(newTag);
         dash.updatedAt = System.currentTimeMillis();
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -112,7 +112,7 @@ public class CreateWidgetLogic {
         }
 
         dash.cleanPinStorage(newWidget, true);
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         if (newWidget instanceof Timer) {
             timerWorker.add(state.userKey, (Timer) newWidget, dashId, widgetAddToId, templateIdAddToId);
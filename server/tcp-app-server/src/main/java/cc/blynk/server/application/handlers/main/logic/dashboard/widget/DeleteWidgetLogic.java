@@ -103,6 +103,7 @@ public class DeleteWidgetLogic {
         }
 
         dash.updatedAt = System.currentTimeMillis();
+        user.markDirty();
 
         if (widgetToDelete instanceof Timer) {
             timerWorker.delete(state.userKey, (Timer) widgetToDelete, dashId, deviceTilesId, templateId);
@@ -141,7 +141,7 @@ public class UpdateWidgetLogic {
         }
 
         dash.cleanPinStorage(newWidget, true);
-        user.lastModifiedTs = dash.updatedAt;
+        user.updateLastModifiedTs(dash.updatedAt);
 
         if (prevWidget instanceof Timer) {
             timerWorker.delete(state.userKey, (Timer) prevWidget, dashId, deviceTilesId, deviceTilesTemplateId);
@@ -68,6 +68,7 @@ public final class CreateTileTemplateLogic {
         deviceTiles.recreateTilesIfNecessary(newTileTemplate, null);
 
         dash.cleanPinStorage(deviceTiles, true);
+        user.markDirty();
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
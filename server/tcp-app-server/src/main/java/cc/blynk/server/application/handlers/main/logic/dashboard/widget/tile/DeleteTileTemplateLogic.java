@@ -56,6 +56,7 @@ public final class DeleteTileTemplateLogic {
         deviceTiles.deleteDeviceTilesByTemplateId(tileId);
 
         dash.updatedAt = System.currentTimeMillis();
+        user.markDirty();
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -70,6 +70,7 @@ public final class UpdateTileTemplateLogic {
         deviceTiles.templates = updatedTemplates;
 
         dash.cleanPinStorage(deviceTiles, true);
+        user.markDirty();
 
         ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
     }
@@ -141,8 +141,8 @@ public class ExportGraphDataLogic {
                     ctx.writeAndFlush(noData(msgId), ctx.voidPromise());
                 } else {
                     String title = "History graph data for project " + dashName;
-                    mailWrapper.sendHtml(user.email, title, makeBody(pinsCSVFilePath));
-                    ctx.writeAndFlush(ok(msgId), ctx.voidPromise());
+                    mailWrapper.sendHtml(user.email, title, makeBody(pinsCSVFilePath))
+                            .whenComplete((ignored, e) -> mailSent(ctx, msgId, e));
                 }
 
             } catch (Exception e) {
@@ -213,8 +213,8 @@ public class ExportGraphDataLogic {
                     ctx.writeAndFlush(noData(msgId), ctx.voidPromise());
                 } else {
                     String title = "History graph data for project " + dashName;
-                    mailWrapper.sendHtml(user.email, title, makeBody(pinsCSVFilePath));
-                    ctx.writeAndFlush(ok(msgId), ctx.voidPromise());
+                    mailWrapper.sendHtml(user.email, title, makeBody(pinsCSVFilePath))
+                            .whenComplete((ignored, e) -> mailSent(ctx, msgId, e));
                 }
 
             } catch (Exception e) {
@@ -224,6 +224,17 @@ public class ExportGraphDataLogic {
         }
     }
 
+    private static void mailSent(ChannelHandlerContext ctx, int msgId, Throwable e) {
+        if (e == null) {
+            ctx.writeAndFlush(ok(msgId), ctx.voidPromise());
+        } else {
+            log.error("Error sending email with exported data. Reason {}", e.getMessage());
+            if (ctx.channel().isActive() && ctx.channel().isWritable()) {
+                ctx.writeAndFlush(notificationError(msgId), ctx.voidPromise());
+            }
+        }
+    }
+
     private String makeBody(ArrayList<FileLink> fileUrls) {
         StringBuilder sb = new StringBuilder();
         sb.append("<html><body>");
@@ -13,19 +13,21 @@ import cc.blynk.server.core.model.widgets.outputs.graph.GraphPeriod;
 import cc.blynk.server.core.model.widgets.ui.tiles.DeviceTiles;
 import cc.blynk.server.core.protocol.exceptions.IllegalCommandException;
 import cc.blynk.server.core.protocol.exceptions.NoDataException;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
 import cc.blynk.server.core.reporting.GraphPinRequest;
 import cc.blynk.utils.StringUtils;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import static cc.blynk.server.core.protocol.enums.Command.GET_ENHANCED_GRAPH_DATA;
+import static cc.blynk.server.core.reporting.GraphDataDeflater.deflate;
 import static cc.blynk.server.internal.CommonByteBufUtil.makeBinaryMessage;
 import static cc.blynk.server.internal.CommonByteBufUtil.noData;
 import static cc.blynk.server.internal.CommonByteBufUtil.serverError;
-import static cc.blynk.utils.ByteUtils.compress;
 import static cc.blynk.utils.StringUtils.split2Device;
 
 /**
@@ -119,13 +121,13 @@ public class GetEnhancedGraphDataLogic {
     private void readGraphData(Channel channel, User user,
                                GraphPinRequest[] requestedPins, int msgId) {
         blockingIOProcessor.executeHistory(() -> {
+            ByteBuf body = ByteBufMessage.newBody(channel.alloc());
             try {
-                byte[][] data = reportingDao.getReportingData(user, requestedPins);
-                byte[] compressed = compress(requestedPins[0].dashId, data);
+                deflate(reportingDao, user, requestedPins, body);
 
                 if (channel.isWritable()) {
                     channel.writeAndFlush(
-                            makeBinaryMessage(GET_ENHANCED_GRAPH_DATA, msgId, compressed),
+                            makeBinaryMessage(GET_ENHANCED_GRAPH_DATA, msgId, body.retain()),
                             channel.voidPromise()
                     );
                 }
@@ -134,6 +136,8 @@ public class GetEnhancedGraphDataLogic {
             } catch (Exception e) {
                 log.error("Error reading reporting data. For user {}. Error: {}", user.email, e.getMessage());
                 channel.writeAndFlush(serverError(msgId), channel.voidPromise());
+            } finally {
+                body.release();
             }
         });
     }
@@ -8,10 +8,13 @@ import cc.blynk.server.core.model.enums.PinType;
 import cc.blynk.server.core.model.widgets.Target;
 import cc.blynk.server.core.protocol.exceptions.IllegalCommandException;
 import cc.blynk.server.core.protocol.exceptions.NoDataException;
+import cc.blynk.server.core.protocol.model.messages.ByteBufMessage;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
 import cc.blynk.server.core.reporting.GraphPinRequest;
 import cc.blynk.utils.StringUtils;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,11 +22,14 @@ import org.apache.logging.log4j.Logger;
 import java.util.Arrays;
 
 import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA_RESPONSE;
+import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA_STREAM;
+import static cc.blynk.server.core.protocol.enums.Command.GRAPH_DATA_CHUNK;
+import static cc.blynk.server.core.reporting.GraphDataDeflater.deflate;
+import static cc.blynk.server.core.reporting.GraphDataDeflater.deflateChunks;
 import static cc.blynk.server.internal.CommonByteBufUtil.makeBinaryMessage;
 import static cc.blynk.server.internal.CommonByteBufUtil.noData;
 import static cc.blynk.server.internal.CommonByteBufUtil.ok;
 import static cc.blynk.server.internal.CommonByteBufUtil.serverError;
-import static cc.blynk.utils.ByteUtils.compress;
 import static cc.blynk.utils.StringUtils.split2Device;
 
 /**
@@ -36,6 +42,11 @@ public class GetGraphDataLogic {
 
     private static final Logger log = LogManager.getLogger(GetGraphDataLogic.class);
 
+    //uncompressed size of the streamed chunk, compressed chunk fits into the 2 bytes length field
+    static final int CHUNK_SIZE = 32 * 1024;
+    //max time to wait while slow client reads previous chunks
+    private static final long CHUNK_WRITE_TIMEOUT_MILLIS = 10_000;
+
     private final BlockingIOProcessor blockingIOProcessor;
     private final ReportingDao reportingDao;
 
@@ -78,12 +89,13 @@ public class GetGraphDataLogic {
             ctx.writeAndFlush(ok(message.id), ctx.voidPromise());
         } else {
             process(ctx.channel(), dashId, deviceId,
-                    Arrays.copyOfRange(messageParts, 1, messageParts.length), user, message.id, 4);
+                    Arrays.copyOfRange(messageParts, 1, messageParts.length), user, message.id, 4,
+                    message.command == GET_GRAPH_DATA_STREAM);
         }
     }
 
     private void process(Channel channel, int dashId, int deviceId, String[] messageParts,
-                         User user, int msgId, int valuesPerPin) {
+                         User user, int msgId, int valuesPerPin, boolean stream) {
         int numberOfPins = messageParts.length / valuesPerPin;
 
         GraphPinRequest[] requestedPins = new GraphPinRequest[numberOfPins];
@@ -92,22 +104,27 @@ public class GetGraphDataLogic {
             requestedPins[i] = new GraphPinRequest(dashId, deviceId, messageParts, i, valuesPerPin);
         }
 
-        readGraphData(channel, user, requestedPins, msgId);
+        if (stream) {
+            streamGraphData(channel, user, requestedPins, msgId);
+        } else {
+            readGraphData(channel, user, requestedPins, msgId);
+        }
     }
 
     private void readGraphData(Channel channel, User user, GraphPinRequest[] requestedPins, int msgId) {
         blockingIOProcessor.executeHistory(() -> {
+            ByteBuf body = ByteBufMessage.newBody(channel.alloc());
             try {
-                byte[][] data = reportingDao.getReportingData(user, requestedPins);
-                byte[] compressed = compress(requestedPins[0].dashId, data);
+                deflate(reportingDao, user, requestedPins, body);
+                int compressedLength = body.readableBytes();
 
-                if (compressed.length > Short.MAX_VALUE * 2) {
-                    log.error("Data set for history graph is too large {}, for {}.", compressed.length, user.email);
+                if (compressedLength > Short.MAX_VALUE * 2) {
+                    log.error("Data set for history graph is too large {}, for {}.", compressedLength, user.email);
                     channel.writeAndFlush(serverError(msgId), channel.voidPromise());
                 } else {
                     if (channel.isWritable()) {
                         channel.writeAndFlush(
-                                makeBinaryMessage(GET_GRAPH_DATA_RESPONSE, msgId, compressed),
+                                makeBinaryMessage(GET_GRAPH_DATA_RESPONSE, msgId, body.retain()),
                                 channel.voidPromise()
                         );
                     }
@@ -117,10 +134,42 @@ public class GetGraphDataLogic {
             } catch (Exception e) {
                 log.error("Error reading reporting data. For user {}", user.email);
                 channel.writeAndFlush(serverError(msgId), channel.voidPromise());
+            } finally {
+                body.release();
             }
         });
     }
 
+    /**
+     * Sends graph data as sequence of GRAPH_DATA_CHUNK messages, every chunk is compressed separately.
+     * Chunk is sent as soon as it is ready, so response size isn't limited and only few chunks are in memory.
+     * Sequence is finished with OK response. No data or server error could be sent instead of OK.
+     */
+    private void streamGraphData(Channel channel, User user, GraphPinRequest[] requestedPins, int msgId) {
+        blockingIOProcessor.executeHistory(() -> {
+            try {
+                deflateChunks(reportingDao, user, requestedPins, channel.alloc(), CHUNK_SIZE,
+                        chunk -> writeChunk(channel, msgId, chunk));
+                channel.writeAndFlush(ok(msgId), channel.voidPromise());
+            } catch (NoDataException noDataException) {
+                channel.writeAndFlush(noData(msgId), channel.voidPromise());
+            } catch (Exception e) {
+                log.error("Error streaming reporting data. For user {}. {}", user.email, e.getMessage());
+                channel.writeAndFlush(serverError(msgId), channel.voidPromise());
+            }
+        });
+    }
+
+    private static void writeChunk(Channel channel, int msgId, ByteBuf chunk) {
+        ChannelFuture future = channel.writeAndFlush(new ByteBufMessage(msgId, GRAPH_DATA_CHUNK, chunk));
+        //slow client, waiting until it reads the data, so outbound buffer doesn't grow
+        if (!channel.isWritable()) {
+            if (!future.awaitUninterruptibly(CHUNK_WRITE_TIMEOUT_MILLIS) || !future.isSuccess()) {
+                throw new IllegalStateException("Graph data chunk is not delivered.");
+            }
+        }
+    }
+
     private void deleteGraphData(String[] messageParts, User user, int dashId, int deviceId) {
         try {
             PinType pinType = PinType.getPinType(messageParts[1].charAt(0));
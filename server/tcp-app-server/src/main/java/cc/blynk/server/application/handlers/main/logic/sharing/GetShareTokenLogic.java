@@ -48,7 +48,7 @@ public class GetShareTokenLogic {
             }
             token = tokenManager.refreshSharedToken(user, dash);
             user.subtractEnergy(PRIVATE_TOKEN_PRICE);
-            user.lastModifiedTs = System.currentTimeMillis();
+            user.updateLastModifiedTs(System.currentTimeMillis());
         }
 
         if (ctx.channel().isWritable()) {
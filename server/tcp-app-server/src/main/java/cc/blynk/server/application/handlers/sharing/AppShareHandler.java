@@ -20,10 +20,12 @@ import io.netty.channel.ChannelHandlerContext;
 
 import static cc.blynk.server.core.protocol.enums.Command.ADD_PUSH_TOKEN;
 import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC;
+import static cc.blynk.server.core.protocol.enums.Command.APP_SYNC_BULK;
 import static cc.blynk.server.core.protocol.enums.Command.DELETE_ENHANCED_GRAPH_DATA;
 import static cc.blynk.server.core.protocol.enums.Command.GET_DEVICES;
 import static cc.blynk.server.core.protocol.enums.Command.GET_ENHANCED_GRAPH_DATA;
 import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA;
+import static cc.blynk.server.core.protocol.enums.Command.GET_GRAPH_DATA_STREAM;
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
 import static cc.blynk.server.core.protocol.enums.Command.LOAD_PROFILE_GZIPPED;
 import static cc.blynk.server.core.protocol.enums.Command.LOGOUT;
@@ -69,6 +71,7 @@ public class AppShareHandler extends BaseSimpleChannelInboundHandler<StringMessa
                 AddPushLogic.messageReceived(ctx, state, msg);
                 break;
             case GET_GRAPH_DATA :
+            case GET_GRAPH_DATA_STREAM :
                 graphData.messageReceived(ctx, state.user, msg);
                 break;
             case GET_ENHANCED_GRAPH_DATA :
@@ -84,6 +87,7 @@ public class AppShareHandler extends BaseSimpleChannelInboundHandler<StringMessa
                 PingLogic.messageReceived(ctx, msg.id);
                 break;
             case APP_SYNC :
+            case APP_SYNC_BULK :
                 AppSyncLogic.messageReceived(ctx, state, msg);
                 break;
             case LOGOUT :
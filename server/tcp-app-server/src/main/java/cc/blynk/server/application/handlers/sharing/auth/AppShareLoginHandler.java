@@ -69,6 +69,16 @@ public class AppShareLoginHandler extends SimpleChannelInboundHandler<ShareLogin
                           String token, Version version, String uid) {
         String userName = email.toLowerCase();
 
+        //profile of the idle user is read from disk outside of the event loop
+        if (holder.tokenManager.loadEvictedUser(token, holder.blockingIOProcessor::execute,
+                ctx.channel().eventLoop(), () -> login(ctx, messageId, userName, token, version))) {
+            return;
+        }
+        login(ctx, messageId, userName, token, version);
+    }
+
+    private void login(ChannelHandlerContext ctx, int messageId, String userName,
+                       String token, Version version) {
         SharedTokenValue tokenValue = holder.tokenManager.getUserBySharedToken(token);
 
         if (tokenValue == null || !tokenValue.user.email.equals(userName)) {
@@ -97,16 +107,16 @@ public class AppShareLoginHandler extends SimpleChannelInboundHandler<ShareLogin
                 appShareStateHolder.userKey, ctx.channel().eventLoop());
 
         if (session.isSameEventLoop(ctx)) {
-            completeLogin(ctx.channel(), session, user.email, messageId);
+            completeLogin(ctx.channel(), session, user.email, dashId, messageId);
         } else {
             log.debug("Re registering app channel. {}", ctx.channel());
             reRegisterChannel(ctx, session, channelFuture ->
-                    completeLogin(channelFuture.channel(), session, user.email, messageId));
+                    completeLogin(channelFuture.channel(), session, user.email, dashId, messageId));
         }
     }
 
-    private void completeLogin(Channel channel, Session session, String userName, int msgId) {
-        session.addAppChannel(channel);
+    private void completeLogin(Channel channel, Session session, String userName, int dashId, int msgId) {
+        session.addAppChannel(channel, dashId);
         channel.writeAndFlush(ok(msgId), channel.voidPromise());
         log.info("Shared {} app joined.", userName);
     }
@@ -40,11 +40,10 @@ public class HardwareAppShareLogic extends BaseProcessorHandler {
     private final SessionDao sessionDao;
 
     public HardwareAppShareLogic(Holder holder, String email) {
-        super(holder.eventorProcessor, new WebhookProcessor(holder.asyncHttpClient,
+        super(holder.eventorProcessor, new WebhookProcessor(holder.webhookDispatcher,
                 holder.limits.webhookPeriodLimitation,
                 holder.limits.webhookResponseSizeLimitBytes,
                 holder.limits.webhookFailureLimit,
-                holder.stats,
                 email));
         this.sessionDao = holder.sessionDao;
     }
@@ -120,6 +119,7 @@ public class HardwareAppShareLogic extends BaseProcessorHandler {
                 if (target.isTag()) {
                     dash.update(targetId, pin, pinType, value, now);
                 }
+                state.user.markDirty();
 
                 String sharedToken = state.token;
                 if (sharedToken != null) {
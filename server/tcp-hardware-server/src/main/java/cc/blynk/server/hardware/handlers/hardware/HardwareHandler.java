@@ -2,7 +2,9 @@ package cc.blynk.server.hardware.handlers.hardware;
 
 import cc.blynk.server.Holder;
 import cc.blynk.server.core.dao.TokenValue;
+import cc.blynk.server.core.protocol.model.messages.MessageBase;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
+import cc.blynk.server.core.protocol.model.messages.common.LazyHardwareMessage;
 import cc.blynk.server.core.session.HardwareStateHolder;
 import cc.blynk.server.core.session.StateHolderBase;
 import cc.blynk.server.handlers.BaseSimpleChannelInboundHandler;
@@ -24,6 +26,7 @@ import static cc.blynk.server.core.protocol.enums.Command.BRIDGE;
 import static cc.blynk.server.core.protocol.enums.Command.EMAIL;
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_SYNC;
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_SYNC_BULK;
 import static cc.blynk.server.core.protocol.enums.Command.LOGIN;
 import static cc.blynk.server.core.protocol.enums.Command.PING;
 import static cc.blynk.server.core.protocol.enums.Command.PUSH_NOTIFICATION;
@@ -39,7 +42,7 @@ import static cc.blynk.server.internal.CommonByteBufUtil.illegalCommand;
  * Created by Dmitriy Dumanskiy.
  * Created on 29.07.15.
  */
-public class HardwareHandler extends BaseSimpleChannelInboundHandler<StringMessage> {
+public class HardwareHandler extends BaseSimpleChannelInboundHandler<MessageBase> {
 
     public final HardwareStateHolder state;
     private final HardwareLogic hardware;
@@ -52,12 +55,11 @@ public class HardwareHandler extends BaseSimpleChannelInboundHandler<StringMessa
     private final BlynkInternalLogic info;
 
     public HardwareHandler(Holder holder, HardwareStateHolder stateHolder) {
-        super(StringMessage.class);
+        super(MessageBase.class);
         this.hardware = new HardwareLogic(holder, stateHolder.user.email);
         this.bridge = new BridgeLogic(holder.sessionDao, holder.tokenManager);
 
-        this.email = new MailLogic(holder.blockingIOProcessor,
-                holder.mailWrapper, holder.limits.notificationPeriodLimitSec);
+        this.email = new MailLogic(holder.mailWrapper, holder.limits.notificationPeriodLimitSec);
         this.push = new PushLogic(holder.gcmWrapper, holder.limits.notificationPeriodLimitSec);
         this.tweet = new TwitLogic(holder.twitterWrapper, holder.limits.notificationPeriodLimitSec);
         this.smsLogic = new SmsLogic(holder.smsWrapper, holder.limits.notificationPeriodLimitSec);
@@ -68,7 +70,15 @@ public class HardwareHandler extends BaseSimpleChannelInboundHandler<StringMessa
     }
 
     @Override
-    public void messageReceived(ChannelHandlerContext ctx, StringMessage msg) {
+    public void messageReceived(ChannelHandlerContext ctx, MessageBase message) {
+        if (message instanceof LazyHardwareMessage) {
+            hardware.messageReceived(ctx, state, (LazyHardwareMessage) message);
+            return;
+        }
+        if (!(message instanceof StringMessage)) {
+            return;
+        }
+        StringMessage msg = (StringMessage) message;
         switch (msg.command) {
             case HARDWARE:
                 hardware.messageReceived(ctx, state, msg);
@@ -92,6 +102,7 @@ public class HardwareHandler extends BaseSimpleChannelInboundHandler<StringMessa
                 smsLogic.messageReceived(ctx, state, msg);
                 break;
             case HARDWARE_SYNC:
+            case HARDWARE_SYNC_BULK:
                 HardwareSyncLogic.messageReceived(ctx, state, msg);
                 break;
             case BLYNK_INTERNAL:
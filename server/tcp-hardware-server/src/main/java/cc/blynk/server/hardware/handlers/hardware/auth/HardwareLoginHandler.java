@@ -93,16 +93,25 @@ public class HardwareLoginHandler extends SimpleChannelInboundHandler<LoginMessa
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, LoginMessage message) throws Exception {
         String token = message.body.trim();
+        //profile of the idle user is read from disk outside of the event loop
+        if (holder.tokenManager.loadEvictedUser(token, blockingIOProcessor::execute, ctx.channel().eventLoop(),
+                () -> login(ctx, token, message.id))) {
+            return;
+        }
+        login(ctx, token, message.id);
+    }
+
+    private void login(ChannelHandlerContext ctx, String token, int msgId) {
         TokenValue tokenValue = holder.tokenManager.getTokenValueByToken(token);
 
         if (tokenValue == null) {
             //token should always be 32 chars and shouldn't contain invalid nil char
             if (token.length() != 32 || token.contains(StringUtils.BODY_SEPARATOR_STRING)) {
                 log.debug("HardwareLogic token is invalid. Token '{}', '{}'", token, ctx.channel().remoteAddress());
-                ctx.writeAndFlush(invalidToken(message.id), ctx.voidPromise());
+                ctx.writeAndFlush(invalidToken(msgId), ctx.voidPromise());
             } else {
                 //no user on current server, trying to find server that user belongs to.
-                checkTokenOnOtherServer(ctx, token, message.id);
+                checkTokenOnOtherServer(ctx, token, msgId);
             }
             return;
         }
@@ -115,22 +124,24 @@ public class HardwareLoginHandler extends SimpleChannelInboundHandler<LoginMessa
             holder.tokenManager.updateRegularCache(token, tokenValue);
             dash.devices = ArrayUtil.add(dash.devices, device, Device.class);
             dash.updatedAt = System.currentTimeMillis();
+            user.markDirty();
         }
 
         HardwareStateHolder hardwareStateHolder = new HardwareStateHolder(user, tokenValue.dash, device);
 
         ChannelPipeline pipeline = ctx.pipeline();
         pipeline.replace(this, "HHArdwareHandler", new HardwareHandler(holder, hardwareStateHolder));
+        holder.readingWidgetsWorker.register(ctx.channel(), hardwareStateHolder.userKey, dash.id, device.id);
 
         Session session = holder.sessionDao.getOrCreateSessionByUser(
                 hardwareStateHolder.userKey, ctx.channel().eventLoop());
 
         if (session.isSameEventLoop(ctx)) {
-            completeLogin(ctx.channel(), session, user, dash, device, message.id);
+            completeLogin(ctx.channel(), session, user, dash, device, msgId);
         } else {
             log.debug("Re registering hard channel. {}", ctx.channel());
             reRegisterChannel(ctx, session, channelFuture ->
-                    completeLogin(channelFuture.channel(), session, user, dash, device, message.id));
+                    completeLogin(channelFuture.channel(), session, user, dash, device, msgId));
         }
     }
 
@@ -98,6 +98,7 @@ public class BlynkInternalLogic {
             otaManager.initiateHardwareUpdate(ctx, state.userKey, hardwareInfo, dashBoard, device);
             device.hardwareInfo = hardwareInfo;
             dashBoard.updatedAt = System.currentTimeMillis();
+            state.user.markDirty();
         }
 
         ctx.writeAndFlush(ok(msgId), ctx.voidPromise());
@@ -12,6 +12,7 @@ import cc.blynk.server.core.model.enums.PinType;
 import cc.blynk.server.core.processors.BaseProcessorHandler;
 import cc.blynk.server.core.processors.WebhookProcessor;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
+import cc.blynk.server.core.protocol.model.messages.common.LazyHardwareMessage;
 import cc.blynk.server.core.session.HardwareStateHolder;
 import io.netty.channel.ChannelHandlerContext;
 
@@ -35,11 +36,10 @@ public class HardwareLogic extends BaseProcessorHandler {
     private final SessionDao sessionDao;
 
     public HardwareLogic(Holder holder, String email) {
-        super(holder.eventorProcessor, new WebhookProcessor(holder.asyncHttpClient,
+        super(holder.eventorProcessor, new WebhookProcessor(holder.webhookDispatcher,
                 holder.limits.webhookPeriodLimitation,
                 holder.limits.webhookResponseSizeLimitBytes,
                 holder.limits.webhookFailureLimit,
-                holder.stats,
                 email));
         this.sessionDao = holder.sessionDao;
         this.reportingDao = holder.reportingDao;
@@ -53,6 +53,34 @@ public class HardwareLogic extends BaseProcessorHandler {
         messageReceived(ctx, message, state.userKey, state.user, state.dash, state.device);
     }
 
+    public void messageReceived(ChannelHandlerContext ctx, HardwareStateHolder state, LazyHardwareMessage message) {
+        //minimum command - "ar 1"
+        if (message.length() < 4) {
+            log.debug("HardwareLogic command body too short.");
+            ctx.writeAndFlush(illegalCommand(message.id), ctx.voidPromise());
+            return;
+        }
+
+        if (message.isWriteOperation()) {
+            if (!message.hasPinAndValue()) {
+                log.debug("Write command is wrong {}.", message);
+                ctx.writeAndFlush(illegalCommand(message.id), ctx.voidPromise());
+                return;
+            }
+
+            DashBoard dash = state.dash;
+            int deviceId = state.device.id;
+            Session session = processWrite(state.userKey, state.user, dash, deviceId,
+                    message.getPin(), message.getPinType(), message.getValue());
+
+            if (dash.isActive) {
+                session.sendToApps(HARDWARE, message.id, dash.id, deviceId, message.body);
+            } else {
+                log.trace("No active dashboard.");
+            }
+        }
+    }
+
     public void messageReceived(ChannelHandlerContext ctx, StringMessage message,
                                 UserKey userKey, User user, DashBoard dash, Device device) {
         String body = message.body;
@@ -75,15 +103,8 @@ public class HardwareLogic extends BaseProcessorHandler {
 
             PinType pinType = PinType.getPinType(splitBody[0].charAt(0));
             byte pin = Byte.parseByte(splitBody[1]);
-            String value = splitBody[2];
-            long now = System.currentTimeMillis();
             int deviceId = device.id;
-
-            reportingDao.process(user, dash, deviceId, pin, pinType, value, now);
-            dash.update(deviceId, pin, pinType, value, now);
-
-            Session session = sessionDao.userSession.get(userKey);
-            processEventorAndWebhook(user, dash, deviceId, session, pin, pinType, value, now);
+            Session session = processWrite(userKey, user, dash, deviceId, pin, pinType, splitBody[2]);
 
             if (dash.isActive) {
                 session.sendToApps(HARDWARE, message.id, dash.id, deviceId, body);
@@ -93,4 +114,17 @@ public class HardwareLogic extends BaseProcessorHandler {
         }
     }
 
+    private Session processWrite(UserKey userKey, User user, DashBoard dash, int deviceId,
+                                 byte pin, PinType pinType, String value) {
+        long now = System.currentTimeMillis();
+
+        reportingDao.process(user, dash, deviceId, pin, pinType, value, now);
+        dash.update(deviceId, pin, pinType, value, now);
+        user.markDirty();
+
+        Session session = sessionDao.userSession.get(userKey);
+        processEventorAndWebhook(user, dash, deviceId, session, pin, pinType, value, now);
+        return session;
+    }
+
 }
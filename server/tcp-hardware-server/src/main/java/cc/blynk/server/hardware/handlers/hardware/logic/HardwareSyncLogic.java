@@ -10,6 +10,7 @@ import cc.blynk.server.core.model.widgets.Widget;
 import cc.blynk.server.core.model.widgets.others.rtc.RTC;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
 import cc.blynk.server.core.session.HardwareStateHolder;
+import cc.blynk.server.internal.BulkSyncCollector;
 import cc.blynk.utils.PinUtil;
 import cc.blynk.utils.StringUtils;
 import io.netty.channel.ChannelHandlerContext;
@@ -17,6 +18,7 @@ import io.netty.channel.ChannelHandlerContext;
 import java.util.Map;
 
 import static cc.blynk.server.core.protocol.enums.Command.HARDWARE;
+import static cc.blynk.server.core.protocol.enums.Command.HARDWARE_SYNC_BULK;
 import static cc.blynk.server.internal.CommonByteBufUtil.illegalCommand;
 import static cc.blynk.server.internal.CommonByteBufUtil.makeUTF8StringMessage;
 
@@ -28,6 +30,9 @@ import static cc.blynk.server.internal.CommonByteBufUtil.makeUTF8StringMessage;
  */
 public final class HardwareSyncLogic {
 
+    //hardware message length field is 2 bytes
+    private static final int MAX_HARDWARE_BODY_LENGTH = 0xFFFF;
+
     private HardwareSyncLogic() {
     }
 
@@ -35,7 +40,13 @@ public final class HardwareSyncLogic {
         int deviceId = state.device.id;
         DashBoard dash = state.dash;
 
-        if (message.body.length() == 0) {
+        if (message.command == HARDWARE_SYNC_BULK) {
+            try (BulkSyncCollector collector = new BulkSyncCollector()) {
+                syncAll(collector.context(), message.id, dash, deviceId);
+                collector.writeTo(ctx, HARDWARE_SYNC_BULK, message.id, MAX_HARDWARE_BODY_LENGTH);
+            }
+            ctx.flush();
+        } else if (message.body.length() == 0) {
             syncAll(ctx, message.id, dash, deviceId);
         } else {
             syncSpecificPins(ctx, message.body, message.id, dash, deviceId);
@@ -1,6 +1,5 @@
 package cc.blynk.server.hardware.handlers.hardware.logic;
 
-import cc.blynk.server.core.BlockingIOProcessor;
 import cc.blynk.server.core.model.DashBoard;
 import cc.blynk.server.core.model.auth.User;
 import cc.blynk.server.core.model.widgets.notifications.Mail;
@@ -9,6 +8,7 @@ import cc.blynk.server.core.protocol.exceptions.IllegalCommandException;
 import cc.blynk.server.core.protocol.exceptions.NotAllowedException;
 import cc.blynk.server.core.protocol.model.messages.StringMessage;
 import cc.blynk.server.core.session.HardwareStateHolder;
+import cc.blynk.server.notifications.mail.MailPriority;
 import cc.blynk.server.notifications.mail.MailWrapper;
 import cc.blynk.utils.validators.BlynkEmailValidator;
 import io.netty.channel.Channel;
@@ -16,6 +16,8 @@ import io.netty.channel.ChannelHandlerContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.concurrent.CompletableFuture;
+
 import static cc.blynk.server.internal.CommonByteBufUtil.notificationError;
 import static cc.blynk.server.internal.CommonByteBufUtil.ok;
 
@@ -31,12 +33,10 @@ public class MailLogic extends NotificationBase {
 
     private static final Logger log = LogManager.getLogger(MailLogic.class);
 
-    private final BlockingIOProcessor blockingIOProcessor;
     private final MailWrapper mailWrapper;
 
-    public MailLogic(BlockingIOProcessor blockingIOProcessor, MailWrapper mailWrapper, long notificationQuotaLimit) {
+    public MailLogic(MailWrapper mailWrapper, long notificationQuotaLimit) {
         super(notificationQuotaLimit);
-        this.blockingIOProcessor = blockingIOProcessor;
         this.mailWrapper = mailWrapper;
     }
 
@@ -89,15 +89,13 @@ public class MailLogic extends NotificationBase {
     }
 
     private void mail(Channel channel, String email, String to, String subj, String body, int msgId, boolean isText) {
-        blockingIOProcessor.execute(() -> {
-            try {
-                if (isText) {
-                    mailWrapper.sendText(to, subj, body);
-                } else {
-                    mailWrapper.sendHtml(to, subj, body);
-                }
+        CompletableFuture<Void> future = isText
+                ? mailWrapper.sendText(to, subj, body, MailPriority.LOW)
+                : mailWrapper.sendHtml(to, subj, body, MailPriority.LOW);
+        future.whenComplete((ignored, e) -> {
+            if (e == null) {
                 channel.writeAndFlush(ok(msgId), channel.voidPromise());
-            } catch (Exception e) {
+            } else {
                 log.error("Error sending email from hardware. From user {}, to : {}. Reason : {}",
                         email, to, e.getMessage());
                 if (channel.isActive() && channel.isWritable()) {
@@ -77,6 +77,7 @@ public class SetWidgetPropertyLogic {
             try {
                 widget.setProperty(widgetProperty, propertyValue);
                 dash.updatedAt = System.currentTimeMillis();
+                state.user.markDirty();
             } catch (Exception e) {
                 log.debug("Error setting widget property. Reason : {}", e.getMessage());
                 ctx.writeAndFlush(illegalCommandBody(message.id), ctx.voidPromise());
@@ -78,6 +78,15 @@ public class MqttHardwareLoginHandler extends SimpleChannelInboundHandler<MqttCo
         String username = message.payload().userName().toLowerCase();
         String token = new String(message.payload().passwordInBytes(), CharsetUtil.UTF_8);
 
+        //profile of the idle user is read from disk outside of the event loop
+        if (holder.tokenManager.loadEvictedUser(token, holder.blockingIOProcessor::execute,
+                ctx.channel().eventLoop(), () -> login(ctx, username, token))) {
+            return;
+        }
+        login(ctx, username, token);
+    }
+
+    private void login(ChannelHandlerContext ctx, String username, String token) {
         TokenValue tokenValue = holder.tokenManager.getTokenValueByToken(token);
 
         if (tokenValue == null || !tokenValue.user.email.equalsIgnoreCase(username)) {
@@ -93,6 +102,7 @@ public class MqttHardwareLoginHandler extends SimpleChannelInboundHandler<MqttCo
         ChannelPipeline pipeline = ctx.pipeline();
         HardwareStateHolder hardwareStateHolder = new HardwareStateHolder(user, tokenValue.dash, device);
         pipeline.replace(this, "HHArdwareMqttHandler", new MqttHardwareHandler(holder, hardwareStateHolder));
+        holder.readingWidgetsWorker.register(ctx.channel(), hardwareStateHolder.userKey, dash.id, device.id);
 
         Session session = holder.sessionDao.getOrCreateSessionByUser(
                 hardwareStateHolder.userKey, ctx.channel().eventLoop());
@@ -84,6 +84,7 @@ public class MqttHardwareLogic {
             reportingDao.process(state.user, dash, deviceId, pin, pinType, value, now);
 
             dash.update(0, pin, pinType, value, now);
+            state.user.markDirty();
         }
 
         if (dash.isActive) {
@@ -36,7 +36,7 @@ public class MailHandlerTest {
     @Mock
     private MailWrapper mailWrapper;
 
-    private final MailLogic mailHandler = new MailLogic(blockingIOProcessor, mailWrapper, 1);
+    private final MailLogic mailHandler = new MailLogic(mailWrapper, 1);
 
 	@Mock
 	private ChannelHandlerContext ctx;
@@ -1,5 +1,6 @@
 package cc.blynk.server.tools;
 
+import cc.blynk.server.core.reporting.storage.RingFile;
 import cc.blynk.utils.FileUtils;
 
 import java.io.File;
@@ -68,12 +69,17 @@ public final class ReportingDataCleaner {
                         System.out.println("Found " + file.getPath() + ". Size : " + fileSize);
                         try {
                             Path path = file.toPath();
-                            ByteBuffer userReportingData = FileUtils.read(path, count);
-                            ((Buffer) userReportingData).flip();
-                            write(file, userReportingData);
-                            System.out.println("Successfully copied. Truncated : "
-                                    + (fileSize - userReportingData.position()));
-                            overrideCount++;
+                            //ring files have fixed size and are never truncated
+                            if (RingFile.isRingFile(path)) {
+                                System.out.println("Ring file. Skipping.");
+                            } else {
+                                ByteBuffer userReportingData = FileUtils.read(path, count);
+                                ((Buffer) userReportingData).flip();
+                                write(file, userReportingData);
+                                System.out.println("Successfully copied. Truncated : "
+                                        + (fileSize - userReportingData.position()));
+                                overrideCount++;
+                            }
                         } catch (Exception e) {
                             System.out.println("Error reading file " + file.getAbsolutePath());
                             System.out.println("Skipping.");
@@ -0,0 +1,96 @@
+package cc.blynk.server.tools;
+
+import cc.blynk.server.core.model.widgets.outputs.graph.GraphGranularityType;
+import cc.blynk.server.core.reporting.storage.RingFile;
+import cc.blynk.server.core.reporting.storage.RingReportingStorage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts all append only history_*.bin files to the ring files,
+ * so server could be started with "reporting.storage.type=ring" without
+ * converting files on the first access.
+ *
+ * Usage : java -cp tools.jar cc.blynk.server.tools.ReportingRingFileMigrator /path/to/data
+ *         [minuteCapacity hourlyCapacity dailyCapacity]
+ */
+public final class ReportingRingFileMigrator {
+
+    private ReportingRingFileMigrator() {
+    }
+
+    public static void main(String[] args) {
+        String reportingFolder = args[0];
+        Path reportingPath = Paths.get(reportingFolder);
+        if (Files.exists(reportingPath)) {
+            RingReportingStorage storage;
+            if (args.length == 4) {
+                storage = new RingReportingStorage(Integer.parseInt(args[1]),
+                        Integer.parseInt(args[2]), Integer.parseInt(args[3]), 1);
+            } else {
+                storage = new RingReportingStorage(30 * 24 * 60, 365 * 24, 10 * 365, 1);
+            }
+            System.out.println("Starting processing " + reportingPath.toString());
+            start(reportingPath, storage);
+        } else {
+            System.out.println(reportingPath.toString() + " not exists.");
+        }
+    }
+
+    static void start(Path reportingPath, RingReportingStorage storage) {
+        File[] allReporting = reportingPath.toFile().listFiles();
+        if (allReporting == null || allReporting.length == 0) {
+            System.out.println("No files.");
+            return;
+        }
+
+        System.out.println("Directories number : " + allReporting.length);
+
+        int filesCount = 0;
+        int convertedCount = 0;
+
+        for (File userDirectory : allReporting) {
+            if (userDirectory.isDirectory()) {
+                File[] userFiles = userDirectory.listFiles();
+                if (userFiles == null) {
+                    continue;
+                }
+                for (File file : userFiles) {
+                    if (filesCount != 0 && filesCount % 1000 == 0) {
+                        System.out.println("Visited " + filesCount + " files.");
+                    }
+                    GraphGranularityType type = getType(file.getName());
+                    if (type != null) {
+                        try {
+                            if (RingFile.convert(file.toPath(), storage.getCapacity(type))) {
+                                convertedCount++;
+                            }
+                        } catch (Exception e) {
+                            System.out.println("Error converting file " + file.getAbsolutePath()
+                                    + ". Reason : " + e.getMessage());
+                            System.out.println("Skipping.");
+                        }
+                    }
+                    filesCount++;
+                }
+            }
+        }
+
+        System.out.println("Visited : " + filesCount + ". Converted : " + convertedCount);
+    }
+
+    private static GraphGranularityType getType(String fileName) {
+        if (fileName.startsWith("history_")) {
+            for (GraphGranularityType type : GraphGranularityType.values()) {
+                if (fileName.endsWith("_" + type.label + ".bin")) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+}
@@ -45,26 +45,6 @@ public final class ByteUtils {
         return baos.toByteArray();
     }
 
-    public static byte[] compress(int dashId, byte[][] values) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
-
-        try (OutputStream out = new DeflaterOutputStream(baos)) {
-            writeInt(out, dashId);
-            for (byte[] data : values) {
-                writeInt(out, data.length / REPORTING_RECORD_SIZE_BYTES);
-                out.write(data);
-            }
-        }
-        return baos.toByteArray();
-    }
-
-    private static void writeInt(OutputStream out, int value) throws IOException {
-        out.write((value >>> 24) & 0xFF);
-        out.write((value >>> 16) & 0xFF);
-        out.write((value >>>  8) & 0xFF);
-        out.write((value) & 0xFF);
-    }
-
     public static int parseColor(String fieldValue) {
         int decodedColor = Integer.decode(fieldValue);
         return convertARGBtoRGBA(setAlphaComponent(decodedColor, 255));
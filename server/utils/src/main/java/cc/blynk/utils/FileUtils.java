@@ -7,6 +7,7 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -18,6 +19,7 @@ import java.util.EnumSet;
 import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * The Blynk Project.
@@ -88,6 +90,20 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Writes bunch of reporting entries to the end of file with single write.
+     *
+     * @param reportingPath - path to user specific reporting file
+     * @param data          - reporting entries ready for read
+     */
+    public static void write(Path reportingPath, ByteBuffer data) throws IOException {
+        try (FileChannel channel = FileChannel.open(reportingPath, CREATE, WRITE, APPEND)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
     /**
      * Read bunch of last records from file.
      *
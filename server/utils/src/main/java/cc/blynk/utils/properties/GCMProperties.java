@@ -30,4 +30,16 @@ public class GCMProperties extends BaseProperties {
     public String getGCMServer() {
         return getProperty("gcm.server");
     }
+
+    public int getRequestsInFlightLimit() {
+        return getIntProperty("gcm.requests.in.flight.limit", 100);
+    }
+
+    public int getQueueLimit() {
+        return getIntProperty("gcm.queue.limit", 10000);
+    }
+
+    public long getCollapseWindow() {
+        return getLongProperty("gcm.collapse.window", 1000);
+    }
 }
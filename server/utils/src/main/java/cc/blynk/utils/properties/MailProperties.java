@@ -30,4 +30,24 @@ public class MailProperties extends BaseProperties {
     public String getSMTPort() {
         return getProperty("mail.smtp.port");
     }
+
+    public int getSMTPPortNumber() {
+        return getIntProperty("mail.smtp.port", -1);
+    }
+
+    public int getConnectionsLimit() {
+        return getIntProperty("mail.connections", 2);
+    }
+
+    public int getQueueLimit() {
+        return getIntProperty("mail.queue.limit", 1000);
+    }
+
+    public int getBatchSize() {
+        return getIntProperty("mail.batch.size", 20);
+    }
+
+    public long getIdleTimeout() {
+        return getLongProperty("mail.idle.timeout", 60_000);
+    }
 }